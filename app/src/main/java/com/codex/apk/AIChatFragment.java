@@ -26,6 +26,9 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
     private ChatMessage currentAiStatusMessage = null;
     public boolean isAiProcessing = false;
     private String projectPath;
+    // False while only the session's chat window is shown and the full history is loading
+    private boolean historyHydrated = true;
+    private static final int CHAT_WINDOW_MESSAGES = 20;
     private final List<java.io.File> pendingAttachments = new java.util.ArrayList<>();
     private androidx.activity.result.ActivityResultLauncher<String[]> pickFilesLauncher;
 
@@ -39,6 +42,8 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
         void onQwenConversationStateUpdated(QwenConversationState state);
         void onPlanAcceptClicked(int messagePosition, ChatMessage message);
         void onPlanDiscardClicked(int messagePosition, ChatMessage message);
+        /** The chat window saved with the editor session, handed out once; may be null. */
+        String takeRestoredChatWindow();
     }
 
     // Hook used by UI manager to trigger attachment selection
@@ -137,8 +142,16 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        historyManager.loadChatState(chatHistory, qwenConversationState);
-        removeDuplicateRestoredAiJsonMessages();
+        List<ChatMessage> window = historyManager.windowFromJson(listener.takeRestoredChatWindow());
+        if (window != null && !window.isEmpty()) {
+            // Draw the tail of the chat from the session snapshot; the full history follows
+            chatHistory.addAll(window);
+            historyHydrated = false;
+            hydrateHistory(window.size());
+        } else {
+            historyManager.loadChatState(chatHistory, qwenConversationState);
+            removeDuplicateRestoredAiJsonMessages();
+        }
         aiAssistant = listener.getAIAssistant();
         uiManager.updateUiVisibility(chatHistory.isEmpty());
         uiManager.setListeners();
@@ -172,6 +185,50 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
         return this.aiAssistant;
     }
 
+    /**
+     * Loads the full chat history in the background and swaps it in for the restored window.
+     * Messages added in the meantime are kept after it.
+     */
+    private void hydrateHistory(int windowSize) {
+        new Thread(() -> {
+            List<ChatMessage> full = new ArrayList<>();
+            QwenConversationState loadedState = new QwenConversationState();
+            historyManager.loadChatState(full, loadedState);
+            android.app.Activity activity = getActivity();
+            if (activity == null) return;
+            activity.runOnUiThread(() -> {
+                if (!isAdded() || chatMessageAdapter == null) return;
+                List<ChatMessage> added = new ArrayList<>(chatHistory.subList(Math.min(windowSize, chatHistory.size()), chatHistory.size()));
+                chatHistory.clear();
+                chatHistory.addAll(full);
+                chatHistory.addAll(added);
+                if (qwenConversationState.getConversationId() == null) {
+                    qwenConversationState.setConversationId(loadedState.getConversationId());
+                    qwenConversationState.setLastParentId(loadedState.getLastParentId());
+                }
+                historyHydrated = true;
+                chatMessageAdapter.notifyDataSetChanged();
+                removeDuplicateRestoredAiJsonMessages();
+                uiManager.updateUiVisibility(chatHistory.isEmpty());
+                uiManager.scrollToBottom();
+                if (!added.isEmpty()) persistChatState();
+            });
+        }, "ChatHistory").start();
+    }
+
+    /** Saves the chat, unless only the restored window is loaded (it would drop the rest). */
+    private void persistChatState() {
+        if (historyManager != null && historyHydrated) {
+            historyManager.saveChatState(chatHistory, qwenConversationState);
+        }
+    }
+
+    /** The last messages as JSON for the editor session snapshot. */
+    public String getChatWindowJson() {
+        if (chatHistory == null || chatHistory.isEmpty()) return null;
+        return historyManager.windowToJson(chatHistory, CHAT_WINDOW_MESSAGES);
+    }
+
     public QwenConversationState getQwenState() { return this.qwenConversationState; }
 
     public ChatMessage getMessageAt(int position) {
@@ -257,9 +314,7 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
         }
         uiManager.updateUiVisibility(chatHistory.isEmpty());
         // Persist chat history so it restores when reopening the project
-        if (historyManager != null) {
-            historyManager.saveChatState(chatHistory, qwenConversationState);
-        }
+        persistChatState();
         return indexChangedOrAdded;
     }
 
@@ -298,9 +353,7 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
             if (chatMessageAdapter != null) {
                 chatMessageAdapter.notifyDataSetChanged();
             }
-            if (historyManager != null) {
-                historyManager.saveChatState(chatHistory, qwenConversationState);
-            }
+            persistChatState();
         }
     }
 
@@ -332,7 +385,7 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
             chatHistory.set(position, updatedMessage);
             chatMessageAdapter.notifyItemChanged(position);
             if (uiManager != null) uiManager.scrollToBottom();
-            historyManager.saveChatState(chatHistory, qwenConversationState);
+            persistChatState();
         }
     }
 
@@ -358,7 +411,7 @@ public class AIChatFragment extends Fragment implements ChatMessageAdapter.OnAiA
     public void onQwenConversationStateUpdated(QwenConversationState state) {
         if (state != null) {
             this.qwenConversationState = state;
-            historyManager.saveChatState(chatHistory, qwenConversationState);
+            persistChatState();
         }
     }
 }
@@ -82,6 +82,24 @@ public class AIChatHistoryManager {
         editor.apply();
     }
 
+    /** The last {@code count} messages as history JSON, for the editor session snapshot. */
+    public String windowToJson(List<ChatMessage> chatHistory, int count) {
+        int from = Math.max(0, chatHistory.size() - count);
+        return gson.toJson(new java.util.ArrayList<>(chatHistory.subList(from, chatHistory.size())));
+    }
+
+    /** Parses JSON written by {@link #windowToJson}; null if it is unusable. */
+    public List<ChatMessage> windowFromJson(String json) {
+        if (json == null) return null;
+        try {
+            Type historyType = new TypeToken<List<ChatMessage>>() {}.getType();
+            return gson.fromJson(json, historyType);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable chat window", e);
+            return null;
+        }
+    }
+
     private String getProjectSpecificKey(String prefix) {
         if (projectPath == null || projectPath.isEmpty()) {
             return prefix + "generic_fallback";
@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import com.google.gson.Gson;
 import com.codex.apk.util.FileContentValidator;
 import com.codex.apk.util.FileOps;
+import com.codex.apk.util.FileChangeBus;
+import com.codex.apk.util.PatchSet;
 
 public class AiProcessor {
     private static final String TAG = "AiProcessor";
@@ -137,6 +139,16 @@ public class AiProcessor {
     private String handlePatchFile(ChatMessage.FileActionDetail detail) throws IOException {
         String path = detail.path;
         String patchContent = detail.diffPatch;
+
+        if (PatchSet.isMultiFile(patchContent)) {
+            // Several files (or a create/delete/rename): all of it applies or none of it
+            PatchSet.Result result = fileManager.applyPatchSet(patchContent);
+            if (!result.isApplied()) {
+                throw new IOException("Patch application failed: " + result.describeFailures());
+            }
+            return "Applied patch to " + result.getFiles().size() + " files";
+        }
+
         File fileToUpdate = new File(projectDir, path);
 
         if (!fileToUpdate.exists()) {
@@ -175,7 +187,17 @@ public class AiProcessor {
             }
         }
 
-        fileManager.writeFileContent(newFile, content);
+        if (newFile.isFile()) {
+            // Overwriting: smartUpdateFile publishes both versions, so open tabs merge it
+            FileManager.FileOperationResult result = fileManager.smartUpdateFile(
+                newFile, content, "full", false, detail.contentType, "strict"
+            );
+            if (!result.isSuccess()) {
+                throw new IOException("Create file failed: " + result.getMessage());
+            }
+        } else {
+            fileManager.writeFileContent(newFile, content);
+        }
         
         return "Created file: " + path;
     }
@@ -189,6 +211,7 @@ public class AiProcessor {
         }
         // Use centralized delete logic that supports files and directories
         FileOps.deleteRecursively(fileToDelete);
+        FileChangeBus.forProject(projectDir).publish(fileToDelete, FileChangeBus.Type.DELETED);
         
         return "Deleted file/directory: " + path;
     }
@@ -211,6 +234,7 @@ public class AiProcessor {
         if (!success) {
             throw new IOException("Failed to rename file from " + oldPath + " to " + newPath);
         }
+        FileChangeBus.forProject(projectDir).publishRename(oldFile, newFile);
         
         return "Renamed " + oldPath + " to " + newPath;
     }
@@ -51,6 +51,7 @@ public class CodeEditorFragment extends Fragment implements SimpleSoraTabAdapter
         void saveFile(TabItem tabItem);
         void showTabOptionsMenu(View anchorView, int position);
         void onActiveTabChanged(File newFile);
+        void onTabContentChanged(TabItem tabItem);
     }
 
     /**
@@ -102,6 +103,15 @@ public class CodeEditorFragment extends Fragment implements SimpleSoraTabAdapter
         tabAdapter = new SimpleSoraTabAdapter(getContext(), openTabs, this, listener.getFileManager()); // 'this' refers to CodeEditorFragment
 
         fileViewPager.setAdapter(tabAdapter);
+        fileViewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                // Posted: selection can be reported while the pager is laying out
+                fileViewPager.post(() -> {
+                    if (tabAdapter != null) tabAdapter.setActiveTab(position);
+                });
+            }
+        });
 
         new TabLayoutMediator(tabLayout, fileViewPager, (tab, position) -> {
             tab.setText(openTabs.get(position).getFileName());
@@ -166,6 +176,18 @@ public class CodeEditorFragment extends Fragment implements SimpleSoraTabAdapter
         }
     }
 
+    /**
+     * Implementation of TabAdapter.TabActionListener.
+     * Called by TabAdapter after every edit of a tab's content; forwarded for autosave.
+     * @param tabItem The edited tab.
+     */
+    @Override
+    public void onTabContentChanged(TabItem tabItem) {
+        if (listener != null) {
+            listener.onTabContentChanged(tabItem);
+        }
+    }
+
     /**
      * Refreshes the file tab layout. This method is called by the EditorActivity
      * when changes to the openTabs list occur (e.g., file saved, new file opened, file deleted).
@@ -3,6 +3,10 @@ package com.codex.apk;
 import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
+
+import com.codex.apk.util.ProjectHashService;
+
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
@@ -22,6 +26,9 @@ public class CodeXApplication extends Application {
         // Set up theme based on user preferences at app startup
         ThemeManager.setupTheme(this);
 
+        // Persist project content hashes across launches
+        ProjectHashService.setStorageRoot(new File(getFilesDir(), "content_hashes"));
+
         // Set up crash handler
         Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
             @Override
@@ -2,14 +2,19 @@ package com.codex.apk;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 
+import com.codex.apk.util.SymbolIndex;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.textfield.TextInputEditText;
 
@@ -17,11 +22,19 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DialogHelper {
 	private final Context context;
 	private final FileManager fileManager;
 	private final EditorActivity editorActivity; // Keep reference to EditorActivity
+	private static final long SYMBOL_QUERY_DELAY_MS = 150;
+	private static final ExecutorService symbolQueries = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "SymbolQuery");
+		t.setDaemon(true);
+		return t;
+	});
 
 	public DialogHelper(Context context, FileManager fileManager, EditorActivity editorActivity) {
 		this.context = context;
@@ -50,7 +63,6 @@ public class DialogHelper {
 			String fileName = editTextFileName.getText().toString().trim();
 			try {
 				fileManager.createNewFile(parentDirectory, fileName);
-				editorActivity.loadFileTree(); // Call through EditorActivity
 				editorActivity.openFile(new File(parentDirectory, fileName)); // Call through EditorActivity
 				dialog.dismiss();
 				editorActivity.closeDrawerIfOpen(); // Call through EditorActivity
@@ -106,7 +118,6 @@ public class DialogHelper {
 			String folderName = editTextFolderName.getText().toString().trim();
 			try {
 				fileManager.createNewDirectory(parentDirectory, folderName);
-				editorActivity.loadFileTree(); // Call through EditorActivity
 				dialog.dismiss();
 				editorActivity.closeDrawerIfOpen(); // Call through EditorActivity
 			} catch (IOException e) {
@@ -141,6 +152,59 @@ public class DialogHelper {
         showConfirmationDialog("Unsaved Changes", "Save all changes before closing tabs?", "Save All", onSaveAll, "Discard All", onDiscardAll);
     }
 
+	public void showGoToSymbolDialog(File projectDir) {
+		View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_go_to_symbol, null);
+		TextInputEditText editTextQuery = dialogView.findViewById(R.id.edit_text_symbol_query);
+		ListView listSymbols = dialogView.findViewById(R.id.list_symbols);
+
+		// Kept current by the project's change bus; built when the project was opened
+		SymbolIndex index = SymbolIndex.forProject(projectDir);
+		List<SymbolIndex.Symbol> matches = new ArrayList<>();
+		ArrayAdapter<String> adapter = new ArrayAdapter<>(context, android.R.layout.simple_list_item_1, new ArrayList<>());
+		listSymbols.setAdapter(adapter);
+
+		AlertDialog dialog = new MaterialAlertDialogBuilder(context)
+		.setTitle("Go to Symbol")
+		.setView(dialogView)
+		.setNegativeButton("Cancel", null)
+		.create();
+		Handler mainHandler = new Handler(Looper.getMainLooper());
+		int[] queryGeneration = {0};
+		dialog.setOnDismissListener(d -> mainHandler.removeCallbacksAndMessages(null));
+
+		editTextQuery.addTextChangedListener(new android.text.TextWatcher() {
+			@Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+			@Override public void onTextChanged(CharSequence s, int start, int before, int count) {
+				// Looked up once typing pauses, off the main thread; older lookups are dropped
+				String query = s.toString();
+				int generation = ++queryGeneration[0];
+				mainHandler.removeCallbacksAndMessages(null);
+				mainHandler.postDelayed(() -> symbolQueries.execute(() -> {
+					List<SymbolIndex.Symbol> found = index.find(query, null, 100);
+					mainHandler.post(() -> {
+						if (generation != queryGeneration[0] || !dialog.isShowing()) return;
+						matches.clear();
+						matches.addAll(found);
+						adapter.clear();
+						for (SymbolIndex.Symbol sym : matches) {
+							adapter.add(sym.name + "  ·  " + sym.kind.label + "  ·  " + sym.path + ":" + sym.line);
+						}
+					});
+				}), SYMBOL_QUERY_DELAY_MS);
+			}
+			@Override public void afterTextChanged(android.text.Editable s) {}
+		});
+
+		listSymbols.setOnItemClickListener((parent, view, position, id) -> {
+			if (position < 0 || position >= matches.size()) return;
+			SymbolIndex.Symbol sym = matches.get(position);
+			editorActivity.openFileAt(new File(projectDir, sym.path), sym.line - 1, sym.column);
+			dialog.dismiss();
+		});
+
+		dialog.show();
+	}
+
 	public void showIndexStatusDialog() {
 		new MaterialAlertDialogBuilder(context)
 		.setTitle("Codebase Index Status")
@@ -0,0 +1,404 @@
+package com.codex.apk;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codex.apk.util.XxHash64;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A unified diff parsed once and shared by the inline and split diff views. Parsing runs in
+ * the background and is handed to the main thread page by page, so the first rows show up
+ * at once even for lockfile or bundle diffs with tens of thousands of lines, and the views
+ * only ever bind the rows on screen.
+ *
+ * Views read the lines through a {@link Projection}: inline rows are the non-header lines in
+ * order, split rows put the n-th removed and n-th added line of a change block side by side.
+ * Runs of more than {@link #COLLAPSE_THRESHOLD} context lines are reported as regions of each
+ * projection, which the views show collapsed until expanded (see {@link DiffRowMap}).
+ *
+ * Documents are shared app-wide through {@link #obtain}, keyed by a hash of the diff text, so
+ * reopening a diff tab or showing the same patch again does not parse it twice. A document
+ * that is neither cached nor listened to any more stops parsing.
+ *
+ * Everything but parsing happens on the main thread.
+ */
+public final class DiffDocument {
+    static final int COLLAPSE_THRESHOLD = 20;
+
+    // The first page is small so something is on screen quickly; later pages grow to the max
+    private static final int FIRST_PAGE_LINES = 256;
+    private static final int MAX_PAGE_LINES = 8192;
+
+    // Diff text, in chars, of the documents kept by obtain() once no view needs them
+    private static final long CACHE_CHARS = 4L * 1024 * 1024;
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "DiffDocument");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Told on the main thread whenever more of the diff was parsed. */
+    public interface Listener {
+        void onDiffAppended(DiffDocument document);
+    }
+
+    /** One view's rows over the document's lines. */
+    public static final class Projection {
+        private final boolean paired;
+        private int[] left = new int[256];
+        private int[] right;
+        private int size;
+        private int[] regions = new int[16]; // start, length pairs in row space
+        private int regionCount;
+
+        Projection(boolean paired) {
+            this.paired = paired;
+            this.right = paired ? new int[256] : null;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Line shown on the left of a split row, or the line of an inline row; -1 for none. */
+        public int left(int row) {
+            return left[row];
+        }
+
+        /** Line shown on the right of a split row (-1 for none); the line of an inline row. */
+        public int right(int row) {
+            return paired ? right[row] : left[row];
+        }
+
+        public int regionCount() {
+            return regionCount;
+        }
+
+        public int regionStart(int region) {
+            return regions[region * 2];
+        }
+
+        public int regionLength(int region) {
+            return regions[region * 2 + 1];
+        }
+
+        void addRow(int leftLine, int rightLine) {
+            if (size == left.length) {
+                left = Arrays.copyOf(left, size * 2);
+                if (paired) right = Arrays.copyOf(right, size * 2);
+            }
+            left[size] = leftLine;
+            if (paired) right[size] = rightLine;
+            size++;
+        }
+
+        void addRegion(int start, int length) {
+            if (regionCount * 2 == regions.length) regions = Arrays.copyOf(regions, regions.length * 2);
+            regions[regionCount * 2] = start;
+            regions[regionCount * 2 + 1] = length;
+            regionCount++;
+        }
+
+        void addAll(Projection page) {
+            for (int i = 0; i < page.size; i++) addRow(page.left[i], paired ? page.right[i] : -1);
+            for (int i = 0; i < page.regionCount; i++) addRegion(page.regionStart(i), page.regionLength(i));
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<DiffUtils.DiffLine> lines = new ArrayList<>();
+    private int[] partners = new int[256];
+    private final Projection inline = new Projection(false);
+    private final Projection split = new Projection(true);
+    private final List<Listener> listeners = new ArrayList<>();
+    private int addedCount;
+    private int removedCount;
+    private boolean complete;
+    private boolean shared; // held by the obtain() cache
+    private volatile boolean cancelled;
+
+    private DiffDocument() {}
+
+    private static final class Key {
+        final long hash;
+        final int length;
+
+        Key(String text) {
+            this.hash = XxHash64.hash(text);
+            this.length = text.length();
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && ((Key) o).length == length;
+        }
+
+        @Override public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    // Main thread only
+    private static final LinkedHashMap<Key, DiffDocument> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedChars;
+
+    /**
+     * Returns the shared document for {@code diffText}, starting a background parse if it is
+     * not cached. Main thread only.
+     */
+    public static DiffDocument obtain(String diffText) {
+        String text = diffText != null ? diffText : "";
+        Key key = new Key(text);
+        DiffDocument document = cache.get(key);
+        if (document != null) return document;
+        document = parse(text);
+        document.shared = true;
+        cache.put(key, document);
+        cachedChars += text.length();
+        // Evicted documents stay usable by views that hold them; they just are not shared
+        Iterator<Map.Entry<Key, DiffDocument>> it = cache.entrySet().iterator();
+        while (cachedChars > CACHE_CHARS && cache.size() > 1 && it.hasNext()) {
+            Map.Entry<Key, DiffDocument> eldest = it.next();
+            cachedChars -= eldest.getKey().length;
+            it.remove();
+            eldest.getValue().unshare();
+        }
+        return document;
+    }
+
+    /** Drops every shared document, e.g. when the project is closed. Main thread only. */
+    public static void clearCache() {
+        for (DiffDocument document : cache.values()) document.unshare();
+        cache.clear();
+        cachedChars = 0;
+    }
+
+    /** Starts parsing {@code diffText} in the background; listeners are told as pages arrive. */
+    public static DiffDocument parse(String diffText) {
+        DiffDocument document = new DiffDocument();
+        String text = diffText != null ? diffText : "";
+        worker.execute(() -> new Parser(document).run(text));
+        return document;
+    }
+
+    public void addListener(Listener listener) {
+        if (!complete && !listeners.contains(listener)) listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        cancelIfUnused();
+    }
+
+    private void unshare() {
+        shared = false;
+        cancelIfUnused();
+    }
+
+    // Nobody can see the rest of the diff any more; pages not yet delivered are dropped
+    private void cancelIfUnused() {
+        if (complete || shared || !listeners.isEmpty()) return;
+        cancelled = true;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /** True if parsing stopped before the end; obtain the diff again to show it. */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    public DiffUtils.DiffLine getLine(int index) {
+        return lines.get(index);
+    }
+
+    /** The added line a removed line was paired with, or the reverse; -1 if unpaired. */
+    public int getPartner(int index) {
+        return partners[index];
+    }
+
+    public Projection inline() {
+        return inline;
+    }
+
+    public Projection split() {
+        return split;
+    }
+
+    private void accept(Page page, boolean last) {
+        if (cancelled) return;
+        int base = lines.size();
+        lines.addAll(page.lines);
+        if (partners.length < lines.size()) {
+            partners = Arrays.copyOf(partners, Math.max(partners.length * 2, lines.size()));
+        }
+        System.arraycopy(page.partners, 0, partners, base, page.lines.size());
+        inline.addAll(page.inline);
+        split.addAll(page.split);
+        addedCount += page.added;
+        removedCount += page.removed;
+        complete = last;
+        for (Listener listener : new ArrayList<>(listeners)) listener.onDiffAppended(this);
+        // Nothing more will arrive, so nothing needs to keep the views reachable
+        if (last) listeners.clear();
+    }
+
+    /** Lines parsed since the last hand-over, with global indices. */
+    private static final class Page {
+        final List<DiffUtils.DiffLine> lines = new ArrayList<>();
+        int[] partners = new int[64];
+        final Projection inline = new Projection(false);
+        final Projection split = new Projection(true);
+        int added;
+        int removed;
+    }
+
+    /**
+     * Runs on the worker. Pages are only cut where no removed lines wait for a partner and no
+     * context run is open, so split pairs and collapsible regions never straddle two pages.
+     */
+    private static final class Parser {
+        private final DiffDocument document;
+        private final DiffUtils.LineParser lineParser = new DiffUtils.LineParser();
+        private Page page = new Page();
+        private int pageLimit = FIRST_PAGE_LINES;
+        private int lineCount;
+        private int inlineRows;
+        private int splitRows;
+        // Open change block: line indices of its removed and added lines
+        private int[] pendingRemoved = new int[16];
+        private int removedPending;
+        private int[] pendingAdded = new int[16];
+        private int addedPending;
+        // Open context run: its first inline and split rows and its length
+        private int contextInlineStart;
+        private int contextSplitStart;
+        private int contextLength;
+
+        Parser(DiffDocument document) {
+            this.document = document;
+        }
+
+        void run(String text) {
+            int start = 0;
+            int length = text.length();
+            while (start <= length) {
+                if (document.cancelled) return;
+                int end = text.indexOf('\n', start);
+                if (end < 0) end = length;
+                int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+                add(lineParser.next(text.substring(start, lineEnd)));
+                start = end + 1;
+            }
+            closeContext();
+            flushChange();
+            publish(true);
+        }
+
+        private void add(DiffUtils.DiffLine line) {
+            if (line.type == DiffUtils.LineType.CONTEXT) {
+                flushChange();
+                if (contextLength == 0) {
+                    contextInlineStart = inlineRows;
+                    contextSplitStart = splitRows;
+                }
+                contextLength++;
+                int index = append(line);
+                page.inline.addRow(index, index);
+                page.split.addRow(index, index);
+                inlineRows++;
+                splitRows++;
+                return;
+            }
+            closeContext();
+            // A block is removed lines then added ones, as diffs write them; a removed line after
+            // added ones starts the next block
+            boolean newBlock = line.type == DiffUtils.LineType.HEADER
+                    || (line.type == DiffUtils.LineType.REMOVED && addedPending > 0);
+            if (newBlock) flushChange();
+            // Added lines with no removed ones before them can no longer pair, so their rows are final
+            if (removedPending == 0 && page.lines.size() >= pageLimit) {
+                flushChange();
+                publish(false);
+                pageLimit = Math.min(pageLimit * 2, MAX_PAGE_LINES);
+            }
+            int index = append(line);
+            if (line.type == DiffUtils.LineType.REMOVED) {
+                if (removedPending == pendingRemoved.length) pendingRemoved = Arrays.copyOf(pendingRemoved, removedPending * 2);
+                pendingRemoved[removedPending++] = index;
+                page.inline.addRow(index, index);
+                inlineRows++;
+                page.removed++;
+            } else if (line.type == DiffUtils.LineType.ADDED) {
+                if (addedPending == pendingAdded.length) pendingAdded = Arrays.copyOf(pendingAdded, addedPending * 2);
+                pendingAdded[addedPending++] = index;
+                page.inline.addRow(index, index);
+                inlineRows++;
+                page.added++;
+            }
+        }
+
+        private int append(DiffUtils.DiffLine line) {
+            int local = page.lines.size();
+            page.lines.add(line);
+            if (local == page.partners.length) page.partners = Arrays.copyOf(page.partners, local * 2);
+            page.partners[local] = -1;
+            return lineCount++;
+        }
+
+        /** Emits the split rows of the open change block. */
+        private void flushChange() {
+            int n = Math.max(removedPending, addedPending);
+            int base = lineCount - page.lines.size();
+            for (int i = 0; i < n; i++) {
+                int removed = i < removedPending ? pendingRemoved[i] : -1;
+                int added = i < addedPending ? pendingAdded[i] : -1;
+                page.split.addRow(removed, added);
+                splitRows++;
+                if (removed >= 0 && added >= 0) {
+                    page.partners[removed - base] = added;
+                    page.partners[added - base] = removed;
+                }
+            }
+            removedPending = 0;
+            addedPending = 0;
+        }
+
+        private void closeContext() {
+            if (contextLength > COLLAPSE_THRESHOLD) {
+                page.inline.addRegion(contextInlineStart, contextLength);
+                page.split.addRegion(contextSplitStart, contextLength);
+            }
+            contextLength = 0;
+        }
+
+        private void publish(boolean last) {
+            Page done = page;
+            page = new Page();
+            document.mainHandler.post(() -> document.accept(done, last));
+        }
+    }
+}
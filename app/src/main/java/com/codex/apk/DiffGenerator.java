@@ -1,10 +1,9 @@
 package com.codex.apk;
 
 import android.util.Log;
+import com.codex.apk.util.DiffCache;
+import com.codex.apk.util.LineDiff;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.io.IOException;
 
 /**
  * Advanced Diff Generator using multiple algorithms for optimal diff generation.
@@ -13,30 +12,48 @@ import java.io.IOException;
 public class DiffGenerator {
     private static final String TAG = "DiffGenerator";
 
+    /** Lines of unchanged context around each change, as in {@code diff -u}. */
+    public static final int DEFAULT_CONTEXT = 3;
+
     /**
      * Generate unified diff format
      */
     public static String generateUnifiedDiff(String oldContent, String newContent, String oldFile, String newFile) {
+        return generateUnifiedDiff(oldContent, newContent, oldFile, newFile, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Generate unified diff format with {@code context} lines around each change. Changes
+     * whose context would touch or overlap are merged into one hunk.
+     */
+    public static String generateUnifiedDiff(String oldContent, String newContent, String oldFile, String newFile, int context) {
+        return generateUnifiedDiff(oldContent, newContent, oldFile, newFile, context, LineDiff.Algorithm.AUTO);
+    }
+
+    /**
+     * Generate unified diff format using the given line diff algorithm. AUTO picks histogram
+     * for ordinary files, which keeps moved and rewritten blocks in whole hunks, and Myers
+     * for very large inputs. Repeated calls for the same contents reuse {@link DiffCache}.
+     */
+    public static String generateUnifiedDiff(String oldContent, String newContent, String oldFile, String newFile,
+                                             int context, LineDiff.Algorithm algorithm) {
         try {
-            String[] a = oldContent.split("\n", -1);
-            String[] b = newContent.split("\n", -1);
-            // Myers diff
-            List<Edit> edits = myersDiff(a, b);
-            StringBuilder out = new StringBuilder();
-            out.append("--- ").append(oldFile).append("\n");
-            out.append("+++ ").append(newFile).append("\n");
-            for (Hunk h : buildHunks(a, b, edits, 3)) {
-                out.append(String.format("@@ -%d,%d +%d,%d @@\n", h.aStart + 1, h.aLen, h.bStart + 1, h.bLen));
-                for (String s : h.lines) out.append(s).append("\n");
-            }
-            return out.toString();
+            // Edits come from the shared cache; the text is memoized per file names and context
+            DiffCache.Entry entry = DiffCache.diff(oldContent, newContent, algorithm);
+            String key = oldFile + '\n' + newFile + '\n' + context;
+            String text = entry.getUnified(key);
+            if (text != null) return text;
+            String[] a = LineDiff.splitLines(oldContent);
+            String[] b = LineDiff.splitLines(newContent);
+            text = formatUnified(a, b, entry.edits, oldFile, newFile, Math.max(0, context));
+            entry.setUnified(key, text);
+            return text;
         } catch (Exception e) {
             Log.e(TAG, "Unified diff generation failed", e);
             return generateSimpleDiff(oldContent, newContent);
         }
     }
 
-
     /**
      * Generate simple diff as fallback
      */
@@ -90,12 +107,18 @@ public class DiffGenerator {
     }
 
     /**
-     * Generate diff based on format
+     * Generate diff based on format. "unified" picks the algorithm by input size; "myers",
+     * "patience" and "histogram" produce a unified diff with that algorithm.
      */
     public static String generateDiff(String oldContent, String newContent, String format, String oldFile, String newFile) {
         switch (format.toLowerCase()) {
+            case "myers":
+                return generateUnifiedDiff(oldContent, newContent, oldFile, newFile, DEFAULT_CONTEXT, LineDiff.Algorithm.MYERS);
+            case "patience":
+                return generateUnifiedDiff(oldContent, newContent, oldFile, newFile, DEFAULT_CONTEXT, LineDiff.Algorithm.PATIENCE);
+            case "histogram":
+                return generateUnifiedDiff(oldContent, newContent, oldFile, newFile, DEFAULT_CONTEXT, LineDiff.Algorithm.HISTOGRAM);
             case "unified":
-                return generateUnifiedDiff(oldContent, newContent, oldFile, newFile);
             default:
                 return generateUnifiedDiff(oldContent, newContent, oldFile, newFile);
         }
@@ -108,106 +131,58 @@ public class DiffGenerator {
         return generateUnifiedDiff(oldContent, newContent, "original", "modified");
     }
 
-    // --- Minimal Myers diff implementation for line sequences ---
-    private static class Edit {
-        int aStart, aEnd, bStart, bEnd;
-        Edit(int aStart, int aEnd, int bStart, int bEnd) {
-            this.aStart = aStart; this.aEnd = aEnd; this.bStart = bStart; this.bEnd = bEnd;
-        }
-    }
-
-    private static class Hunk {
-        int aStart, aLen, bStart, bLen;
-        List<String> lines = new ArrayList<>();
-    }
+    // --- Unified output ---
 
-    private static List<Edit> myersDiff(String[] a, String[] b) {
-        int n = a.length, m = b.length;
-        int max = n + m;
-        int size = 2 * max + 1;
-        int offset = max;
-        int[] v = new int[size];
-        List<int[]> trace = new ArrayList<>();
-        for (int d = 0; d <= max; d++) {
-            int[] vd = Arrays.copyOf(v, v.length);
-            trace.add(vd);
-            for (int k = -d; k <= d; k += 2) {
-                int idx = k + offset;
-                int x;
-                if (k == -d || (k != d && v[idx - 1] < v[idx + 1])) x = v[idx + 1];
-                else x = v[idx - 1] + 1;
-                int y = x - k;
-                while (x < n && y < m && a[x].equals(b[y])) { x++; y++; }
-                v[idx] = x;
-                if (x >= n && y >= m) {
-                    return backtrack(trace, a, b, d, k);
-                }
+    private static String formatUnified(String[] a, String[] b, List<LineDiff.Edit> edits,
+                                        String oldFile, String newFile, int context) {
+        StringBuilder out = new StringBuilder(estimateSize(a, b, edits, context));
+        out.append("--- ").append(oldFile).append("\n");
+        out.append("+++ ").append(newFile).append("\n");
+        int first = 0;
+        while (first < edits.size()) {
+            // Extend the hunk while the gap to the next edit is covered by both contexts
+            int last = first;
+            while (last + 1 < edits.size()
+                    && edits.get(last + 1).oldStart - edits.get(last).oldEnd <= 2 * context) {
+                last++;
             }
+            appendHunk(out, a, b, edits, first, last, context);
+            first = last + 1;
         }
-        return new ArrayList<>();
+        return out.toString();
     }
 
-    private static List<Edit> backtrack(List<int[]> trace, String[] a, String[] b, int d, int k) {
-        int n = a.length, m = b.length;
-        int max = n + m, offset = max;
-        List<Edit> edits = new ArrayList<>();
-        int x = n, y = m;
-        for (int depth = d; depth >= 0; depth--) {
-            int[] v = trace.get(depth);
-            int idx = k + offset;
-            int prevK;
-            int xPrev;
-            if (k == -depth || (k != depth && v[idx - 1] < v[idx + 1])) {
-                prevK = k + 1;
-                xPrev = v[prevK + offset];
-            } else {
-                prevK = k - 1;
-                xPrev = v[prevK + offset] + 1;
-            }
-            int yPrev = xPrev - prevK;
-            while (x > xPrev && y > yPrev) { // diagonal (match)
-                x--; y--;
-            }
-            if (depth > 0) {
-                if (xPrev < x) { // deletion in a
-                    edits.add(new Edit(xPrev, x, yPrev, yPrev));
-                } else if (yPrev < y) { // insertion in b
-                    edits.add(new Edit(xPrev, xPrev, yPrev, y));
-                }
-            }
-            x = xPrev; y = yPrev; k = prevK;
+    private static void appendHunk(StringBuilder out, String[] a, String[] b, List<LineDiff.Edit> edits,
+                                   int first, int last, int context) {
+        LineDiff.Edit head = edits.get(first);
+        LineDiff.Edit tail = edits.get(last);
+        int aStart = Math.max(0, head.oldStart - context);
+        int bStart = Math.max(0, head.newStart - context);
+        int aEnd = Math.min(a.length, tail.oldEnd + context);
+        int bEnd = Math.min(b.length, tail.newEnd + context);
+        int aLen = aEnd - aStart;
+        int bLen = bEnd - bStart;
+        // An empty range is numbered by the line before it, as diff -u does
+        out.append("@@ -").append(aLen == 0 ? aStart : aStart + 1).append(',').append(aLen)
+                .append(" +").append(bLen == 0 ? bStart : bStart + 1).append(',').append(bLen)
+                .append(" @@\n");
+        int i = aStart;
+        for (int e = first; e <= last; e++) {
+            LineDiff.Edit edit = edits.get(e);
+            for (; i < edit.oldStart; i++) out.append(' ').append(a[i]).append('\n');
+            for (i = edit.oldStart; i < edit.oldEnd; i++) out.append('-').append(a[i]).append('\n');
+            for (int j = edit.newStart; j < edit.newEnd; j++) out.append('+').append(b[j]).append('\n');
         }
-        java.util.Collections.reverse(edits);
-        return edits;
+        for (; i < aEnd; i++) out.append(' ').append(a[i]).append('\n');
     }
 
-    private static List<Hunk> buildHunks(String[] a, String[] b, List<Edit> edits, int context) {
-        List<Hunk> hunks = new ArrayList<>();
-        int aIdx = 0, bIdx = 0;
-        for (Edit e : edits) {
-            int aStart = Math.max(e.aStart - context, 0);
-            int bStart = Math.max(e.bStart - context, 0);
-            int aEnd = Math.min(e.aEnd + context, a.length);
-            int bEnd = Math.min(e.bEnd + context, b.length);
-            Hunk h = new Hunk();
-            h.aStart = aStart; h.bStart = bStart;
-            h.aLen = Math.max(0, aEnd - aStart);
-            h.bLen = Math.max(0, bEnd - bStart);
-            // Context before
-            for (int i = aStart, j = bStart; i < e.aStart && j < e.bStart; i++, j++) h.lines.add(" " + a[i]);
-            // Deletions
-            for (int i = e.aStart; i < e.aEnd; i++) h.lines.add("-" + a[i]);
-            // Insertions
-            for (int j = e.bStart; j < e.bEnd; j++) h.lines.add("+" + b[j]);
-            // Context after
-            for (int i = e.aEnd, j = e.bEnd; i < aEnd && j < bEnd; i++, j++) h.lines.add(" " + a[i]);
-            hunks.add(h);
-        }
-        if (hunks.isEmpty()) {
-            Hunk h = new Hunk();
-            h.aStart = 0; h.bStart = 0; h.aLen = 0; h.bLen = 0; h.lines = new ArrayList<>();
-            hunks.add(h);
+    /** Rough output size so the builder does not regrow for large diffs. */
+    private static int estimateSize(String[] a, String[] b, List<LineDiff.Edit> edits, int context) {
+        long size = 64;
+        for (LineDiff.Edit e : edits) {
+            for (int i = Math.max(0, e.oldStart - context); i < Math.min(a.length, e.oldEnd + context); i++) size += a[i].length() + 2;
+            for (int j = e.newStart; j < e.newEnd; j++) size += b[j].length() + 2;
         }
-        return hunks;
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
     }
-}
\ No newline at end of file
+}
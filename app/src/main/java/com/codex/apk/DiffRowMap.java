@@ -0,0 +1,115 @@
+package com.codex.apk;
+
+import java.util.Arrays;
+
+/**
+ * Adapter positions over one {@link DiffDocument.Projection}, with each collapsible region
+ * shown as a single expander until it is expanded. Positions are kept as runs of consecutive
+ * rows, so lookups are a binary search however long the diff is. Main thread only.
+ */
+final class DiffRowMap {
+    private final DiffDocument.Projection projection;
+    // Run i covers positions [runPosition[i], ...) and rows [runRow[i], runRow[i] + runCount[i])
+    private int[] runPosition = new int[16];
+    private int[] runRow = new int[16];
+    private int[] runCount = new int[16];
+    private boolean[] runCollapsed = new boolean[16];
+    private int runs;
+    private int size;
+    private int rowsTaken;
+    private int regionsTaken;
+
+    DiffRowMap(DiffDocument.Projection projection) {
+        this.projection = projection;
+        sync();
+    }
+
+    /** Takes in rows published since the last call; returns how many positions were appended. */
+    int sync() {
+        int before = size;
+        while (regionsTaken < projection.regionCount()) {
+            int start = projection.regionStart(regionsTaken);
+            int length = projection.regionLength(regionsTaken);
+            addRun(rowsTaken, start - rowsTaken, false);
+            addRun(start, length, true);
+            rowsTaken = start + length;
+            regionsTaken++;
+        }
+        addRun(rowsTaken, projection.size() - rowsTaken, false);
+        rowsTaken = projection.size();
+        return size - before;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isExpander(int position) {
+        return runCollapsed[runAt(position)];
+    }
+
+    /** Projection row at {@code position}; for an expander, the first row it hides. */
+    int row(int position) {
+        int run = runAt(position);
+        return runCollapsed[run] ? runRow[run] : runRow[run] + position - runPosition[run];
+    }
+
+    int hiddenCount(int position) {
+        int run = runAt(position);
+        return runCollapsed[run] ? runCount[run] : 0;
+    }
+
+    /** Position of {@code row}, or -1 if it is hidden behind an expander or not taken in yet. */
+    int positionOf(int row) {
+        int lo = 0, hi = runs - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (runRow[mid] > row) hi = mid - 1;
+            else if (runRow[mid] + runCount[mid] <= row) lo = mid + 1;
+            else return runCollapsed[mid] ? -1 : runPosition[mid] + row - runRow[mid];
+        }
+        return -1;
+    }
+
+    /** Expands the expander at {@code position}; returns how many rows now stand in its place. */
+    int expand(int position) {
+        int run = runAt(position);
+        if (!runCollapsed[run]) return 0;
+        runCollapsed[run] = false;
+        int grown = runCount[run] - 1;
+        for (int i = run + 1; i < runs; i++) runPosition[i] += grown;
+        size += grown;
+        return runCount[run];
+    }
+
+    private int runAt(int position) {
+        int lo = 0, hi = runs - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (runPosition[mid] <= position) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void addRun(int row, int count, boolean collapsed) {
+        if (count <= 0) return;
+        if (!collapsed && runs > 0 && !runCollapsed[runs - 1] && runRow[runs - 1] + runCount[runs - 1] == row) {
+            runCount[runs - 1] += count;
+            size += count;
+            return;
+        }
+        if (runs == runRow.length) {
+            runPosition = Arrays.copyOf(runPosition, runs * 2);
+            runRow = Arrays.copyOf(runRow, runs * 2);
+            runCount = Arrays.copyOf(runCount, runs * 2);
+            runCollapsed = Arrays.copyOf(runCollapsed, runs * 2);
+        }
+        runPosition[runs] = size;
+        runRow[runs] = row;
+        runCount[runs] = count;
+        runCollapsed[runs] = collapsed;
+        runs++;
+        size += collapsed ? 1 : count;
+    }
+}
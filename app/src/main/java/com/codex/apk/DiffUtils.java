@@ -1,5 +1,8 @@
 package com.codex.apk;
 
+import com.codex.apk.util.DiffCache;
+import com.codex.apk.util.IntralineDiff;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,14 +20,12 @@ public final class DiffUtils {
         public final Integer oldLine; // nullable
         public final Integer newLine; // nullable
         public final String text;
-        public final String intraline; // optional HTML-like marked diff for split/inline intraline highlight
 
         public DiffLine(LineType type, Integer oldLine, Integer newLine, String text) {
             this.type = type;
             this.oldLine = oldLine;
             this.newLine = newLine;
             this.text = text == null ? "" : text;
-            this.intraline = null;
         }
     }
 
@@ -36,10 +37,23 @@ public final class DiffUtils {
         if (diffText == null || diffText.isEmpty()) return out;
 
         String[] rows = diffText.split("\r?\n", -1);
-        int oldLine = 0;
-        int newLine = 0;
-        boolean haveHeader = false;
+        LineParser parser = new LineParser();
         for (String raw : rows) {
+            out.add(parser.next(raw));
+        }
+        return out;
+    }
+
+    /**
+     * Classifies unified diff rows one at a time, tracking line numbers across hunk headers.
+     * Lets large diffs be parsed incrementally, see {@link DiffDocument}.
+     */
+    public static final class LineParser {
+        private int oldLine;
+        private int newLine;
+        private boolean haveHeader;
+
+        public DiffLine next(String raw) {
             if (raw.startsWith("@@")) {
                 haveHeader = true;
                 try {
@@ -55,44 +69,23 @@ public final class DiffUtils {
                         newLine = Integer.parseInt(bSplit[0]);
                     }
                 } catch (Throwable ignore) {}
-                out.add(new DiffLine(LineType.HEADER, null, null, raw));
-                continue;
+                return new DiffLine(LineType.HEADER, null, null, raw);
             }
-            if (raw.startsWith("--- ") || raw.startsWith("+++ ")) {
-                out.add(new DiffLine(LineType.HEADER, null, null, raw));
-                continue;
-            }
-            if (!haveHeader) {
-                out.add(new DiffLine(LineType.HEADER, null, null, raw));
-                continue;
-            }
-
-            if (raw.startsWith("+++ ")) {
-                out.add(new DiffLine(LineType.HEADER, null, null, raw));
-                continue;
-            }
-            if (raw.startsWith("--- ")) {
-                out.add(new DiffLine(LineType.HEADER, null, null, raw));
-                continue;
+            if (raw.startsWith("--- ") || raw.startsWith("+++ ") || !haveHeader) {
+                return new DiffLine(LineType.HEADER, null, null, raw);
             }
             if (raw.startsWith("+")) {
                 String text = raw.length() > 1 ? raw.substring(1) : "";
-                out.add(new DiffLine(LineType.ADDED, null, newLine, text));
-                newLine++;
+                return new DiffLine(LineType.ADDED, null, newLine++, text);
             } else if (raw.startsWith("-")) {
                 String text = raw.length() > 1 ? raw.substring(1) : "";
-                out.add(new DiffLine(LineType.REMOVED, oldLine, null, text));
-                oldLine++;
+                return new DiffLine(LineType.REMOVED, oldLine++, null, text);
             } else if (raw.startsWith(" ")) {
                 String text = raw.length() > 1 ? raw.substring(1) : "";
-                out.add(new DiffLine(LineType.CONTEXT, oldLine, newLine, text));
-                oldLine++;
-                newLine++;
-            } else {
-                out.add(new DiffLine(LineType.HEADER, null, null, raw));
+                return new DiffLine(LineType.CONTEXT, oldLine++, newLine++, text);
             }
+            return new DiffLine(LineType.HEADER, null, null, raw);
         }
-        return out;
     }
 
     /**
@@ -117,54 +110,36 @@ public final class DiffUtils {
     }
 
     /**
-     * Compute a simple intraline diff marking changed spans with markers. Returns a tuple
+     * Compute a token-level intraline diff marking changed spans with markers. Returns a tuple
      * in string array: [oldMarked, newMarked]. Markers use <<>> for removed and [[]] for added.
+     * Adapters should use {@link IntralineDiff} ranges directly; see {@link IntralineHighlighter}.
      */
     public static String[] computeIntraline(String oldLine, String newLine) {
         if (oldLine == null) oldLine = "";
         if (newLine == null) newLine = "";
-        // Find common prefix
-        int prefix = 0;
-        int maxPrefix = Math.min(oldLine.length(), newLine.length());
-        while (prefix < maxPrefix && oldLine.charAt(prefix) == newLine.charAt(prefix)) prefix++;
-        // Find common suffix
-        int oldIdx = oldLine.length() - 1;
-        int newIdx = newLine.length() - 1;
-        int suffix = 0;
-        while (oldIdx - suffix >= prefix && newIdx - suffix >= prefix && oldLine.charAt(oldIdx - suffix) == newLine.charAt(newIdx - suffix)) suffix++;
-        // Build marked strings
-        String oldMarked = oldLine;
-        String newMarked = newLine;
-        if (prefix + suffix < oldLine.length()) {
-            oldMarked = oldLine.substring(0, prefix) + "<<" + oldLine.substring(prefix, oldLine.length() - suffix) + ">>" + oldLine.substring(oldLine.length() - suffix);
-        }
-        if (prefix + suffix < newLine.length()) {
-            newMarked = newLine.substring(0, prefix) + "[[" + newLine.substring(prefix, newLine.length() - suffix) + "]]" + newLine.substring(newLine.length() - suffix);
+        IntralineDiff.Result result = IntralineDiff.compute(oldLine, newLine);
+        return new String[]{
+                mark(oldLine, result.oldRanges, "<<", ">>"),
+                mark(newLine, result.newRanges, "[[", "]]")};
+    }
+
+    private static String mark(String line, int[] ranges, String open, String close) {
+        if (ranges.length == 0) return line;
+        StringBuilder sb = new StringBuilder(line.length() + ranges.length * 2);
+        int last = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            sb.append(line, last, ranges[i]).append(open).append(line, ranges[i], ranges[i + 1]).append(close);
+            last = ranges[i + 1];
         }
-        return new String[]{oldMarked, newMarked};
+        return sb.append(line, last, line.length()).toString();
     }
 
     /**
      * Compute added and removed line counts between old and new contents.
-     * Returns int[]{added, removed}
+     * Returns int[]{added, removed}. The counts match the diff shown for the same contents and
+     * come from the shared {@link DiffCache}.
      */
     public static int[] countAddRemoveFromContents(String oldContent, String newContent) {
-        if (oldContent == null) oldContent = "";
-        if (newContent == null) newContent = "";
-        String[] a = oldContent.split("\n", -1);
-        String[] b = newContent.split("\n", -1);
-        int n = a.length, m = b.length;
-        // LCS DP
-        int[][] dp = new int[n + 1][m + 1];
-        for (int i = 1; i <= n; i++) {
-            for (int j = 1; j <= m; j++) {
-                if (a[i - 1].equals(b[j - 1])) dp[i][j] = dp[i - 1][j - 1] + 1;
-                else dp[i][j] = Math.max(dp[i - 1][j], dp[i][j - 1]);
-            }
-        }
-        int lcs = dp[n][m];
-        int removed = n - lcs;
-        int added = m - lcs;
-        return new int[]{added, removed};
+        return DiffCache.countAddRemove(oldContent, newContent);
     }
 }
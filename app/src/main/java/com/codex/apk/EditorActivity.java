@@ -19,12 +19,18 @@ import androidx.viewpager2.adapter.FragmentStateAdapter;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.codex.apk.editor.AiAssistantManager;
+import com.codex.apk.editor.EditorSession;
 import com.codex.apk.editor.EditorUiManager;
 import com.codex.apk.editor.FileTreeManager;
+import com.codex.apk.editor.ProjectFileWatcher;
 import com.codex.apk.editor.TabManager;
 import com.codex.apk.editor.EditorViewModel;
 import com.codex.apk.editor.adapters.MainPagerAdapter;
 import com.codex.apk.SimpleSoraTabAdapter;
+import com.codex.apk.util.FileChangeBus;
+import com.codex.apk.util.ProjectHashService;
+import com.codex.apk.util.SearchResultCache;
+import com.codex.apk.util.SymbolIndex;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
 
@@ -62,11 +68,17 @@ public class EditorActivity extends AppCompatActivity implements
     private FileManager fileManager; // FileManager is a core utility, might stay here or be managed by a dedicated utility manager
     private DialogHelper dialogHelper; // DialogHelper is a core utility, might stay here or be managed by a dedicated utility manager
     private ExecutorService executorService; // ExecutorService is a core utility, might stay here or be managed by a dedicated utility manager
+    private ProjectFileWatcher projectFileWatcher;
+    private FileChangeBus.Listener fileChangeListener;
 
     private EditorViewModel viewModel;
     private final List<File> pendingFilesToOpen = new ArrayList<>();
     private String pendingDiffFileName;
     private String pendingDiffContent;
+    // Restored from the last session on a cold start; consumed once the fragments are up
+    private boolean sessionRestored;
+    private int restoredActiveTab = -1;
+    private String restoredChatWindow;
 
     // In onCreate or fragment setup logic, ensure chat fragment is attached and visible
     // Remove ensureChatFragment and its call in onCreate, as there is no fragment_container_chat in the layout.
@@ -114,18 +126,50 @@ public class EditorActivity extends AppCompatActivity implements
         tabManager = new TabManager(this, fileManager, dialogHelper, viewModel.getOpenTabs());
         // Pass projectDir to AiAssistantManager for FileWatcher initialization
         aiAssistantManager = new AiAssistantManager(this, projectDir, projectName, fileManager, executorService);
+        // Warm the symbol index in the background so findSymbol / Go to Symbol are instant
+        SymbolIndex.forProject(projectDir).refreshAsync();
+        // Pick up edits made while the project was closed (stat-only; unchanged files are not read)
+        ProjectHashService.forProject(projectDir).reconcileAsync();
+        // Files may have changed while the project was closed, unseen by the watcher
+        SearchResultCache.invalidateProject(projectDir);
+
+        // On a cold start, lay out the last session before anything is read from the project
+        EditorSession session = viewModel.getOpenTabs().isEmpty() ? EditorSession.load(this, projectDir) : null;
+        if (session != null) {
+            sessionRestored = true;
+            fileTreeManager.setExpandedPaths(session.getExpandedPaths());
+            restoredActiveTab = tabManager.restoreSession(session);
+            restoredChatWindow = session.getChatWindowJson();
+        }
 
         // Setup components using managers
         uiManager.initializeViews();
         uiManager.setupToolbar(); // Toolbar setup is part of UI
         fileTreeManager.setupFileTree(); // File tree setup
 
+        // All project writes (editor, AI, tools, other apps) arrive here in coalesced batches
+        fileChangeListener = changes -> {
+            // The project list shows deep metadata; have it rescan this project next time
+            ProjectManager.openCatalog(this).markDirty(projectDir);
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                if (changes.hasStructuralChanges()) fileTreeManager.loadFileTree();
+                tabManager.applyFileChanges(changes);
+            });
+        };
+        fileManager.getChangeBus().subscribe(fileChangeListener);
+        projectFileWatcher = new ProjectFileWatcher(projectDir);
+        projectFileWatcher.start();
+
         // Setup TabLayout with ViewPager2
         TabLayout tabLayout = findViewById(R.id.tab_layout);
         ViewPager2 viewPager = findViewById(R.id.view_pager);
         MainPagerAdapter adapter = new MainPagerAdapter(this);
         viewPager.setAdapter(adapter);
         viewPager.setUserInputEnabled(false); // Disable swipe, only tab clicks
+        if (session != null && session.getMainPage() >= 0 && session.getMainPage() < adapter.getItemCount()) {
+            viewPager.setCurrentItem(session.getMainPage(), false);
+        }
 
         // Connect TabLayout with ViewPager2
         new TabLayoutMediator(tabLayout, viewPager, (tab, position) -> {
@@ -138,11 +182,13 @@ public class EditorActivity extends AppCompatActivity implements
     }
 
     public void onCodeEditorFragmentReady() {
-        // Apply default settings
-        boolean wrapEnabled = SettingsActivity.isDefaultWordWrap(this);
-        boolean readOnlyEnabled = SettingsActivity.isDefaultReadOnly(this);
-        applyWrapToAllTabs(wrapEnabled);
-        applyReadOnlyToAllTabs(readOnlyEnabled);
+        // Apply default settings; restored tabs keep their own
+        if (!sessionRestored) {
+            boolean wrapEnabled = SettingsActivity.isDefaultWordWrap(this);
+            boolean readOnlyEnabled = SettingsActivity.isDefaultReadOnly(this);
+            applyWrapToAllTabs(wrapEnabled);
+            applyReadOnlyToAllTabs(readOnlyEnabled);
+        }
 
         // Open index.html if no tabs are open initially
         if (viewModel.getOpenTabs().isEmpty()) {
@@ -166,6 +212,22 @@ public class EditorActivity extends AppCompatActivity implements
             pendingDiffFileName = null;
             pendingDiffContent = null;
         }
+
+        if (restoredActiveTab >= 0) {
+            codeEditorFragment.setFileViewPagerCurrentItem(restoredActiveTab, false);
+            restoredActiveTab = -1;
+        }
+
+        // Bring back edits a previous run left unsaved in swap journals
+        tabManager.recoverUnsavedChanges();
+    }
+
+    /** The chat tail saved with the last session, handed out once. */
+    @Override
+    public String takeRestoredChatWindow() {
+        String window = restoredChatWindow;
+        restoredChatWindow = null;
+        return window;
     }
 
     public void addPendingFileToOpen(File file) {
@@ -179,14 +241,6 @@ public class EditorActivity extends AppCompatActivity implements
         this.pendingDiffContent = diffContent;
     }
 
-    @Override
-    protected void onResume() {
-        super.onResume();
-        if (fileTreeManager != null) {
-            fileTreeManager.rebuildFileTree();
-        }
-    }
-
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -226,6 +280,9 @@ public class EditorActivity extends AppCompatActivity implements
         } else if (id == R.id.action_preview) {
             launchPreviewActivity();
             return true;
+        } else if (id == R.id.action_go_to_symbol) {
+            dialogHelper.showGoToSymbolDialog(projectDir);
+            return true;
         } else if (id == R.id.action_settings) {
             Intent settingsIntent = new Intent(this, SettingsActivity.class);
             startActivity(settingsIntent);
@@ -261,12 +318,32 @@ public class EditorActivity extends AppCompatActivity implements
     @Override
     protected void onPause() {
         super.onPause();
-        tabManager.saveAllFiles(); // Delegate saving all files
+        tabManager.flushAutosave(); // Write modified tabs in the background
+        saveSession();
+    }
+
+    /** Snapshots tabs, tree and chat so the next cold start can draw them immediately. */
+    private void saveSession() {
+        if (tabManager == null || projectDir == null) return;
+        if (codeEditorFragment != null && codeEditorFragment.getFileTabAdapter() != null) {
+            codeEditorFragment.getFileTabAdapter().saveActiveViewState();
+        }
+        ViewPager2 viewPager = findViewById(R.id.view_pager);
+        tabManager.captureSession(viewPager != null ? viewPager.getCurrentItem() : 0,
+                fileTreeManager.getExpandedPaths(),
+                aiChatFragment != null ? aiChatFragment.getChatWindowJson() : null)
+                .saveAsync(this, projectDir);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (projectFileWatcher != null) {
+            projectFileWatcher.stop();
+        }
+        if (fileChangeListener != null && fileManager != null) {
+            fileManager.getChangeBus().unsubscribe(fileChangeListener);
+        }
         if (executorService != null && !executorService.isShutdown()) {
             executorService.shutdownNow();
         }
@@ -309,6 +386,14 @@ public class EditorActivity extends AppCompatActivity implements
         closeDrawerIfOpen();
     }
 
+    /**
+     * Opens a file and moves the cursor to the given 0-based line/column once the editor is bound.
+     */
+    public void openFileAt(File file, int line, int column) {
+        tabManager.openFileAt(file, line, column);
+        closeDrawerIfOpen();
+    }
+
     @Override
     public void closeTab(int position, boolean confirmIfModified) {
         tabManager.closeTab(position, confirmIfModified); // Delegate to TabManager
@@ -341,11 +426,19 @@ public class EditorActivity extends AppCompatActivity implements
     @Override
     public void onActiveTabChanged(File newFile) {
         uiManager.onActiveTabChanged(newFile); // Delegate to UiManager for preview update
+        if (tabManager != null) {
+            tabManager.onActiveTabChanged(newFile);
+        }
         if (fileTreeManager != null) {
             fileTreeManager.refreshSelection();
         }
     }
 
+    @Override
+    public void onTabContentChanged(TabItem tabItem) {
+        tabManager.onTabEdited(tabItem); // Delegate to TabManager for autosave
+    }
+
     // --- AIChatFragmentListener methods implementation (delegating to AiAssistantManager) ---
 
     @Override
@@ -6,7 +6,12 @@ import android.widget.Toast;
 
 import com.codex.apk.DiffGenerator;
 import com.codex.apk.util.FileContentValidator;
+import com.codex.apk.util.FileChangeBus;
+import com.codex.apk.util.FileOps;
 import com.codex.apk.util.FileContentValidator.ValidationResult;
+import com.codex.apk.util.ParallelFileOps;
+import com.codex.apk.util.PieceTable;
+import com.codex.apk.util.PatchSet;
 import com.codex.apk.util.UnifiedDiffApplier;
 
 import java.io.BufferedReader;
@@ -28,23 +33,17 @@ public class FileManager {
     private final Context context;
     private final File projectDir;
 
-    // File change listener
-    public interface FileChangeListener {
-        void onFileCreated(File file);
-        void onFileModified(File file);
-        void onFileDeleted(File file);
-        void onFileRenamed(File oldFile, File newFile);
-    }
-
-    private FileChangeListener fileChangeListener;
-
-    public void setFileChangeListener(FileChangeListener listener) {
-        this.fileChangeListener = listener;
-    }
+    // Every write below is published here; subscribers receive coalesced batches.
+    private final FileChangeBus changeBus;
 
     public FileManager(Context context, File projectDir) {
         this.context = context;
         this.projectDir = projectDir;
+        this.changeBus = FileChangeBus.forProject(projectDir);
+    }
+
+    public FileChangeBus getChangeBus() {
+        return changeBus;
     }
 
     public String readFileContent(File file) throws IOException {
@@ -60,13 +59,71 @@ public class FileManager {
     }
 
     public void writeFileContent(File file, String content) throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(file);
-             OutputStreamWriter writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
-            writer.write(content);
-        }
-        if (fileChangeListener != null) {
-            fileChangeListener.onFileModified(file);
+        boolean existed = file.exists();
+        changeBus.expectWrite(file);
+        writeText(file, content);
+        changeBus.publish(file, existed ? FileChangeBus.Type.MODIFIED : FileChangeBus.Type.CREATED);
+    }
+
+    private static void writeText(File file, String content) throws IOException {
+        FileOps.writeAtomically(file, content);
+    }
+
+    /**
+     * Writes a tab snapshot piece by piece instead of joining it into one String first. The
+     * text goes to a temp file next to the target which then replaces it, so a crash or a full
+     * disk mid-write never leaves a truncated file. Safe to call off the main thread.
+     */
+    public void writeFileContent(File file, PieceTable.Snapshot content) throws IOException {
+        boolean existed = file.exists();
+        File tmp = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+        changeBus.expectWrite(file);
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            OutputStreamWriter writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            content.writeTo(writer);
+            writer.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file.getName());
+        }
+        changeBus.publish(file, existed ? FileChangeBus.Type.MODIFIED : FileChangeBus.Type.CREATED);
+    }
+
+    /**
+     * Applies a git-style diff spanning several files, all or nothing (see {@link PatchSet}).
+     * Each changed file is published once, so listeners refresh once for the whole patch.
+     */
+    public PatchSet.Result applyPatchSet(String patch) {
+        for (PatchSet.FilePatch p : PatchSet.parse(patch == null ? "" : patch)) {
+            if (p.oldPath != null) changeBus.expectWrite(new File(projectDir, p.oldPath));
+            if (p.newPath != null) changeBus.expectWrite(new File(projectDir, p.newPath));
+        }
+        PatchSet.Result result = PatchSet.apply(projectDir, patch, this::readFileContent);
+        if (!result.isApplied()) return result;
+        for (PatchSet.FileResult f : result.getFiles()) {
+            PatchSet.FilePatch p = f.patch;
+            switch (p.kind) {
+                case CREATE:
+                    changeBus.publish(new File(projectDir, p.newPath), FileChangeBus.Type.CREATED);
+                    break;
+                case DELETE:
+                    changeBus.publish(new File(projectDir, p.oldPath), FileChangeBus.Type.DELETED);
+                    break;
+                case RENAME:
+                    changeBus.publishRename(new File(projectDir, p.oldPath), new File(projectDir, p.newPath));
+                    break;
+                default:
+                    // Open tabs with unsaved edits merge the change using both versions
+                    changeBus.publishEdit(new File(projectDir, p.newPath), f.originalContent, f.newContent);
+                    break;
+            }
         }
+        return result;
     }
 
     public FileOperationResult smartUpdateFile(File file,
@@ -78,7 +135,7 @@ public class FileManager {
         FileOperationResult result = new FileOperationResult();
         try {
             String currentContent = file.exists() ? readFileContent(file) : "";
-            String finalContent = applyUpdateType(currentContent, newContent, updateType);
+            String finalContent = applyUpdateType(currentContent, newContent, updateType, errorHandling);
 
             if (validateContent) {
                 ValidationResult validation = FileContentValidator.validate(finalContent, contentType);
@@ -99,7 +156,14 @@ public class FileManager {
                 return result;
             }
 
-            writeFileContent(file, finalContent);
+            if (file.exists()) {
+                changeBus.expectWrite(file);
+                writeText(file, finalContent);
+                // Open tabs with unsaved edits merge the change using both versions
+                changeBus.publishEdit(file, currentContent, finalContent);
+            } else {
+                writeFileContent(file, finalContent);
+            }
             String diff = DiffGenerator.generateDiff(currentContent, finalContent, "unified", "a/" + file.getName(), "b/" + file.getName());
             result.setDiff(diff);
             result.setSuccess(true);
@@ -112,7 +176,7 @@ public class FileManager {
         return result;
     }
 
-    private String applyUpdateType(String currentContent, String newContent, String updateType) {
+    private String applyUpdateType(String currentContent, String newContent, String updateType, String errorHandling) {
         if (newContent == null) newContent = "";
         switch (updateType != null ? updateType : "") {
             case "append":
@@ -125,7 +189,7 @@ public class FileManager {
             case "smart":
                 return applySmartUpdate(currentContent, newContent);
             case "patch":
-                return applyPatch(currentContent, newContent);
+                return applyPatch(currentContent, newContent, errorHandling);
             default:
                 return newContent;
         }
@@ -144,16 +208,19 @@ public class FileManager {
         return currentContent + "\n" + newContent;
     }
 
-    private String applyPatch(String currentContent, String patchContent) {
+    private String applyPatch(String currentContent, String patchContent, String errorHandling) {
         if (patchContent == null || patchContent.trim().isEmpty()) {
             return currentContent;
         }
-        try {
-            return UnifiedDiffApplier.apply(currentContent, patchContent);
-        } catch (Exception e) {
-            Log.e(TAG, "Patch application failed", e);
-            return currentContent;
+        UnifiedDiffApplier.Result patched = UnifiedDiffApplier.applyWithReport(currentContent, patchContent);
+        if (!patched.isComplete()) {
+            String failures = patched.getHunks().isEmpty() ? "no hunks found" : patched.describeFailures();
+            if ("strict".equals(errorHandling)) {
+                throw new IllegalArgumentException("Patch did not apply: " + failures);
+            }
+            Log.w(TAG, "Patch applied partially: " + failures);
         }
+        return patched.getText();
     }
 
     public void createNewFile(File parentDirectory, String fileName) throws IOException {
@@ -182,9 +249,7 @@ public class FileManager {
             throw new IOException("Failed to create file");
         }
 
-        if (fileChangeListener != null) {
-            fileChangeListener.onFileCreated(newFile);
-        }
+        changeBus.publish(newFile, FileChangeBus.Type.CREATED);
     }
 
     public void createNewDirectory(File parentDirectory, String folderName) throws IOException {
@@ -213,9 +278,7 @@ public class FileManager {
             throw new IOException("Failed to create folder");
         }
 
-        if (fileChangeListener != null) {
-            fileChangeListener.onFileCreated(newFolder);
-        }
+        changeBus.publish(newFolder, FileChangeBus.Type.CREATED);
     }
 
     public List<FileItem> loadFileTree() {
@@ -277,9 +340,7 @@ public class FileManager {
             throw new IOException("Failed to rename " + oldFile.getAbsolutePath() + " to " + newFile.getAbsolutePath());
         }
 
-        if (fileChangeListener != null) {
-            fileChangeListener.onFileRenamed(oldFile, newFile);
-        }
+        changeBus.publishRename(oldFile, newFile);
     }
 
     public void deleteFileOrDirectory(File fileOrDirectory) throws IOException {
@@ -289,7 +350,7 @@ public class FileManager {
         }
 
         if (fileOrDirectory.isDirectory()) {
-            if (!deleteDirectoryRecursive(fileOrDirectory)) {
+            if (!ParallelFileOps.delete(fileOrDirectory)) {
                 throw new IOException("Failed to delete directory: " + fileOrDirectory.getAbsolutePath());
             }
         } else {
@@ -298,23 +359,7 @@ public class FileManager {
             }
         }
 
-        if (fileChangeListener != null) {
-            fileChangeListener.onFileDeleted(fileOrDirectory);
-        }
-    }
-
-    private boolean deleteDirectoryRecursive(File dir) {
-        if (dir.isDirectory()) {
-            File[] children = dir.listFiles();
-            if (children != null) {
-                for (File child : children) {
-                    if (!deleteDirectoryRecursive(child)) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return dir.delete();
+        changeBus.publish(fileOrDirectory, FileChangeBus.Type.DELETED);
     }
 
     public File findFirstHtmlFile() {
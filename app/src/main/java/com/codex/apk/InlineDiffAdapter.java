@@ -10,67 +10,102 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+import com.codex.apk.util.IntralineDiff;
+
 import java.util.List;
 
 /**
- * Adapter to render inline unified diff lines using DiffUtils parser.
+ * Adapter to render inline unified diff lines from the inline projection of a
+ * {@link DiffDocument}; rows appear as it is parsed and long unchanged runs start collapsed.
+ * The n-th removed and n-th added line of a change block are paired for word-level
+ * highlights, see {@link IntralineHighlighter}.
  */
-public class InlineDiffAdapter extends RecyclerView.Adapter<InlineDiffAdapter.DiffViewHolder> {
+public class InlineDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> implements DiffDocument.Listener {
+    private static final int TYPE_LINE = 0;
+    private static final int TYPE_EXPANDER = 1;
 
     private final Context context;
-    private final List<DiffUtils.DiffLine> lines = new ArrayList<>();
+    private DiffDocument document;
+    private DiffRowMap rows;
+    private final IntralineHighlighter highlighter = new IntralineHighlighter(this::onIntralineReady);
 
-    public InlineDiffAdapter(Context context, List<DiffUtils.DiffLine> items) {
+    public InlineDiffAdapter(Context context, DiffDocument document) {
         this.context = context;
-        if (items != null) this.lines.addAll(filterDisplayable(items));
+        setDocument(document);
         setHasStableIds(false);
     }
 
-    public void updateLines(List<DiffUtils.DiffLine> newLines) {
-        this.lines.clear();
-        if (newLines != null) this.lines.addAll(filterDisplayable(newLines));
+    public void setDocument(DiffDocument document) {
+        if (document == this.document) return;
+        if (this.document != null) this.document.removeListener(this);
+        highlighter.cancel();
+        this.document = document;
+        this.rows = new DiffRowMap(document.inline());
+        document.addListener(this);
         notifyDataSetChanged();
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        document.addListener(this);
+    }
+
+    // Dropped by its RecyclerView; an unshared document nobody else reads stops parsing
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        document.removeListener(this);
+        highlighter.cancel();
+    }
+
+    @Override
+    public void onDiffAppended(DiffDocument document) {
+        if (document != this.document) return;
+        int start = rows.size();
+        int appended = rows.sync();
+        if (appended > 0) notifyItemRangeInserted(start, appended);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return rows.isExpander(position) ? TYPE_EXPANDER : TYPE_LINE;
+    }
+
     @NonNull
     @Override
-    public DiffViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        if (viewType == TYPE_EXPANDER) {
+            View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_diff_expander, parent, false);
+            return new SplitDiffAdapter.ExpanderVH(v);
+        }
         View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_diff_line, parent, false);
         return new DiffViewHolder(v);
     }
 
     @Override
-    public void onBindViewHolder(@NonNull DiffViewHolder holder, int position) {
-        DiffUtils.DiffLine line = lines.get(position);
-
-        // Reset defaults
-        holder.itemView.setVisibility(View.VISIBLE);
-        RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) holder.itemView.getLayoutParams();
-        if (lp != null) {
-            lp.width = ViewGroup.LayoutParams.MATCH_PARENT;
-            lp.height = ViewGroup.LayoutParams.WRAP_CONTENT;
-            holder.itemView.setLayoutParams(lp);
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder viewHolder, int position) {
+        if (viewHolder instanceof SplitDiffAdapter.ExpanderVH) {
+            SplitDiffAdapter.ExpanderVH vh = (SplitDiffAdapter.ExpanderVH) viewHolder;
+            vh.bind(rows.hiddenCount(position));
+            vh.itemView.setOnClickListener(v -> expand(vh.getBindingAdapterPosition()));
+            return;
         }
+        DiffViewHolder holder = (DiffViewHolder) viewHolder;
+        int row = rows.row(position);
+        DiffUtils.DiffLine line = document.getLine(document.inline().left(row));
+
         holder.tvOld.setText("");
         holder.tvNew.setText("");
         holder.tvContent.setTypeface(Typeface.MONOSPACE, Typeface.NORMAL);
         holder.itemView.setBackgroundColor(0x00000000); // transparent
 
         switch (line.type) {
-            case HEADER:
-                // Headers (e.g., @@ -a,+b @@ or ---/+++) are excluded via filterDisplayable();
-                // This branch should rarely be hit, but render as invisible safety net.
-                holder.itemView.setLayoutParams(new RecyclerView.LayoutParams(0, 0));
-                holder.itemView.setVisibility(View.GONE);
-                break;
             case ADDED:
                 holder.viewGutter.setBackgroundColor(context.getColor(R.color.color_border_diff_added));
                 holder.itemView.setBackgroundColor(context.getColor(R.color.color_diff_added_bg));
                 holder.tvOld.setText("");
                 holder.tvNew.setText(line.newLine != null ? String.valueOf(line.newLine) : "");
                 holder.tvContent.setTextColor(context.getColor(R.color.color_border_diff_added));
-                holder.tvContent.setText("+ " + line.text);
+                bindContent(holder, row, position);
                 break;
             case REMOVED:
                 holder.viewGutter.setBackgroundColor(context.getColor(R.color.color_border_diff_deleted));
@@ -78,9 +113,10 @@ public class InlineDiffAdapter extends RecyclerView.Adapter<InlineDiffAdapter.Di
                 holder.tvOld.setText(line.oldLine != null ? String.valueOf(line.oldLine) : "");
                 holder.tvNew.setText("");
                 holder.tvContent.setTextColor(context.getColor(R.color.color_border_diff_deleted));
-                holder.tvContent.setText("- " + line.text);
+                bindContent(holder, row, position);
                 break;
-            case CONTEXT:
+            default:
+                // Context; header lines (@@ hunk headers, ---/+++ file markers) are not in the projection
                 holder.viewGutter.setBackgroundColor(context.getColor(R.color.outline_variant));
                 holder.itemView.setBackgroundColor(context.getColor(R.color.surface));
                 holder.tvOld.setText(line.oldLine != null ? String.valueOf(line.oldLine) : "");
@@ -92,7 +128,55 @@ public class InlineDiffAdapter extends RecyclerView.Adapter<InlineDiffAdapter.Di
     }
 
     @Override
-    public int getItemCount() { return lines.size(); }
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (holder instanceof DiffViewHolder && payloads.contains(IntralineHighlighter.PAYLOAD)) {
+            bindContent((DiffViewHolder) holder, rows.row(position), position);
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
+    // Text of an added or removed line, with intraline highlights once they are ready
+    private void bindContent(DiffViewHolder holder, int row, int position) {
+        int index = document.inline().left(row);
+        DiffUtils.DiffLine line = document.getLine(index);
+        boolean added = line.type == DiffUtils.LineType.ADDED;
+        String prefix = added ? "+ " : "- ";
+        int partnerIndex = document.getPartner(index);
+        IntralineDiff.Result intraline = null;
+        if (partnerIndex >= 0) {
+            String partner = document.getLine(partnerIndex).text;
+            intraline = added
+                    ? highlighter.get(partner, line.text, row, position)
+                    : highlighter.get(line.text, partner, row, position);
+        }
+        if (intraline == null) {
+            holder.tvContent.setText(prefix + line.text);
+        } else if (added) {
+            holder.tvContent.setText(IntralineHighlighter.highlight(prefix, line.text, intraline.newRanges,
+                    context.getColor(R.color.color_border_diff_added)));
+        } else {
+            holder.tvContent.setText(IntralineHighlighter.highlight(prefix, line.text, intraline.oldRanges,
+                    context.getColor(R.color.color_border_diff_deleted)));
+        }
+    }
+
+    private void onIntralineReady(Object row, int positionHint) {
+        int r = (Integer) row;
+        int position = positionHint < rows.size() && !rows.isExpander(positionHint) && rows.row(positionHint) == r
+                ? positionHint : rows.positionOf(r);
+        if (position >= 0) notifyItemChanged(position, IntralineHighlighter.PAYLOAD);
+    }
+
+    @Override
+    public int getItemCount() { return rows.size(); }
+
+    private void expand(int position) {
+        if (position == RecyclerView.NO_POSITION || !rows.isExpander(position)) return;
+        int shown = rows.expand(position);
+        notifyItemRangeRemoved(position, 1);
+        notifyItemRangeInserted(position, shown);
+    }
 
     static class DiffViewHolder extends RecyclerView.ViewHolder {
         View viewGutter;
@@ -107,16 +191,4 @@ public class InlineDiffAdapter extends RecyclerView.Adapter<InlineDiffAdapter.Di
             tvContent = itemView.findViewById(R.id.tv_content);
         }
     }
-
-    // Remove header lines like @@ hunk headers and ---/+++ file markers from display
-    private static List<DiffUtils.DiffLine> filterDisplayable(List<DiffUtils.DiffLine> src) {
-        List<DiffUtils.DiffLine> out = new ArrayList<>();
-        if (src == null) return out;
-        for (DiffUtils.DiffLine d : src) {
-            if (d == null) continue;
-            if (d.type == DiffUtils.LineType.HEADER) continue; // hide
-            out.add(d);
-        }
-        return out;
-    }
 }
@@ -0,0 +1,173 @@
+package com.codex.apk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.util.LruCache;
+
+import com.codex.apk.util.IntralineDiff;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Word-level intraline highlights for the diff adapters, computed off the main thread. A row
+ * asks for its line pair when it is bound: a cached result is returned at once, otherwise the
+ * pair is queued and the adapter is told once it is ready, so it can rebind just the text with
+ * {@link #PAYLOAD}. Only rows that are actually bound get diffed, and the most recently bound
+ * ones first, so fast scrolling never waits behind rows that have already left the screen.
+ */
+final class IntralineHighlighter {
+    /** Payload for {@code notifyItemChanged} when only a row's highlights changed. */
+    static final Object PAYLOAD = new Object();
+
+    // Requests beyond this are dropped oldest first; their rows are asked again when rebound
+    private static final int MAX_PENDING = 64;
+    // Cache budget in chars of line text held by the keys
+    private static final int CACHE_CHARS = 512 * 1024;
+    // Longer pairs only get IntralineDiff's linear prefix/suffix trim; done inline, never cached
+    private static final int MAX_QUEUED_CHARS = 16 * 1024;
+    // Highlights reuse the line colour with this alpha on top of the line background
+    private static final int HIGHLIGHT_ALPHA = 0x66000000;
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Intraline");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // Shared by every adapter: the same pair shows up in the split and inline views
+    private static final LruCache<LinePair, IntralineDiff.Result> cache = new LruCache<LinePair, IntralineDiff.Result>(CACHE_CHARS) {
+        @Override
+        protected int sizeOf(LinePair key, IntralineDiff.Result value) {
+            return key.oldText.length() + key.newText.length() + value.oldRanges.length + value.newRanges.length + 16;
+        }
+    };
+
+    /** Told on the main thread when the highlights for {@code row} are cached. */
+    interface Listener {
+        void onIntralineReady(Object row, int positionHint);
+    }
+
+    private static final class LinePair {
+        final String oldText;
+        final String newText;
+        final int hash;
+
+        LinePair(String oldText, String newText) {
+            this.oldText = oldText;
+            this.newText = newText;
+            this.hash = 31 * oldText.hashCode() + newText.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LinePair)) return false;
+            LinePair other = (LinePair) o;
+            return hash == other.hash && oldText.equals(other.oldText) && newText.equals(other.newText);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Request {
+        final LinePair pair;
+        final Object row;
+        final int positionHint;
+        final int generation;
+
+        Request(LinePair pair, Object row, int positionHint, int generation) {
+            this.pair = pair;
+            this.row = row;
+            this.positionHint = positionHint;
+            this.generation = generation;
+        }
+    }
+
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Request> pending = new ArrayDeque<>(); // guarded by itself, newest first
+    private boolean draining; // guarded by pending
+    private int generation; // main thread; bumped to drop results meant for replaced rows
+
+    IntralineHighlighter(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the highlights of the pair if they are cached; otherwise queues the pair for
+     * {@code row}, bound at {@code position}, and returns null.
+     */
+    IntralineDiff.Result get(String oldText, String newText, Object row, int position) {
+        LinePair pair = new LinePair(oldText != null ? oldText : "", newText != null ? newText : "");
+        if (pair.oldText.length() + pair.newText.length() > MAX_QUEUED_CHARS) {
+            return IntralineDiff.compute(pair.oldText, pair.newText);
+        }
+        IntralineDiff.Result cached = cache.get(pair);
+        if (cached != null) return cached;
+        boolean start;
+        synchronized (pending) {
+            for (Iterator<Request> it = pending.iterator(); it.hasNext(); ) {
+                if (it.next().row.equals(row)) it.remove();
+            }
+            pending.addFirst(new Request(pair, row, position, generation));
+            if (pending.size() > MAX_PENDING) pending.removeLast();
+            start = !draining;
+            draining = true;
+        }
+        if (start) worker.execute(this::drain);
+        return null;
+    }
+
+    /** Drops queued requests and any results still in flight, e.g. when the rows are replaced. */
+    void cancel() {
+        synchronized (pending) {
+            pending.clear();
+        }
+        generation++;
+    }
+
+    private void drain() {
+        while (true) {
+            Request request;
+            synchronized (pending) {
+                request = pending.pollFirst();
+                if (request == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            if (cache.get(request.pair) == null) {
+                cache.put(request.pair, IntralineDiff.compute(request.pair.oldText, request.pair.newText));
+            }
+            mainHandler.post(() -> {
+                if (generation == request.generation) listener.onIntralineReady(request.row, request.positionHint);
+            });
+        }
+    }
+
+    /**
+     * {@code prefix + text} with the ranges of {@code text} highlighted in a translucent
+     * {@code lineColor}.
+     */
+    static CharSequence highlight(String prefix, String text, int[] ranges, int lineColor) {
+        if (text == null) text = "";
+        if (ranges == null || ranges.length == 0) return prefix + text;
+        SpannableString out = new SpannableString(prefix + text);
+        int color = (lineColor & 0x00FFFFFF) | HIGHLIGHT_ALPHA;
+        int offset = prefix.length();
+        for (int i = 0; i < ranges.length; i += 2) {
+            out.setSpan(new BackgroundColorSpan(color), offset + ranges[i], offset + ranges[i + 1],
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return out;
+    }
+}
@@ -23,10 +23,9 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.stream.Collectors;
 import android.widget.RadioGroup;
 import com.codex.apk.ai.AIProvider;
+import com.codex.apk.util.ProjectCatalog;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -36,8 +35,8 @@ public class MainActivity extends AppCompatActivity {
     private LinearLayout layoutEmptyState;
     private LinearLayout layoutRecentProjects;
 
-    private ArrayList<HashMap<String, Object>> projectsList;
-    private ArrayList<HashMap<String, Object>> recentProjectsList;
+    private ArrayList<ProjectCatalog.Entry> projectsList;
+    private ArrayList<ProjectCatalog.Entry> recentProjectsList;
     private ProjectsAdapter projectsAdapter;
     private RecentProjectsAdapter recentProjectsAdapter;
     private ExtendedFloatingActionButton fabQuickActions;
@@ -69,7 +68,7 @@ public class MainActivity extends AppCompatActivity {
         recentProjectsList = new ArrayList<>();
         projectsAdapter = new ProjectsAdapter(this, projectsList, this);
         recentProjectsAdapter = new RecentProjectsAdapter(this, recentProjectsList, this);
-        projectManager = new ProjectManager(this, projectsList, projectsAdapter);
+        projectManager = new ProjectManager(this, projectsList);
         permissionManager = new PermissionManager(this);
         importExportManager = new ProjectImportExportManager(this);
         gitManager = new GitManager(this);
@@ -215,20 +214,24 @@ public class MainActivity extends AppCompatActivity {
     private int currentSortOption = R.id.radio_date_newest;
 
     private void loadProjects() {
+        // Renders from the cached catalog now and again once the background reconcile reports
         projectManager.loadProjectsList();
+    }
 
+    /** Sorts and shows the current contents of the projects list. */
+    public void renderProjects() {
         // Sort the main list according to the user's preference
         sortProjects();
 
         // Now, populate recent projects
         // If the main list is already sorted by date, we don't need to sort again
-        ArrayList<HashMap<String, Object>> sortedForRecent;
+        ArrayList<ProjectCatalog.Entry> sortedForRecent;
         if (currentSortOption == R.id.radio_date_newest) {
             sortedForRecent = projectsList;
         } else {
             // Otherwise, create a sorted copy for the recent projects list
             sortedForRecent = new ArrayList<>(projectsList);
-            Collections.sort(sortedForRecent, (p1, p2) -> Long.compare((long) p2.get("lastModifiedTimestamp"), (long) p1.get("lastModifiedTimestamp")));
+            Collections.sort(sortedForRecent, (p1, p2) -> Long.compare(p2.lastModified(), p1.lastModified()));
         }
 
         recentProjectsList.clear();
@@ -255,22 +258,22 @@ public class MainActivity extends AppCompatActivity {
                 .setPositiveButton("Apply", (dialog, which) -> {
                     int selectedId = radioGroup.getCheckedRadioButtonId();
                     currentSortOption = selectedId;
-                    loadProjects();
+                    renderProjects();
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
     private void sortProjects() {
-        Comparator<HashMap<String, Object>> comparator = null;
+        Comparator<ProjectCatalog.Entry> comparator = null;
         if (currentSortOption == R.id.radio_name_asc) {
-            comparator = (p1, p2) -> ((String) p1.get("name")).compareToIgnoreCase((String) p2.get("name"));
+            comparator = (p1, p2) -> p1.name.compareToIgnoreCase(p2.name);
         } else if (currentSortOption == R.id.radio_name_desc) {
-            comparator = (p1, p2) -> ((String) p2.get("name")).compareToIgnoreCase((String) p1.get("name"));
+            comparator = (p1, p2) -> p2.name.compareToIgnoreCase(p1.name);
         } else if (currentSortOption == R.id.radio_date_oldest) {
-            comparator = (p1, p2) -> Long.compare((long) p1.get("lastModifiedTimestamp"), (long) p2.get("lastModifiedTimestamp"));
+            comparator = (p1, p2) -> Long.compare(p1.lastModified(), p2.lastModified());
         } else { // Default to newest
-            comparator = (p1, p2) -> Long.compare((long) p2.get("lastModifiedTimestamp"), (long) p1.get("lastModifiedTimestamp"));
+            comparator = (p1, p2) -> Long.compare(p2.lastModified(), p1.lastModified());
         }
         Collections.sort(projectsList, comparator);
     }
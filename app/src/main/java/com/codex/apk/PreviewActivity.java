@@ -28,15 +28,17 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.codex.apk.LocalServerManager;
+import com.codex.apk.util.FileChangeBus;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PreviewActivity extends AppCompatActivity {
 
@@ -68,9 +70,11 @@ public class PreviewActivity extends AppCompatActivity {
     private boolean isDesktopModeEnabled = false;
 
     // Performance optimizations
-    private Map<String, byte[]> fileCache = new HashMap<>();
+    // Filled from the WebView's IO thread, evicted from the FileChangeBus thread
+    private final Map<String, byte[]> fileCache = new ConcurrentHashMap<>();
     private static final long MAX_CACHE_SIZE = 50 * 1024 * 1024; // 50MB cache limit
-    private long currentCacheSize = 0;
+    private final AtomicLong currentCacheSize = new AtomicLong();
+    private FileChangeBus.Listener fileChangeListener;
 
     // Local server management
     private LocalServerManager localServerManager;
@@ -108,6 +112,32 @@ public class PreviewActivity extends AppCompatActivity {
 
         // Load initial content or start environment based on project type
         initializeEnvironmentAndLoad();
+
+        if (projectDir != null) {
+            fileChangeListener = this::onProjectFilesChanged;
+            FileChangeBus.forProject(projectDir).subscribe(fileChangeListener);
+        }
+    }
+
+    /** Drops stale cached resources and reloads once if the page had loaded any of them. */
+    private void onProjectFilesChanged(FileChangeBus.ChangeSet changes) {
+        boolean servedChanged = false;
+        for (FileChangeBus.Change c : changes.getChanges()) {
+            String path = c.file.getAbsolutePath();
+            String prefix = path + File.separator;
+            for (String cached : fileCache.keySet()) {
+                if (cached.equals(path) || cached.startsWith(prefix)) {
+                    byte[] removed = fileCache.remove(cached);
+                    if (removed != null) currentCacheSize.addAndGet(-removed.length);
+                    servedChanged = true;
+                }
+            }
+        }
+        if (servedChanged) {
+            runOnUiThread(() -> {
+                if (!isFinishing()) refreshPreview();
+            });
+        }
     }
 
     private void extractIntentData() {
@@ -648,8 +678,12 @@ public class PreviewActivity extends AppCompatActivity {
             webViewPreview.removeAllViews();
             webViewPreview.destroy();
         }
+        if (fileChangeListener != null) {
+            FileChangeBus.forProject(projectDir).unsubscribe(fileChangeListener);
+        }
         // Clear cache
         fileCache.clear();
+        currentCacheSize.set(0);
     }
 
     @Override
@@ -703,7 +737,7 @@ public class PreviewActivity extends AppCompatActivity {
 
                         // Read and cache file if cache size allows
                         if (file.length() < 5 * 1024 * 1024 && // Max 5MB per file
-                            currentCacheSize + file.length() < MAX_CACHE_SIZE) {
+                            currentCacheSize.get() + file.length() < MAX_CACHE_SIZE) {
 
                             FileInputStream fis = new FileInputStream(file);
                             byte[] data = new byte[(int) file.length()];
@@ -711,7 +745,7 @@ public class PreviewActivity extends AppCompatActivity {
                             fis.close();
 
                             fileCache.put(filePath, data);
-                            currentCacheSize += data.length;
+                            currentCacheSize.addAndGet(data.length);
 
                             String mimeType = getMimeType(filePath);
                             return new WebResourceResponse(mimeType, "UTF-8",
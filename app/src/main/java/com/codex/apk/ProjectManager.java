@@ -12,69 +12,73 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.textfield.TextInputEditText;
-import com.google.gson.Gson;
+import com.codex.apk.editor.EditorSession;
+import com.codex.apk.util.ParallelFileOps;
+import com.codex.apk.util.ProjectCatalog;
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ProjectManager {
 
     private static final String TAG = "ProjectManager";
     private static final String PREFS_NAME = "project_prefs";
-    private static final String PROJECTS_LIST_KEY = "projects_list";
+    // Gson-serialised list written by earlier versions; superseded by the catalog file.
+    private static final String LEGACY_PROJECTS_LIST_KEY = "projects_list";
 
     private final MainActivity mainActivity;
     private final Context context;
-    private ArrayList<HashMap<String, Object>> projectsList;
-    private ProjectsAdapter projectsAdapter;
+    private final ArrayList<ProjectCatalog.Entry> projectsList;
+    private final ProjectCatalog catalog;
 
-    public ProjectManager(MainActivity mainActivity, ArrayList<HashMap<String, Object>> projectsList, ProjectsAdapter projectsAdapter) {
+    public ProjectManager(MainActivity mainActivity, ArrayList<ProjectCatalog.Entry> projectsList) {
         this.mainActivity = mainActivity;
         this.context = mainActivity.getApplicationContext();
         this.projectsList = projectsList;
-        this.projectsAdapter = projectsAdapter;
+        this.catalog = openCatalog(context);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.contains(LEGACY_PROJECTS_LIST_KEY)) {
+            prefs.edit().remove(LEGACY_PROJECTS_LIST_KEY).apply();
+        }
+    }
+
+    public static ProjectCatalog openCatalog(Context context) {
+        return ProjectCatalog.open(new File(context.getApplicationContext().getFilesDir(), "project_catalog.bin"));
+    }
+
+    public static File getProjectsDirectory() {
+        return new File(Environment.getExternalStorageDirectory(), "CodeX/Projects");
+    }
+
+    public ProjectCatalog getCatalog() {
+        return catalog;
     }
 
+    /**
+     * Renders the cached catalog immediately, then reconciles it with the projects folder in
+     * the background and re-renders as listing and deep metadata come in.
+     */
     public void loadProjectsList() {
         if (!mainActivity.getPermissionManager().hasStoragePermission()) {
             Log.w(TAG, "Cannot load projects: Storage permission not granted.");
             projectsList.clear();
-            if (projectsAdapter != null) {
-                projectsAdapter.notifyDataSetChanged();
-            }
-            mainActivity.updateEmptyStateVisibility();
+            mainActivity.renderProjects();
             return;
         }
 
-        syncProjectsFromFilesystem();
-
-        Collections.sort(projectsList, (p1, p2) -> {
-            Number timestamp1 = (Number) p1.getOrDefault("lastModifiedTimestamp", 0L);
-            Number timestamp2 = (Number) p2.getOrDefault("lastModifiedTimestamp", 0L);
-            long date1 = timestamp1.longValue();
-            long date2 = timestamp2.longValue();
-            return Long.compare(date2, date1);
-        });
-
-        if (projectsAdapter != null) {
-            projectsAdapter.notifyDataSetChanged();
-        }
-        mainActivity.updateEmptyStateVisibility();
-    }
+        projectsList.clear();
+        projectsList.addAll(catalog.snapshot());
+        mainActivity.renderProjects();
 
-    public void saveProjectsList() {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        Gson gson = new Gson();
-        String json = gson.toJson(projectsList);
-        editor.putString(PROJECTS_LIST_KEY, json);
-        editor.apply();
-        mainActivity.updateEmptyStateVisibility();
+        File projectsDir = getProjectsDirectory();
+        if (!projectsDir.isDirectory()) return;
+        catalog.reconcileAsync(projectsDir, entries -> mainActivity.runOnUiThread(() -> {
+            if (mainActivity.isFinishing()) return;
+            projectsList.clear();
+            projectsList.addAll(entries);
+            mainActivity.renderProjects();
+        }));
     }
 
     public void deleteProjectDirectory(File projectDir) {
@@ -87,9 +91,11 @@ public class ProjectManager {
                 return;
             }
             String projectPath = projectDir.getAbsolutePath();
-            boolean deleted = deleteRecursive(projectDir);
+            boolean deleted = ParallelFileOps.delete(projectDir);
             if (deleted) {
                 AIChatHistoryManager.deleteChatStateForProject(context, projectPath);
+                EditorSession.delete(context, projectDir);
+                catalog.remove(projectDir);
             }
             mainActivity.runOnUiThread(() -> {
                 if (deleted) {
@@ -102,6 +108,67 @@ public class ProjectManager {
         }).start();
     }
 
+    /**
+     * Copies a project next to itself as "<name> copy" (or "<name> copy N"), showing progress in
+     * a dialog whose Cancel stops the copy and removes what was written so far.
+     */
+    public void duplicateProject(File projectDir) {
+        if (!mainActivity.getPermissionManager().hasStoragePermission()) {
+            Toast.makeText(context, context.getString(R.string.please_grant_storage_permission), Toast.LENGTH_LONG).show();
+            mainActivity.getPermissionManager().checkAndRequestPermissions();
+            return;
+        }
+        File parent = projectDir.getParentFile();
+        if (parent == null) return;
+        String baseName = context.getString(R.string.project_copy_name, projectDir.getName());
+        File target = new File(parent, baseName);
+        for (int n = 2; target.exists(); n++) target = new File(parent, baseName + " " + n);
+        final File copyDir = target;
+
+        AtomicLong totalBytes = new AtomicLong();
+        AtomicLong lastUpdate = new AtomicLong();
+        AlertDialog progressDialog = new MaterialAlertDialogBuilder(mainActivity, R.style.AlertDialogCustom)
+                .setTitle(context.getString(R.string.duplicating_project, projectDir.getName()))
+                .setMessage(context.getString(R.string.preparing))
+                .setCancelable(false)
+                .setNegativeButton(context.getString(R.string.cancel), null)
+                .create();
+        ParallelFileOps.Op op = new ParallelFileOps.Op((files, bytes) -> {
+            long now = System.currentTimeMillis();
+            long last = lastUpdate.get();
+            if (now - last < 100 || !lastUpdate.compareAndSet(last, now)) return;
+            long total = totalBytes.get();
+            int percent = total > 0 ? (int) Math.min(100, bytes * 100 / total) : 0;
+            mainActivity.runOnUiThread(() -> progressDialog.setMessage(
+                    context.getResources().getQuantityString(R.plurals.duplicate_progress, (int) Math.min(Integer.MAX_VALUE, files), files, percent)));
+        });
+        progressDialog.setOnShowListener(d -> progressDialog.getButton(AlertDialog.BUTTON_NEGATIVE).setOnClickListener(v -> op.cancel()));
+        progressDialog.show();
+
+        new Thread(() -> {
+            totalBytes.set(ParallelFileOps.sizeOf(projectDir));
+            String error = null;
+            try {
+                ParallelFileOps.copy(projectDir, copyDir, op);
+                catalog.put(copyDir);
+            } catch (IOException e) {
+                Log.w(TAG, "Duplicate failed: " + e.getMessage());
+                error = e.getMessage();
+            }
+            final String failure = error;
+            mainActivity.runOnUiThread(() -> {
+                progressDialog.dismiss();
+                if (op.isCancelled()) return;
+                if (failure == null) {
+                    Toast.makeText(context, context.getString(R.string.project_duplicated, copyDir.getName()), Toast.LENGTH_SHORT).show();
+                    loadProjectsList();
+                } else {
+                    Toast.makeText(context, context.getString(R.string.failed_to_duplicate_project, failure), Toast.LENGTH_LONG).show();
+                }
+            });
+        }, "ProjectDuplicate").start();
+    }
+
     public void renameFileOrDir(File oldFile, File newFile) {
         new Thread(() -> {
             try {
@@ -116,19 +183,9 @@ public class ProjectManager {
                 }
 
                 if (oldFile.renameTo(newFile)) {
-                    for (HashMap<String, Object> project : projectsList) {
-                        if (oldFile.getAbsolutePath().equals(project.get("path"))) {
-                            project.put("name", newFile.getName());
-                            project.put("path", newFile.getAbsolutePath());
-                            project.put("lastModified", new SimpleDateFormat("MMM dd,yyyy HH:mm", Locale.getDefault()).format(new Date()));
-                            project.put("lastModifiedTimestamp", System.currentTimeMillis());
-                            break;
-                        }
-                    }
-                    mainActivity.runOnUiThread(() -> {
-                        saveProjectsList();
-                        loadProjectsList();
-                    });
+                    catalog.remove(oldFile);
+                    catalog.put(newFile);
+                    mainActivity.runOnUiThread(this::loadProjectsList);
                 } else {
                     throw new IOException(context.getString(R.string.failed_to_rename, oldFile.getAbsolutePath(), newFile.getAbsolutePath()));
                 }
@@ -165,7 +222,7 @@ public class ProjectManager {
                     return;
                 }
 
-                File projectsDir = new File(Environment.getExternalStorageDirectory(), "CodeX/Projects");
+                File projectsDir = getProjectsDirectory();
                 if (!projectsDir.exists()) {
                     projectsDir.mkdirs();
                 }
@@ -181,24 +238,13 @@ public class ProjectManager {
                         throw new IOException(context.getString(R.string.failed_to_create_project_directory));
                     }
 
-                    long creationTime = System.currentTimeMillis();
-                    SimpleDateFormat sdf = new SimpleDateFormat("MMM dd,yyyy HH:mm", Locale.getDefault());
-                    String lastModifiedStr = sdf.format(new Date(creationTime));
-
-                    HashMap<String, Object> newProject = new HashMap<>();
-                    newProject.put("name", projectName);
-                    newProject.put("path", newProjectDir.getAbsolutePath());
-                    newProject.put("lastModified", lastModifiedStr);
-                    newProject.put("lastModifiedTimestamp", creationTime);
-
-                    projectsList.add(0, newProject);
-                    saveProjectsList();
+                    catalog.put(newProjectDir);
                     Toast.makeText(context, context.getString(R.string.project_created, projectName), Toast.LENGTH_SHORT).show();
                     dialog.dismiss();
                     mainActivity.openProject(newProjectDir.getAbsolutePath(), projectName);
                 } catch (IOException e) {
                     if (newProjectDir.exists()) {
-                        deleteRecursive(newProjectDir);
+                        ParallelFileOps.delete(newProjectDir);
                     }
                     Toast.makeText(context, "Error creating project: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 }
@@ -207,48 +253,4 @@ public class ProjectManager {
         dialog.show();
     }
 
-    private void syncProjectsFromFilesystem() {
-        if (!mainActivity.getPermissionManager().hasStoragePermission()) {
-            return;
-        }
-        File projectsDir = new File(Environment.getExternalStorageDirectory(), "CodeX/Projects");
-        if (!projectsDir.exists() || !projectsDir.isDirectory()) {
-            return;
-        }
-
-        ArrayList<HashMap<String, Object>> filesystemProjects = new ArrayList<>();
-        File[] projectDirs = projectsDir.listFiles(File::isDirectory);
-
-        if (projectDirs != null) {
-            for (File projectDir : projectDirs) {
-                long lastModified = projectDir.lastModified();
-                SimpleDateFormat sdf = new SimpleDateFormat("MMM dd,yyyy HH:mm", Locale.getDefault());
-                String lastModifiedStr = sdf.format(new Date(lastModified));
-
-                HashMap<String, Object> project = new HashMap<>();
-                project.put("name", projectDir.getName());
-                project.put("path", projectDir.getAbsolutePath());
-                project.put("lastModified", lastModifiedStr);
-                project.put("lastModifiedTimestamp", lastModified);
-                filesystemProjects.add(project);
-            }
-        }
-
-        projectsList.clear();
-        projectsList.addAll(filesystemProjects);
-
-        saveProjectsList();
-    }
-
-    private boolean deleteRecursive(File fileOrDirectory) {
-        if (fileOrDirectory.isDirectory()) {
-            File[] children = fileOrDirectory.listFiles();
-            if (children != null) {
-                for (File child : children) {
-                    deleteRecursive(child);
-                }
-            }
-        }
-        return fileOrDirectory.delete();
-    }
 }
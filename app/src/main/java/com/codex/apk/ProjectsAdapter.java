@@ -17,18 +17,24 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.textfield.TextInputEditText;
 
+import com.codex.apk.util.ProjectCatalog;
+
 import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.ProjectViewHolder> {
 
     private final Context context;
-    private final ArrayList<HashMap<String, Object>> projectsList;
+    private final ArrayList<ProjectCatalog.Entry> projectsList;
     private final MainActivity mainActivity;
+    // Bound on the UI thread only, so one formatter serves every row
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd,yyyy HH:mm", Locale.getDefault());
 
     // Multi-select state
     private boolean selectionMode = false;
@@ -40,7 +46,7 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
 
     private SelectionListener selectionListener;
 
-    public ProjectsAdapter(Context context, ArrayList<HashMap<String, Object>> projectsList, MainActivity mainActivity) {
+    public ProjectsAdapter(Context context, ArrayList<ProjectCatalog.Entry> projectsList, MainActivity mainActivity) {
         this.context = context;
         this.projectsList = projectsList;
         this.mainActivity = mainActivity;
@@ -62,9 +68,7 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
         List<File> files = new ArrayList<>();
         for (Integer pos : selectedPositions) {
             if (pos >= 0 && pos < projectsList.size()) {
-                HashMap<String, Object> project = projectsList.get(pos);
-                String projectPath = (String) project.get("path");
-                if (projectPath != null) files.add(new File(projectPath));
+                files.add(projectsList.get(pos).getDirectory());
             }
         }
         return files;
@@ -108,7 +112,7 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
 
     @Override
     public void onBindViewHolder(@NonNull ProjectViewHolder holder, int position) {
-        HashMap<String, Object> project = projectsList.get(position);
+        ProjectCatalog.Entry project = projectsList.get(position);
         holder.bind(project, position);
     }
 
@@ -131,9 +135,9 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
             checkbox = itemView.findViewById(R.id.checkbox_select);
         }
 
-        void bind(final HashMap<String, Object> project, final int position) {
-            textProjectName.setText((String) project.get("name"));
-            textProjectDate.setText((String) project.get("lastModified"));
+        void bind(final ProjectCatalog.Entry project, final int position) {
+            textProjectName.setText(project.name);
+            textProjectDate.setText(describe(project));
 
             // Selection UI state
             boolean isSelected = selectedPositions.contains(position);
@@ -146,8 +150,8 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
                 if (selectionMode) {
                     toggleSelection(position);
                 } else {
-                    String projectPath = (String) project.get("path");
-                    String projectName = (String) project.get("name");
+                    String projectPath = project.path;
+                    String projectName = project.name;
                     if (projectPath != null && projectName != null) {
                         mainActivity.openProject(projectPath, projectName);
                     } else {
@@ -172,6 +176,16 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
             });
         }
 
+        /** Date line, extended with file count and main language once the deep scan is in. */
+        private String describe(ProjectCatalog.Entry project) {
+            String date = dateFormat.format(new Date(project.lastModified()));
+            if (!project.deepScanned) return date;
+            StringBuilder sb = new StringBuilder(date);
+            sb.append(" \u00b7 ").append(context.getResources().getQuantityString(R.plurals.project_file_count, project.fileCount, project.fileCount));
+            if (!project.dominantLanguage.isEmpty()) sb.append(" \u00b7 ").append(project.dominantLanguage);
+            return sb.toString();
+        }
+
         private void showProjectOptions(View view, final int position) {
             PopupMenu popup = new PopupMenu(context, view);
             popup.getMenuInflater().inflate(R.menu.menu_project_options, popup.getMenu());
@@ -180,13 +194,16 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
                 if (id == R.id.action_rename) {
                     showRenameProjectDialog(position);
                     return true;
+                } else if (id == R.id.action_duplicate) {
+                    mainActivity.getProjectManager().duplicateProject(projectsList.get(position).getDirectory());
+                    return true;
                 } else if (id == R.id.action_delete) {
                     showDeleteProjectDialog(position);
                     return true;
                 } else if (id == R.id.action_share) {
-                    HashMap<String, Object> project = projectsList.get(position);
-                    String projectPath = (String) project.get("path");
-                    String projectName = (String) project.get("name");
+                    ProjectCatalog.Entry project = projectsList.get(position);
+                    String projectPath = project.path;
+                    String projectName = project.name;
                     if (projectPath != null && projectName != null) {
                         mainActivity.getImportExportManager().exportProject(new File(projectPath), projectName);
                     } else {
@@ -200,9 +217,9 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
         }
 
         private void showRenameProjectDialog(final int position) {
-            HashMap<String, Object> project = projectsList.get(position);
-            String oldName = (String) project.get("name");
-            String oldPath = (String) project.get("path");
+            ProjectCatalog.Entry project = projectsList.get(position);
+            String oldName = project.name;
+            String oldPath = project.path;
 
             if (oldName == null || oldPath == null) {
                 Toast.makeText(context, context.getString(R.string.error_project_data_is_invalid), Toast.LENGTH_SHORT).show();
@@ -257,9 +274,9 @@ public class ProjectsAdapter extends RecyclerView.Adapter<ProjectsAdapter.Projec
         }
 
         private void showDeleteProjectDialog(final int position) {
-            HashMap<String, Object> project = projectsList.get(position);
-            String projectName = (String) project.get("name");
-            String projectPath = (String) project.get("path");
+            ProjectCatalog.Entry project = projectsList.get(position);
+            String projectName = project.name;
+            String projectPath = project.path;
 
             if (projectName == null || projectPath == null) {
                 Toast.makeText(context, context.getString(R.string.error_project_data_is_invalid), Toast.LENGTH_SHORT).show();
@@ -89,6 +89,7 @@ public class PromptManager {
                "}\n\n" +
                "TOOL PROTOCOL:\n" +
                "- When needing context, first call tools (never guess).\n" +
+               "- For named ids, classes, selectors, CSS variables or JS functions, call findSymbol before grepSearch/readFile.\n" +
                "```json\n{\n  \"action\": \"tool_call\",\n  \"tool_calls\": [\n    { \"name\": \"listProjectTree\", \"args\": { \"path\": \".\", \"depth\": 3, \"maxEntries\": 400 } },\n    { \"name\": \"searchInProject\", \"args\": { \"query\": \"<head>|tailwindcss\", \"maxResults\": 50, \"regex\": false } },\n    { \"name\": \"readFile\", \"args\": { \"path\": \"index.html\" } }\n  ]\n}\n```\n" +
                "- The IDE will respond with:\n" +
                "```json\n{\n  \"action\": \"tool_result\",\n  \"results\": [\n    { \"name\": \"listProjectTree\", \"ok\": true, \"entries\": [/* ... */] },\n    { \"name\": \"searchInProject\", \"ok\": true, \"matches\": [/* ... */] },\n    { \"name\": \"readFile\", \"ok\": true, \"content\": \"...\" }\n  ]\n}\n```\n" +
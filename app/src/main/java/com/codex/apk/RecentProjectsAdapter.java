@@ -8,16 +8,16 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
+import com.codex.apk.util.ProjectCatalog;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 public class RecentProjectsAdapter extends RecyclerView.Adapter<RecentProjectsAdapter.ViewHolder> {
 
     private final Context context;
-    private final ArrayList<HashMap<String, Object>> recentProjects;
+    private final ArrayList<ProjectCatalog.Entry> recentProjects;
     private final MainActivity mainActivity;
 
-    public RecentProjectsAdapter(Context context, ArrayList<HashMap<String, Object>> recentProjects, MainActivity mainActivity) {
+    public RecentProjectsAdapter(Context context, ArrayList<ProjectCatalog.Entry> recentProjects, MainActivity mainActivity) {
         this.context = context;
         this.recentProjects = recentProjects;
         this.mainActivity = mainActivity;
@@ -32,9 +32,9 @@ public class RecentProjectsAdapter extends RecyclerView.Adapter<RecentProjectsAd
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        HashMap<String, Object> project = recentProjects.get(position);
-        String projectName = (String) project.get("name");
-        String projectPath = (String) project.get("path");
+        ProjectCatalog.Entry project = recentProjects.get(position);
+        String projectName = project.name;
+        String projectPath = project.path;
 
         holder.projectName.setText(projectName);
 
@@ -13,6 +13,9 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
+import io.github.rosemoe.sora.event.ContentChangeEvent;
+import io.github.rosemoe.sora.text.CharPosition;
+import io.github.rosemoe.sora.text.Content;
 import io.github.rosemoe.sora.widget.CodeEditor;
 import io.github.rosemoe.sora.lang.EmptyLanguage;
 import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
@@ -25,11 +28,13 @@ import io.github.rosemoe.sora.langs.textmate.registry.model.ThemeModel;
 import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver;
 import org.eclipse.tm4e.core.registry.IThemeSource;
 
+import com.codex.apk.util.PieceTable;
+import com.codex.apk.util.ThreeWayMerge;
+
 import java.io.File;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.LinkedHashMap;
 
 /**
  * Simplified TabAdapter using Sora Editor for high-performance code editing.
@@ -46,20 +51,15 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
     private final TabActionListener tabActionListener;
     private final FileManager fileManager;
     private final Map<Integer, ViewHolder> holders = new HashMap<>();
-    // LRU cache for parsed diffs per tabId with content hash to avoid re-parsing
-    private static final int MAX_DIFF_CACHE = 16;
-
-    private static class DiffCacheEntry {
-        java.util.List<DiffUtils.DiffLine> lines;
-        int hash;
+    // Diff document each diff tab showed last, with the tab text version it was obtained for,
+    // so binding an unchanged tab neither copies nor hashes its text
+    private static class TabDiff {
+        PieceTable source;
+        long version;
+        DiffDocument document;
     }
 
-    private final LinkedHashMap<String, DiffCacheEntry> diffCache = new LinkedHashMap<String, DiffCacheEntry>(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, DiffCacheEntry> eldest) {
-            return size() > MAX_DIFF_CACHE;
-        }
-    };
+    private final Map<String, TabDiff> tabDiffs = new HashMap<>();
 
 
     // Current active tab position
@@ -71,6 +71,7 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
     public interface TabActionListener {
         void onTabModifiedStateChanged();
         void onActiveTabChanged(File newFile);
+        void onTabContentChanged(TabItem tabItem);
     }
 
     /**
@@ -91,16 +92,23 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
     public static class ViewHolder extends RecyclerView.ViewHolder {
         public CodeEditor codeEditor;
         public boolean isListenerAttached;
+        // Document and version the editor currently shows; see onBindViewHolder
+        PieceTable boundDocument;
+        long boundVersion = -1;
+        boolean settingText;
         public String currentTabId;
         public View diffContainer;
         public RecyclerView diffRecycler;
         public RecyclerView diffRecyclerSplit;
         public InlineDiffAdapter diffAdapter;
+        DiffDocument diffDocument;
+        DiffDocument.Listener diffCountListener;
         public android.widget.TextView diffFilename;
         public android.widget.TextView diffAddedCount;
         public android.widget.TextView diffRemovedCount;
         public android.widget.TextView diffToggleInline;
         public android.widget.TextView diffToggleSplit;
+        public com.codex.apk.editor.LargeFileViewer largeFileViewer;
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -113,6 +121,13 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
             diffRemovedCount = itemView.findViewById(R.id.diff_removed_count);
             diffToggleInline = itemView.findViewById(R.id.diff_toggle_inline);
             diffToggleSplit = itemView.findViewById(R.id.diff_toggle_split);
+            largeFileViewer = new com.codex.apk.editor.LargeFileViewer(codeEditor,
+                    itemView.findViewById(R.id.large_file_bar),
+                    itemView.findViewById(R.id.large_file_status),
+                    itemView.findViewById(R.id.large_file_search),
+                    itemView.findViewById(R.id.large_file_match_count),
+                    itemView.findViewById(R.id.large_file_prev),
+                    itemView.findViewById(R.id.large_file_next));
             isListenerAttached = false;
             currentTabId = null;
             diffAdapter = null;
@@ -179,6 +194,8 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         }
 
         ViewHolder editorViewHolder = (ViewHolder) holder;
+        // A holder rebound at another position must not stay reachable under its old one
+        holders.values().remove(editorViewHolder);
         holders.put(position, editorViewHolder);
         if (position >= openTabs.size()) {
             Log.e(TAG, "Position " + position + " is out of bounds for openTabs size " + openTabs.size());
@@ -189,40 +206,54 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         String tabId = tabItem.getFile().getAbsolutePath();
         CodeEditor codeEditor = editorViewHolder.codeEditor;
         boolean isDiffTab = tabItem.getFile().getName().startsWith("DIFF_");
+        boolean isLargeFile = tabItem.isLargeFile();
+
+        if (tabItem.isLoading() || tabItem.isEvicted()) {
+            bindLoadingPlaceholder(editorViewHolder);
+            return;
+        }
+
+        if (!isLargeFile && editorViewHolder.largeFileViewer.isBound()) {
+            editorViewHolder.largeFileViewer.unbind();
+            editorViewHolder.currentTabId = null; // force a full reconfigure below
+        }
 
         // Only reconfigure if this is a different tab
         if (!tabId.equals(editorViewHolder.currentTabId)) {
             editorViewHolder.currentTabId = tabId;
 
-            // Configure the editor only for new tabs (skip heavy setup for DIFF_ tabs)
-            if (!isDiffTab) {
+            // Configure the editor only for new tabs (skip heavy setup for DIFF_ and large-file tabs)
+            if (isLargeFile) {
+                // LargeFileViewer.bind below sets up the editor
+            } else if (!isDiffTab) {
                 configureEditor(codeEditor, tabItem);
                 // Apply persistent flags
                 codeEditor.setWordwrap(tabItem.isWrapEnabled());
                 codeEditor.setEditable(!tabItem.isReadOnly());
             } else {
                 // For diff tabs, keep editor lightweight & disabled
-                codeEditor.setText("");
+                setEditorText(editorViewHolder, "", null);
                 codeEditor.setEditable(false);
             }
 
             // Set up content change listener only once per tab
             if (!editorViewHolder.isListenerAttached) {
-                codeEditor.subscribeEvent(io.github.rosemoe.sora.event.ContentChangeEvent.class, (event, unsubscribe) -> {
+                codeEditor.subscribeEvent(ContentChangeEvent.class, (event, unsubscribe) -> {
                     // Get the current tab item for this holder
                     int currentPos = editorViewHolder.getAdapterPosition();
                     if (currentPos != RecyclerView.NO_POSITION && currentPos < openTabs.size()) {
                         TabItem currentTabItem = openTabs.get(currentPos);
-                        String newContent = codeEditor.getText().toString();
-
-                        // Only update if content actually changed
-                        if (!currentTabItem.getContent().equals(newContent)) {
-                            // Update content immediately for responsive typing
-                            currentTabItem.setContent(newContent);
-                            currentTabItem.setModified(true);
-                            if (tabActionListener != null) {
-                                tabActionListener.onTabModifiedStateChanged();
-                            }
+                        // Text we set ourselves is already the tab's; a large-file tab's editor
+                        // holds a window, a loading or parked tab's a placeholder, a diff tab's nothing
+                        if (editorViewHolder.settingText || currentTabItem.isLargeFile() || currentTabItem.isLoading()
+                                || currentTabItem.isEvicted() || currentTabItem.getFile().getName().startsWith("DIFF_")) return;
+                        if (!applyEditorChange(currentTabItem, event, codeEditor)) return;
+                        editorViewHolder.boundDocument = currentTabItem.getDocument();
+                        editorViewHolder.boundVersion = currentTabItem.getDocument().getVersion();
+                        currentTabItem.setModified(true);
+                        if (tabActionListener != null) {
+                            tabActionListener.onTabModifiedStateChanged();
+                            tabActionListener.onTabContentChanged(currentTabItem);
                         }
                     }
                 });
@@ -230,10 +261,18 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
             }
         }
 
-        if (!isDiffTab) {
-            if (!codeEditor.getText().toString().equals(tabItem.getContent())) {
-                codeEditor.setText(tabItem.getContent());
+        if (isLargeFile) {
+            // Idempotent for the same document; a reloaded document rebinds
+            editorViewHolder.largeFileViewer.bind(tabItem);
+            editorViewHolder.boundDocument = null;
+        } else if (!isDiffTab) {
+            // The holder remembers which document version its editor shows, so a rebind
+            // neither copies nor compares the text unless the tab changed behind its back
+            PieceTable document = tabItem.getDocument();
+            if (editorViewHolder.boundDocument != document || editorViewHolder.boundVersion != document.getVersion()) {
+                setEditorText(editorViewHolder, tabItem.getContent(), document);
             }
+            applyPendingCursor(codeEditor, tabItem);
         }
 
         // Toggle between editor and diff view every bind to reflect latest state/content
@@ -247,10 +286,17 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
                 if (displayName.startsWith("DIFF_")) displayName = displayName.substring(5);
                 editorViewHolder.diffFilename.setText(displayName);
             }
-            String content = tabItem.getContent();
-            int[] counts = DiffUtils.countAddRemove(content);
-            if (editorViewHolder.diffAddedCount != null) editorViewHolder.diffAddedCount.setText("+" + counts[0]);
-            if (editorViewHolder.diffRemovedCount != null) editorViewHolder.diffRemovedCount.setText("-" + counts[1]);
+            DiffDocument document = diffDocumentFor(tabId, tabItem);
+            if (editorViewHolder.diffDocument != document) {
+                unbindDiffDocument(editorViewHolder);
+                editorViewHolder.diffDocument = document;
+                // Counts grow while the diff is parsed
+                if (!document.isComplete()) {
+                    editorViewHolder.diffCountListener = d -> bindDiffCounts(editorViewHolder, d);
+                    document.addListener(editorViewHolder.diffCountListener);
+                }
+            }
+            bindDiffCounts(editorViewHolder, document);
             // Toggle handlers
             if (editorViewHolder.diffToggleInline != null) {
                 editorViewHolder.diffToggleInline.setOnClickListener(v -> {
@@ -264,6 +310,7 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
                     if (editorViewHolder.diffRecyclerSplit != null) editorViewHolder.diffRecyclerSplit.setVisibility(View.VISIBLE);
                 });
             }
+            // Both views read the same parsed document; rebinding with it again is a no-op
             if (editorViewHolder.diffRecycler != null) {
                 editorViewHolder.diffRecycler.setVisibility(View.VISIBLE);
                 if (editorViewHolder.diffRecycler.getLayoutManager() == null) {
@@ -271,54 +318,25 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
                     editorViewHolder.diffRecycler.setHasFixedSize(true);
                     editorViewHolder.diffRecycler.setItemViewCacheSize(64);
                 }
-                // Parse and bind diff lines with LRU caching
-                String key = tabId;
-                int h = content != null ? content.hashCode() : 0;
-                java.util.List<DiffUtils.DiffLine> lines;
-                DiffCacheEntry entry = diffCache.get(key);
-                if (entry == null || entry.hash != h) {
-                    lines = DiffUtils.parseUnifiedDiff(content);
-                    DiffCacheEntry newEntry = new DiffCacheEntry();
-                    newEntry.lines = lines;
-                    newEntry.hash = h;
-                    diffCache.put(key, newEntry);
-                } else {
-                    lines = entry.lines;
-                }
                 if (editorViewHolder.diffAdapter == null) {
-                    editorViewHolder.diffAdapter = new InlineDiffAdapter(context, lines);
+                    editorViewHolder.diffAdapter = new InlineDiffAdapter(context, document);
                     editorViewHolder.diffRecycler.setAdapter(editorViewHolder.diffAdapter);
                 } else {
-                    editorViewHolder.diffAdapter.updateLines(lines);
+                    editorViewHolder.diffAdapter.setDocument(document);
                 }
             }
-            // Prepare split view adapter scaffold (to be fully wired by SplitDiffAdapter)
             if (editorViewHolder.diffRecyclerSplit != null) {
                 if (editorViewHolder.diffRecyclerSplit.getLayoutManager() == null) {
                     editorViewHolder.diffRecyclerSplit.setLayoutManager(new LinearLayoutManager(context));
                     editorViewHolder.diffRecyclerSplit.setHasFixedSize(true);
                     editorViewHolder.diffRecyclerSplit.setItemViewCacheSize(64);
                 }
-                // Bind split adapter data from same unified lines
-                String key = tabId;
-                int h = content != null ? content.hashCode() : 0;
-                java.util.List<DiffUtils.DiffLine> lines;
-                DiffCacheEntry entry = diffCache.get(key);
-                if (entry == null || entry.hash != h) {
-                    lines = DiffUtils.parseUnifiedDiff(content);
-                    DiffCacheEntry newEntry = new DiffCacheEntry();
-                    newEntry.lines = lines;
-                    newEntry.hash = h;
-                    diffCache.put(key, newEntry);
-                } else {
-                    lines = entry.lines;
-                }
                 SplitDiffAdapter split = (SplitDiffAdapter) editorViewHolder.diffRecyclerSplit.getAdapter();
                 if (split == null) {
-                    split = new SplitDiffAdapter(context, lines);
+                    split = new SplitDiffAdapter(context, document);
                     editorViewHolder.diffRecyclerSplit.setAdapter(split);
                 } else {
-                    split.setData(lines);
+                    split.setDocument(document);
                 }
             }
         } else {
@@ -330,6 +348,7 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
                 editorViewHolder.diffRecycler.setAdapter(null);
                 editorViewHolder.diffAdapter = null;
             }
+            unbindDiffDocument(editorViewHolder);
             if (editorViewHolder.diffRecyclerSplit != null) {
                 editorViewHolder.diffRecyclerSplit.setVisibility(View.GONE);
                 editorViewHolder.diffRecyclerSplit.setAdapter(null);
@@ -345,6 +364,127 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         }
     }
 
+    /**
+     * Shows an empty, read-only editor while the tab's file is read in the background, or while
+     * the tab is parked. Replacing the text also lets the editor drop its undo history. The
+     * holder forgets its tab so the real bind after loading runs the full configuration.
+     */
+    private void bindLoadingPlaceholder(ViewHolder holder) {
+        if (holder.largeFileViewer.isBound()) holder.largeFileViewer.unbind();
+        holder.currentTabId = null;
+        holder.codeEditor.setVisibility(View.VISIBLE);
+        if (holder.diffContainer != null) holder.diffContainer.setVisibility(View.GONE);
+        holder.codeEditor.setEditable(false);
+        if (holder.codeEditor.getText().length() > 0) setEditorText(holder, "", null);
+        holder.boundDocument = null;
+    }
+
+    private static void setEditorText(ViewHolder holder, String text, PieceTable document) {
+        holder.settingText = true;
+        try {
+            holder.codeEditor.setText(text);
+        } finally {
+            holder.settingText = false;
+        }
+        holder.boundDocument = document;
+        holder.boundVersion = document != null ? document.getVersion() : -1;
+    }
+
+    /**
+     * Applies {@code edits} to the tab at {@code position}: to its document, and to its editor
+     * text in place if the editor shows that document, so cursor, scroll position and undo
+     * history survive where replacing the text would reset them. Edits are ascending and
+     * disjoint, in the document's current offsets. Main thread only.
+     */
+    public void applyTabEdits(int position, List<ThreeWayMerge.Replacement> edits) {
+        if (position < 0 || position >= openTabs.size() || edits.isEmpty()) return;
+        TabItem tab = openTabs.get(position);
+        PieceTable document = tab.getDocument();
+        ViewHolder holder = holders.get(position);
+        Content text = null;
+        if (holder != null && tab.getFile().getAbsolutePath().equals(holder.currentTabId)
+                && holder.boundDocument == document && holder.boundVersion == document.getVersion()
+                && holder.codeEditor.getText().length() == document.length()) {
+            text = holder.codeEditor.getText();
+        }
+        if (text != null) {
+            holder.settingText = true;
+            text.beginBatchEdit();
+        }
+        try {
+            // Back to front, so the offsets of the edits still to go stay valid
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                ThreeWayMerge.Replacement edit = edits.get(i);
+                document.replace(edit.start, edit.end, edit.text);
+                if (text != null) {
+                    CharPosition start = text.getIndexer().getCharPosition(edit.start);
+                    CharPosition end = text.getIndexer().getCharPosition(edit.end);
+                    text.replace(start.line, start.column, end.line, end.column, edit.text);
+                }
+            }
+        } finally {
+            if (text != null) {
+                text.endBatchEdit();
+                holder.settingText = false;
+            }
+        }
+        if (text != null) {
+            holder.boundVersion = document.getVersion();
+        } else if (holder != null) {
+            // Bound to an older text; the rebind notices the version and resets it
+            notifyItemChanged(position);
+        }
+    }
+
+    /**
+     * Mirrors one editor change into the tab's piece table using the event's offsets, so a
+     * keystroke costs a piece edit rather than a copy of the whole text. Returns false if
+     * nothing changed.
+     */
+    private static boolean applyEditorChange(TabItem tab, ContentChangeEvent event, CodeEditor editor) {
+        PieceTable document = tab.getDocument();
+        int start = event.getChangeStart().index;
+        int end = event.getChangeEnd().index;
+        switch (event.getAction()) {
+            case ContentChangeEvent.ACTION_INSERT:
+                document.insert(start, event.getChangedText());
+                return true;
+            case ContentChangeEvent.ACTION_DELETE:
+                document.delete(start, end);
+                return true;
+            default:
+                // Whole-text replacement from somewhere other than this adapter
+                String text = editor.getText().toString();
+                if (text.contentEquals(document.snapshot())) return false;
+                tab.setContent(text);
+                return true;
+        }
+    }
+
+    private void applyPendingCursor(CodeEditor codeEditor, TabItem tabItem) {
+        int line = tabItem.getPendingCursorLine();
+        if (line < 0) return;
+        int column = tabItem.getPendingCursorColumn();
+        boolean restoreScroll = tabItem.hasPendingScroll();
+        tabItem.clearPendingCursor();
+        tabItem.setPendingScroll(false);
+        codeEditor.post(() -> {
+            int lineCount = codeEditor.getText().getLineCount();
+            int targetLine = Math.max(0, Math.min(line, lineCount - 1));
+            int targetColumn = Math.max(0, Math.min(column, codeEditor.getText().getColumnCount(targetLine)));
+            codeEditor.setSelection(targetLine, targetColumn, false);
+            if (restoreScroll) {
+                // Back where the tab was left rather than wherever the cursor scrolls into view
+                codeEditor.getScroller().forceFinished(true);
+                codeEditor.getScroller().startScroll(codeEditor.getOffsetX(), codeEditor.getOffsetY(),
+                        tabItem.getScrollX() - codeEditor.getOffsetX(), tabItem.getScrollY() - codeEditor.getOffsetY(), 0);
+                codeEditor.invalidate();
+            } else {
+                codeEditor.ensureSelectionVisible();
+            }
+        });
+    }
+
     @Override
     public long getItemId(int position) {
         if (position >= 0 && position < openTabs.size()) {
@@ -427,6 +567,22 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         return "";
     }
 
+    /**
+     * Initializes TextMate and loads the grammar for {@code fileName} so that creating the
+     * language on the main thread later only hits the registry cache. Safe to call from any
+     * thread; failures are left for configureEditor to handle.
+     */
+    public static void prepareLanguage(Context context, String fileName) {
+        String scope = resolveScopeForFile(fileName);
+        if (scope == null) return;
+        ensureTextMateInitialized(context);
+        try {
+            GrammarRegistry.getInstance().findGrammar(scope);
+        } catch (Throwable t) {
+            Log.w(TAG, "Could not preload grammar " + scope, t);
+        }
+    }
+
     private static synchronized void ensureTextMateInitialized(Context context) {
         if (textMateInitialized) return;
         try {
@@ -489,6 +645,7 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         if (position >= 0 && position < openTabs.size()) {
             int oldPosition = activeTabPosition;
             activeTabPosition = position;
+            if (oldPosition != position) saveViewState(oldPosition);
 
             // Notify both old and new positions for a more precise update
             notifyItemChanged(oldPosition);
@@ -500,6 +657,23 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         }
     }
 
+    /** Remembers cursor and scroll of the active tab, e.g. before the session is saved. */
+    public void saveActiveViewState() {
+        saveViewState(activeTabPosition);
+    }
+
+    /** Remembers cursor and scroll of the tab at {@code position} if its editor is bound. */
+    private void saveViewState(int position) {
+        if (position < 0 || position >= openTabs.size()) return;
+        TabItem tab = openTabs.get(position);
+        ViewHolder holder = holders.get(position);
+        if (holder == null || !tab.getFile().getAbsolutePath().equals(holder.currentTabId)
+                || tab.isLargeFile() || tab.isLoading() || tab.isEvicted()) return;
+        CodeEditor editor = holder.codeEditor;
+        tab.setViewState(editor.getCursor().getLeftLine(), editor.getCursor().getLeftColumn(),
+                editor.getOffsetX(), editor.getOffsetY());
+    }
+
     /**
      * Get the active tab position
      */
@@ -552,12 +726,18 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
     public void onViewRecycled(@NonNull RecyclerView.ViewHolder rawHolder) {
         if (rawHolder instanceof ViewHolder) {
             ViewHolder holder = (ViewHolder) rawHolder;
-            holders.remove(holder.getAdapterPosition());
+            holders.values().remove(holder);
+            holder.largeFileViewer.unbind();
+            holder.currentTabId = null;
             // Detach diff adapter to help GC
             if (holder.diffRecycler != null) {
                 holder.diffRecycler.setAdapter(null);
             }
+            if (holder.diffRecyclerSplit != null) {
+                holder.diffRecyclerSplit.setAdapter(null);
+            }
             holder.diffAdapter = null;
+            unbindDiffDocument(holder);
         }
         super.onViewRecycled(rawHolder);
     }
@@ -566,20 +746,53 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
         return holders.get(position);
     }
 
+    /**
+     * Returns the parsed diff for a diff tab from the app-wide {@link DiffDocument} cache,
+     * looking it up again only when the tab's text changed.
+     */
+    private DiffDocument diffDocumentFor(String tabId, TabItem tab) {
+        PieceTable source = tab.getDocument();
+        TabDiff memo = tabDiffs.get(tabId);
+        if (memo != null && memo.source == source && memo.version == source.getVersion()
+                && !memo.document.isCancelled()) {
+            return memo.document;
+        }
+        if (memo == null) {
+            memo = new TabDiff();
+            tabDiffs.put(tabId, memo);
+        }
+        memo.source = source;
+        memo.version = source.getVersion();
+        memo.document = DiffDocument.obtain(tab.getContent());
+        return memo.document;
+    }
+
+    private static void unbindDiffDocument(ViewHolder holder) {
+        if (holder.diffDocument != null && holder.diffCountListener != null) {
+            holder.diffDocument.removeListener(holder.diffCountListener);
+        }
+        holder.diffDocument = null;
+        holder.diffCountListener = null;
+    }
+
+    private static void bindDiffCounts(ViewHolder holder, DiffDocument document) {
+        if (holder.diffAddedCount != null) holder.diffAddedCount.setText("+" + document.getAddedCount());
+        if (holder.diffRemovedCount != null) holder.diffRemovedCount.setText("-" + document.getRemovedCount());
+    }
+
     /**
      * Purge any cached parsed diff for a specific file/tab.
      */
     public void purgeDiffCacheForFile(File file) {
         if (file == null) return;
-        String key = file.getAbsolutePath();
-        diffCache.remove(key);
+        tabDiffs.remove(file.getAbsolutePath());
     }
 
     /**
      * Clear all diff caches.
      */
     public void clearDiffCaches() {
-        diffCache.clear();
+        tabDiffs.clear();
     }
 
     /**
@@ -591,11 +804,16 @@ public class SimpleSoraTabAdapter extends RecyclerView.Adapter<RecyclerView.View
             if (vh != null && vh.diffRecycler != null) {
                 vh.diffRecycler.setAdapter(null);
             }
+            if (vh != null && vh.diffRecyclerSplit != null) {
+                vh.diffRecyclerSplit.setAdapter(null);
+            }
             if (vh != null) {
                 vh.diffAdapter = null;
+                unbindDiffDocument(vh);
             }
         }
         holders.clear();
         clearDiffCaches();
+        DiffDocument.clearCache();
     }
 }
\ No newline at end of file
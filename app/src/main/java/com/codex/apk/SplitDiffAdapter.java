@@ -2,9 +2,6 @@ package com.codex.apk;
 
 import android.content.Context;
 import android.graphics.Typeface;
-import android.text.SpannableStringBuilder;
-import android.text.Spanned;
-import android.text.style.BackgroundColorSpan;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,39 +10,65 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+import com.codex.apk.util.IntralineDiff;
+
 import java.util.List;
 
 /**
  * Split view diff adapter (GitHub-like side-by-side): pairs removed/added/context lines
- * with synchronized columns and intraline highlights.
+ * with synchronized columns and intraline highlights. Rows come from the split projection of
+ * a {@link DiffDocument} and appear as it is parsed; long unchanged runs start collapsed.
+ * Highlights are computed in the background by {@link IntralineHighlighter} and applied with
+ * a payload rebind once ready.
  */
-public class SplitDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class SplitDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> implements DiffDocument.Listener {
     private static final int TYPE_PAIR = 0;
     private static final int TYPE_EXPANDER = 1;
 
-    private static final int CONTEXT_COLLAPSE_THRESHOLD = 20;
-
     private final Context context;
-    private final List<BaseRow> visibleRows = new ArrayList<>();
-    private List<BaseRow> fullRows = new ArrayList<>();
+    private DiffDocument document;
+    private DiffRowMap rows;
+    private final IntralineHighlighter highlighter = new IntralineHighlighter(this::onIntralineReady);
 
-    public SplitDiffAdapter(Context context, List<DiffUtils.DiffLine> unified) {
+    public SplitDiffAdapter(Context context, DiffDocument document) {
         this.context = context;
-        setData(unified);
+        setDocument(document);
         setHasStableIds(false);
     }
 
-    public void setData(List<DiffUtils.DiffLine> unified) {
-        this.fullRows = buildRows(unified);
-        this.visibleRows.clear();
-        this.visibleRows.addAll(applyCollapse(this.fullRows));
+    public void setDocument(DiffDocument document) {
+        if (document == this.document) return;
+        if (this.document != null) this.document.removeListener(this);
+        highlighter.cancel();
+        this.document = document;
+        this.rows = new DiffRowMap(document.split());
+        document.addListener(this);
         notifyDataSetChanged();
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        document.addListener(this);
+    }
+
+    // Dropped by its RecyclerView; an unshared document nobody else reads stops parsing
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        document.removeListener(this);
+        highlighter.cancel();
+    }
+
+    @Override
+    public void onDiffAppended(DiffDocument document) {
+        if (document != this.document) return;
+        int start = rows.size();
+        int appended = rows.sync();
+        if (appended > 0) notifyItemRangeInserted(start, appended);
+    }
+
     @Override
     public int getItemViewType(int position) {
-        return (visibleRows.get(position) instanceof ExpanderRow) ? TYPE_EXPANDER : TYPE_PAIR;
+        return rows.isExpander(position) ? TYPE_EXPANDER : TYPE_PAIR;
     }
 
     @NonNull
@@ -61,20 +84,21 @@ public class SplitDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        BaseRow row = visibleRows.get(position);
         if (holder instanceof ExpanderVH) {
             ExpanderVH vh = (ExpanderVH) holder;
-            vh.bind((ExpanderRow) row);
-            vh.itemView.setOnClickListener(v -> expand((ExpanderRow) row));
+            vh.bind(rows.hiddenCount(position));
+            vh.itemView.setOnClickListener(v -> expand(vh.getBindingAdapterPosition()));
             return;
         }
         PairVH vh = (PairVH) holder;
-        PairRow pr = (PairRow) row;
+        int row = rows.row(position);
+        DiffUtils.DiffLine left = lineAt(document.split().left(row));
+        DiffUtils.DiffLine right = lineAt(document.split().right(row));
         // Line numbers
-        vh.tvOldLine.setText(pr.oldLineNumber > 0 ? String.valueOf(pr.oldLineNumber) : "");
-        vh.tvNewLine.setText(pr.newLineNumber > 0 ? String.valueOf(pr.newLineNumber) : "");
+        vh.tvOldLine.setText(left != null && left.oldLine != null ? String.valueOf(left.oldLine) : "");
+        vh.tvNewLine.setText(right != null && right.newLine != null ? String.valueOf(right.newLine) : "");
         // Backgrounds
-        if (pr.leftType == DiffUtils.LineType.REMOVED) {
+        if (isType(left, DiffUtils.LineType.REMOVED)) {
             vh.leftGutter.setBackgroundColor(context.getColor(R.color.color_border_diff_deleted));
             vh.leftContainer.setBackgroundColor(context.getColor(R.color.color_diff_deleted_bg));
             vh.tvOld.setTextColor(context.getColor(R.color.color_border_diff_deleted));
@@ -83,7 +107,7 @@ public class SplitDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHold
             vh.leftContainer.setBackgroundColor(context.getColor(R.color.surface));
             vh.tvOld.setTextColor(context.getColor(R.color.on_surface));
         }
-        if (pr.rightType == DiffUtils.LineType.ADDED) {
+        if (isType(right, DiffUtils.LineType.ADDED)) {
             vh.rightGutter.setBackgroundColor(context.getColor(R.color.color_border_diff_added));
             vh.rightContainer.setBackgroundColor(context.getColor(R.color.color_diff_added_bg));
             vh.tvNew.setTextColor(context.getColor(R.color.color_border_diff_added));
@@ -92,166 +116,63 @@ public class SplitDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHold
             vh.rightContainer.setBackgroundColor(context.getColor(R.color.surface));
             vh.tvNew.setTextColor(context.getColor(R.color.on_surface));
         }
-        // Intraline highlights for changed lines
-        if (pr.leftType == DiffUtils.LineType.REMOVED && pr.rightType == DiffUtils.LineType.ADDED) {
-            String[] marked = DiffUtils.computeIntraline(pr.oldText, pr.newText);
-            setIntraline(vh.tvOld, marked[0], context.getColor(R.color.color_border_diff_deleted));
-            setIntraline(vh.tvNew, marked[1], context.getColor(R.color.color_border_diff_added));
-        } else {
-            vh.tvOld.setTypeface(Typeface.MONOSPACE, Typeface.NORMAL);
-            vh.tvNew.setTypeface(Typeface.MONOSPACE, Typeface.NORMAL);
-            vh.tvOld.setText(pr.oldText != null ? pr.oldText : "");
-            vh.tvNew.setText(pr.newText != null ? pr.newText : "");
-        }
+        vh.tvOld.setTypeface(Typeface.MONOSPACE, Typeface.NORMAL);
+        vh.tvNew.setTypeface(Typeface.MONOSPACE, Typeface.NORMAL);
+        bindText(vh, row, left, right, position);
     }
 
     @Override
-    public int getItemCount() { return visibleRows.size(); }
-
-    private void expand(ExpanderRow exp) {
-        int idx = visibleRows.indexOf(exp);
-        if (idx < 0) return;
-        visibleRows.remove(idx);
-        visibleRows.addAll(idx, exp.hidden);
-        notifyItemRangeRemoved(idx, 1);
-        notifyItemRangeInserted(idx, exp.hidden.size());
-    }
-
-    private void setIntraline(TextView tv, String marked, int color) {
-        if (marked == null) { tv.setText(""); return; }
-        SpannableStringBuilder ssb = new SpannableStringBuilder();
-        int i = 0;
-        while (i < marked.length()) {
-            if (i + 2 <= marked.length() && marked.startsWith("<<", i)) {
-                int j = marked.indexOf(">>", i + 2);
-                if (j == -1) break;
-                String chunk = marked.substring(i + 2, j);
-                int start = ssb.length();
-                ssb.append(chunk);
-                ssb.setSpan(new BackgroundColorSpan(color), start, start + chunk.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                i = j + 2;
-                continue;
-            }
-            if (i + 2 <= marked.length() && marked.startsWith("[[", i)) {
-                int j = marked.indexOf("]]", i + 2);
-                if (j == -1) break;
-                String chunk = marked.substring(i + 2, j);
-                int start = ssb.length();
-                ssb.append(chunk);
-                ssb.setSpan(new BackgroundColorSpan(color), start, start + chunk.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                i = j + 2;
-                continue;
-            }
-            ssb.append(marked.charAt(i));
-            i++;
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (holder instanceof PairVH && payloads.contains(IntralineHighlighter.PAYLOAD)) {
+            int row = rows.row(position);
+            bindText((PairVH) holder, row, lineAt(document.split().left(row)), lineAt(document.split().right(row)), position);
+            return;
         }
-        tv.setText(ssb);
-        tv.setTypeface(Typeface.MONOSPACE, Typeface.NORMAL);
+        super.onBindViewHolder(holder, position, payloads);
     }
 
-    // Data models
-    private static abstract class BaseRow {}
-
-    private static class PairRow extends BaseRow {
-        final int oldLineNumber;
-        final int newLineNumber;
-        final String oldText;
-        final String newText;
-        final DiffUtils.LineType leftType;
-        final DiffUtils.LineType rightType;
-        PairRow(int oldLn, int newLn, String oldText, String newText,
-                DiffUtils.LineType leftType, DiffUtils.LineType rightType) {
-            this.oldLineNumber = oldLn;
-            this.newLineNumber = newLn;
-            this.oldText = oldText;
-            this.newText = newText;
-            this.leftType = leftType;
-            this.rightType = rightType;
+    private void bindText(PairVH vh, int row, DiffUtils.DiffLine left, DiffUtils.DiffLine right, int position) {
+        String oldText = left != null ? left.text : "";
+        String newText = right != null ? right.text : "";
+        // Intraline highlights for changed lines, plain text until they are ready
+        IntralineDiff.Result intraline = null;
+        if (isType(left, DiffUtils.LineType.REMOVED) && isType(right, DiffUtils.LineType.ADDED)) {
+            intraline = highlighter.get(oldText, newText, row, position);
+        }
+        if (intraline != null) {
+            vh.tvOld.setText(IntralineHighlighter.highlight("", oldText, intraline.oldRanges,
+                    context.getColor(R.color.color_border_diff_deleted)));
+            vh.tvNew.setText(IntralineHighlighter.highlight("", newText, intraline.newRanges,
+                    context.getColor(R.color.color_border_diff_added)));
+        } else {
+            vh.tvOld.setText(oldText);
+            vh.tvNew.setText(newText);
         }
     }
 
-    private static class ExpanderRow extends BaseRow {
-        final int hiddenCount;
-        final List<BaseRow> hidden;
-        ExpanderRow(List<BaseRow> hidden) {
-            this.hidden = hidden;
-            this.hiddenCount = hidden != null ? hidden.size() : 0;
-        }
+    private void onIntralineReady(Object row, int positionHint) {
+        int r = (Integer) row;
+        int position = positionHint < rows.size() && !rows.isExpander(positionHint) && rows.row(positionHint) == r
+                ? positionHint : rows.positionOf(r);
+        if (position >= 0) notifyItemChanged(position, IntralineHighlighter.PAYLOAD);
     }
 
-    private List<BaseRow> buildRows(List<DiffUtils.DiffLine> unified) {
-        List<BaseRow> out = new ArrayList<>();
-        if (unified == null) return out;
-        List<DiffUtils.DiffLine> pendRem = new ArrayList<>();
-        List<DiffUtils.DiffLine> pendAdd = new ArrayList<>();
-        Runnable flush = () -> {
-            int n = Math.max(pendRem.size(), pendAdd.size());
-            for (int i = 0; i < n; i++) {
-                DiffUtils.DiffLine r = i < pendRem.size() ? pendRem.get(i) : null;
-                DiffUtils.DiffLine a = i < pendAdd.size() ? pendAdd.get(i) : null;
-                int oldLn = r != null && r.oldLine != null ? r.oldLine : 0;
-                int newLn = a != null && a.newLine != null ? a.newLine : 0;
-                String oldTx = r != null ? r.text : "";
-                String newTx = a != null ? a.text : "";
-                DiffUtils.LineType lt = r != null ? DiffUtils.LineType.REMOVED : DiffUtils.LineType.CONTEXT;
-                DiffUtils.LineType rt = a != null ? DiffUtils.LineType.ADDED : DiffUtils.LineType.CONTEXT;
-                out.add(new PairRow(oldLn, newLn, oldTx, newTx, lt, rt));
-            }
-            pendRem.clear();
-            pendAdd.clear();
-        };
+    @Override
+    public int getItemCount() { return rows.size(); }
 
-        for (DiffUtils.DiffLine d : unified) {
-            switch (d.type) {
-                case HEADER:
-                    flush.run();
-                    break;
-                case REMOVED:
-                    pendRem.add(d);
-                    break;
-                case ADDED:
-                    pendAdd.add(d);
-                    break;
-                case CONTEXT:
-                    flush.run();
-                    out.add(new PairRow(d.oldLine != null ? d.oldLine : 0, d.newLine != null ? d.newLine : 0,
-                            d.text, d.text, DiffUtils.LineType.CONTEXT, DiffUtils.LineType.CONTEXT));
-                    break;
-            }
-        }
-        flush.run();
-        return out;
+    private void expand(int position) {
+        if (position == RecyclerView.NO_POSITION || !rows.isExpander(position)) return;
+        int shown = rows.expand(position);
+        notifyItemRangeRemoved(position, 1);
+        notifyItemRangeInserted(position, shown);
     }
 
-    private List<BaseRow> applyCollapse(List<BaseRow> rows) {
-        List<BaseRow> out = new ArrayList<>();
-        List<BaseRow> contextBuffer = new ArrayList<>();
-        for (BaseRow br : rows) {
-            PairRow pr = (br instanceof PairRow) ? (PairRow) br : null;
-            boolean isContext = pr != null && pr.leftType == DiffUtils.LineType.CONTEXT && pr.rightType == DiffUtils.LineType.CONTEXT;
-            if (isContext) {
-                contextBuffer.add(br);
-                continue;
-            }
-            // flush buffer
-            if (!contextBuffer.isEmpty()) {
-                if (contextBuffer.size() > CONTEXT_COLLAPSE_THRESHOLD) {
-                    out.add(new ExpanderRow(new ArrayList<>(contextBuffer)));
-                } else {
-                    out.addAll(contextBuffer);
-                }
-                contextBuffer.clear();
-            }
-            out.add(br);
-        }
-        if (!contextBuffer.isEmpty()) {
-            if (contextBuffer.size() > CONTEXT_COLLAPSE_THRESHOLD) {
-                out.add(new ExpanderRow(new ArrayList<>(contextBuffer)));
-            } else {
-                out.addAll(contextBuffer);
-            }
-        }
-        return out;
+    private DiffUtils.DiffLine lineAt(int index) {
+        return index >= 0 ? document.getLine(index) : null;
+    }
+
+    private static boolean isType(DiffUtils.DiffLine line, DiffUtils.LineType type) {
+        return line != null && line.type == type;
     }
 
     static class PairVH extends RecyclerView.ViewHolder {
@@ -276,8 +197,8 @@ public class SplitDiffAdapter extends RecyclerView.Adapter<RecyclerView.ViewHold
             super(itemView);
             tv = itemView.findViewById(R.id.tv_expander);
         }
-        void bind(ExpanderRow row) {
-            tv.setText("… " + row.hiddenCount + " unchanged lines. Tap to expand …");
+        void bind(int hiddenCount) {
+            tv.setText("… " + hiddenCount + " unchanged lines. Tap to expand …");
         }
     }
 }
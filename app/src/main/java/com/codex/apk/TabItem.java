@@ -1,18 +1,37 @@
 package com.codex.apk;
 
+import com.codex.apk.util.LargeFileDocument;
+import com.codex.apk.util.PieceTable;
+
 import java.io.File;
 
 public class TabItem {
     private File file;
-    private String content;
+    // Edited incrementally from editor change events; readers take snapshots
+    private final PieceTable document;
     private boolean modified;
     private boolean lastNotifiedModifiedState;
     private boolean wrapEnabled = false;
     private boolean readOnly = false;
+    // Large-file mode: content stays empty and the mapped document is shown through a window
+    private LargeFileDocument largeDocument;
+    private int largeFileTopLine;
+    // Set while the content is still being read in the background
+    private boolean loading;
+    private int pendingCursorLine = -1;
+    private int pendingCursorColumn;
+    private boolean pendingScroll;
+    // Editor view state, captured when the tab stops being the active page
+    private int cursorLine;
+    private int cursorColumn;
+    private int scrollX;
+    private int scrollY;
+    // Set while the text is parked on disk to keep memory bounded; see TabResidency
+    private boolean evicted;
 
     public TabItem(File file, String initialContent) {
         this.file = file;
-        this.content = initialContent;
+        this.document = new PieceTable(initialContent);
         this.modified = false;
         this.lastNotifiedModifiedState = false;
     }
@@ -24,6 +43,12 @@ public class TabItem {
      */
     public boolean reloadContent(FileManager fileManager) {
         try {
+            if (largeDocument != null) {
+                // The old mapping may run past the file's new end; nothing may read it again
+                largeDocument.close();
+                largeDocument = LargeFileDocument.open(file);
+                return true;
+            }
             String newContent = fileManager.readFileContent(file);
             setContent(newContent);
             setModified(false); // After reloading, it's no longer modified
@@ -38,10 +63,18 @@ public class TabItem {
     public File getFile() { return file; }
     public void setFile(File file) { this.file = file; }
     public String getFileName() { return file.getName(); }
-    public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
+    /** Full text; built once per edit version and cached on the snapshot. */
+    public String getContent() { return document.snapshot().toString(); }
+    /** Replaces the whole text, e.g. after a reload from disk. */
+    public void setContent(String content) { document.reset(content); }
+    /** Immutable view of the current text for saving, diffing or prompts, without a copy. */
+    public PieceTable.Snapshot getSnapshot() { return document.snapshot(); }
+    public PieceTable getDocument() { return document; }
     public boolean isModified() { return modified; }
-    public void setModified(boolean modified) { this.modified = modified; }
+    public void setModified(boolean modified) {
+        this.modified = modified;
+        if (!modified) document.markClean();
+    }
     public boolean getLastNotifiedModifiedState() { return lastNotifiedModifiedState; }
     public void setLastNotifiedModifiedState(boolean lastNotifiedModifiedState) { this.lastNotifiedModifiedState = lastNotifiedModifiedState; }
 
@@ -50,4 +83,44 @@ public class TabItem {
 
     public boolean isReadOnly() { return readOnly; }
     public void setReadOnly(boolean readOnly) { this.readOnly = readOnly; }
+
+    public boolean isLargeFile() { return largeDocument != null; }
+    public LargeFileDocument getLargeDocument() { return largeDocument; }
+    public void setLargeDocument(LargeFileDocument largeDocument) { this.largeDocument = largeDocument; }
+    public int getLargeFileTopLine() { return largeFileTopLine; }
+    public void setLargeFileTopLine(int largeFileTopLine) { this.largeFileTopLine = largeFileTopLine; }
+
+    public boolean isLoading() { return loading; }
+    public void setLoading(boolean loading) { this.loading = loading; }
+
+    /** Cursor position to apply once the tab's editor has its content. */
+    public void setPendingCursor(int line, int column) {
+        this.pendingCursorLine = line;
+        this.pendingCursorColumn = column;
+    }
+    public int getPendingCursorLine() { return pendingCursorLine; }
+    public int getPendingCursorColumn() { return pendingCursorColumn; }
+    public void clearPendingCursor() { this.pendingCursorLine = -1; }
+    /** Whether the saved scroll offset should be restored along with the pending cursor. */
+    public boolean hasPendingScroll() { return pendingScroll; }
+    public void setPendingScroll(boolean pendingScroll) { this.pendingScroll = pendingScroll; }
+
+    public void setViewState(int cursorLine, int cursorColumn, int scrollX, int scrollY) {
+        this.cursorLine = cursorLine;
+        this.cursorColumn = cursorColumn;
+        this.scrollX = scrollX;
+        this.scrollY = scrollY;
+    }
+    public int getCursorLine() { return cursorLine; }
+    public int getCursorColumn() { return cursorColumn; }
+    public int getScrollX() { return scrollX; }
+    public int getScrollY() { return scrollY; }
+
+    public boolean isEvicted() { return evicted; }
+    public void setEvicted(boolean evicted) { this.evicted = evicted; }
+
+    /** Releases resources held by the tab once it is closed. */
+    public void release() {
+        if (largeDocument != null) largeDocument.close();
+    }
 }
@@ -3,7 +3,9 @@ package com.codex.apk;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.codex.apk.util.FileChangeBus;
 import com.codex.apk.util.FileOps;
+import com.codex.apk.util.SymbolIndex;
 
 import java.io.File;
 
@@ -17,6 +19,8 @@ import okhttp3.Response;
  */
 public class ToolExecutor {
     private static final OkHttpClient httpClient = new OkHttpClient();
+    // How long findSymbol waits for a freshly opened project's first index build
+    private static final long SYMBOL_INDEX_WAIT_MS = 15_000;
 
     public static JsonObject execute(File projectDir, String name, JsonObject args) {
         JsonObject result = new JsonObject();
@@ -44,6 +48,7 @@ public class ToolExecutor {
                     String path = args.get("path").getAsString();
                     String content = args.get("content").getAsString();
                     FileOps.createFile(projectDir, path, content);
+                    FileChangeBus.forProject(projectDir).publish(new File(projectDir, path), FileChangeBus.Type.CREATED);
                     result.addProperty("ok", true);
                     result.addProperty("message", "File created: " + path);
                     break;
@@ -51,7 +56,9 @@ public class ToolExecutor {
                 case "updateFile": {
                     String path = args.get("path").getAsString();
                     String content = args.get("content").getAsString();
+                    String before = FileOps.readFile(projectDir, path);
                     FileOps.updateFile(projectDir, path, content);
+                    publishUpdate(projectDir, path, before, content);
                     result.addProperty("ok", true);
                     result.addProperty("message", "File updated: " + path);
                     break;
@@ -59,6 +66,7 @@ public class ToolExecutor {
                 case "deleteFile": {
                     String path = args.get("path").getAsString();
                     boolean deleted = FileOps.deleteRecursively(new File(projectDir, path));
+                    FileChangeBus.forProject(projectDir).publish(new File(projectDir, path), FileChangeBus.Type.DELETED);
                     result.addProperty("ok", deleted);
                     result.addProperty("message", "Deleted: " + path);
                     break;
@@ -67,6 +75,9 @@ public class ToolExecutor {
                     String oldPath = args.get("oldPath").getAsString();
                     String newPath = args.get("newPath").getAsString();
                     boolean ok = FileOps.renameFile(projectDir, oldPath, newPath);
+                    if (ok) {
+                        FileChangeBus.forProject(projectDir).publishRename(new File(projectDir, oldPath), new File(projectDir, newPath));
+                    }
                     result.addProperty("ok", ok);
                     result.addProperty("message", "Renamed to: " + newPath);
                     break;
@@ -74,13 +85,15 @@ public class ToolExecutor {
                 case "fixLint": {
                     String path = args.get("path").getAsString();
                     boolean aggressive = args.has("aggressive") && args.get("aggressive").getAsBoolean();
-                    String fixed = FileOps.autoFix(projectDir, path, aggressive);
-                    if (fixed == null) {
+                    String before = FileOps.readFile(projectDir, path);
+                    if (before == null) {
                         result.addProperty("ok", false);
                         result.addProperty("error", "File not found");
                         break;
                     }
+                    String fixed = FileOps.autoFix(path, before, aggressive);
                     FileOps.updateFile(projectDir, path, fixed);
+                    publishUpdate(projectDir, path, before, fixed);
                     result.addProperty("ok", true);
                     result.addProperty("message", "Applied basic lint fixes");
                     break;
@@ -161,6 +174,21 @@ public class ToolExecutor {
                     result.add("results", results);
                     break;
                 }
+                case "findSymbol": {
+                    String query = args.get("query").getAsString();
+                    String kindArg = args.has("kind") ? args.get("kind").getAsString() : "any";
+                    int maxResults = args.has("maxResults") ? Math.max(1, Math.min(500, args.get("maxResults").getAsInt())) : 50;
+                    SymbolIndex index = SymbolIndex.forProject(projectDir);
+                    // Kept current per file by FileChangeBus; only the first build is waited for
+                    index.awaitInitialBuild(SYMBOL_INDEX_WAIT_MS);
+                    JsonArray symbols = new JsonArray();
+                    for (SymbolIndex.Symbol s : index.find(query, SymbolIndex.Kind.fromLabel(kindArg), maxResults)) {
+                        symbols.add(s.toJson());
+                    }
+                    result.addProperty("ok", true);
+                    result.add("symbols", symbols);
+                    break;
+                }
                 default: {
                     result.addProperty("ok", false);
                     result.addProperty("error", "Unknown tool: " + name);
@@ -173,6 +201,17 @@ public class ToolExecutor {
         return result;
     }
 
+    /**
+     * Publishes a tool's rewrite of a file with its text before and after, so open tabs with
+     * unsaved edits merge it instead of keeping their older text; a new file is just created.
+     */
+    private static void publishUpdate(File projectDir, String path, String before, String after) {
+        FileChangeBus bus = FileChangeBus.forProject(projectDir);
+        File file = new File(projectDir, path);
+        if (before == null) bus.publish(file, FileChangeBus.Type.CREATED);
+        else bus.publishEdit(file, before, after);
+    }
+
     /** Build the tool_result continuation payload matching our prompt contract. */
     public static String buildToolResultContinuation(JsonArray results) {
         JsonObject payload = new JsonObject();
@@ -130,7 +130,7 @@ public class ToolSpec {
         // patchFile
         tools.add(new ToolSpec(
                 "patchFile",
-                "Apply a unified diff patch to a file in the project workspace.",
+                "Apply a unified diff patch to a file in the project workspace. A git-style diff covering several files (including new, deleted and renamed files) is applied to all of them or none.",
                 buildSchema(
                         new String[]{"path", "diffPatch"},
                         new String[]{"string", "string"},
@@ -178,6 +178,7 @@ public class ToolSpec {
         java.util.List<ToolSpec> tools = defaultFileTools();
         tools.add(specReadUrlContent());
         tools.add(specGrepSearch());
+        tools.add(specFindSymbol());
         return tools;
     }
 
@@ -218,6 +219,26 @@ public class ToolSpec {
         );
     }
 
+    /**
+     * Helper spec: findSymbol
+     * Precise lookup of indexed HTML ids/classes, CSS selectors/variables/keyframes and JS declarations.
+     */
+    public static ToolSpec specFindSymbol() {
+        return new ToolSpec(
+                "findSymbol",
+                "Find where an HTML id/class, CSS selector/custom property/keyframes or JS function/class/export is defined. Returns file, line and column; prefer this over grepSearch for named symbols.",
+                buildSchema(
+                        new String[]{"query", "kind", "maxResults"},
+                        new String[]{"string", "string", "integer"},
+                        new String[]{
+                                "Symbol name (e.g. 'navbar', '.btn-primary', '--accent', 'initMenu')",
+                                "One of id, class, selector, cssVariable, keyframes, function, jsClass, export, or 'any'",
+                                "Maximum number of results"
+                        }
+                )
+        );
+    }
+
     /**
      * Enhanced schema builder with descriptions
      */
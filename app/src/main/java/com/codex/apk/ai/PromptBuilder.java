@@ -2,6 +2,7 @@ package com.codex.apk.ai;
 
 import com.codex.apk.ChatMessage;
 import com.codex.apk.TabItem;
+import com.codex.apk.util.PieceTable;
 
 import java.io.File;
 import java.util.Deque;
@@ -30,7 +31,10 @@ public class PromptBuilder {
         if (activeTab != null) {
             prompt.append("- Active file: ").append(activeTab.getFileName()).append("\\n");
             prompt.append("- Active file content (truncated):\\n---\\n");
-            prompt.append(safeTruncate(activeTab.getContent(), 2000)).append("\\n---\\n");
+            // Read only the head of the snapshot rather than materializing the whole file
+            PieceTable.Snapshot snapshot = activeTab.getSnapshot();
+            String head = snapshot.substring(0, Math.min(snapshot.length(), 2001));
+            prompt.append(safeTruncate(head, 2000)).append("\\n---\\n");
         }
         prompt.append("Proceed now with the step. Return only the JSON.\\n");
         return prompt.toString();
@@ -64,9 +64,7 @@ public class AiActionApplier {
                     if (aiChatFragment != null) {
                         aiChatFragment.updateMessage(messagePosition, message);
                     }
-                    // Refresh tabs and file tree
-                    activity.tabManager.refreshOpenTabsAfterAi();
-                    activity.loadFileTree();
+                    // Tabs and file tree refresh once from the project's FileChangeBus batch
                 });
             } catch (Exception e) {
                 Log.e(TAG, "Error applying AI actions: " + e.getMessage(), e);
@@ -118,8 +116,6 @@ public class AiActionApplier {
                 message.setStatus(ChatMessage.STATUS_ACCEPTED);
                 AIChatFragment frag = activity.getAiChatFragment();
                 if (frag != null) frag.updateMessage(messagePosition, message);
-                activity.tabManager.refreshOpenTabsAfterAi();
-                activity.loadFileTree();
                 activity.showToast(finalAnyFailed ? "Agent steps completed with issues" : "Agent step applied");
                 if (planExecutor != null && planExecutor.isExecutingPlan()) {
                     planExecutor.onStepActionsApplied();
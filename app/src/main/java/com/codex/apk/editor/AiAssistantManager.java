@@ -120,7 +120,10 @@ public class AiAssistantManager implements AIAssistant.AIActionListener, com.cod
         String currentFileContent = "";
         String currentFileName = "";
         if (activeTabItem != null) {
-            currentFileContent = activeTabItem.getContent();
+            // Large files are sent as their opening lines rather than megabytes of context
+            currentFileContent = activeTabItem.isLargeFile()
+                    ? activeTabItem.getLargeDocument().readLines(0, 200)
+                    : activeTabItem.getContent();
             currentFileName = activeTabItem.getFileName();
         }
 
@@ -0,0 +1,260 @@
+package com.codex.apk.editor;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.codex.apk.FileManager;
+import com.codex.apk.TabItem;
+import com.codex.apk.util.PieceTable;
+import com.codex.apk.util.SwapJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Background autosave for edited tabs. Shortly after typing pauses, the ranges changed since
+ * the last record are appended to the tab's swap journal; once the tab has been idle a little
+ * longer its file is written (temp file + rename) and the tab becomes clean again. Journals
+ * left behind by a crash are replayed by {@link #recover} on the next launch.
+ *
+ * Scheduling happens on the main thread. Every write goes through one IO thread, so writes for
+ * a tab stay in order and a burst of edits costs one journal record, not one per keystroke.
+ */
+class Autosave {
+    private static final String TAG = "Autosave";
+
+    private static final long JOURNAL_DELAY_MS = 300;
+    private static final long IDLE_SAVE_MS = 2000;
+    // A journal is restarted from a checkpoint once its records outgrow this multiple of the text
+    private static final int COMPACT_FACTOR = 2;
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Autosave");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Told on the main thread when a tab was written and is clean again. */
+    interface Listener {
+        void onAutosaved(TabItem tab);
+    }
+
+    private static final class Session {
+        final Runnable journalTask;
+        final Runnable saveTask;
+        SwapJournal journal; // IO thread only; null until the first checkpoint
+        int saveGeneration; // guarded by the session; bumped to call off queued idle saves
+
+        Session(Runnable journalTask, Runnable saveTask) {
+            this.journalTask = journalTask;
+            this.saveTask = saveTask;
+        }
+    }
+
+    private final File swapDir;
+    private final FileManager fileManager;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<TabItem, Session> sessions = new HashMap<>();
+
+    Autosave(Context context, File projectDir, FileManager fileManager, Listener listener) {
+        String key = projectDir != null ? Integer.toHexString(projectDir.getAbsolutePath().hashCode()) : "default";
+        // Not the cache dir: these have to survive until the next launch
+        this.swapDir = new File(new File(context.getFilesDir(), "swap"), key);
+        this.fileManager = fileManager;
+        this.listener = listener;
+    }
+
+    /** Called for every edit of {@code tab}; restarts its debounce timers. */
+    void onEdited(TabItem tab) {
+        if (!canAutosave(tab)) return;
+        Session session = sessionFor(tab);
+        mainHandler.removeCallbacks(session.journalTask);
+        mainHandler.removeCallbacks(session.saveTask);
+        mainHandler.postDelayed(session.journalTask, JOURNAL_DELAY_MS);
+        mainHandler.postDelayed(session.saveTask, IDLE_SAVE_MS);
+    }
+
+    /** Records pending edits of every tab now, e.g. before tabs are parked. */
+    void flushJournals() {
+        for (TabItem tab : new ArrayList<>(sessions.keySet())) {
+            Session session = sessions.get(tab);
+            mainHandler.removeCallbacks(session.journalTask);
+            journal(tab);
+        }
+    }
+
+    /** Journals and saves {@code tab} now instead of waiting for it to go idle. */
+    void flush(TabItem tab) {
+        if (!canAutosave(tab) || !tab.isModified()) return;
+        Session session = sessionFor(tab);
+        mainHandler.removeCallbacks(session.journalTask);
+        mainHandler.removeCallbacks(session.saveTask);
+        journal(tab);
+        save(tab);
+    }
+
+    /**
+     * Forgets {@code tab}'s pending autosave and deletes its journal: it was saved, reloaded or
+     * closed (in which case unsaved edits were deliberately dropped).
+     */
+    void discard(TabItem tab) {
+        Session session = sessions.remove(tab);
+        if (session != null) {
+            mainHandler.removeCallbacks(session.journalTask);
+            mainHandler.removeCallbacks(session.saveTask);
+        }
+        File swapFile = swapFileFor(tab.getFile());
+        io.execute(swapFile::delete);
+    }
+
+    /**
+     * Calls off any idle save queued for {@code tab}, waiting for one already writing. Used
+     * before a save that writes newer text, which a queued idle save must not overwrite.
+     */
+    void supersede(TabItem tab) {
+        Session session = sessions.get(tab);
+        if (session == null) return;
+        mainHandler.removeCallbacks(session.saveTask);
+        synchronized (session) {
+            session.saveGeneration++;
+        }
+    }
+
+    private Session sessionFor(TabItem tab) {
+        Session session = sessions.get(tab);
+        if (session == null) {
+            session = new Session(() -> journal(tab), () -> save(tab));
+            sessions.put(tab, session);
+        }
+        return session;
+    }
+
+    private static boolean canAutosave(TabItem tab) {
+        // Parked, loading and large tabs have no editable text in memory; diff tabs no file
+        return !tab.isEvicted() && !tab.isLoading() && !tab.isLargeFile()
+                && !tab.getFile().getName().startsWith("DIFF_");
+    }
+
+    // ===== Journal =====
+
+    private void journal(TabItem tab) {
+        Session session = sessions.get(tab);
+        if (session == null || !canAutosave(tab)) return;
+        PieceTable document = tab.getDocument();
+        if (!document.hasDirtyRanges()) return;
+        PieceTable.Snapshot text = document.snapshot();
+        List<int[]> ranges = document.getDirtyRanges();
+        // From here on the piece table journals edits relative to this record
+        document.markClean();
+        String path = tab.getFile().getAbsolutePath();
+        File swapFile = swapFileFor(tab.getFile());
+        io.execute(() -> {
+            try {
+                SwapJournal journal = session.journal;
+                if (journal == null || outweighs(ranges, text.length())
+                        || journal.size() > Math.max(COMPACT_MIN_BYTES, (long) text.length() * COMPACT_FACTOR)) {
+                    session.journal = SwapJournal.create(swapFile, path, text);
+                } else {
+                    journal.append(ranges, text);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not journal " + path, e);
+                session.journal = null; // the next record starts over with a checkpoint
+            }
+        });
+    }
+
+    /** Whether the changed text is so large a checkpoint costs about the same. */
+    private static boolean outweighs(List<int[]> ranges, int textLength) {
+        long changed = 0;
+        for (int[] r : ranges) changed += r[1] - r[0];
+        return changed * 2 >= textLength;
+    }
+
+    // ===== Idle save =====
+
+    private void save(TabItem tab) {
+        Session session = sessions.get(tab);
+        if (session == null || !canAutosave(tab) || !tab.isModified()) return;
+        PieceTable.Snapshot text = tab.getSnapshot();
+        File file = tab.getFile();
+        int generation;
+        synchronized (session) {
+            generation = session.saveGeneration;
+        }
+        io.execute(() -> {
+            try {
+                synchronized (session) {
+                    if (session.saveGeneration != generation) return;
+                    fileManager.writeFileContent(file, text);
+                }
+            } catch (IOException e) {
+                // The journal still has the edits; the next idle period tries again
+                Log.w(TAG, "Autosave failed for " + file.getAbsolutePath(), e);
+                return;
+            }
+            mainHandler.post(() -> {
+                // Closed, saved or discarded meanwhile, or edited again since the snapshot
+                if (sessions.get(tab) != session || tab.isEvicted()
+                        || tab.getDocument().getVersion() != text.getVersion()) return;
+                tab.setModified(false);
+                discard(tab);
+                listener.onAutosaved(tab);
+            });
+        });
+    }
+
+    // ===== Recovery =====
+
+    /**
+     * Replays journals left by a previous run, skipping files with modified tabs in
+     * {@code openTabs} (their text is newer, e.g. after a configuration change). {@code onRecovered} gets each file
+     * whose recovered text differs from what is on disk, on the main thread; journals that
+     * recover nothing new are deleted.
+     */
+    void recover(List<TabItem> openTabs, BiConsumer<File, String> onRecovered) {
+        Set<String> open = new HashSet<>();
+        for (TabItem tab : openTabs) {
+            if (tab.isModified()) open.add(tab.getFile().getAbsolutePath());
+        }
+        io.execute(() -> {
+            File[] swaps = swapDir.listFiles((dir, name) -> name.endsWith(".swp"));
+            if (swaps == null) return;
+            for (File swap : swaps) {
+                SwapJournal.Recovered recovered = SwapJournal.recover(swap);
+                if (recovered == null) {
+                    swap.delete();
+                    continue;
+                }
+                if (open.contains(recovered.path)) continue;
+                File file = new File(recovered.path);
+                try {
+                    if (file.isFile() && recovered.text.equals(fileManager.readFileContent(file))) {
+                        swap.delete();
+                        continue;
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not compare recovered text with " + file, e);
+                }
+                mainHandler.post(() -> onRecovered.accept(file, recovered.text));
+            }
+        });
+    }
+
+    private File swapFileFor(File file) {
+        return new File(swapDir, Integer.toHexString(file.getAbsolutePath().hashCode()) + ".swp");
+    }
+}
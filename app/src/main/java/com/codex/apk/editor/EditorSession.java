@@ -0,0 +1,178 @@
+package com.codex.apk.editor;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * What the editor looked like when a project was last left: open tabs with their cursor and
+ * scroll, the active tab and page, expanded tree directories and the tail of the chat. Kept in
+ * a small binary file so reopening the project can draw all of it before anything is read
+ * from the project itself; tabs then load lazily as they are shown.
+ */
+public final class EditorSession {
+    private static final String TAG = "EditorSession";
+
+    private static final int MAGIC = 0x43584553; // "CXES"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "EditorSession");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** One open tab. */
+    public static final class Tab {
+        public final String path;
+        public final int cursorLine;
+        public final int cursorColumn;
+        public final int scrollX;
+        public final int scrollY;
+        public final boolean wrap;
+        public final boolean readOnly;
+
+        public Tab(String path, int cursorLine, int cursorColumn, int scrollX, int scrollY, boolean wrap, boolean readOnly) {
+            this.path = path;
+            this.cursorLine = cursorLine;
+            this.cursorColumn = cursorColumn;
+            this.scrollX = scrollX;
+            this.scrollY = scrollY;
+            this.wrap = wrap;
+            this.readOnly = readOnly;
+        }
+    }
+
+    private final List<Tab> tabs;
+    private final int activeTab;
+    private final int mainPage;
+    private final Set<String> expandedPaths;
+    private final String chatWindowJson; // may be null
+
+    public EditorSession(List<Tab> tabs, int activeTab, int mainPage, Set<String> expandedPaths, String chatWindowJson) {
+        this.tabs = Collections.unmodifiableList(new ArrayList<>(tabs));
+        this.activeTab = activeTab;
+        this.mainPage = mainPage;
+        this.expandedPaths = Collections.unmodifiableSet(new HashSet<>(expandedPaths));
+        this.chatWindowJson = chatWindowJson;
+    }
+
+    public List<Tab> getTabs() { return tabs; }
+    /** Index into {@link #getTabs()}, or -1. */
+    public int getActiveTab() { return activeTab; }
+    /** Page of the editor's main pager (chat or code). */
+    public int getMainPage() { return mainPage; }
+    public Set<String> getExpandedPaths() { return expandedPaths; }
+    /** The last chat messages as history JSON, or null; see AIChatHistoryManager. */
+    public String getChatWindowJson() { return chatWindowJson; }
+
+    // ===== Persistence =====
+
+    private static File sessionFile(Context context, File projectDir) {
+        String key = Integer.toHexString(projectDir.getAbsolutePath().hashCode());
+        return new File(new File(context.getFilesDir(), "sessions"), key + ".session");
+    }
+
+    /**
+     * Reads the session saved for {@code projectDir}; null if there is none or it is unreadable.
+     * The file is a few KB, so this is cheap enough for the main thread during startup.
+     */
+    public static EditorSession load(Context context, File projectDir) {
+        File file = sessionFile(context, projectDir);
+        if (!file.exists()) return null;
+        // No count or length can exceed the file's size; a larger one means a damaged file
+        long limit = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            if (!in.readUTF().equals(projectDir.getAbsolutePath())) return null;
+            int mainPage = in.readByte();
+            int activeTab = in.readInt();
+            int tabCount = in.readInt();
+            if (tabCount < 0 || tabCount > limit) return null;
+            List<Tab> tabs = new ArrayList<>(tabCount);
+            for (int i = 0; i < tabCount; i++) {
+                tabs.add(new Tab(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readBoolean(), in.readBoolean()));
+            }
+            int expandedCount = in.readInt();
+            if (expandedCount < 0 || expandedCount > limit) return null;
+            Set<String> expanded = new HashSet<>();
+            for (int i = 0; i < expandedCount; i++) expanded.add(in.readUTF());
+            int chatBytes = in.readInt();
+            if (chatBytes > limit) return null;
+            String chat = null;
+            if (chatBytes > 0) {
+                byte[] bytes = new byte[chatBytes];
+                in.readFully(bytes);
+                chat = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new EditorSession(tabs, activeTab, mainPage, expanded, chat);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable session " + file, e);
+            return null;
+        }
+    }
+
+    /** Writes this session for {@code projectDir} in the background, replacing the last one. */
+    public void saveAsync(Context context, File projectDir) {
+        File file = sessionFile(context.getApplicationContext(), projectDir);
+        String projectPath = projectDir.getAbsolutePath();
+        worker.execute(() -> save(file, projectPath));
+    }
+
+    private void save(File file, String projectPath) {
+        File dir = file.getParentFile();
+        if (dir != null) dir.mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(projectPath);
+            out.writeByte(mainPage);
+            out.writeInt(activeTab);
+            out.writeInt(tabs.size());
+            for (Tab t : tabs) {
+                out.writeUTF(t.path);
+                out.writeInt(t.cursorLine);
+                out.writeInt(t.cursorColumn);
+                out.writeInt(t.scrollX);
+                out.writeInt(t.scrollY);
+                out.writeBoolean(t.wrap);
+                out.writeBoolean(t.readOnly);
+            }
+            out.writeInt(expandedPaths.size());
+            for (String path : expandedPaths) out.writeUTF(path);
+            // May exceed writeUTF's 64 KB limit, so length-prefixed bytes
+            byte[] chat = chatWindowJson != null ? chatWindowJson.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            out.writeInt(chat.length);
+            out.write(chat);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save session " + file, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    /** Forgets the session of a project, e.g. when the project is deleted. */
+    public static void delete(Context context, File projectDir) {
+        File file = sessionFile(context.getApplicationContext(), projectDir);
+        worker.execute(file::delete);
+    }
+}
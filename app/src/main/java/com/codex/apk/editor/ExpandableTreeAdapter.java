@@ -8,6 +8,7 @@ import android.widget.TextView;
 import android.content.res.ColorStateList;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.core.content.ContextCompat;
 
@@ -16,37 +17,104 @@ import com.codex.apk.R;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ExpandableTreeAdapter extends RecyclerView.Adapter<ExpandableTreeAdapter.NodeViewHolder> {
     private final EditorActivity activity;
-    private final List<FileTreeManager.TreeNode> visibleNodes = new ArrayList<>();
-    private final List<FileTreeManager.TreeNode> roots;
+    // Immutable snapshot; replaced wholesale so background threads can diff against it.
+    private volatile List<Row> rows = Collections.emptyList();
+
+    /** What one visible line showed when it was flattened; TreeNodes mutate, rows do not. */
+    static final class Row {
+        final FileTreeManager.TreeNode node;
+        final String path;
+        final int level;
+        final boolean expanded;
+        final boolean hasChildren;
+
+        Row(FileTreeManager.TreeNode node) {
+            this.node = node;
+            this.path = node.file.getAbsolutePath();
+            this.level = node.level;
+            this.expanded = node.expanded;
+            this.hasChildren = node.hasVisibleChildren();
+        }
+
+        boolean sameContent(Row o) {
+            return level == o.level && expanded == o.expanded && hasChildren == o.hasChildren;
+        }
+    }
+
+    /** Result of diffing a new row list against the rows shown at {@link #base}. */
+    static final class Update {
+        final List<Row> base;
+        final List<Row> rows;
+        final DiffUtil.DiffResult diff;
+
+        Update(List<Row> base, List<Row> rows, DiffUtil.DiffResult diff) {
+            this.base = base;
+            this.rows = rows;
+            this.diff = diff;
+        }
+    }
 
     public ExpandableTreeAdapter(EditorActivity activity, List<FileTreeManager.TreeNode> initial) {
         this.activity = activity;
-        this.roots = new ArrayList<>(initial);
-        rebuildVisible();
+        this.rows = flatten(initial);
     }
 
-    public void setNodes(List<FileTreeManager.TreeNode> nodes) {
-        this.roots.clear();
-        this.roots.addAll(nodes);
-        rebuildVisible();
-        notifyDataSetChanged();
+    /** Visible rows of the given roots: each node followed by the children of expanded ones. */
+    static List<Row> flatten(List<FileTreeManager.TreeNode> roots) {
+        List<Row> out = new ArrayList<>();
+        for (FileTreeManager.TreeNode n : roots) addVisible(n, out);
+        return Collections.unmodifiableList(out);
     }
 
-    private void rebuildVisible() {
-        visibleNodes.clear();
-        for (FileTreeManager.TreeNode n : roots) {
-            addVisible(n);
+    private static void addVisible(FileTreeManager.TreeNode node, List<Row> out) {
+        out.add(new Row(node));
+        if (node.expanded) {
+            for (FileTreeManager.TreeNode c : node.children) addVisible(c, out);
         }
     }
 
-    private void addVisible(FileTreeManager.TreeNode node) {
-        visibleNodes.add(node);
-        if (node.expanded) {
-            for (FileTreeManager.TreeNode c : node.children) addVisible(c);
+    /** Safe to call off the main thread; the result is applied with {@link #submit(Update)}. */
+    Update prepare(List<Row> newRows) {
+        List<Row> base = rows;
+        return new Update(base, newRows, DiffUtil.calculateDiff(new RowDiff(base, newRows)));
+    }
+
+    void submit(Update update) {
+        if (update.base != rows) {
+            // Rows changed while the diff was computed; rediff against what is on screen.
+            update = prepare(update.rows);
+        }
+        rows = update.rows;
+        update.diff.dispatchUpdatesTo(this);
+    }
+
+    void submit(List<Row> newRows) {
+        submit(prepare(newRows));
+    }
+
+    private static final class RowDiff extends DiffUtil.Callback {
+        private final List<Row> oldRows;
+        private final List<Row> newRows;
+
+        RowDiff(List<Row> oldRows, List<Row> newRows) {
+            this.oldRows = oldRows;
+            this.newRows = newRows;
+        }
+
+        @Override public int getOldListSize() { return oldRows.size(); }
+        @Override public int getNewListSize() { return newRows.size(); }
+
+        @Override public boolean areItemsTheSame(int oldPos, int newPos) {
+            return oldRows.get(oldPos).path.equals(newRows.get(newPos).path);
+        }
+
+        @Override public boolean areContentsTheSame(int oldPos, int newPos) {
+            return oldRows.get(oldPos).sameContent(newRows.get(newPos));
         }
     }
 
@@ -59,12 +127,13 @@ public class ExpandableTreeAdapter extends RecyclerView.Adapter<ExpandableTreeAd
 
     @Override
     public void onBindViewHolder(@NonNull NodeViewHolder holder, int position) {
-        FileTreeManager.TreeNode node = visibleNodes.get(position);
+        Row row = rows.get(position);
+        FileTreeManager.TreeNode node = row.node;
         File f = node.file;
 
         float density = holder.itemView.getResources().getDisplayMetrics().density;
         int base = (int) (12 * density);
-        int indent = base + (int) (14 * density) * Math.max(0, node.level);
+        int indent = base + (int) (14 * density) * Math.max(0, row.level);
         holder.itemView.setPadding(indent, (int) (4 * density), holder.itemView.getPaddingRight(), (int) (4 * density));
 
         // Indentation guide is now drawn by ItemDecoration; hide per-item guide to avoid gaps
@@ -72,16 +141,16 @@ public class ExpandableTreeAdapter extends RecyclerView.Adapter<ExpandableTreeAd
             holder.indentGuide.setVisibility(View.GONE);
         }
 
-        holder.textFileName.setText(f.getName());
+        holder.textFileName.setText(node.name);
 
         // Set icon per state
-        if (f.isDirectory()) {
-            holder.imageFileIcon.setImageResource(node.expanded ? R.drawable.ic_folder_open_outline : R.drawable.ic_folder_outline);
-            // Hide chevron if folder has no children
-            holder.imageExpandIcon.setVisibility(node.hasVisibleChildren() ? View.VISIBLE : View.INVISIBLE);
-            holder.imageExpandIcon.setImageResource(node.expanded ? R.drawable.icon_expand_less_round : R.drawable.icon_expand_more_round);
+        if (node.isDirectory) {
+            holder.imageFileIcon.setImageResource(row.expanded ? R.drawable.ic_folder_open_outline : R.drawable.ic_folder_outline);
+            // Hide chevron if folder has no children (unlisted folders are assumed to have some)
+            holder.imageExpandIcon.setVisibility(row.hasChildren ? View.VISIBLE : View.INVISIBLE);
+            holder.imageExpandIcon.setImageResource(row.expanded ? R.drawable.icon_expand_less_round : R.drawable.icon_expand_more_round);
         } else {
-            holder.imageFileIcon.setImageResource(getFileIconRes(f.getName()));
+            holder.imageFileIcon.setImageResource(getFileIconRes(node.name));
             holder.imageExpandIcon.setVisibility(View.GONE);
         }
 
@@ -106,20 +175,14 @@ public class ExpandableTreeAdapter extends RecyclerView.Adapter<ExpandableTreeAd
         }
 
         holder.itemView.setOnClickListener(v -> {
-            if (f.isDirectory()) {
-                node.expanded = !node.expanded;
-                rebuildVisible();
-                notifyDataSetChanged();
+            if (node.isDirectory) {
+                activity.fileTreeManager.toggleDirectory(node);
             } else {
                 activity.openFile(f);
             }
         });
 
-        holder.imageExpandIcon.setOnClickListener(v -> {
-            node.expanded = !node.expanded;
-            rebuildVisible();
-            notifyDataSetChanged();
-        });
+        holder.imageExpandIcon.setOnClickListener(v -> activity.fileTreeManager.toggleDirectory(node));
 
         holder.imageMoreVert.setOnClickListener(v -> {
             android.widget.PopupMenu popup = new android.widget.PopupMenu(activity, holder.imageMoreVert);
@@ -151,10 +214,10 @@ public class ExpandableTreeAdapter extends RecyclerView.Adapter<ExpandableTreeAd
                             .setNegativeButton("Cancel", null)
                             .show();
                     return true;
-                } else if (id == R.id.action_new_file && f.isDirectory()) {
+                } else if (id == R.id.action_new_file && node.isDirectory) {
                     ((FileTreeManager) (activity.fileTreeManager)).showNewFileDialog(f);
                     return true;
-                } else if (id == R.id.action_new_folder && f.isDirectory()) {
+                } else if (id == R.id.action_new_folder && node.isDirectory) {
                     ((FileTreeManager) (activity.fileTreeManager)).showNewFolderDialog(f);
                     return true;
                 }
@@ -166,7 +229,7 @@ public class ExpandableTreeAdapter extends RecyclerView.Adapter<ExpandableTreeAd
 
     @Override
     public int getItemCount() {
-        return visibleNodes.size();
+        return rows.size();
     }
 
     static class NodeViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,141 @@
+package com.codex.apk.editor;
+
+import com.codex.apk.util.FileOps;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Name filter behind the file tree search box. The project is flattened once into a
+ * pre-order list of entries with lowercase names; a query then scans that list instead of
+ * the filesystem. When the new query extends the previous one, only the previous matches
+ * are rescanned, since a name containing "button" must also contain "butto".
+ *
+ * Not thread-safe; FileTreeManager only calls it from its tree executor.
+ */
+final class FileTreeFilter {
+
+    private static final class Entry {
+        final File file;
+        final String name;
+        final String lowerName;
+        final boolean isDirectory;
+        final int parent; // index of the parent entry, -1 for top-level entries
+        final int depth;
+
+        Entry(File file, boolean isDirectory, int parent, int depth) {
+            this.file = file;
+            this.name = file.getName();
+            this.lowerName = name.toLowerCase();
+            this.isDirectory = isDirectory;
+            this.parent = parent;
+            this.depth = depth;
+        }
+    }
+
+    private final File root;
+    private List<Entry> entries;
+    private String lastQuery;
+    private int[] lastMatches;
+
+    FileTreeFilter(File root) {
+        this.root = root;
+    }
+
+    /** Drops the flattened project; the next query relists it. */
+    void invalidate() {
+        entries = null;
+        lastQuery = null;
+        lastMatches = null;
+    }
+
+    /**
+     * Returns the pruned, fully expanded tree of entries whose name contains {@code query}
+     * (already lowercase), or null if {@code cancelled} fired part way through.
+     */
+    List<FileTreeManager.TreeNode> filter(String query, BooleanSupplier cancelled) {
+        if (entries == null) {
+            List<Entry> built = new ArrayList<>();
+            collect(root, -1, 0, built);
+            entries = built;
+        }
+        int[] candidates = null;
+        if (lastQuery != null && query.startsWith(lastQuery)) candidates = lastMatches;
+
+        int n = candidates != null ? candidates.length : entries.size();
+        int[] matches = new int[Math.min(n, 256)];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if ((i & 1023) == 0 && cancelled.getAsBoolean()) return null;
+            int idx = candidates != null ? candidates[i] : i;
+            if (entries.get(idx).lowerName.contains(query)) {
+                if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+                matches[count++] = idx;
+            }
+        }
+        matches = Arrays.copyOf(matches, count);
+        lastQuery = query;
+        lastMatches = matches;
+        return buildTree(matches);
+    }
+
+    /** Pre-order walk with directories first; dependency and VCS folders are not descended. */
+    private static void collect(File dir, int parent, int depth, List<Entry> out) {
+        File[] list = dir.listFiles();
+        if (list == null) return;
+        boolean[] isDir = new boolean[list.length];
+        Integer[] order = new Integer[list.length];
+        for (int i = 0; i < list.length; i++) {
+            isDir[i] = list[i].isDirectory();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            if (isDir[a] != isDir[b]) return isDir[a] ? -1 : 1;
+            return list[a].getName().compareToIgnoreCase(list[b].getName());
+        });
+        for (int i : order) {
+            Entry e = new Entry(list[i], isDir[i], parent, depth);
+            int index = out.size();
+            out.add(e);
+            if (e.isDirectory && !FileOps.isSkippedDirectory(e.name)) collect(e.file, index, depth + 1, out);
+        }
+    }
+
+    /** Builds nodes for the matches plus their ancestors, keeping pre-order (= display) order. */
+    private List<FileTreeManager.TreeNode> buildTree(int[] matches) {
+        boolean[] keep = new boolean[entries.size()];
+        for (int idx : matches) {
+            for (int p = idx; p >= 0 && !keep[p]; p = entries.get(p).parent) keep[p] = true;
+        }
+        List<FileTreeManager.TreeNode> roots = new ArrayList<>();
+        FileTreeManager.TreeNode[] nodes = new FileTreeManager.TreeNode[entries.size()];
+        for (int i = 0; i < keep.length; i++) {
+            if (!keep[i]) continue;
+            Entry e = entries.get(i);
+            FileTreeManager.TreeNode node = new FileTreeManager.TreeNode(e.file, e.depth, e.name, e.lowerName, e.isDirectory);
+            nodes[i] = node;
+            if (e.parent < 0) {
+                roots.add(node);
+            } else {
+                FileTreeManager.TreeNode parent = nodes[e.parent];
+                node.parent = parent;
+                parent.children.add(node);
+                parent.loaded = true;
+                parent.expanded = true;
+            }
+        }
+        markLastRecursive(roots);
+        return roots;
+    }
+
+    private static void markLastRecursive(List<FileTreeManager.TreeNode> siblings) {
+        for (int i = 0; i < siblings.size(); i++) {
+            FileTreeManager.TreeNode n = siblings.get(i);
+            n.isLast = (i == siblings.size() - 1);
+            markLastRecursive(n.children);
+        }
+    }
+}
@@ -10,6 +10,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.codex.apk.EditorActivity;
 import com.codex.apk.R;
+import com.codex.apk.util.FileChangeBus;
+import com.codex.apk.util.ParallelFileOps;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
 import java.io.File;
@@ -17,14 +19,37 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileTreeManager {
+    // Directory listing happens here, never on the UI thread.
+    private static final ExecutorService treeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "FileTree");
+        t.setDaemon(true);
+        return t;
+    });
+    // Typing pauses shorter than this coalesce into one filter pass.
+    private static final long FILTER_DEBOUNCE_MS = 150;
+
     private final EditorActivity activity;
     private RecyclerView recyclerView;
     private ExpandableTreeAdapter adapter;
     private EditText searchEditText;
-    private String currentSearchQuery = "";
+    private volatile String currentSearchQuery = "";
+    // Expansion state survives reloads; only these directories are ever listed.
+    private final Set<String> expandedPaths = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger loadGeneration = new AtomicInteger();
+    private List<TreeNode> roots = new ArrayList<>();
+    private FileTreeFilter filter; // only touched on treeExecutor
+    private final Runnable applyFilter = () -> reload(false);
 
     public FileTreeManager(EditorActivity activity, com.codex.apk.FileManager fileManager, com.codex.apk.DialogHelper dialogHelper, List<com.codex.apk.FileItem> fileItems, List<com.codex.apk.TabItem> openTabs) {
         this.activity = activity;
@@ -46,7 +71,7 @@ public class FileTreeManager {
                 @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
                 @Override public void onTextChanged(CharSequence s, int start, int before, int count) {
                     currentSearchQuery = s.toString().toLowerCase();
-                    loadFileTree();
+                    scheduleFilter();
                 }
                 @Override public void afterTextChanged(android.text.Editable s) {}
             });
@@ -62,23 +87,86 @@ public class FileTreeManager {
         loadFileTree();
     }
 
+    /**
+     * Relists the project in the background and applies the result as a minimal diff.
+     * Without a search query only expanded directories are listed, so the cost follows
+     * what is visible rather than the size of the project.
+     */
     public void loadFileTree() {
+        if (recyclerView != null) recyclerView.removeCallbacks(applyFilter);
+        reload(true);
+    }
+
+    private void scheduleFilter() {
+        if (recyclerView == null) return;
+        recyclerView.removeCallbacks(applyFilter);
+        if (currentSearchQuery.isEmpty()) {
+            reload(false);
+        } else {
+            recyclerView.postDelayed(applyFilter, FILTER_DEBOUNCE_MS);
+        }
+    }
+
+    private void reload(boolean filesChanged) {
+        if (adapter == null) return;
         File root = activity.getProjectDirectory();
-        List<TreeNode> roots = new ArrayList<>();
-        if (root != null && root.exists()) {
-            TreeNode rootNode = buildTree(root, 0, null);
-            // Do not show the top-level project folder; use its children as roots
-            if (!rootNode.children.isEmpty()) {
-                roots.addAll(rootNode.children);
-                rebaseAsRoots(roots);
+        String query = currentSearchQuery;
+        int generation = loadGeneration.incrementAndGet();
+        treeExecutor.execute(() -> {
+            if (filesChanged && filter != null) filter.invalidate();
+            if (generation != loadGeneration.get()) return; // superseded before it started
+            List<TreeNode> built;
+            if (root == null || !root.exists()) {
+                built = new ArrayList<>();
+            } else if (query.isEmpty()) {
+                built = listExpanded(root, 0, null);
+            } else {
+                if (filter == null) filter = new FileTreeFilter(root);
+                built = filter.filter(query, () -> generation != loadGeneration.get());
+                if (built == null) return;
             }
+            ExpandableTreeAdapter.Update update = adapter.prepare(ExpandableTreeAdapter.flatten(built));
+            activity.runOnUiThread(() -> {
+                if (generation != loadGeneration.get() || activity.isFinishing()) return;
+                roots = built;
+                adapter.submit(update);
+                updateEmptyState(built);
+            });
+        });
+    }
+
+    /**
+     * Expands or collapses a directory row. Children of a directory that has never been
+     * listed are loaded in the background; the row shows expanded immediately.
+     */
+    void toggleDirectory(TreeNode node) {
+        node.expanded = !node.expanded;
+        String path = node.file.getAbsolutePath();
+        if (node.expanded) expandedPaths.add(path); else expandedPaths.remove(path);
+        if (node.expanded && !node.loaded && !node.loading) {
+            node.loading = true;
+            treeExecutor.execute(() -> {
+                List<TreeNode> children = listExpanded(node.file, node.level + 1, node);
+                activity.runOnUiThread(() -> {
+                    node.children.clear();
+                    node.children.addAll(children);
+                    node.loaded = true;
+                    node.loading = false;
+                    adapter.submit(ExpandableTreeAdapter.flatten(roots));
+                });
+            });
         }
-        if (!currentSearchQuery.isEmpty()) {
-            roots = filterNodes(roots, currentSearchQuery);
-            rebaseAsRoots(roots);
-        }
-        adapter.setNodes(roots);
-        updateEmptyState(roots);
+        adapter.submit(ExpandableTreeAdapter.flatten(roots));
+    }
+
+    public Set<String> getExpandedPaths() {
+        return new HashSet<>(expandedPaths);
+    }
+
+    public void setExpandedPaths(Set<String> paths) {
+        expandedPaths.clear();
+        if (paths != null) expandedPaths.addAll(paths);
+        loadFileTree();
     }
 
     private void updateEmptyState(List<TreeNode> nodes) {
@@ -95,61 +183,42 @@ public class FileTreeManager {
         }
     }
 
-    private TreeNode buildTree(File file, int level, TreeNode parent) {
-        TreeNode node = new TreeNode(file, level);
-        node.parent = parent;
-        if (file.isDirectory()) {
-            File[] list = file.listFiles();
-            if (list != null) {
-                Arrays.sort(list, new Comparator<File>() {
-                    @Override public int compare(File f1, File f2) {
-                        if (f1.isDirectory() && !f2.isDirectory()) return -1;
-                        if (!f1.isDirectory() && f2.isDirectory()) return 1;
-                        return f1.getName().compareToIgnoreCase(f2.getName());
-                    }
-                });
-                for (int i = 0; i < list.length; i++) {
-                    File child = list[i];
-                    TreeNode childNode = buildTree(child, level + 1, node);
-                    childNode.isLast = (i == list.length - 1);
-                    node.children.add(childNode);
-                }
+    /** Lists {@code dir} and, recursively, only those subdirectories that are expanded. */
+    private List<TreeNode> listExpanded(File dir, int level, TreeNode parent) {
+        List<TreeNode> out = new ArrayList<>();
+        for (File child : listSorted(dir)) {
+            TreeNode node = new TreeNode(child, level);
+            node.parent = parent;
+            if (node.isDirectory && expandedPaths.contains(child.getAbsolutePath())) {
+                node.expanded = true;
+                node.children.addAll(listExpanded(child, level + 1, node));
+                node.loaded = true;
             }
+            out.add(node);
         }
-        return node;
+        markLast(out);
+        return out;
     }
 
-    private List<TreeNode> filterNodes(List<TreeNode> nodes, String query) {
-        List<TreeNode> result = new ArrayList<>();
-        for (TreeNode n : nodes) {
-            TreeNode copy = n.copyPruned(query, null);
-            if (copy != null) result.add(copy);
-        }
-        // Fix isLast flags post-filter
-        for (TreeNode r : result) fixSiblingsFlagsRecursive(r);
-        return result;
-    }
-
-    private void rebaseAsRoots(List<TreeNode> roots) {
-        for (TreeNode r : roots) {
-            rebaseLevelsRecursive(r, 0, null);
-        }
-        // Reset isLast correctly at each level
-        for (TreeNode r : roots) fixSiblingsFlagsRecursive(r);
-    }
-
-    private void rebaseLevelsRecursive(TreeNode node, int newLevel, TreeNode newParent) {
-        node.level = newLevel;
-        node.parent = newParent;
-        for (TreeNode c : node.children) rebaseLevelsRecursive(c, newLevel + 1, node);
+    private static File[] listSorted(File dir) {
+        File[] list = dir.listFiles();
+        if (list == null) return new File[0];
+        // Stat once per entry instead of on every comparison
+        Map<File, Boolean> isDir = new HashMap<>();
+        for (File f : list) isDir.put(f, f.isDirectory());
+        Arrays.sort(list, new Comparator<File>() {
+            @Override public int compare(File f1, File f2) {
+                boolean d1 = isDir.get(f1), d2 = isDir.get(f2);
+                if (d1 && !d2) return -1;
+                if (!d1 && d2) return 1;
+                return f1.getName().compareToIgnoreCase(f2.getName());
+            }
+        });
+        return list;
     }
 
-    private void fixSiblingsFlagsRecursive(TreeNode node) {
-        for (int i = 0; i < node.children.size(); i++) {
-            TreeNode c = node.children.get(i);
-            c.isLast = (i == node.children.size() - 1);
-            fixSiblingsFlagsRecursive(c);
-        }
+    private static void markLast(List<TreeNode> siblings) {
+        for (int i = 0; i < siblings.size(); i++) siblings.get(i).isLast = (i == siblings.size() - 1);
     }
 
     public void showNewFileDialog(File parentDirectory) {
@@ -174,8 +243,8 @@ public class FileTreeManager {
                 }
                 try {
                     if (newFile.createNewFile()) {
+                        changeBus().publish(newFile, FileChangeBus.Type.CREATED);
                         activity.showToast("File created: " + full);
-                        loadFileTree();
                         activity.openFile(newFile);
                     } else {
                         Toast.makeText(activity, "Failed to create file", Toast.LENGTH_SHORT).show();
@@ -206,8 +275,8 @@ public class FileTreeManager {
                     return;
                 }
                 if (newFolder.mkdir()) {
+                    changeBus().publish(newFolder, FileChangeBus.Type.CREATED);
                     activity.showToast("Folder created: " + folderName);
-                    loadFileTree();
                 } else {
                     Toast.makeText(activity, "Failed to create folder", Toast.LENGTH_SHORT).show();
                 }
@@ -218,32 +287,32 @@ public class FileTreeManager {
 
     public void renameFileOrDir(File oldFile, File newFile) {
         if (oldFile.renameTo(newFile)) {
+            changeBus().publishRename(oldFile, newFile);
             activity.showToast("Renamed successfully");
-            loadFileTree();
         } else {
             Toast.makeText(activity, "Failed to rename file", Toast.LENGTH_SHORT).show();
         }
     }
 
+    /** Deletes off the main thread; a large folder no longer freezes the tree while it goes. */
     public void deleteFileByPath(File fileOrDirectory) {
-        if (deleteRecursively(fileOrDirectory)) {
-            activity.showToast("Deleted successfully");
-            loadFileTree();
-        } else {
-            Toast.makeText(activity, "Failed to delete file", Toast.LENGTH_SHORT).show();
-        }
+        FileChangeBus bus = changeBus();
+        treeExecutor.execute(() -> {
+            boolean deleted = ParallelFileOps.delete(fileOrDirectory);
+            bus.publish(fileOrDirectory, FileChangeBus.Type.DELETED);
+            activity.runOnUiThread(() -> {
+                if (deleted) {
+                    activity.showToast("Deleted successfully");
+                } else {
+                    Toast.makeText(activity, "Failed to delete file", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
     }
 
-    private boolean deleteRecursively(File file) {
-        if (file.isDirectory()) {
-            File[] children = file.listFiles();
-            if (children != null) {
-                for (File child : children) {
-                    if (!deleteRecursively(child)) return false;
-                }
-            }
-        }
-        return file.delete();
+    // The tree reloads from the bus subscription, so a burst of edits costs one rebuild.
+    private FileChangeBus changeBus() {
+        return FileChangeBus.forProject(activity.getProjectDirectory());
     }
 
     public void rebuildFileTree() { loadFileTree(); }
@@ -259,30 +328,30 @@ public class FileTreeManager {
     // TreeNode model
     static class TreeNode {
         final File file;
+        final String name;
+        final String lowerName;
+        final boolean isDirectory;
         int level;
-        boolean expanded = true;
+        boolean expanded = false;
+        // Whether children have been listed; unlisted directories are loaded on first expand.
+        boolean loaded = false;
+        boolean loading = false;
         final List<TreeNode> children = new ArrayList<>();
         TreeNode parent = null;
         boolean isLast = false;
 
-        TreeNode(File file, int level) { this.file = file; this.level = level; }
-
-        boolean hasVisibleChildren() { return !children.isEmpty(); }
+        TreeNode(File file, int level) {
+            this(file, level, file.getName(), file.getName().toLowerCase(), file.isDirectory());
+        }
 
-        TreeNode copyPruned(String query, TreeNode newParent) {
-            boolean matches = file.getName().toLowerCase().contains(query);
-            TreeNode copy = new TreeNode(file, level);
-            copy.parent = newParent;
-            for (TreeNode c : children) {
-                TreeNode pruned = c.copyPruned(query, copy);
-                if (pruned != null) copy.children.add(pruned);
-            }
-            // Set isLast for children
-            for (int i = 0; i < copy.children.size(); i++) {
-                copy.children.get(i).isLast = (i == copy.children.size() - 1);
-            }
-            if (matches || !copy.children.isEmpty()) return copy;
-            return null;
+        TreeNode(File file, int level, String name, String lowerName, boolean isDirectory) {
+            this.file = file;
+            this.level = level;
+            this.name = name;
+            this.lowerName = lowerName;
+            this.isDirectory = isDirectory;
         }
+
+        boolean hasVisibleChildren() { return loaded ? !children.isEmpty() : isDirectory; }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,249 @@
+package com.codex.apk.editor;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.Formatter;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import com.codex.apk.TabItem;
+import com.codex.apk.util.LargeFileDocument;
+
+import io.github.rosemoe.sora.event.ScrollEvent;
+import io.github.rosemoe.sora.event.SubscriptionReceipt;
+import io.github.rosemoe.sora.lang.EmptyLanguage;
+import io.github.rosemoe.sora.widget.CodeEditor;
+
+import java.util.Locale;
+
+/**
+ * Shows a {@link LargeFileDocument} through a regular CodeEditor by feeding it a sliding
+ * window of lines: when the viewport nears either edge of the window, the window is re-read
+ * around the current position and the scroll offset carried over. Search runs over the whole
+ * mapped file and jumps the window to each match. One viewer belongs to one tab view holder.
+ */
+public class LargeFileViewer {
+
+    private static final int WINDOW_LINES = 3000;
+    private static final int EDGE_MARGIN_LINES = 300;
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+
+    private final CodeEditor editor;
+    private final View bar;
+    private final TextView status;
+    private final EditText searchField;
+    private final TextView matchCount;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private TabItem tab;
+    private LargeFileDocument document;
+    private SubscriptionReceipt<ScrollEvent> scrollReceipt;
+    private int windowStart;
+    private int windowSize;
+    private boolean shiftPending;
+    private boolean repositioning; // setText resets the scroll; ignore it until we restore ours
+
+    private long[] matches = new long[0];
+    private int matchTotal;
+    private boolean matchesComplete;
+    private int currentMatch = -1;
+    private int queryLength;
+
+    private final Runnable runSearch = this::startSearch;
+
+    public LargeFileViewer(CodeEditor editor, View bar, TextView status, EditText searchField,
+                           TextView matchCount, View prevButton, View nextButton) {
+        this.editor = editor;
+        this.bar = bar;
+        this.status = status;
+        this.searchField = searchField;
+        this.matchCount = matchCount;
+        searchField.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(Editable s) {
+                handler.removeCallbacks(runSearch);
+                if (document != null) handler.postDelayed(runSearch, SEARCH_DEBOUNCE_MS);
+            }
+        });
+        prevButton.setOnClickListener(v -> stepMatch(-1));
+        nextButton.setOnClickListener(v -> stepMatch(1));
+    }
+
+    public boolean isBound() {
+        return document != null;
+    }
+
+    public void bind(TabItem tabItem) {
+        if (document == tabItem.getLargeDocument()) return;
+        unbind();
+        tab = tabItem;
+        document = tabItem.getLargeDocument();
+        bar.setVisibility(View.VISIBLE);
+        editor.setEditorLanguage(new EmptyLanguage());
+        editor.setEditable(false);
+        editor.setWordwrap(false);
+        // Window-relative numbers would be misleading; the status line shows absolute lines
+        editor.setLineNumberEnabled(false);
+        scrollReceipt = editor.subscribeEvent(ScrollEvent.class, (event, unsubscribe) -> scheduleEdgeCheck());
+        document.setIndexListener((lines, complete) -> handler.post(this::onIndexProgress));
+        clearMatches();
+        searchField.setText("");
+        showWindowAround(tabItem.getLargeFileTopLine(), 0);
+    }
+
+    public void unbind() {
+        handler.removeCallbacksAndMessages(null);
+        if (scrollReceipt != null) {
+            scrollReceipt.unsubscribe();
+            scrollReceipt = null;
+        }
+        if (document != null) {
+            document.setIndexListener(null);
+            document.cancelSearch();
+        }
+        if (tab != null) tab.setLargeFileTopLine(windowStart + editor.getFirstVisibleLine());
+        document = null;
+        tab = null;
+        bar.setVisibility(View.GONE);
+        editor.setLineNumberEnabled(true);
+    }
+
+    // ===== Window =====
+
+    /** Reads a window centred on {@code topLine} and scrolls so it is the first visible line. */
+    private void showWindowAround(int topLine, int pixelsIntoLine) {
+        int available = document.getLineCount();
+        topLine = Math.max(0, Math.min(topLine, Math.max(0, available - 1)));
+        windowStart = Math.max(0, topLine - WINDOW_LINES / 2);
+        String text = document.readLines(windowStart, WINDOW_LINES);
+        windowSize = Math.min(WINDOW_LINES, available - windowStart);
+        repositioning = true;
+        editor.setText(text);
+        int targetY = (topLine - windowStart) * editor.getRowHeight() + pixelsIntoLine;
+        editor.post(() -> {
+            editor.getScroller().forceFinished(true);
+            editor.getScroller().startScroll(editor.getOffsetX(), editor.getOffsetY(), 0, targetY - editor.getOffsetY(), 0);
+            editor.invalidate();
+            repositioning = false;
+            updateStatus();
+        });
+    }
+
+    private void scheduleEdgeCheck() {
+        if (shiftPending || repositioning || document == null) return;
+        shiftPending = true;
+        editor.post(() -> {
+            shiftPending = false;
+            if (document == null || repositioning) return;
+            int first = editor.getFirstVisibleLine();
+            int last = editor.getLastVisibleLine();
+            boolean nearTop = first < EDGE_MARGIN_LINES && windowStart > 0;
+            boolean nearBottom = last > windowSize - EDGE_MARGIN_LINES
+                    && windowStart + windowSize < document.getLineCount();
+            if (nearTop || nearBottom) {
+                int pixelsIntoLine = editor.getOffsetY() - first * editor.getRowHeight();
+                showWindowAround(windowStart + first, Math.max(0, pixelsIntoLine));
+            } else {
+                updateStatus();
+            }
+        });
+    }
+
+    private void onIndexProgress() {
+        if (document == null) return;
+        // The first window may have been cut short by the index; top it up in place
+        if (windowSize < WINDOW_LINES && windowStart + windowSize < document.getLineCount()) {
+            int first = editor.getFirstVisibleLine();
+            showWindowAround(windowStart + first, Math.max(0, editor.getOffsetY() - first * editor.getRowHeight()));
+        } else {
+            updateStatus();
+        }
+    }
+
+    private void updateStatus() {
+        if (document == null) return;
+        int first = windowStart + editor.getFirstVisibleLine() + 1;
+        int last = Math.min(windowStart + windowSize, windowStart + editor.getLastVisibleLine() + 1);
+        String size = Formatter.formatShortFileSize(editor.getContext(), document.getLength());
+        String lines = String.format(Locale.getDefault(), "%,d–%,d of %,d%s", first, Math.max(first, last),
+                document.getLineCount(), document.isIndexComplete() ? "" : "+ (indexing…)");
+        status.setText("Large file, read-only · " + size + " · lines " + lines);
+    }
+
+    // ===== Search =====
+
+    private void startSearch() {
+        if (document == null) return;
+        String query = searchField.getText().toString();
+        clearMatches();
+        if (query.isEmpty()) {
+            document.cancelSearch();
+            return;
+        }
+        queryLength = query.length();
+        LargeFileDocument searched = document;
+        searched.search(query, false, (offsets, count, complete) -> handler.post(() -> {
+            if (document != searched) return;
+            matches = offsets;
+            matchTotal = count;
+            matchesComplete = complete;
+            if (currentMatch < 0 && count > 0) {
+                currentMatch = firstMatchAtOrAfter(windowStart + editor.getFirstVisibleLine());
+                if (currentMatch >= 0) goToMatch(currentMatch);
+            }
+            updateMatchCount();
+        }));
+        matchCount.setText("…");
+    }
+
+    private int firstMatchAtOrAfter(int line) {
+        for (int i = 0; i < matchTotal; i++) {
+            if (document.lineOfOffset(matches[i]) >= line) return i;
+        }
+        // Wrap around only once every match is known
+        return matchesComplete && matchTotal > 0 ? 0 : -1;
+    }
+
+    private void stepMatch(int delta) {
+        if (matchTotal == 0) return;
+        currentMatch = currentMatch < 0 ? 0 : (currentMatch + delta + matchTotal) % matchTotal;
+        goToMatch(currentMatch);
+        updateMatchCount();
+    }
+
+    private void goToMatch(int index) {
+        long offset = matches[index];
+        int line = document.lineOfOffset(offset);
+        if (line < 0) return;
+        if (line < windowStart || line >= windowStart + windowSize) {
+            showWindowAround(line, 0);
+        }
+        int local = line - windowStart;
+        int column = document.columnOfOffset(offset, line);
+        int lineColumns = editor.getText().getColumnCount(local);
+        // A match that runs over a soft line break is highlighted up to the break
+        editor.setSelectionRegion(local, Math.min(column, lineColumns), local, Math.min(column + queryLength, lineColumns));
+        editor.ensureSelectionVisible();
+    }
+
+    private void clearMatches() {
+        matches = new long[0];
+        matchTotal = 0;
+        matchesComplete = false;
+        currentMatch = -1;
+        matchCount.setText("");
+    }
+
+    private void updateMatchCount() {
+        if (matchTotal == 0) {
+            matchCount.setText(matchesComplete ? "0" : "…");
+            return;
+        }
+        String total = matchTotal + (matchesComplete && matchTotal < LargeFileDocument.MAX_SEARCH_MATCHES ? "" : "+");
+        matchCount.setText((currentMatch + 1) + "/" + total);
+    }
+}
@@ -0,0 +1,155 @@
+package com.codex.apk.editor;
+
+import android.os.FileObserver;
+import android.util.Log;
+
+import com.codex.apk.util.FileChangeBus;
+import com.codex.apk.util.FileOps;
+import com.codex.apk.util.SearchResultCache;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Feeds changes made outside the app (file managers, git clients, other editors) into the
+ * project's {@link FileChangeBus}. FileObserver is not recursive, so one observer is kept per
+ * watched directory and observers are added or dropped as directories come and go.
+ */
+public class ProjectFileWatcher {
+    private static final String TAG = "ProjectFileWatcher";
+    // inotify watches are a shared per-user resource; stay well below the kernel default.
+    private static final int MAX_WATCHED_DIRS = 2000;
+    private static final int MASK = FileObserver.CREATE | FileObserver.DELETE | FileObserver.CLOSE_WRITE
+            | FileObserver.MOVED_FROM | FileObserver.MOVED_TO | FileObserver.DELETE_SELF;
+    // The initial walk lists every directory of the project; never on the UI thread.
+    private static final ExecutorService walker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "FileWatcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File projectDir;
+    private final FileChangeBus bus;
+    private final Map<String, DirObserver> observers = new HashMap<>();
+    private boolean running;
+    private boolean limitReported;
+
+    public ProjectFileWatcher(File projectDir) {
+        this.projectDir = projectDir;
+        this.bus = FileChangeBus.forProject(projectDir);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        walker.execute(() -> watchTree(projectDir));
+    }
+
+    public synchronized void stop() {
+        running = false;
+        for (DirObserver o : observers.values()) o.stopWatching();
+        observers.clear();
+    }
+
+    // The lock is held per directory only, so stop() and events never wait for a whole walk
+    private void watchTree(File root) {
+        Deque<File> dq = new ArrayDeque<>();
+        dq.add(root);
+        while (!dq.isEmpty()) {
+            File dir = dq.pollFirst();
+            synchronized (this) {
+                if (!running) return;
+                if (observers.size() >= MAX_WATCHED_DIRS) {
+                    onWatchLimitReached();
+                    return;
+                }
+                String path = dir.getAbsolutePath();
+                if (observers.containsKey(path)) continue;
+                DirObserver o = new DirObserver(dir);
+                observers.put(path, o);
+                o.startWatching();
+            }
+            File[] children = dir.listFiles();
+            if (children == null) continue;
+            for (File c : children) {
+                if (c.isDirectory() && !FileOps.isSkippedDirectory(c.getName())) dq.addLast(c);
+            }
+        }
+    }
+
+    /**
+     * Directories past the cap change unseen, so nothing patched from reported changes can be
+     * trusted any more; cached searches of the project are dropped and rebuilt on next use.
+     */
+    private void onWatchLimitReached() {
+        SearchResultCache.invalidateProject(projectDir);
+        if (!limitReported) {
+            limitReported = true;
+            Log.w(TAG, "Watching the first " + MAX_WATCHED_DIRS + " directories of " + projectDir
+                    + "; changes made outside the app below the rest go unnoticed");
+        }
+    }
+
+    private synchronized void unwatchTree(File root) {
+        String path = root.getAbsolutePath();
+        String prefix = path + File.separator;
+        observers.entrySet().removeIf(e -> {
+            if (e.getKey().equals(path) || e.getKey().startsWith(prefix)) {
+                e.getValue().stopWatching();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void onEvent(File dir, int event, String name) {
+        int type = event & FileObserver.ALL_EVENTS;
+        if (type == FileObserver.DELETE_SELF) {
+            unwatchTree(dir);
+            return;
+        }
+        if (name == null || FileOps.isStagingFile(name)) return;
+        File file = new File(dir, name);
+        if (FileOps.isSkippedDirectory(name) && (type & (FileObserver.CREATE | FileObserver.MOVED_TO)) != 0 && file.isDirectory()) {
+            return;
+        }
+        switch (type) {
+            case FileObserver.CREATE:
+            case FileObserver.MOVED_TO:
+                if (file.isDirectory()) watchTree(file);
+                bus.publishExternal(file, FileChangeBus.Type.CREATED);
+                break;
+            case FileObserver.CLOSE_WRITE:
+                bus.publishExternal(file, FileChangeBus.Type.MODIFIED);
+                break;
+            case FileObserver.DELETE:
+            case FileObserver.MOVED_FROM:
+                unwatchTree(file);
+                bus.publishExternal(file, FileChangeBus.Type.DELETED);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private class DirObserver extends FileObserver {
+        private final File dir;
+
+        // The File constructor is API 29+; the path one still works and is all minSdk 21 offers.
+        @SuppressWarnings("deprecation")
+        DirObserver(File dir) {
+            super(dir.getAbsolutePath(), MASK);
+            this.dir = dir;
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            ProjectFileWatcher.this.onEvent(dir, event, path);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.codex.apk.editor;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codex.apk.FileManager;
+import com.codex.apk.SimpleSoraTabAdapter;
+import com.codex.apk.util.LargeFileDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Background half of opening a tab: reads and decodes the file (or maps it in large-file
+ * mode) and warms the TextMate grammar on IO threads, then hands the result back on the main
+ * thread. Also keeps a small prefetch cache of files that are likely to be opened next, so
+ * those open without touching the disk at all.
+ */
+class TabLoader {
+
+    private static final int PREFETCH_ENTRIES = 8;
+    private static final long PREFETCH_MAX_BYTES = 512 * 1024;
+
+    private static final ExecutorService io = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "TabLoader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Outcome of a load; exactly one of content, document or error is set. */
+    static final class Loaded {
+        long modified; // file time when the read started
+        String content;
+        LargeFileDocument document;
+        IOException error;
+    }
+
+    private static final class Prefetched {
+        final String content;
+        final long modified;
+        final long length;
+
+        Prefetched(String content, long modified, long length) {
+            this.content = content;
+            this.modified = modified;
+            this.length = length;
+        }
+    }
+
+    private final Context appContext;
+    private final FileManager fileManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedHashMap<String, Prefetched> prefetched = new LinkedHashMap<String, Prefetched>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Prefetched> eldest) {
+            return size() > PREFETCH_ENTRIES;
+        }
+    };
+
+    TabLoader(Context context, FileManager fileManager) {
+        this.appContext = context.getApplicationContext();
+        this.fileManager = fileManager;
+    }
+
+    /** Loads {@code file} off the main thread and delivers the result on it. */
+    void load(File file, Consumer<Loaded> onLoaded) {
+        io.execute(() -> {
+            Loaded loaded = new Loaded();
+            loaded.modified = file.lastModified();
+            try {
+                if (LargeFileDocument.isLarge(file)) {
+                    loaded.document = LargeFileDocument.open(file);
+                } else {
+                    String cached = takePrefetched(file);
+                    loaded.content = cached != null ? cached : fileManager.readFileContent(file);
+                    SimpleSoraTabAdapter.prepareLanguage(appContext, file.getName());
+                }
+            } catch (IOException e) {
+                loaded.error = e;
+            }
+            mainHandler.post(() -> onLoaded.accept(loaded));
+        });
+    }
+
+    /** Returns prefetched content if it still matches the file on disk, consuming the entry. */
+    String takePrefetched(File file) {
+        Prefetched p;
+        synchronized (prefetched) {
+            p = prefetched.remove(file.getAbsolutePath());
+        }
+        if (p == null || p.modified != file.lastModified() || p.length != file.length()) return null;
+        return p.content;
+    }
+
+    /** Reads a small file into the prefetch cache in the background. */
+    void prefetch(File file) {
+        if (file == null) return;
+        String key = file.getAbsolutePath();
+        synchronized (prefetched) {
+            if (prefetched.containsKey(key)) return;
+        }
+        io.execute(() -> {
+            long length = file.length();
+            if (!file.isFile() || length > PREFETCH_MAX_BYTES) return;
+            long modified = file.lastModified();
+            try {
+                String content = fileManager.readFileContent(file);
+                SimpleSoraTabAdapter.prepareLanguage(appContext, file.getName());
+                synchronized (prefetched) {
+                    prefetched.put(key, new Prefetched(content, modified, length));
+                }
+            } catch (IOException ignored) {
+                // Prefetch is best effort; a real open reports the error
+            }
+        });
+    }
+}
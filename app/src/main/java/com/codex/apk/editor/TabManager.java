@@ -1,5 +1,7 @@
 package com.codex.apk.editor;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -14,11 +16,20 @@ import com.codex.apk.SimpleSoraTabAdapter;
 import com.codex.apk.TabItem;
 import com.codex.apk.DialogHelper; // Added import for DialogHelper
 import com.codex.apk.SettingsActivity;
+import com.codex.apk.util.FileChangeBus;
+import com.codex.apk.util.LargeFileDocument;
+import com.codex.apk.util.PieceTable;
+import com.codex.apk.util.ThreeWayMerge;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class TabManager {
     private static final String TAG = "TabManager";
@@ -26,12 +37,30 @@ public class TabManager {
     private final FileManager fileManager;
     private final DialogHelper dialogHelper;
     private final List<TabItem> openTabs; // The list of open file tabs
+    private final TabLoader tabLoader;
+    private final TabResidency residency;
+    private final Autosave autosave;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Three-way merges of file changes into open tabs, see mergeIntoTab
+    private static final ExecutorService merger = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TabMerge");
+        t.setDaemon(true);
+        return t;
+    });
+    // Local src/href references in HTML, prefetched as the files most likely to be opened next
+    private static final Pattern LINKED_FILE = Pattern.compile("(?:src|href)\\s*=\\s*[\"']([^\"':?#]+)[\"']");
+    private static final int MAX_LINKED_PREFETCH = 4;
 
     public TabManager(EditorActivity activity, FileManager fileManager, DialogHelper dialogHelper, List<TabItem> openTabs) {
         this.activity = activity;
         this.fileManager = fileManager;
         this.dialogHelper = dialogHelper;
         this.openTabs = openTabs;
+        this.tabLoader = new TabLoader(activity, fileManager);
+        this.residency = new TabResidency(activity, activity.getProjectDirectory(), fileManager, openTabs);
+        this.autosave = new Autosave(activity, activity.getProjectDirectory(), fileManager, tab -> {
+            if (activity.getCodeEditorFragment() != null) activity.getCodeEditorFragment().refreshFileTabLayout();
+        });
     }
 
     public List<TabItem> getOpenTabs() {
@@ -46,7 +75,9 @@ public class TabManager {
     }
 
     /**
-     * Opens a file in a new tab or switches to it if already open.
+     * Opens a file in a new tab or switches to it if already open. The tab appears at once as
+     * a placeholder; the file is read and its grammar loaded in the background, and the editor
+     * is bound when both are ready. Prefetched files open immediately.
      * @param file The file to open.
      */
     public void openFile(File file) {
@@ -71,28 +102,265 @@ public class TabManager {
             }
         }
 
-        try {
-            if (fileManager == null) {
-                activity.showToast("File manager not initialized.");
-                return;
+        if (fileManager == null) {
+            activity.showToast("File manager not initialized.");
+            return;
+        }
+        String prefetched = tabLoader.takePrefetched(file);
+        TabItem tabItem = new TabItem(file, prefetched != null ? prefetched : "");
+        // Initialize tab defaults from Settings
+        tabItem.setWrapEnabled(SettingsActivity.isDefaultWordWrap(activity));
+        tabItem.setReadOnly(SettingsActivity.isDefaultReadOnly(activity));
+        tabItem.setLoading(prefetched == null);
+        openTabs.add(tabItem);
+        activity.getCodeEditorFragment().addFileTab(tabItem); // Add to fragment's adapter
+        // Switch to Code tab (position 1) and then to the newly opened file
+        activity.getMainViewPager().setCurrentItem(1, false);
+        activity.getCodeEditorFragment().setFileViewPagerCurrentItem(openTabs.size() - 1, true);
+        activity.getCodeEditorFragment().refreshFileTabLayout();
+
+        if (prefetched != null) {
+            prefetchLinkedFiles(file, prefetched);
+        } else {
+            tabLoader.load(file, loaded -> onTabLoaded(tabItem, loaded));
+        }
+    }
+
+    private void onTabLoaded(TabItem tabItem, TabLoader.Loaded loaded) {
+        int position = openTabs.indexOf(tabItem);
+        if (position < 0 || activity.getCodeEditorFragment() == null) {
+            // Closed while loading
+            if (loaded.document != null) loaded.document.close();
+            return;
+        }
+        if (tabItem.getFile().lastModified() != loaded.modified) {
+            // Written while we were reading it; read again
+            if (loaded.document != null) loaded.document.close();
+            tabLoader.load(tabItem.getFile(), again -> onTabLoaded(tabItem, again));
+            return;
+        }
+        if (loaded.error != null) {
+            Log.e(TAG, "Error opening file: " + tabItem.getFile().getAbsolutePath(), loaded.error);
+            activity.showToast("Error opening file: " + loaded.error.getMessage());
+            removeTabAtPosition(position);
+            return;
+        }
+        if (loaded.document != null) {
+            // Mapped and indexed in the background instead of read into a String
+            tabItem.setLargeDocument(loaded.document);
+            tabItem.setReadOnly(true);
+            tabItem.setWrapEnabled(false);
+        } else {
+            tabItem.setContent(loaded.content);
+            prefetchLinkedFiles(tabItem.getFile(), loaded.content);
+        }
+        tabItem.setLoading(false);
+        activity.getCodeEditorFragment().refreshFileTab(position);
+    }
+
+    /**
+     * Called whenever a tab becomes the active page: keeps it resident, bringing it back from
+     * disk if it was parked, and parks the least recently used tabs beyond the resident limit.
+     * The adapter reports this from inside a bind, so the work is posted.
+     */
+    public void onActiveTabChanged(File file) {
+        mainHandler.post(() -> updateResidency(file));
+    }
+
+    private void updateResidency(File file) {
+        if (activity.getCodeEditorFragment() == null) return;
+        TabItem active = null;
+        for (TabItem tab : openTabs) {
+            if (tab.getFile().equals(file)) {
+                active = tab;
+                break;
             }
-            String content = fileManager.readFileContent(file);
-            TabItem tabItem = new TabItem(file, content);
-            // Initialize tab defaults from Settings
-            tabItem.setWrapEnabled(SettingsActivity.isDefaultWordWrap(activity));
-            tabItem.setReadOnly(SettingsActivity.isDefaultReadOnly(activity));
+        }
+        if (active == null) return;
+        // Parked tabs keep no text in memory to journal, so record their last edits first
+        autosave.flushJournals();
+        for (TabItem parked : residency.touch(active, openTabs)) {
+            activity.getCodeEditorFragment().refreshFileTab(openTabs.indexOf(parked));
+        }
+        if (active.isEvicted() && !active.isLoading() && !active.isModified()
+                && LargeFileDocument.isLarge(active.getFile())) {
+            // A session tab that is now a large file is mapped, never read back into memory
+            TabItem opening = active;
+            opening.setEvicted(false);
+            opening.setLoading(true);
+            opening.setLargeFileTopLine(opening.getCursorLine());
+            tabLoader.load(opening.getFile(), loaded -> onTabLoaded(opening, loaded));
+            activity.getCodeEditorFragment().refreshFileTab(openTabs.indexOf(opening));
+        } else if (active.isEvicted() && !active.isLoading()) {
+            TabItem restoring = active;
+            residency.restore(restoring, error -> onTabRestored(restoring, error));
+            activity.getCodeEditorFragment().refreshFileTab(openTabs.indexOf(restoring));
+        }
+    }
+
+    private void onTabRestored(TabItem tabItem, IOException error) {
+        int position = openTabs.indexOf(tabItem);
+        if (position < 0 || activity.getCodeEditorFragment() == null) return;
+        if (error != null) {
+            Log.e(TAG, "Error restoring tab: " + tabItem.getFile().getAbsolutePath(), error);
+            activity.showToast("Error opening file: " + error.getMessage());
+            // A parked tab with unsaved text keeps it in its state; only clean tabs go away
+            if (!tabItem.isModified()) removeTabAtPosition(position);
+            return;
+        }
+        activity.getCodeEditorFragment().refreshFileTab(position);
+    }
+
+    /** Brings a parked tab's text back before it is saved or refreshed. */
+    private boolean ensureResident(TabItem tabItem) {
+        if (residency.restoreNow(tabItem)) return true;
+        activity.showToast("Could not restore " + tabItem.getFileName());
+        return false;
+    }
+
+    /**
+     * Reopens the tabs of a saved editor session without reading any of them: every tab starts
+     * parked with its cursor and scroll, and is read when it is first shown. Must run before
+     * the code editor page is created. Returns the index of the session's active tab among
+     * the reopened ones, or -1.
+     */
+    public int restoreSession(EditorSession session) {
+        if (!openTabs.isEmpty()) return -1;
+        int active = -1;
+        List<EditorSession.Tab> tabs = session.getTabs();
+        for (int i = 0; i < tabs.size(); i++) {
+            EditorSession.Tab state = tabs.get(i);
+            File file = new File(state.path);
+            if (!file.isFile()) continue;
+            TabItem tabItem = new TabItem(file, "");
+            tabItem.setWrapEnabled(state.wrap);
+            tabItem.setReadOnly(state.readOnly);
+            tabItem.setViewState(state.cursorLine, state.cursorColumn, state.scrollX, state.scrollY);
+            tabItem.setEvicted(true);
+            if (i == session.getActiveTab()) active = openTabs.size();
             openTabs.add(tabItem);
-            activity.getCodeEditorFragment().addFileTab(tabItem); // Add to fragment's adapter
-            // Switch to Code tab (position 1) and then to the newly opened file
-            activity.getMainViewPager().setCurrentItem(1, false);
-            activity.getCodeEditorFragment().setFileViewPagerCurrentItem(openTabs.size() - 1, true);
-            activity.getCodeEditorFragment().refreshFileTabLayout();
-        } catch (IOException e) {
-            Log.e(TAG, "Error opening file: " + file.getAbsolutePath(), e);
-            activity.showToast("Error opening file: " + e.getMessage());
+        }
+        return active;
+    }
+
+    /** Captures the open tabs (diff tabs are not kept) together with the rest of the session. */
+    public EditorSession captureSession(int mainPage, Set<String> expandedPaths, String chatWindowJson) {
+        TabItem activeTab = getActiveTabItem();
+        List<EditorSession.Tab> tabs = new ArrayList<>();
+        int active = -1;
+        for (TabItem tab : openTabs) {
+            if (tab.getFile().getName().startsWith("DIFF_")) continue;
+            if (tab == activeTab) active = tabs.size();
+            // A large file's position is the top line of its window
+            int line = tab.isLargeFile() ? tab.getLargeFileTopLine() : tab.getCursorLine();
+            tabs.add(new EditorSession.Tab(tab.getFile().getAbsolutePath(), line, tab.getCursorColumn(),
+                    tab.getScrollX(), tab.getScrollY(), tab.isWrapEnabled(), tab.isReadOnly()));
+        }
+        return new EditorSession(tabs, active, mainPage, expandedPaths, chatWindowJson);
+    }
+
+    /** Called for every edit the user makes in a tab. */
+    public void onTabEdited(TabItem tabItem) {
+        autosave.onEdited(tabItem);
+    }
+
+    /**
+     * Writes all modified tabs in the background, e.g. when the editor goes to the background.
+     * Parked tabs are already safe in their swap journals and are saved once they come back.
+     */
+    public void flushAutosave() {
+        for (TabItem tab : openTabs) {
+            if (tab.isModified()) autosave.flush(tab);
         }
     }
 
+    /**
+     * Reopens files whose unsaved edits were left in swap journals by a previous run that
+     * ended without saving them (e.g. a crash). They open as modified tabs in the background.
+     */
+    public void recoverUnsavedChanges() {
+        autosave.recover(openTabs, this::openRecovered);
+    }
+
+    private void openRecovered(File file, String text) {
+        if (activity.getCodeEditorFragment() == null) return;
+        for (int i = 0; i < openTabs.size(); i++) {
+            TabItem open = openTabs.get(i);
+            if (!open.getFile().equals(file)) continue;
+            // Reopened from the session without the edits; anything with edits of its own wins
+            if (open.isModified() || open.isLargeFile()) return;
+            open.setContent(text);
+            open.setModified(true);
+            open.setEvicted(false); // a restore in flight sees this and stands down
+            open.setLoading(false);
+            activity.getCodeEditorFragment().refreshFileTab(i);
+            activity.showToast("Recovered unsaved changes to " + file.getName());
+            return;
+        }
+        TabItem tabItem = new TabItem(file, text);
+        tabItem.setWrapEnabled(SettingsActivity.isDefaultWordWrap(activity));
+        tabItem.setReadOnly(SettingsActivity.isDefaultReadOnly(activity));
+        tabItem.setModified(true);
+        openTabs.add(tabItem);
+        activity.getCodeEditorFragment().addFileTab(tabItem);
+        activity.getCodeEditorFragment().refreshFileTabLayout();
+        activity.showToast("Recovered unsaved changes to " + file.getName());
+    }
+
+    private void prefetchLinkedFiles(File file, String content) {
+        String name = file.getName().toLowerCase();
+        if (!name.endsWith(".html") && !name.endsWith(".htm")) return;
+        Matcher m = LINKED_FILE.matcher(content);
+        int count = 0;
+        while (m.find() && count < MAX_LINKED_PREFETCH) {
+            File linked = new File(file.getParentFile(), m.group(1).trim());
+            if (!linked.isFile() || isOpen(linked)) continue;
+            tabLoader.prefetch(linked);
+            count++;
+        }
+    }
+
+    private boolean isOpen(File file) {
+        for (TabItem tab : openTabs) {
+            if (tab.getFile().equals(file)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Opens a file and places the cursor at the given 0-based line and column.
+     * The selection is applied after the editor page has been laid out.
+     */
+    public void openFileAt(File file, int line, int column) {
+        openFile(file);
+        if (activity.getCodeEditorFragment() == null) return;
+        for (TabItem tab : openTabs) {
+            if (!tab.getFile().equals(file)) continue;
+            if (tab.isLoading() || tab.isEvicted()) {
+                // Still reading in the background (or parked); the adapter applies it once bound.
+                // Large files open with this line at the top of their window.
+                tab.setPendingCursor(line, column);
+                tab.setLargeFileTopLine(line);
+                return;
+            }
+            if (tab.isLargeFile()) {
+                // The editor only holds a window of a large file; start the window at the line
+                tab.setLargeFileTopLine(line);
+                activity.getCodeEditorFragment().refreshFileTab(openTabs.indexOf(tab));
+                return;
+            }
+        }
+        activity.getMainViewPager().post(() -> {
+            io.github.rosemoe.sora.widget.CodeEditor editor = activity.getCodeEditorFragment().getActiveCodeEditor();
+            if (editor == null) return;
+            int lineCount = editor.getText().getLineCount();
+            int targetLine = Math.max(0, Math.min(line, lineCount - 1));
+            int targetColumn = Math.max(0, Math.min(column, editor.getText().getColumnCount(targetLine)));
+            editor.setSelection(targetLine, targetColumn);
+            editor.ensureSelectionVisible();
+        });
+    }
+
     /**
      * Opens a new tab specifically for displaying a diff.
      * @param fileName The name of the file being diffed.
@@ -154,13 +422,21 @@ public class TabManager {
             activity.getCodeEditorFragment().refreshFileTabLayout();
             return;
         }
+        if (tabItem.isEvicted() && !ensureResident(tabItem)) return;
+        if (tabItem.isLoading()) return;
+        if (tabItem.isLargeFile()) {
+            activity.showToast("Large files are opened read-only.");
+            return;
+        }
         try {
             if (fileManager == null) {
                 activity.showToast("File manager not initialized.");
                 return;
             }
-            fileManager.writeFileContent(tabItem.getFile(), tabItem.getContent());
+            autosave.supersede(tabItem);
+            fileManager.writeFileContent(tabItem.getFile(), tabItem.getSnapshot());
             tabItem.setModified(false);
+            autosave.discard(tabItem);
             activity.showToast("File saved.");
             activity.getCodeEditorFragment().refreshFileTabLayout();
         } catch (IOException e) {
@@ -192,7 +468,9 @@ public class TabManager {
         TabItem tabItem = openTabs.get(position);
         File file = tabItem.getFile();
 
-        // Don't refresh diff tabs
+        // Don't refresh diff tabs or tabs that are still loading
+        if (tabItem.isEvicted() && !ensureResident(tabItem)) return;
+        if (tabItem.isLoading()) return;
         if (file.getName().startsWith("DIFF_")) {
             activity.showToast("Cannot refresh a diff tab.");
             return;
@@ -205,10 +483,19 @@ public class TabManager {
             return;
         }
 
+        if (tabItem.isLargeFile()) {
+            if (tabItem.reloadContent(fileManager)) {
+                activity.getCodeEditorFragment().refreshFileTab(position);
+                activity.showToast("Tab refreshed.");
+            }
+            return;
+        }
+
         try {
             String newContent = fileManager.readFileContent(file);
             tabItem.setContent(newContent);
             tabItem.setModified(false); // Content is now synced with the file
+            autosave.discard(tabItem);
             activity.getCodeEditorFragment().refreshFileTab(position); // Refresh the specific tab in the adapter
             activity.showToast("Tab refreshed.");
         } catch (IOException e) {
@@ -231,6 +518,8 @@ public class TabManager {
             activity.getCodeEditorFragment().refreshFileTabLayout();
             return;
         }
+        if (tabItem.isEvicted() && !ensureResident(tabItem)) return;
+        if (tabItem.isLargeFile() || tabItem.isLoading()) return;
         try {
             if (fileManager == null) {
                 if (showToast) {
@@ -238,8 +527,10 @@ public class TabManager {
                 }
                 return;
             }
-            fileManager.writeFileContent(tabItem.getFile(), tabItem.getContent());
+            autosave.supersede(tabItem);
+            fileManager.writeFileContent(tabItem.getFile(), tabItem.getSnapshot());
             tabItem.setModified(false);
+            autosave.discard(tabItem);
             if (showToast) {
                 activity.showToast("File saved.");
             }
@@ -301,6 +592,11 @@ public class TabManager {
                 }
             }
             openTabs.remove(position);
+            if (removed != null) {
+                removed.release();
+                residency.forget(removed);
+                autosave.discard(removed);
+            }
             activity.getCodeEditorFragment().removeFileTab(position);
             activity.getCodeEditorFragment().refreshFileTabLayout();
         }
@@ -354,6 +650,13 @@ public class TabManager {
         if (activity.getCodeEditorFragment() != null && activity.getCodeEditorFragment().getFileTabAdapter() != null) {
             activity.getCodeEditorFragment().getFileTabAdapter().clearDiffCaches();
         }
+        for (TabItem tab : openTabs) {
+            if (tab != tabToKeep) {
+                tab.release();
+                residency.forget(tab);
+                autosave.discard(tab);
+            }
+        }
         openTabs.clear();
         openTabs.add(tabToKeep);
 
@@ -404,6 +707,11 @@ public class TabManager {
         if (activity.getCodeEditorFragment() != null && activity.getCodeEditorFragment().getFileTabAdapter() != null) {
             activity.getCodeEditorFragment().getFileTabAdapter().clearDiffCaches();
         }
+        for (TabItem tab : openTabs) {
+            tab.release();
+            residency.forget(tab);
+            autosave.discard(tab);
+        }
         openTabs.clear();
         activity.getCodeEditorFragment().refreshAllFileTabs();
         activity.getCodeEditorFragment().refreshFileTabLayout();
@@ -441,70 +749,117 @@ public class TabManager {
     }
 
     /**
-     * Refreshes the content of open tabs after an AI action,
-     * checking for file existence, content changes, and path updates.
-     * This method is now called *after* user approval.
+     * Brings open tabs in line with a coalesced batch of file changes: tabs whose file was
+     * deleted are closed, unmodified tabs whose file changed on disk are reloaded, and an
+     * in-app rewrite that carries its before and after text is merged into the tab (see
+     * {@link #mergeIntoTab}), parked or not, so neither the unsaved edits nor the write are
+     * lost. Tabs with unsaved edits are otherwise left alone. Must be called on the UI thread.
      */
-    public void refreshOpenTabsAfterAi() {
-        boolean tabsChanged = false;
-        List<TabItem> toRemove = new ArrayList<>();
-        List<TabItem> currentOpenTabs = new ArrayList<>(openTabs);
-
-        if (fileManager == null || activity.getProjectDirectory() == null) {
-            Log.e(TAG, "refreshOpenTabsAfterAi: FileManager or projectDir not initialized!");
-            activity.showToast("Error refreshing tabs after AI.");
-            return;
-        }
-
-        for (TabItem tab : currentOpenTabs) {
-            // Skip diff tabs as they are not real files and don't need content refresh from disk
-            if (tab.getFile().getName().startsWith("DIFF_")) {
+    public void applyFileChanges(FileChangeBus.ChangeSet changes) {
+        if (fileManager == null || activity.getCodeEditorFragment() == null) return;
+        for (int i = openTabs.size() - 1; i >= 0; i--) {
+            TabItem tab = openTabs.get(i);
+            File tabFile = tab.getFile();
+            // Diff tabs are not backed by real files
+            if (tabFile.getName().startsWith("DIFF_")) continue;
+            FileChangeBus.Change change = changes.changeFor(tabFile);
+            if (change == null) continue;
+
+            if (!tabFile.exists()) {
+                if (!tab.isModified()) {
+                    Log.d(TAG, "Tab file " + tabFile.getPath() + " no longer exists. Removing tab.");
+                    removeTabAtPosition(i);
+                }
                 continue;
             }
-
-            File tabFile = tab.getFile();
-            String relativePath = fileManager.getRelativePath(tabFile, activity.getProjectDirectory());
-            if (relativePath == null) {
-                Log.e(TAG, "Could not determine relative path for tab: " + tabFile.getAbsolutePath());
-                toRemove.add(tab);
-                tabsChanged = true;
+            // A loading tab rereads the file if it changed during the read (see onTabLoaded)
+            if (tab.isLoading()) continue;
+            if (tab.isEvicted()) {
+                // Without unsaved text it is read from disk when it comes back. With it, its old
+                // text would later be saved over the write, so it comes back now to merge
+                if (!tab.isModified() || !change.hasRevision() || tab.isLargeFile() || !ensureResident(tab)) continue;
+                activity.getCodeEditorFragment().refreshFileTab(i);
+            }
+            if (change.hasRevision() && !tab.isLargeFile()) {
+                mergeIntoTab(tab, change);
+                continue;
+            }
+            if (tab.isModified()) continue;
+            if (tab.isLargeFile()) {
+                if (tab.reloadContent(fileManager)) activity.getCodeEditorFragment().refreshFileTab(i);
                 continue;
             }
-            File currentFileInProjectDir = new File(activity.getProjectDirectory(), relativePath);
-
-            if (!currentFileInProjectDir.exists()) {
-                Log.d(TAG, "Tab file " + currentFileInProjectDir.getPath() + " no longer exists. Removing tab.");
-                toRemove.add(tab);
-                tabsChanged = true;
-            } else {
-                try {
-                    String newContent = fileManager.readFileContent(currentFileInProjectDir);
-                    if (!newContent.equals(tab.getContent())) {
-                        tab.setContent(newContent);
-                        tab.setModified(false); // Mark as not modified as content is synced
-                        tabsChanged = true;
-                        Log.d(TAG, "Tab content for " + tab.getFileName() + " updated by AI.");
-                    }
-                    // Check if the file path itself changed (e.g., due to rename)
-                    if (!tab.getFile().getAbsolutePath().equals(currentFileInProjectDir.getAbsolutePath())) {
-                        Log.d(TAG, "Tab file path updated for " + tab.getFileName() + " from " + tab.getFile().getAbsolutePath() + " to " + currentFileInProjectDir.getAbsolutePath());
-                        tab.setFile(currentFileInProjectDir);
-                        tabsChanged = true;
-                    }
-
-                } catch (IOException e) {
-                    Log.e(TAG, "Error reloading tab content after AI action: " + currentFileInProjectDir.getName(), e);
-                    toRemove.add(tab); // Remove tab if content cannot be reloaded
-                    tabsChanged = true;
+            try {
+                String newContent = fileManager.readFileContent(tabFile);
+                if (!newContent.equals(tab.getContent())) {
+                    tab.setContent(newContent);
+                    tab.setModified(false);
+                    activity.getCodeEditorFragment().refreshFileTab(i);
                 }
+            } catch (IOException e) {
+                Log.e(TAG, "Error reloading tab content: " + tabFile.getName(), e);
             }
         }
+        // Files the app (usually the AI) just wrote are the next ones the user tends to open
+        int prefetchedCount = 0;
+        for (FileChangeBus.Change c : changes.getChanges()) {
+            if (prefetchedCount >= MAX_LINKED_PREFETCH) break;
+            if (c.external || c.type == FileChangeBus.Type.DELETED || isOpen(c.file)) continue;
+            tabLoader.prefetch(c.file);
+            prefetchedCount++;
+        }
+    }
 
-        openTabs.removeAll(toRemove);
+    /**
+     * Brings an in-app rewrite of a tab's file (usually by the AI) into the tab as a three-way
+     * merge of the text the write started from, the tab's text and the written text. Unsaved
+     * edits survive, only the changed hunks are applied to the document and editor, and lines
+     * both sides changed differently are left between conflict markers. The merge runs in the
+     * background; a tab edited meanwhile is merged again against its newer text.
+     */
+    private void mergeIntoTab(TabItem tab, FileChangeBus.Change change) {
+        // A queued idle save of the current text would overwrite what was just written
+        autosave.supersede(tab);
+        PieceTable document = tab.getDocument();
+        PieceTable.Snapshot snapshot = document.snapshot();
+        merger.execute(() -> {
+            ThreeWayMerge.Result result = ThreeWayMerge.merge(change.before, snapshot.toString(), change.after);
+            mainHandler.post(() -> onTabMerged(tab, change, document, snapshot.getVersion(), result));
+        });
+    }
 
-        if (tabsChanged) {
-            activity.getCodeEditorFragment().refreshAllFileTabs();
+    private void onTabMerged(TabItem tab, FileChangeBus.Change change, PieceTable document, long version,
+                             ThreeWayMerge.Result result) {
+        int position = openTabs.indexOf(tab);
+        if (position < 0 || tab.isLoading() || tab.isLargeFile() || activity.getCodeEditorFragment() == null) return;
+        if (tab.isEvicted()) {
+            // Parked again while merging; its parked text still lacks the write
+            if (tab.isModified() && ensureResident(tab)) {
+                activity.getCodeEditorFragment().refreshFileTab(position);
+                mergeIntoTab(tab, change);
+            }
+            return;
+        }
+        if (tab.getDocument() != document) return;
+        if (document.getVersion() != version) {
+            mergeIntoTab(tab, change);
+            return;
+        }
+        activity.getCodeEditorFragment().getFileTabAdapter().applyTabEdits(position, result.replacements);
+        tab.setModified(!result.matchesTheirs());
+        if (tab.isModified()) {
+            autosave.onEdited(tab);
+        } else {
+            autosave.discard(tab);
+        }
+        if (tab.isModified() != tab.getLastNotifiedModifiedState()) {
+            tab.setLastNotifiedModifiedState(tab.isModified());
             activity.getCodeEditorFragment().refreshFileTabLayout();
         }
+        if (result.conflicts > 0) {
+            activity.showToast(tab.getFileName() + " changed on disk: " + result.conflicts
+                    + (result.conflicts == 1 ? " conflict" : " conflicts")
+                    + " with your unsaved edits, marked with " + ThreeWayMerge.OURS_MARKER);
+        }
     }
 }
@@ -0,0 +1,297 @@
+package com.codex.apk.editor;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.codex.apk.FileManager;
+import com.codex.apk.SimpleSoraTabAdapter;
+import com.codex.apk.TabItem;
+import com.codex.apk.util.PieceTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Keeps only the most recently used tabs in memory. Colder tabs are parked in a small state
+ * file (file stamp, modified flag, cursor, scroll, and the text only when it has unsaved edits)
+ * and their text is dropped; clean text is simply read back from the project file. A parked
+ * tab shows the loading placeholder until it is activated again.
+ *
+ * The editor's undo history is not kept: Sora rebuilds it whenever the editor text is replaced,
+ * which already happens each time a recycled page is rebound.
+ *
+ * All methods are called on the main thread; state files are written and read on one IO thread.
+ */
+class TabResidency {
+    private static final String TAG = "TabResidency";
+
+    static final int MAX_RESIDENT = 8;
+
+    private static final int MAGIC = 0x43585453; // "CXTS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TabResidency");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** What a parked tab needs to come back; content is null for a tab without unsaved edits. */
+    static final class State {
+        boolean modified;
+        int cursorLine;
+        int cursorColumn;
+        int scrollX;
+        int scrollY;
+        String content;
+        IOException error;
+    }
+
+    private final Context appContext;
+    private final File stateDir;
+    private final FileManager fileManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<TabItem> recent = new ArrayList<>(); // most recently used first
+    // Dirty text whose state file is not written yet (or failed to write); restores read it first
+    private final Map<TabItem, PieceTable.Snapshot> unwritten = new HashMap<>();
+
+    TabResidency(Context context, File projectDir, FileManager fileManager, List<TabItem> openTabs) {
+        String key = projectDir != null ? Integer.toHexString(projectDir.getAbsolutePath().hashCode()) : "default";
+        this.appContext = context.getApplicationContext();
+        this.stateDir = new File(new File(context.getCacheDir(), "tab_state"), key);
+        this.fileManager = fileManager;
+        // Parked state only lives as long as the editor session that wrote it. Tabs outlive
+        // the activity across configuration changes, so keep the state of those still parked.
+        Set<String> keep = new HashSet<>();
+        for (TabItem tab : openTabs) {
+            if (tab.isEvicted()) keep.add(stateFileFor(tab.getFile()).getName());
+        }
+        io.execute(() -> {
+            File[] stale = stateDir.listFiles();
+            if (stale == null) return;
+            for (File f : stale) {
+                if (!keep.contains(f.getName())) f.delete();
+            }
+        });
+    }
+
+    /**
+     * Marks {@code tab} as the most recently used and parks whichever tabs fall outside the
+     * resident set. Returns the parked tabs so their pages can be rebound as placeholders.
+     */
+    List<TabItem> touch(TabItem tab, List<TabItem> openTabs) {
+        recent.remove(tab);
+        recent.add(0, tab);
+        // Tabs opened without ever being shown still count, as the least recently used
+        for (TabItem open : openTabs) {
+            if (!recent.contains(open)) recent.add(open);
+        }
+        recent.retainAll(openTabs);
+
+        List<TabItem> parked = new ArrayList<>();
+        int resident = 0;
+        for (TabItem t : recent) {
+            if (t.isEvicted() || !canEvict(t)) continue;
+            if (++resident > MAX_RESIDENT) {
+                evict(t);
+                parked.add(t);
+            }
+        }
+        return parked;
+    }
+
+    /** Drops everything kept for a closed tab. */
+    void forget(TabItem tab) {
+        recent.remove(tab);
+        unwritten.remove(tab);
+        File stateFile = stateFileFor(tab.getFile());
+        io.execute(stateFile::delete);
+    }
+
+    private static boolean canEvict(TabItem tab) {
+        // Diff tabs have no file to come back from; large and loading tabs hold no text
+        return !tab.isLoading() && !tab.isLargeFile() && !tab.getFile().getName().startsWith("DIFF_");
+    }
+
+    /** The tab's state as known in memory; a state file, if any, overrides it. */
+    private static State stateOf(TabItem tab) {
+        State state = new State();
+        state.modified = tab.isModified();
+        state.cursorLine = tab.getCursorLine();
+        state.cursorColumn = tab.getCursorColumn();
+        state.scrollX = tab.getScrollX();
+        state.scrollY = tab.getScrollY();
+        return state;
+    }
+
+    private void evict(TabItem tab) {
+        State state = stateOf(tab);
+        PieceTable.Snapshot dirtyText = state.modified ? tab.getSnapshot() : null;
+        if (dirtyText != null) unwritten.put(tab, dirtyText);
+
+        File file = tab.getFile();
+        File stateFile = stateFileFor(file);
+        io.execute(() -> {
+            boolean written = write(stateFile, file, state, dirtyText);
+            if (written && dirtyText != null) {
+                mainHandler.post(() -> {
+                    // Unless the tab was restored and parked again with newer text meanwhile
+                    if (unwritten.get(tab) == dirtyText) unwritten.remove(tab);
+                });
+            }
+        });
+        tab.setContent("");
+        tab.setEvicted(true);
+    }
+
+    /**
+     * Brings a parked tab back in the background: unsaved text from its state file, otherwise
+     * the current file on disk. The tab shows the loading placeholder meanwhile; {@code onRestored}
+     * runs on the main thread with the tab resident again, or with the read error.
+     */
+    void restore(TabItem tab, Consumer<IOException> onRestored) {
+        if (!tab.isEvicted() || tab.isLoading()) return;
+        tab.setLoading(true);
+        PieceTable.Snapshot pending = unwritten.get(tab);
+        State known = stateOf(tab);
+        File file = tab.getFile();
+        File stateFile = stateFileFor(file);
+        io.execute(() -> {
+            State state = read(stateFile, file, pending, known);
+            if (state.error == null) SimpleSoraTabAdapter.prepareLanguage(appContext, file.getName());
+            mainHandler.post(() -> {
+                tab.setLoading(false);
+                if (!tab.isEvicted()) return; // restored synchronously in the meantime
+                apply(tab, state);
+                onRestored.accept(state.error);
+            });
+        });
+    }
+
+    /**
+     * Brings a parked tab back on the calling thread, for paths such as saving that need its
+     * text right away. Returns false if the text could not be read.
+     */
+    boolean restoreNow(TabItem tab) {
+        if (!tab.isEvicted()) return true;
+        State state = read(stateFileFor(tab.getFile()), tab.getFile(), unwritten.get(tab), stateOf(tab));
+        apply(tab, state);
+        return state.error == null;
+    }
+
+    private void apply(TabItem tab, State state) {
+        if (state.error != null) return;
+        tab.setContent(state.content);
+        tab.setModified(state.modified);
+        tab.setEvicted(false);
+        tab.setViewState(state.cursorLine, state.cursorColumn, state.scrollX, state.scrollY);
+        if (tab.getPendingCursorLine() < 0) {
+            // Unless something (e.g. a jump to a search result) already asked for a position
+            tab.setPendingCursor(state.cursorLine, state.cursorColumn);
+            tab.setPendingScroll(true);
+        }
+        unwritten.remove(tab);
+        // A later eviction writes a fresh one; never let an old one resurface
+        File stateFile = stateFileFor(tab.getFile());
+        io.execute(stateFile::delete);
+    }
+
+    private File stateFileFor(File file) {
+        return new File(stateDir, Integer.toHexString(file.getAbsolutePath().hashCode()) + ".tab");
+    }
+
+    // ===== State files =====
+
+    private static boolean write(File stateFile, File file, State state, PieceTable.Snapshot dirtyText) {
+        stateFile.getParentFile().mkdirs();
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(file.getAbsolutePath());
+            out.writeBoolean(state.modified);
+            out.writeInt(state.cursorLine);
+            out.writeInt(state.cursorColumn);
+            out.writeInt(state.scrollX);
+            out.writeInt(state.scrollY);
+            out.writeBoolean(dirtyText != null);
+            if (dirtyText != null) {
+                // The text runs to the end of the file
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                dirtyText.writeTo(writer);
+                writer.flush();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not park tab state for " + file.getName(), e);
+            tmp.delete();
+            return false;
+        }
+        if (!tmp.renameTo(stateFile)) {
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    private State read(File stateFile, File file, PieceTable.Snapshot pending, State state) {
+        try {
+            if (!readStateFile(stateFile, file, state)) state.modified = pending != null;
+            if (pending != null) {
+                state.content = pending.toString();
+            } else if (state.content == null) {
+                state.content = fileManager.readFileContent(file);
+            }
+        } catch (IOException e) {
+            state.error = e;
+        }
+        return state;
+    }
+
+    /** Fills {@code state} from a state file written for {@code file}; false if there is none. */
+    private static boolean readStateFile(File stateFile, File file, State state) {
+        if (!stateFile.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return false;
+            if (!in.readUTF().equals(file.getAbsolutePath())) return false;
+            state.modified = in.readBoolean();
+            state.cursorLine = in.readInt();
+            state.cursorColumn = in.readInt();
+            state.scrollX = in.readInt();
+            state.scrollY = in.readInt();
+            if (in.readBoolean()) {
+                StringBuilder sb = new StringBuilder();
+                Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+                char[] buf = new char[8192];
+                int n;
+                while ((n = reader.read(buf)) != -1) sb.append(buf, 0, n);
+                state.content = sb.toString();
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable tab state for " + file.getName(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.codex.apk.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * App-wide LRU cache of line diffs, keyed by the 64-bit hashes and lengths of the old and new
+ * content and the algorithm. The same pair of contents is typically diffed several times for
+ * one AI change: for the chat card's counts, the diff tab and the apply result. Each pair is
+ * diffed once and its edits, counts and formatted hunks are reused.
+ *
+ * Entries are charged by an estimate of their retained size and evicted least recently used
+ * first once {@link #BUDGET_BYTES} is exceeded. Contents themselves are never retained.
+ */
+public final class DiffCache {
+    private DiffCache() {}
+
+    static final long BUDGET_BYTES = 4L * 1024 * 1024;
+    // Results larger than this share of the budget are returned but not kept
+    private static final long MAX_ENTRY_BYTES = BUDGET_BYTES / 4;
+
+    private static final class Key {
+        final long oldHash;
+        final long newHash;
+        final int oldLength;
+        final int newLength;
+        final LineDiff.Algorithm algorithm;
+
+        Key(String oldContent, String newContent, LineDiff.Algorithm algorithm) {
+            this.oldHash = XxHash64.hash(oldContent);
+            this.newHash = XxHash64.hash(newContent);
+            this.oldLength = oldContent.length();
+            this.newLength = newContent.length();
+            this.algorithm = algorithm;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return oldHash == k.oldHash && newHash == k.newHash && oldLength == k.oldLength
+                    && newLength == k.newLength && algorithm == k.algorithm;
+        }
+
+        @Override public int hashCode() {
+            return (int) (oldHash ^ (oldHash >>> 32)) * 31 + (int) (newHash ^ (newHash >>> 32)) + algorithm.ordinal();
+        }
+    }
+
+    /** The diff of one content pair. Immutable apart from the memoized unified text. */
+    public static final class Entry {
+        public final List<LineDiff.Edit> edits;
+        public final int added;
+        public final int removed;
+        // Guarded by DiffCache.class, like the accounting they feed
+        private String unifiedKey;
+        private String unified;
+        private boolean cached;
+
+        Entry(List<LineDiff.Edit> edits) {
+            this.edits = edits;
+            int a = 0, r = 0;
+            for (LineDiff.Edit e : edits) {
+                a += e.added();
+                r += e.removed();
+            }
+            this.added = a;
+            this.removed = r;
+        }
+
+        /** Unified text last formatted for {@code key} (file names and context), or null. */
+        public String getUnified(String key) {
+            synchronized (DiffCache.class) {
+                return key.equals(unifiedKey) ? unified : null;
+            }
+        }
+
+        /** Remembers the unified text for {@code key}; only the latest one is kept. */
+        public void setUnified(String key, String text) {
+            if (text.length() * 2L > MAX_ENTRY_BYTES) return;
+            synchronized (DiffCache.class) {
+                long before = retainedBytes();
+                unifiedKey = key;
+                unified = text;
+                if (cached) {
+                    bytes += retainedBytes() - before;
+                    trim();
+                }
+            }
+        }
+
+        long retainedBytes() {
+            return 64 + edits.size() * 40L + (unified != null ? unified.length() * 2L : 0);
+        }
+    }
+
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytes;
+
+    /**
+     * Returns the diff of the two contents, computing and caching it on a miss. AUTO is
+     * resolved before lookup, so it shares entries with the algorithm it picks. A hit costs
+     * hashing the contents; lines are only split on a miss.
+     */
+    public static Entry diff(String oldContent, String newContent, LineDiff.Algorithm algorithm) {
+        if (oldContent == null) oldContent = "";
+        if (newContent == null) newContent = "";
+        if (algorithm == LineDiff.Algorithm.AUTO) {
+            algorithm = LineDiff.choose(countLines(oldContent), countLines(newContent));
+        }
+        Key key = new Key(oldContent, newContent, algorithm);
+        Entry cached = lookup(key);
+        if (cached != null) return cached;
+        return store(key, new Entry(LineDiff.diff(LineDiff.splitLines(oldContent), LineDiff.splitLines(newContent), algorithm)));
+    }
+
+    /** As {@link #diff(String, String, LineDiff.Algorithm)} for callers that already split the lines. */
+    public static Entry diff(String oldContent, String newContent, String[] oldLines, String[] newLines,
+                             LineDiff.Algorithm algorithm) {
+        if (algorithm == LineDiff.Algorithm.AUTO) algorithm = LineDiff.choose(oldLines.length, newLines.length);
+        Key key = new Key(oldContent != null ? oldContent : "", newContent != null ? newContent : "", algorithm);
+        Entry cached = lookup(key);
+        if (cached != null) return cached;
+        return store(key, new Entry(LineDiff.diff(oldLines, newLines, algorithm)));
+    }
+
+    /** Added and removed line counts between two contents, as int[]{added, removed}. */
+    public static int[] countAddRemove(String oldContent, String newContent) {
+        Entry entry = diff(oldContent, newContent, LineDiff.Algorithm.AUTO);
+        return new int[]{entry.added, entry.removed};
+    }
+
+    public static synchronized void clear() {
+        for (Entry entry : entries.values()) entry.cached = false;
+        entries.clear();
+        bytes = 0;
+    }
+
+    private static synchronized Entry lookup(Key key) {
+        return entries.get(key);
+    }
+
+    // Diffs are computed outside the lock; if two threads raced on one pair, the first stored wins
+    private static synchronized Entry store(Key key, Entry entry) {
+        if (entry.retainedBytes() > MAX_ENTRY_BYTES) return entry;
+        Entry raced = entries.get(key);
+        if (raced != null) return raced;
+        entries.put(key, entry);
+        entry.cached = true;
+        bytes += entry.retainedBytes();
+        trim();
+        return entry;
+    }
+
+    /** Number of lines {@link LineDiff#splitLines} yields, without splitting. */
+    private static int countLines(String text) {
+        int lines = 1;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) lines++;
+        return lines;
+    }
+
+    private static void trim() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (bytes > BUDGET_BYTES && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            eldest.cached = false;
+            bytes -= eldest.retainedBytes();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.codex.apk.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project-scoped file change bus. In-app writers {@link #publish} and the external watcher
+ * {@link #publishExternal} what they touched; bursts are coalesced per path and delivered to
+ * subscribers as one {@link ChangeSet} per {@link #COALESCE_WINDOW_MS} window, so a 20-file AI
+ * edit produces one tree/tab/preview refresh instead of twenty.
+ *
+ * The search cache is notified synchronously on publish so a search issued right after a write
+ * never sees stale results; the symbol index and content hashes consume batched deltas.
+ */
+public final class FileChangeBus {
+
+    public enum Type { CREATED, MODIFIED, DELETED }
+
+    public static final class Change {
+        public final File file;
+        public final Type type;
+        public final boolean external;
+        /**
+         * For an in-app rewrite of an existing file, its text before and after; null otherwise.
+         * Lets an open tab with unsaved edits merge the change instead of ignoring it.
+         */
+        public final String before;
+        public final String after;
+
+        Change(File file, Type type, boolean external) {
+            this(file, type, external, null, null);
+        }
+
+        Change(File file, Type type, boolean external, String before, String after) {
+            this.file = file;
+            this.type = type;
+            this.external = external;
+            this.before = before;
+            this.after = after;
+        }
+
+        public boolean hasRevision() {
+            return before != null && after != null;
+        }
+    }
+
+    /** One coalesced batch of changes, at most one entry per path. */
+    public static final class ChangeSet {
+        private final List<Change> changes;
+
+        ChangeSet(List<Change> changes) {
+            this.changes = Collections.unmodifiableList(changes);
+        }
+
+        public List<Change> getChanges() { return changes; }
+
+        public boolean isEmpty() { return changes.isEmpty(); }
+
+        /** True when files were created or deleted, i.e. the tree shape may have changed. */
+        public boolean hasStructuralChanges() {
+            for (Change c : changes) if (c.type != Type.MODIFIED) return true;
+            return false;
+        }
+
+        /** Returns the change recorded for {@code file}, or for a deleted ancestor directory. */
+        public Change changeFor(File file) {
+            String path = file.getAbsolutePath();
+            for (Change c : changes) {
+                String p = c.file.getAbsolutePath();
+                if (p.equals(path)) return c;
+                if (c.type == Type.DELETED && path.startsWith(p + File.separator)) return c;
+            }
+            return null;
+        }
+    }
+
+    public interface Listener {
+        void onFilesChanged(ChangeSet changes);
+    }
+
+    static final long COALESCE_WINDOW_MS = 250;
+    /** External events for a path we just wrote ourselves are echoes of that write. */
+    private static final long ECHO_SUPPRESS_MS = 1500;
+
+    private static final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "FileChangeBus");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Map<String, FileChangeBus> INSTANCES = new ConcurrentHashMap<>();
+
+    public static FileChangeBus forProject(File projectDir) {
+        return INSTANCES.computeIfAbsent(projectDir.getAbsolutePath(), k -> new FileChangeBus(projectDir));
+    }
+
+    private final File projectDir;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LinkedHashMap<String, Change> pending = new LinkedHashMap<>();
+    private final Map<String, Long> recentInternalWrites = new ConcurrentHashMap<>();
+    private boolean flushScheduled;
+
+    private FileChangeBus(File projectDir) {
+        this.projectDir = projectDir;
+        // Project indexes are always-on subscribers.
+        listeners.add(changes -> {
+            SymbolIndex index = SymbolIndex.forProject(projectDir);
+            ProjectHashService hashes = ProjectHashService.forProject(projectDir);
+            boolean dirAppeared = false;
+            for (Change c : changes.getChanges()) {
+                if (c.type == Type.DELETED) index.removeFile(c.file);
+                else if (c.file.isDirectory()) dirAppeared = true;
+                else index.updateFile(c.file);
+                hashes.touch(c.file);
+            }
+            // A moved-in directory brings files nobody published individually.
+            if (dirAppeared) index.refreshAsync();
+        });
+    }
+
+    public void subscribe(Listener listener) {
+        if (listener != null && !listeners.contains(listener)) listeners.add(listener);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Marks {@code file} as about to be written by the app. The watcher can see a write before
+     * it is published; marking first makes those events echoes too.
+     */
+    public void expectWrite(File file) {
+        if (file == null) return;
+        recentInternalWrites.put(file.getAbsolutePath(), System.currentTimeMillis());
+    }
+
+    /** Reports a change made by the app itself. */
+    public void publish(File file, Type type) {
+        if (file == null) return;
+        recentInternalWrites.put(file.getAbsolutePath(), System.currentTimeMillis());
+        enqueue(new Change(file.getAbsoluteFile(), type, false));
+    }
+
+    /**
+     * Reports an in-app rewrite of an existing file together with its text before and after,
+     * see {@link Change#before}.
+     */
+    public void publishEdit(File file, String before, String after) {
+        if (file == null) return;
+        recentInternalWrites.put(file.getAbsolutePath(), System.currentTimeMillis());
+        enqueue(new Change(file.getAbsoluteFile(), Type.MODIFIED, false, before, after));
+    }
+
+    /** Reports a rename as a delete of the old path plus a create of the new one. */
+    public void publishRename(File oldFile, File newFile) {
+        publish(oldFile, Type.DELETED);
+        publish(newFile, Type.CREATED);
+    }
+
+    /** Reports a change seen by the filesystem watcher (other apps, git pulls, ...). */
+    public void publishExternal(File file, Type type) {
+        if (file == null) return;
+        Long wroteAt = recentInternalWrites.get(file.getAbsolutePath());
+        if (wroteAt != null && System.currentTimeMillis() - wroteAt < ECHO_SUPPRESS_MS) return;
+        enqueue(new Change(file.getAbsoluteFile(), type, true));
+    }
+
+    private void enqueue(Change change) {
+        SearchResultCache.notifyChanged(change.file);
+        synchronized (pending) {
+            String key = change.file.getAbsolutePath();
+            Change merged = merge(pending.get(key), change);
+            if (merged == null) pending.remove(key);
+            else pending.put(key, merged);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                dispatcher.schedule(this::flush, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Folds a new change into the pending one for the same path; null means "no net change". */
+    private static Change merge(Change prev, Change next) {
+        if (prev == null) return next;
+        boolean external = prev.external && next.external;
+        if (prev.type == Type.CREATED) {
+            if (next.type == Type.DELETED) return null;
+            return new Change(next.file, Type.CREATED, external);
+        }
+        if (prev.type == Type.DELETED && next.type != Type.DELETED) {
+            return new Change(next.file, Type.MODIFIED, external);
+        }
+        // Consecutive rewrites chain into one; a gap between them leaves no usable revision
+        if (prev.type == Type.MODIFIED && prev.hasRevision() && next.hasRevision() && prev.after.equals(next.before)) {
+            return new Change(next.file, Type.MODIFIED, external, prev.before, next.after);
+        }
+        return new Change(next.file, next.type, external);
+    }
+
+    /** Delivers pending changes immediately instead of waiting for the window to close. */
+    public void flush() {
+        List<Change> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        long cutoff = System.currentTimeMillis() - ECHO_SUPPRESS_MS;
+        recentInternalWrites.values().removeIf(t -> t < cutoff);
+        ChangeSet set = new ChangeSet(batch);
+        for (Listener l : listeners) {
+            try {
+                l.onFilesChanged(set);
+            } catch (RuntimeException ignored) {
+                // One failing subscriber must not starve the others
+            }
+        }
+    }
+
+    public File getProjectDir() {
+        return projectDir;
+    }
+}
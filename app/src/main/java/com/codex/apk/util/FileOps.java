@@ -5,6 +5,7 @@ import com.google.gson.JsonObject;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -16,21 +17,25 @@ import java.util.Comparator;
 import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public final class FileOps {
     private FileOps() {}
 
     public static boolean deleteRecursively(File f) {
         if (f == null) return false;
-        if (f.isDirectory()) {
-            File[] children = f.listFiles();
-            if (children != null) {
-                for (File c : children) deleteRecursively(c);
-            }
-        }
-        return f.delete();
+        boolean deleted = ParallelFileOps.delete(f);
+        SearchResultCache.notifyChanged(f);
+        return deleted;
+    }
+
+    /** Directories excluded from project-wide walks (hidden, dependencies, build output). */
+    public static boolean isSkippedDirectory(String name) {
+        return name.startsWith(".") || name.equals("node_modules") || name.equals("build") || name.equals("dist");
+    }
+
+    /** Temp files the app writes next to a file and renames over it or deletes again. */
+    public static boolean isStagingFile(String name) {
+        return name.startsWith(".") && (name.endsWith(".tmp") || name.endsWith(".patch.orig"));
     }
 
     public static String buildFileTree(File root, int maxDepth, int maxEntries) {
@@ -180,16 +185,16 @@ public final class FileOps {
         if (projectDir == null || !projectDir.exists() || !projectDir.isDirectory() || searchText == null || searchText.trim().isEmpty()) {
             return results;
         }
-        Pattern searchPattern = null;
+        RegexEngine.CompiledRegex searchPattern = null;
         if (useRegex) {
-            try { searchPattern = Pattern.compile(searchText, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE); }
+            try { searchPattern = RegexEngine.compile(searchText, !caseSensitive); }
             catch (Exception ignored) { useRegex = false; }
         }
         searchInFilesRecursive(projectDir, searchText, searchPattern, caseSensitive, useRegex, fileExtensions, results, maxResults);
         return results;
     }
 
-    private static void searchInFilesRecursive(File dir, String searchText, Pattern searchPattern,
+    private static void searchInFilesRecursive(File dir, String searchText, RegexEngine.CompiledRegex searchPattern,
                                                boolean caseSensitive, boolean useRegex, List<String> fileExtensions,
                                                List<LineSearchResult> results, int maxResults) {
         if (results.size() >= maxResults) return;
@@ -216,7 +221,7 @@ public final class FileOps {
         }
     }
 
-    private static void searchInFile(File file, String searchText, Pattern searchPattern,
+    private static void searchInFile(File file, String searchText, RegexEngine.CompiledRegex searchPattern,
                                      boolean caseSensitive, boolean useRegex, List<LineSearchResult> results, int maxResults) {
         if (results.size() >= maxResults) return;
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
@@ -225,7 +230,7 @@ public final class FileOps {
                 String searchLine = caseSensitive ? line : line.toLowerCase();
                 String target = caseSensitive ? searchText : searchText.toLowerCase();
                 if (useRegex && searchPattern != null) {
-                    if (searchPattern.matcher(line).find()) {
+                    if (searchPattern.mayMatch(line) && searchPattern.matcher(line).find()) {
                         results.add(new LineSearchResult(file, file.getName(), lineNumber, line.trim(), searchText));
                     }
                 } else {
@@ -235,73 +240,95 @@ public final class FileOps {
                 }
                 lineNumber++;
             }
-        } catch (IOException ignored) {}
+        } catch (IOException | RegexEngine.BudgetExceededException ignored) {}
     }
 
-    // Public: search in files and return offset/snippet oriented results
+    // Public: search in files and return offset/snippet oriented results.
+    // Results are served from SearchResultCache when possible; only files changed since the
+    // cached snapshot are rescanned.
     public static JsonArray searchInFilesOffsets(File projectDir, String searchText, boolean caseSensitive,
                                                  boolean useRegex, List<String> fileExtensions, int maxResults) {
         JsonArray out = new JsonArray();
         if (projectDir == null || !projectDir.exists() || !projectDir.isDirectory() || searchText == null || searchText.trim().isEmpty()) return out;
-        Pattern pattern = null;
+        RegexEngine.CompiledRegex regex = null;
         if (useRegex) {
-            try { pattern = Pattern.compile(searchText, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.MULTILINE); }
+            try { regex = RegexEngine.compile(searchText, !caseSensitive); }
             catch (Exception ignored) { useRegex = false; }
         }
+        final RegexEngine.CompiledRegex fRegex = regex;
+        SearchResultCache.FileScanner scanner = f -> scanFileOffsets(projectDir, f, searchText, caseSensitive, fRegex);
+        SearchResultCache.Key key = new SearchResultCache.Key(projectDir, searchText, caseSensitive, useRegex, fileExtensions);
+        JsonArray cached = SearchResultCache.lookup(key, maxResults, scanner);
+        if (cached != null) return cached;
+
+        SearchResultCache.Entry entry = SearchResultCache.begin();
+        boolean complete = true;
         Deque<File> dq = new ArrayDeque<>(); dq.add(projectDir);
-        while (!dq.isEmpty() && out.size() < maxResults) {
+        while (!dq.isEmpty()) {
+            if (out.size() >= maxResults) { complete = false; break; }
             File cur = dq.pollFirst();
             File[] files = cur != null ? cur.listFiles() : null; if (files == null) continue;
             for (File f : files) {
-                if (out.size() >= maxResults) break;
+                if (out.size() >= maxResults) { complete = false; break; }
                 if (f.isDirectory()) {
-                    String dn = f.getName();
-                    if (!dn.startsWith(".") && !dn.equals("node_modules") && !dn.equals("build") && !dn.equals("dist")) dq.addLast(f);
+                    if (!isSkippedDirectory(f.getName())) dq.addLast(f);
                     continue;
                 }
-                if (fileExtensions != null && !fileExtensions.isEmpty()) {
-                    String lower = f.getName().toLowerCase(); boolean ok = false;
-                    for (String ext : fileExtensions) { if (lower.endsWith("." + ext.toLowerCase())) { ok = true; break; } }
-                    if (!ok) continue;
+                if (!SearchResultCache.matchesExtensions(f, fileExtensions)) continue;
+                List<JsonObject> hits = scanner.scan(f);
+                SearchResultCache.record(entry, f.getAbsolutePath(), hits);
+                for (JsonObject o : hits) {
+                    if (out.size() >= maxResults) break;
+                    out.add(o);
                 }
-                try {
-                    String content = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
-                    if (useRegex && pattern != null) {
-                        Matcher m = pattern.matcher(content); int hits = 0;
-                        while (m.find() && out.size() < maxResults) {
-                            JsonObject o = new JsonObject();
-                            o.addProperty("path", projectDir.toPath().relativize(f.toPath()).toString());
-                            o.addProperty("start", m.start());
-                            o.addProperty("end", m.end());
-                            int s = Math.max(0, m.start() - 80); int e = Math.min(content.length(), m.end() + 80);
-                            o.addProperty("snippet", content.substring(s, e));
-                            out.add(o);
-                            if (++hits > 10) break;
-                        }
-                    } else {
-                        String hay = caseSensitive ? content : content.toLowerCase();
-                        String needle = caseSensitive ? searchText : searchText.toLowerCase();
-                        int from = 0; int hits = 0;
-                        while (from <= hay.length() && out.size() < maxResults) {
-                            int idx = hay.indexOf(needle, from);
-                            if (idx < 0) break;
-                            JsonObject o = new JsonObject();
-                            o.addProperty("path", projectDir.toPath().relativize(f.toPath()).toString());
-                            o.addProperty("start", idx);
-                            o.addProperty("end", idx + needle.length());
-                            int s = Math.max(0, idx - 80); int e = Math.min(content.length(), idx + needle.length() + 80);
-                            o.addProperty("snippet", content.substring(s, e));
-                            out.add(o);
-                            from = idx + Math.max(1, needle.length());
-                            if (++hits > 10) break;
-                        }
-                    }
-                } catch (Exception ignored) {}
             }
         }
+        SearchResultCache.store(key, entry, complete, maxResults);
         return out;
     }
 
+    // Scans one file, returning at most 11 offset/snippet hits (the historical per-file cap)
+    private static List<JsonObject> scanFileOffsets(File projectDir, File f, String searchText, boolean caseSensitive,
+                                                    RegexEngine.CompiledRegex regex) {
+        List<JsonObject> hits = new ArrayList<>();
+        try {
+            String content = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+            String rel = projectDir.toPath().relativize(f.toPath()).toString();
+            if (regex != null) {
+                if (!regex.mayMatch(content)) return hits;
+                RegexEngine.RegexMatcher m = regex.matcher(content);
+                while (m.find()) {
+                    hits.add(offsetHit(rel, content, m.start(), m.end()));
+                    if (hits.size() > 10) break;
+                }
+            } else {
+                String hay = caseSensitive ? content : content.toLowerCase();
+                String needle = caseSensitive ? searchText : searchText.toLowerCase();
+                int from = 0;
+                while (from <= hay.length()) {
+                    int idx = hay.indexOf(needle, from);
+                    if (idx < 0) break;
+                    hits.add(offsetHit(rel, content, idx, idx + needle.length()));
+                    from = idx + Math.max(1, needle.length());
+                    if (hits.size() > 10) break;
+                }
+            }
+        } catch (RegexEngine.BudgetExceededException budget) {
+            // Pathological pattern on this file: keep the hits found so far and move on
+        } catch (Exception ignored) {}
+        return hits;
+    }
+
+    private static JsonObject offsetHit(String path, String content, int start, int end) {
+        JsonObject o = new JsonObject();
+        o.addProperty("path", path);
+        o.addProperty("start", start);
+        o.addProperty("end", end);
+        int s = Math.max(0, start - 80); int e = Math.min(content.length(), end + 80);
+        o.addProperty("snippet", content.substring(s, e));
+        return o;
+    }
+
     // Recent files helper
     public static List<File> getRecentFiles(File projectDir, int maxFiles) {
         List<File> files = new ArrayList<>();
@@ -329,14 +356,36 @@ public final class FileOps {
         File file = new File(projectDir, relativePath);
         File parent = file.getParentFile();
         if (parent != null) parent.mkdirs();
-        Files.write(file.toPath(), (content != null ? content : "").getBytes(StandardCharsets.UTF_8));
+        writeAtomically(file, content != null ? content : "");
+        SearchResultCache.notifyChanged(file);
     }
 
     public static void updateFile(File projectDir, String relativePath, String content) throws java.io.IOException {
         File file = new File(projectDir, relativePath);
         File parent = file.getParentFile();
         if (parent != null) parent.mkdirs();
-        Files.write(file.toPath(), (content != null ? content : "").getBytes(StandardCharsets.UTF_8));
+        writeAtomically(file, content != null ? content : "");
+        SearchResultCache.notifyChanged(file);
+    }
+
+    /**
+     * Writes {@code content} to a temp file next to {@code file} and renames it over the file.
+     * The old file is never truncated in place, so a reader that mapped it (see
+     * {@link LargeFileDocument}) keeps its old bytes instead of faulting past the new end.
+     */
+    public static void writeAtomically(File file, String content) throws IOException {
+        File tmp = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            fos.write(content.getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file.getName());
+        }
     }
 
     public static boolean renameFile(File projectDir, String oldPath, String newPath) {
@@ -344,7 +393,12 @@ public final class FileOps {
         File newFile = new File(projectDir, newPath);
         File parent = newFile.getParentFile();
         if (parent != null) parent.mkdirs();
-        return oldFile.renameTo(newFile);
+        boolean ok = oldFile.renameTo(newFile);
+        if (ok) {
+            SearchResultCache.notifyChanged(oldFile);
+            SearchResultCache.notifyChanged(newFile);
+        }
+        return ok;
     }
 
     public static String readFile(File projectDir, String relativePath) throws java.io.IOException {
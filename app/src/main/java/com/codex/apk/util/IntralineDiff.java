@@ -0,0 +1,149 @@
+package com.codex.apk.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds what changed inside a pair of lines at token level. Lines are split into words
+ * (letters, digits, underscore), runs of whitespace and single punctuation characters; the two
+ * token sequences are diffed with {@link LineDiff}, and changed tokens become character ranges.
+ * Pairs that share too little are reported as having no intraline changes, since highlighting
+ * nearly everything says no more than the line colour already does.
+ */
+public final class IntralineDiff {
+    private IntralineDiff() {}
+
+    // Beyond this, only the common prefix and suffix are trimmed (minified code, data lines)
+    private static final int MAX_TOKENIZED_LENGTH = 4000;
+    // Highlights covering more than this share of both lines are dropped
+    private static final float MAX_CHANGED_SHARE = 0.7f;
+
+    private static final int[] NONE = new int[0];
+
+    /** Changed character ranges as {@code {start, end, start, end, ...}} on each side. */
+    public static final class Result {
+        public static final Result EMPTY = new Result(NONE, NONE);
+
+        public final int[] oldRanges;
+        public final int[] newRanges;
+
+        Result(int[] oldRanges, int[] newRanges) {
+            this.oldRanges = oldRanges;
+            this.newRanges = newRanges;
+        }
+
+        public boolean isEmpty() {
+            return oldRanges.length == 0 && newRanges.length == 0;
+        }
+    }
+
+    public static Result compute(String oldLine, String newLine) {
+        if (oldLine == null) oldLine = "";
+        if (newLine == null) newLine = "";
+        if (oldLine.equals(newLine)) return Result.EMPTY;
+        Result result = oldLine.length() > MAX_TOKENIZED_LENGTH || newLine.length() > MAX_TOKENIZED_LENGTH
+                ? trimmed(oldLine, newLine)
+                : tokenized(oldLine, newLine);
+        if (covered(result.oldRanges) > oldLine.length() * MAX_CHANGED_SHARE
+                && covered(result.newRanges) > newLine.length() * MAX_CHANGED_SHARE) {
+            return Result.EMPTY;
+        }
+        return result;
+    }
+
+    private static Result tokenized(String oldLine, String newLine) {
+        int[] oldBounds = tokenBounds(oldLine);
+        int[] newBounds = tokenBounds(newLine);
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = tokenIds(oldLine, oldBounds, ids);
+        int[] b = tokenIds(newLine, newBounds, ids);
+        List<LineDiff.Edit> edits = LineDiff.diff(a, b);
+        int[] oldRanges = new int[edits.size() * 2];
+        int[] newRanges = new int[edits.size() * 2];
+        int o = 0, n = 0;
+        for (LineDiff.Edit e : edits) {
+            o = addRange(oldRanges, o, oldBounds[e.oldStart], oldBounds[e.oldEnd]);
+            n = addRange(newRanges, n, newBounds[e.newStart], newBounds[e.newEnd]);
+        }
+        return new Result(shrink(oldRanges, o), shrink(newRanges, n));
+    }
+
+    /** The single span left after trimming the common prefix and suffix. */
+    private static Result trimmed(String oldLine, String newLine) {
+        int prefix = 0;
+        int max = Math.min(oldLine.length(), newLine.length());
+        while (prefix < max && oldLine.charAt(prefix) == newLine.charAt(prefix)) prefix++;
+        int suffix = 0;
+        while (suffix < max - prefix
+                && oldLine.charAt(oldLine.length() - 1 - suffix) == newLine.charAt(newLine.length() - 1 - suffix)) {
+            suffix++;
+        }
+        int oldEnd = oldLine.length() - suffix, newEnd = newLine.length() - suffix;
+        return new Result(prefix < oldEnd ? new int[]{prefix, oldEnd} : NONE,
+                prefix < newEnd ? new int[]{prefix, newEnd} : NONE);
+    }
+
+    /** Start offsets of the tokens of {@code s}, followed by its length. */
+    private static int[] tokenBounds(String s) {
+        int[] bounds = new int[s.length() + 1];
+        int count = 0;
+        int i = 0;
+        while (i < s.length()) {
+            bounds[count++] = i;
+            char c = s.charAt(i);
+            if (isWordChar(c)) {
+                while (i < s.length() && isWordChar(s.charAt(i))) i++;
+            } else if (Character.isWhitespace(c)) {
+                while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            } else {
+                i++;
+            }
+        }
+        bounds[count++] = s.length();
+        return shrink(bounds, count);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int[] tokenIds(String s, int[] bounds, Map<String, Integer> ids) {
+        int[] out = new int[bounds.length - 1];
+        for (int t = 0; t < out.length; t++) {
+            String token = s.substring(bounds[t], bounds[t + 1]);
+            Integer id = ids.get(token);
+            if (id == null) {
+                id = ids.size();
+                ids.put(token, id);
+            }
+            out[t] = id;
+        }
+        return out;
+    }
+
+    /** Appends [start, end) to {@code ranges}, joining it to the previous range if they touch. */
+    private static int addRange(int[] ranges, int count, int start, int end) {
+        if (start >= end) return count;
+        if (count > 0 && ranges[count - 1] == start) {
+            ranges[count - 1] = end;
+            return count;
+        }
+        ranges[count] = start;
+        ranges[count + 1] = end;
+        return count + 2;
+    }
+
+    private static int covered(int[] ranges) {
+        int total = 0;
+        for (int i = 0; i < ranges.length; i += 2) total += ranges[i + 1] - ranges[i];
+        return total;
+    }
+
+    private static int[] shrink(int[] array, int length) {
+        if (length == array.length) return array;
+        int[] out = new int[length];
+        System.arraycopy(array, 0, out, 0, length);
+        return out;
+    }
+}
@@ -0,0 +1,301 @@
+package com.codex.apk.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only view of a file too large to hold as a String. The file is memory-mapped, so pages
+ * are loaded by the kernel on demand, and a line-offset index is built in the background;
+ * callers read windows of lines by index and search the raw bytes incrementally.
+ *
+ * Lines longer than {@link #MAX_LINE_BYTES} (minified bundles are often one line) are split
+ * into display lines at a UTF-8 character boundary so no window ever decodes megabytes.
+ */
+public final class LargeFileDocument {
+
+    /** Files at or above this size open in large-file mode. */
+    public static final long THRESHOLD_BYTES = 2L * 1024 * 1024;
+    static final int MAX_LINE_BYTES = 4096;
+    private static final int INDEX_PROGRESS_LINES = 64 * 1024;
+    private static final int SEARCH_CHUNK_BYTES = 1024 * 1024;
+    // The index checks that the file has not shrunk under it this often (a power of two)
+    private static final int SIZE_CHECK_BYTES = 1024 * 1024;
+    public static final int MAX_SEARCH_MATCHES = 10_000;
+
+    public interface IndexListener {
+        /** Called on the index thread as lines become available, and once more when complete. */
+        void onIndexProgress(int linesIndexed, boolean complete);
+    }
+
+    public interface SearchListener {
+        /**
+         * Called on the index thread with all matches so far (byte offsets, ascending); the
+         * array must not be modified. {@code complete} is true for the final call.
+         */
+        void onSearchProgress(long[] matchOffsets, int count, boolean complete);
+    }
+
+    // Indexing and searching share one thread: a search queued while the index is still being
+    // built simply runs after it, so every match can be resolved to a line.
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "LargeFileDocument");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int length;
+
+    private volatile int[] lineStarts = new int[1024];
+    private volatile int lineStartCount; // published after lineStarts is written
+    private volatile boolean indexComplete;
+    private volatile boolean closed;
+    private volatile IndexListener indexListener;
+
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private String lastQuery;
+    private boolean lastCaseSensitive;
+    private long[] lastMatches;
+    private boolean lastComplete;
+
+    private LargeFileDocument(File file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        this.length = buffer.capacity();
+    }
+
+    public static boolean isLarge(File file) {
+        return file.length() >= THRESHOLD_BYTES;
+    }
+
+    /** Maps {@code file} and starts indexing it in the background. */
+    public static LargeFileDocument open(File file) throws IOException {
+        long size = file.length();
+        if (size > Integer.MAX_VALUE) throw new IOException("File too large to map: " + file.getAbsolutePath());
+        MappedByteBuffer mapped;
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        LargeFileDocument doc = new LargeFileDocument(file, mapped);
+        worker.execute(doc::buildIndex);
+        return doc;
+    }
+
+    public File getFile() { return file; }
+
+    public long getLength() { return length; }
+
+    public boolean isIndexComplete() { return indexComplete; }
+
+    /** Replaces the index progress listener; null detaches it. */
+    public void setIndexListener(IndexListener listener) { this.indexListener = listener; }
+
+    /**
+     * Stops pending work and further reads; the mapping itself is released by the GC. Call it
+     * as soon as the file changes, and open the file again.
+     */
+    public void close() {
+        closed = true;
+        searchGeneration.incrementAndGet();
+    }
+
+    /**
+     * False once closed, or once the file got shorter than the mapping: touching a mapped page
+     * past the file's end raises SIGBUS and kills the process, so a file truncated in place by
+     * another app closes the document before the change is even reported.
+     */
+    private boolean readable() {
+        if (closed) return false;
+        if (file.length() >= length) return true;
+        close();
+        return false;
+    }
+
+    // ===== Line index =====
+
+    private void buildIndex() {
+        ByteBuffer buf = buffer.duplicate();
+        appendLineStart(0);
+        int lineStart = 0;
+        int lastReported = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & (SIZE_CHECK_BYTES - 1)) == 0 && !readable()) return;
+            byte b = buf.get(i);
+            int next = -1;
+            if (b == '\n') {
+                next = i + 1;
+            } else if (i - lineStart >= MAX_LINE_BYTES && (b & 0xC0) != 0x80) {
+                next = i; // soft break before a character's lead byte
+            }
+            if (next < 0) continue;
+            appendLineStart(next);
+            lineStart = next;
+            if (lineStartCount - lastReported >= INDEX_PROGRESS_LINES) {
+                if (closed) return;
+                lastReported = lineStartCount;
+                IndexListener listener = indexListener;
+                if (listener != null) listener.onIndexProgress(getLineCount(), false);
+            }
+        }
+        indexComplete = true;
+        IndexListener listener = indexListener;
+        if (listener != null) listener.onIndexProgress(getLineCount(), true);
+    }
+
+    private void appendLineStart(int offset) {
+        int[] starts = lineStarts;
+        int n = lineStartCount;
+        if (n == starts.length) {
+            starts = Arrays.copyOf(starts, n * 2);
+            lineStarts = starts;
+        }
+        starts[n] = offset;
+        lineStartCount = n + 1;
+    }
+
+    /** Lines whose end is known: all of them once indexing completes. */
+    public int getLineCount() {
+        int n = lineStartCount;
+        return indexComplete ? n : Math.max(0, n - 1);
+    }
+
+    private int lineEnd(int[] starts, int count, int line) {
+        return line + 1 < count ? starts[line + 1] : length;
+    }
+
+    /**
+     * Decodes lines {@code [start, start + count)} (clamped to what is indexed) joined with
+     * '\n'. Line terminators of the file are not included.
+     */
+    public String readLines(int start, int count) {
+        // Read the count before the array: a grown array is always published first
+        int total = lineStartCount;
+        int available = indexComplete ? total : Math.max(0, total - 1);
+        int[] starts = lineStarts;
+        start = Math.max(0, Math.min(start, available));
+        int end = Math.min(available, start + Math.max(0, count));
+        StringBuilder sb = new StringBuilder();
+        if (!readable()) return "";
+        ByteBuffer buf = buffer.duplicate();
+        byte[] scratch = new byte[256];
+        for (int line = start; line < end; line++) {
+            if (line > start) sb.append('\n');
+            int from = starts[line];
+            int to = lineEnd(starts, total, line);
+            if (to > from && buf.get(to - 1) == '\n') to--;
+            if (to > from && buf.get(to - 1) == '\r') to--;
+            int len = to - from;
+            if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.position(from);
+            buf.get(scratch, 0, len);
+            sb.append(new String(scratch, 0, len, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    /** Returns the display line containing {@code offset}, or -1 if it is not indexed yet. */
+    public int lineOfOffset(long offset) {
+        int count = lineStartCount;
+        int[] starts = lineStarts;
+        if (count == 0 || (!indexComplete && offset >= starts[count - 1])) return -1;
+        int idx = Arrays.binarySearch(starts, 0, count, (int) offset);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /** Character column of {@code offset} within its display line. */
+    public int columnOfOffset(long offset, int line) {
+        int from = lineStarts[line];
+        int len = (int) offset - from;
+        if (len <= 0 || !readable()) return 0;
+        byte[] bytes = new byte[len];
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(from);
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).length();
+    }
+
+    // ===== Search =====
+
+    /**
+     * Searches for {@code query} in the background, streaming matches to {@code listener} as
+     * each chunk is scanned. Starting a new search cancels the previous one. When the query
+     * extends the last completed query, only the previous matches are re-checked.
+     * Case-insensitive matching folds ASCII letters only.
+     */
+    public void search(String query, boolean caseSensitive, SearchListener listener) {
+        int generation = searchGeneration.incrementAndGet();
+        if (query == null || query.isEmpty()) return;
+        byte[] needle = query.getBytes(StandardCharsets.UTF_8);
+        if (!caseSensitive) foldAscii(needle);
+        worker.execute(() -> runSearch(query, needle, caseSensitive, generation, listener));
+    }
+
+    /** Cancels a running search without starting a new one. */
+    public void cancelSearch() {
+        searchGeneration.incrementAndGet();
+    }
+
+    private void runSearch(String query, byte[] needle, boolean caseSensitive, int generation, SearchListener listener) {
+        if (generation != searchGeneration.get() || !readable()) return;
+        ByteBuffer buf = buffer.duplicate();
+        long[] matches = new long[64];
+        int count = 0;
+
+        boolean narrow = lastQuery != null && lastComplete && lastCaseSensitive == caseSensitive
+                && query.startsWith(lastQuery) && lastMatches.length < MAX_SEARCH_MATCHES;
+        if (narrow) {
+            for (long offset : lastMatches) {
+                if (matchesAt(buf, (int) offset, needle, caseSensitive)) {
+                    if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+                    matches[count++] = offset;
+                }
+            }
+        } else {
+            int last = length - needle.length;
+            for (int chunk = 0; chunk <= last && count < MAX_SEARCH_MATCHES; chunk += SEARCH_CHUNK_BYTES) {
+                if (generation != searchGeneration.get() || !readable()) return;
+                int chunkEnd = Math.min(last + 1, chunk + SEARCH_CHUNK_BYTES);
+                for (int i = chunk; i < chunkEnd && count < MAX_SEARCH_MATCHES; i++) {
+                    if (matchesAt(buf, i, needle, caseSensitive)) {
+                        if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+                        matches[count++] = i;
+                    }
+                }
+                if (chunkEnd <= last) listener.onSearchProgress(matches, count, false);
+            }
+        }
+        if (generation != searchGeneration.get() || closed) return;
+        lastQuery = query;
+        lastCaseSensitive = caseSensitive;
+        lastMatches = Arrays.copyOf(matches, count);
+        lastComplete = true;
+        listener.onSearchProgress(lastMatches, count, true);
+    }
+
+    private static boolean matchesAt(ByteBuffer buf, int at, byte[] needle, boolean caseSensitive) {
+        if (at + needle.length > buf.capacity()) return false;
+        for (int j = 0; j < needle.length; j++) {
+            byte b = buf.get(at + j);
+            if (!caseSensitive && b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != needle[j]) return false;
+        }
+        return true;
+    }
+
+    private static void foldAscii(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] >= 'A' && bytes[i] <= 'Z') bytes[i] += 'a' - 'A';
+        }
+    }
+}
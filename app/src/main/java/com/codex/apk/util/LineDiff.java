@@ -0,0 +1,438 @@
+package com.codex.apk.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line diff in linear space. Lines are interned to int ids (equal text, equal id), the common
+ * prefix and suffix are trimmed, and what remains goes through Myers' O((N+M)·D) algorithm
+ * using the middle-snake divide and conquer, so memory stays O(N+M) however far apart the
+ * two texts are. Replaces the quadratic LCS table DiffUtils used to allocate.
+ *
+ * Patience and histogram modes first anchor the diff on rare lines both sides share and only
+ * run Myers between anchors. Their scripts are not always minimal, but moved or rewritten
+ * blocks come out as a few whole hunks instead of Myers' interleaving of unrelated lines.
+ */
+public final class LineDiff {
+
+    private LineDiff() {}
+
+    public enum Algorithm {
+        /** Shortest edit script. */
+        MYERS,
+        /** Anchors on lines that occur exactly once on each side. */
+        PATIENCE,
+        /** Anchors on the least frequent common lines; patience extended to repeated lines. */
+        HISTOGRAM,
+        /** Picks one of the others by input size, see {@link #choose}. */
+        AUTO
+    }
+
+    // Beyond this many lines histogram's per-region bookkeeping stops paying for itself
+    private static final int HISTOGRAM_MAX_LINES = 200_000;
+    // Lines occurring more often than this are too common to anchor on
+    private static final int MAX_CHAIN = 64;
+    // Nesting of anchored regions before the rest is left to Myers
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The cheapest readable algorithm for inputs of these sizes: histogram, which produces
+     * the cleanest hunks for typical source edits, unless the input is large enough that
+     * Myers' single pass is clearly cheaper.
+     */
+    public static Algorithm choose(int oldLines, int newLines) {
+        if (oldLines == 0 || newLines == 0) return Algorithm.MYERS; // nothing to anchor
+        return (long) oldLines + newLines > HISTOGRAM_MAX_LINES ? Algorithm.MYERS : Algorithm.HISTOGRAM;
+    }
+
+    /**
+     * One region that differs: old lines [oldStart, oldEnd) were replaced by new lines
+     * [newStart, newEnd). Either range may be empty (pure insertion or deletion).
+     */
+    public static final class Edit {
+        public final int oldStart;
+        public final int oldEnd;
+        public final int newStart;
+        public final int newEnd;
+
+        public Edit(int oldStart, int oldEnd, int newStart, int newEnd) {
+            this.oldStart = oldStart;
+            this.oldEnd = oldEnd;
+            this.newStart = newStart;
+            this.newEnd = newEnd;
+        }
+
+        public int removed() { return oldEnd - oldStart; }
+        public int added() { return newEnd - newStart; }
+
+        @Override
+        public String toString() {
+            return "Edit[" + oldStart + "-" + oldEnd + " -> " + newStart + "-" + newEnd + "]";
+        }
+    }
+
+    /** Splits text the way the rest of the diff code does: on '\n', keeping a trailing empty line. */
+    public static String[] splitLines(String text) {
+        return (text == null ? "" : text).split("\n", -1);
+    }
+
+    /** Added and removed line counts between two texts, as {@code int[]{added, removed}}. */
+    public static int[] countAddRemove(String oldContent, String newContent) {
+        int added = 0, removed = 0;
+        for (Edit e : diff(splitLines(oldContent), splitLines(newContent))) {
+            added += e.added();
+            removed += e.removed();
+        }
+        return new int[]{added, removed};
+    }
+
+    /** The edit script turning {@code a} into {@code b}, in order, as a minimal set of edits. */
+    public static List<Edit> diff(String[] a, String[] b) {
+        return diff(a, b, Algorithm.MYERS);
+    }
+
+    /** The edit script turning {@code a} into {@code b}, in order, using {@code algorithm}. */
+    public static List<Edit> diff(String[] a, String[] b, Algorithm algorithm) {
+        Map<String, Integer> ids = new HashMap<>();
+        return diff(intern(a, ids), intern(b, ids), algorithm);
+    }
+
+    /**
+     * Same as {@link #diff(String[], String[])} for sequences already mapped to non-negative
+     * ids. Lines that occur on one side only can never match; they are marked up front and
+     * left out of the search, which makes rewrites of whole files cheap.
+     */
+    public static List<Edit> diff(int[] a, int[] b) {
+        return diff(a, b, Algorithm.MYERS);
+    }
+
+    /** Same as {@link #diff(String[], String[], Algorithm)} for sequences of non-negative ids. */
+    public static List<Edit> diff(int[] a, int[] b, Algorithm algorithm) {
+        if (algorithm == Algorithm.AUTO) algorithm = choose(a.length, b.length);
+        boolean[] removed = new boolean[a.length];
+        boolean[] added = new boolean[b.length];
+        int maxId = -1;
+        for (int id : a) maxId = Math.max(maxId, id);
+        for (int id : b) maxId = Math.max(maxId, id);
+        byte[] seen = new byte[maxId + 1]; // bit 1: in a, bit 2: in b
+        for (int id : a) seen[id] |= 1;
+        for (int id : b) seen[id] |= 2;
+        int[] aIndex = keep(a, seen, removed);
+        int[] bIndex = keep(b, seen, added);
+        int[] aKept = new int[aIndex.length];
+        int[] bKept = new int[bIndex.length];
+        for (int i = 0; i < aIndex.length; i++) aKept[i] = a[aIndex[i]];
+        for (int j = 0; j < bIndex.length; j++) bKept[j] = b[bIndex[j]];
+        boolean[] keptRemoved = new boolean[aKept.length];
+        boolean[] keptAdded = new boolean[bKept.length];
+        Myers myers = new Myers(aKept, bKept, keptRemoved, keptAdded);
+        if (algorithm == Algorithm.MYERS) {
+            myers.compare(0, aKept.length, 0, bKept.length);
+        } else {
+            new Anchored(myers, algorithm == Algorithm.HISTOGRAM, maxId)
+                    .compare(0, aKept.length, 0, bKept.length, 0);
+        }
+        for (int i = 0; i < aIndex.length; i++) removed[aIndex[i]] = keptRemoved[i];
+        for (int j = 0; j < bIndex.length; j++) added[bIndex[j]] = keptAdded[j];
+        return toEdits(removed, added);
+    }
+
+    /** Indexes of the lines whose id occurs on both sides; the others are marked in {@code changed}. */
+    private static int[] keep(int[] lines, byte[] seen, boolean[] changed) {
+        int count = 0;
+        for (int id : lines) if (seen[id] == 3) count++;
+        int[] index = new int[count];
+        int n = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (seen[lines[i]] == 3) index[n++] = i;
+            else changed[i] = true;
+        }
+        return index;
+    }
+
+    private static int[] intern(String[] lines, Map<String, Integer> ids) {
+        int[] out = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Integer id = ids.get(lines[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines[i], id);
+            }
+            out[i] = id;
+        }
+        return out;
+    }
+
+    /** Unmarked lines pair up in order; runs of marked lines between them are the edits. */
+    private static List<Edit> toEdits(boolean[] removed, boolean[] added) {
+        List<Edit> edits = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < removed.length || j < added.length) {
+            if ((i < removed.length && removed[i]) || (j < added.length && added[j])) {
+                int oldStart = i, newStart = j;
+                while (i < removed.length && removed[i]) i++;
+                while (j < added.length && added[j]) j++;
+                edits.add(new Edit(oldStart, i, newStart, j));
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return edits;
+    }
+
+    private static final class Myers {
+        final int[] a;
+        final int[] b;
+        private final boolean[] removed;
+        private final boolean[] added;
+        // Furthest reaching x per diagonal, forward and (on the reversed texts) backward.
+        // Sized for the whole problem once; every sub-problem is smaller.
+        private final int[] vf;
+        private final int[] vb;
+        private final int offset;
+        // Middle snake of the last search: start (x, y), end (u, v)
+        private int snakeX, snakeY, snakeU, snakeV;
+
+        Myers(int[] a, int[] b, boolean[] removed, boolean[] added) {
+            this.a = a;
+            this.b = b;
+            this.removed = removed;
+            this.added = added;
+            int max = (a.length + b.length + 1) / 2 + 1;
+            this.offset = max + 1;
+            this.vf = new int[2 * offset + 1];
+            this.vb = new int[2 * offset + 1];
+        }
+
+        void compare(int aLo, int aHi, int bLo, int bHi) {
+            // Iterate on the second half so only the first recurses; depth stays logarithmic in D
+            while (true) {
+                while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) { aLo++; bLo++; }
+                while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) { aHi--; bHi--; }
+                if (aLo == aHi) {
+                    for (int j = bLo; j < bHi; j++) added[j] = true;
+                    return;
+                }
+                if (bLo == bHi) {
+                    for (int i = aLo; i < aHi; i++) removed[i] = true;
+                    return;
+                }
+                // With prefix and suffix gone, D >= 2 here, so both halves have a smaller D
+                middleSnake(aLo, aHi, bLo, bHi);
+                int x = aLo + snakeX, y = bLo + snakeY, u = aLo + snakeU, v = bLo + snakeV;
+                compare(aLo, x, bLo, y);
+                aLo = u;
+                bLo = v;
+            }
+        }
+
+        private void middleSnake(int aLo, int aHi, int bLo, int bHi) {
+            int n = aHi - aLo, m = bHi - bLo;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            int max = (n + m + 1) / 2;
+            vf[offset + 1] = 0;
+            vb[offset + 1] = 0;
+            for (int d = 0; d <= max; d++) {
+                for (int k = -d; k <= d; k += 2) {
+                    int x = (k == -d || (k != d && vf[offset + k - 1] < vf[offset + k + 1]))
+                            ? vf[offset + k + 1] : vf[offset + k - 1] + 1;
+                    int y = x - k;
+                    int x0 = x, y0 = y;
+                    while (x < n && y < m && a[aLo + x] == b[bLo + y]) { x++; y++; }
+                    vf[offset + k] = x;
+                    // Backward diagonal kr = delta - k; reached at step d - 1
+                    int kr = delta - k;
+                    if (odd && kr >= -(d - 1) && kr <= d - 1 && x >= n - vb[offset + kr]) {
+                        setSnake(x0, y0, x, y);
+                        return;
+                    }
+                }
+                for (int kr = -d; kr <= d; kr += 2) {
+                    int xr = (kr == -d || (kr != d && vb[offset + kr - 1] < vb[offset + kr + 1]))
+                            ? vb[offset + kr + 1] : vb[offset + kr - 1] + 1;
+                    int yr = xr - kr;
+                    int xr0 = xr, yr0 = yr;
+                    while (xr < n && yr < m && a[aHi - 1 - xr] == b[bHi - 1 - yr]) { xr++; yr++; }
+                    vb[offset + kr] = xr;
+                    int k = delta - kr;
+                    if (!odd && k >= -d && k <= d && vf[offset + k] >= n - xr) {
+                        setSnake(n - xr, m - yr, n - xr0, m - yr0);
+                        return;
+                    }
+                }
+            }
+            throw new IllegalStateException("No middle snake");
+        }
+
+        private void setSnake(int x, int y, int u, int v) {
+            snakeX = x;
+            snakeY = y;
+            snakeU = u;
+            snakeV = v;
+        }
+    }
+
+    /**
+     * Patience and histogram diff. Each region is split at an anchor, a run of equal lines
+     * built around the rarest line both sides share; the parts before and after are diffed
+     * the same way. Regions without a usable anchor, or nested too deep, go to Myers.
+     */
+    private static final class Anchored {
+        private final Myers myers;
+        private final int[] a;
+        private final int[] b;
+        private final boolean histogram;
+        // Per-id scratch, reset after each region
+        private final int[] countA;
+        private final int[] countB;
+        private final int[] lastA; // patience: position in a; histogram: head of the chain
+        private final int[] lastB;
+        private final int[] nextA; // histogram: next position of the same id in a
+        // The anchor found by the last search
+        private int anchorA, anchorB, anchorLength;
+
+        Anchored(Myers myers, boolean histogram, int maxId) {
+            this.myers = myers;
+            this.a = myers.a;
+            this.b = myers.b;
+            this.histogram = histogram;
+            int ids = maxId + 1;
+            this.countA = new int[ids];
+            this.countB = new int[ids];
+            this.lastA = new int[ids];
+            this.lastB = new int[ids];
+            this.nextA = histogram ? new int[a.length] : null;
+        }
+
+        void compare(int aLo, int aHi, int bLo, int bHi, int depth) {
+            // Like Myers.compare, the part after each anchor is handled by the loop
+            while (true) {
+                while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) { aLo++; bLo++; }
+                while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) { aHi--; bHi--; }
+                if (aLo == aHi || bLo == bHi || depth > MAX_DEPTH) {
+                    myers.compare(aLo, aHi, bLo, bHi);
+                    return;
+                }
+                if (histogram) {
+                    if (!findHistogramAnchor(aLo, aHi, bLo, bHi)) {
+                        myers.compare(aLo, aHi, bLo, bHi);
+                        return;
+                    }
+                    // Read the anchor before recursing; the recursion searches again
+                    int x = anchorA, y = anchorB, length = anchorLength;
+                    compare(aLo, x, bLo, y, depth + 1);
+                    aLo = x + length;
+                    bLo = y + length;
+                } else {
+                    int[] anchors = findPatienceAnchors(aLo, aHi, bLo, bHi);
+                    if (anchors.length == 0) {
+                        myers.compare(aLo, aHi, bLo, bHi);
+                        return;
+                    }
+                    for (int k = 0; k < anchors.length; k += 2) {
+                        compare(aLo, anchors[k], bLo, anchors[k + 1], depth + 1);
+                        aLo = anchors[k] + 1;
+                        bLo = anchors[k + 1] + 1;
+                    }
+                }
+                depth++;
+            }
+        }
+
+        /**
+         * Lines occurring once in each side of the region, reduced to their longest increasing
+         * run by position in b. Returns {@code {aPos, bPos, ...}} in order.
+         */
+        private int[] findPatienceAnchors(int aLo, int aHi, int bLo, int bHi) {
+            for (int i = aLo; i < aHi; i++) { countA[a[i]]++; lastA[a[i]] = i; }
+            for (int j = bLo; j < bHi; j++) { countB[b[j]]++; lastB[b[j]] = j; }
+            int[] pairA = new int[Math.min(aHi - aLo, bHi - bLo)];
+            int[] pairB = new int[pairA.length];
+            int pairs = 0;
+            for (int i = aLo; i < aHi; i++) {
+                int id = a[i];
+                if (countA[id] == 1 && countB[id] == 1) {
+                    pairA[pairs] = i;
+                    pairB[pairs++] = lastB[id];
+                }
+            }
+            for (int i = aLo; i < aHi; i++) countA[a[i]] = 0;
+            for (int j = bLo; j < bHi; j++) countB[b[j]] = 0;
+            if (pairs == 0) return new int[0];
+
+            // Patience sorting: tails[len] is the pair ending the best run of length len + 1
+            int[] tails = new int[pairs];
+            int[] prev = new int[pairs];
+            int length = 0;
+            for (int p = 0; p < pairs; p++) {
+                int lo = 0, hi = length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (pairB[tails[mid]] < pairB[p]) lo = mid + 1; else hi = mid;
+                }
+                prev[p] = lo > 0 ? tails[lo - 1] : -1;
+                tails[lo] = p;
+                if (lo == length) length++;
+            }
+            int[] anchors = new int[length * 2];
+            for (int p = tails[length - 1], k = length - 1; p >= 0; p = prev[p], k--) {
+                anchors[2 * k] = pairA[p];
+                anchors[2 * k + 1] = pairB[p];
+            }
+            return anchors;
+        }
+
+        /**
+         * Finds the run of equal lines whose rarest line (counted in a) is rarest, preferring
+         * longer runs on ties. False if every shared line occurs more than MAX_CHAIN times.
+         */
+        private boolean findHistogramAnchor(int aLo, int aHi, int bLo, int bHi) {
+            for (int i = aLo; i < aHi; i++) lastA[a[i]] = -1;
+            for (int i = aHi - 1; i >= aLo; i--) {
+                int id = a[i];
+                nextA[i] = lastA[id];
+                lastA[id] = i;
+                countA[id]++;
+            }
+            int bestCount = MAX_CHAIN + 1;
+            int bestLength = 0;
+            for (int j = bLo; j < bHi; ) {
+                int id = b[j];
+                int nextJ = j + 1;
+                // Lines past MAX_CHAIN are never anchors; the first one must not set the bar either
+                if (countA[id] > 0 && countA[id] <= MAX_CHAIN && countA[id] <= bestCount) {
+                    for (int i = lastA[id]; i >= 0; i = nextA[i]) {
+                        int count = countA[id];
+                        int sa = i, sb = j;
+                        while (sa > aLo && sb > bLo && a[sa - 1] == b[sb - 1]) {
+                            sa--;
+                            sb--;
+                            count = Math.min(count, countA[a[sa]]);
+                        }
+                        int ea = i + 1, eb = j + 1;
+                        while (ea < aHi && eb < bHi && a[ea] == b[eb]) {
+                            count = Math.min(count, countA[a[ea]]);
+                            ea++;
+                            eb++;
+                        }
+                        if (count < bestCount || (count == bestCount && ea - sa > bestLength)) {
+                            bestCount = count;
+                            bestLength = ea - sa;
+                            anchorA = sa;
+                            anchorB = sb;
+                            anchorLength = bestLength;
+                        }
+                        nextJ = Math.max(nextJ, eb);
+                    }
+                }
+                j = nextJ;
+            }
+            for (int i = aLo; i < aHi; i++) countA[a[i]] = 0;
+            return bestLength > 0;
+        }
+    }
+}
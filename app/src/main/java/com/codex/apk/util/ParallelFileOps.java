@@ -0,0 +1,280 @@
+package com.codex.apk.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Whole-tree file operations (delete, copy, size) run on a shared work-stealing pool: each
+ * directory is a task, subdirectories are forked, and large directories are split into file
+ * batches, so wide trees like node_modules are spread over all cores instead of walked by
+ * one thread. Every operation reports progress and can be cancelled through an {@link Op}.
+ *
+ * Symbolic links to directories are never descended into: deleting removes the link, not what
+ * it points at, and copying leaves it out. Copying leaves out dangling links too (npm leaves
+ * them in node_modules/.bin); there is nothing behind them to copy.
+ */
+public final class ParallelFileOps {
+    private ParallelFileOps() {}
+
+    private static final int FILE_BATCH = 64;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            p -> {
+                java.util.concurrent.ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("ParallelFileOps-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+
+    public interface ProgressListener {
+        /** Called from worker threads; implementations must be cheap and thread-safe. */
+        void onProgress(long filesDone, long bytesDone);
+    }
+
+    /** Progress and cancellation handle of one running operation. */
+    public static final class Op {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicLong filesDone = new AtomicLong();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final ProgressListener listener;
+
+        public Op() {
+            this(null);
+        }
+
+        public Op(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        public void cancel() { cancelled.set(true); }
+        public boolean isCancelled() { return cancelled.get(); }
+        public long getFilesDone() { return filesDone.get(); }
+        public long getBytesDone() { return bytesDone.get(); }
+        public int getFailures() { return failures.get(); }
+
+        void advance(long bytes) {
+            long files = filesDone.incrementAndGet();
+            long total = bytesDone.addAndGet(bytes);
+            if (listener != null) listener.onProgress(files, total);
+        }
+
+        void fail() { failures.incrementAndGet(); }
+    }
+
+    // ===== Delete =====
+
+    /** Deletes {@code root} and everything below it; true if nothing is left behind. */
+    public static boolean delete(File root) {
+        return delete(root, new Op());
+    }
+
+    public static boolean delete(File root, Op op) {
+        if (root == null || !exists(root)) return false;
+        pool.invoke(new DeleteTask(root, op, null));
+        return !exists(root) && !op.isCancelled();
+    }
+
+    private static final class DeleteTask extends RecursiveAction {
+        private final File dir;
+        private final Op op;
+        private final File[] batch;
+
+        DeleteTask(File dir, Op op, File[] batch) {
+            this.dir = dir;
+            this.op = op;
+            this.batch = batch;
+        }
+
+        @Override protected void compute() {
+            if (op.isCancelled()) return;
+            if (batch != null) {
+                for (File f : batch) deleteFile(f, op);
+                return;
+            }
+            if (isSymlink(dir) || !dir.isDirectory()) {
+                deleteFile(dir, op);
+                return;
+            }
+            List<RecursiveAction> forks = new ArrayList<>();
+            List<File> files = new ArrayList<>();
+            File[] children = dir.listFiles();
+            if (children != null) {
+                for (File c : children) {
+                    if (c.isDirectory() && !isSymlink(c)) forks.add(new DeleteTask(c, op, null));
+                    else files.add(c);
+                }
+            }
+            // Full batches are forked; the remainder is deleted inline after the forks are queued
+            int inlineFrom = 0;
+            for (; inlineFrom + FILE_BATCH < files.size(); inlineFrom += FILE_BATCH) {
+                forks.add(new DeleteTask(dir, op,
+                        files.subList(inlineFrom, inlineFrom + FILE_BATCH).toArray(new File[0])));
+            }
+            for (RecursiveAction f : forks) f.fork();
+            for (int i = inlineFrom; i < files.size(); i++) deleteFile(files.get(i), op);
+            for (RecursiveAction f : forks) f.join();
+            if (op.isCancelled()) return;
+            if (!dir.delete()) op.fail();
+        }
+    }
+
+    private static void deleteFile(File f, Op op) {
+        if (op.isCancelled()) return;
+        long len = f.length();
+        if (f.delete()) op.advance(len); else op.fail();
+    }
+
+    // ===== Copy =====
+
+    /**
+     * Copies the tree at {@code src} to {@code dst}, which must not exist. File data is moved
+     * with FileChannel.transferTo so the kernel does the copying where it can. Hard links are
+     * deliberately not used: the editor rewrites files in place, so a linked copy would change
+     * together with its original. On failure or cancellation the partial copy is removed.
+     */
+    public static void copy(File src, File dst, Op op) throws IOException {
+        if (!src.exists()) throw new IOException("Source does not exist: " + src.getAbsolutePath());
+        if (dst.exists()) throw new IOException("Target already exists: " + dst.getAbsolutePath());
+        String srcPath = src.getCanonicalPath();
+        if (dst.getCanonicalPath().startsWith(srcPath + File.separator)) {
+            throw new IOException("Cannot copy a directory into itself");
+        }
+        pool.invoke(new CopyTask(src, dst, op));
+        if (op.isCancelled() || op.getFailures() > 0) {
+            delete(dst);
+            if (op.isCancelled()) throw new IOException("Copy cancelled");
+            throw new IOException("Failed to copy " + op.getFailures() + " file(s)");
+        }
+    }
+
+    private static final class CopyTask extends RecursiveAction {
+        private final File src;
+        private final File dst;
+        private final Op op;
+
+        CopyTask(File src, File dst, Op op) {
+            this.src = src;
+            this.dst = dst;
+            this.op = op;
+        }
+
+        @Override protected void compute() {
+            if (op.isCancelled()) return;
+            // Listed but not there: a dangling link (canonical paths cannot tell it from a file)
+            // or a file deleted meanwhile; either way there is nothing to copy
+            if (!src.exists()) return;
+            if (!src.isDirectory()) {
+                copyFile(src, dst, op);
+                return;
+            }
+            if (isSymlink(src)) return; // linked directories stay behind rather than being cloned
+            if (!dst.mkdirs() && !dst.isDirectory()) {
+                op.fail();
+                return;
+            }
+            File[] children = src.listFiles();
+            if (children == null) return;
+            List<CopyTask> forks = new ArrayList<>(children.length);
+            for (File c : children) forks.add(new CopyTask(c, new File(dst, c.getName()), op));
+            invokeAll(forks);
+            dst.setLastModified(src.lastModified());
+        }
+    }
+
+    private static void copyFile(File src, File dst, Op op) {
+        if (op.isCancelled()) return;
+        try (FileChannel in = new FileInputStream(src).getChannel();
+             FileChannel out = new FileOutputStream(dst).getChannel()) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                if (op.isCancelled()) return;
+                long n = in.transferTo(pos, size - pos, out);
+                if (n <= 0) break;
+                pos += n;
+            }
+            dst.setLastModified(src.lastModified());
+            op.advance(size);
+        } catch (IOException e) {
+            op.fail();
+        }
+    }
+
+    // ===== Size =====
+
+    /** Total size in bytes of the regular files below {@code root}; links are not followed. */
+    public static long sizeOf(File root) {
+        return sizeOf(root, new Op());
+    }
+
+    public static long sizeOf(File root, Op op) {
+        if (root == null || !root.exists()) return 0;
+        return pool.invoke(new SizeTask(root, op));
+    }
+
+    private static final class SizeTask extends RecursiveTask<Long> {
+        private final File dir;
+        private final Op op;
+
+        SizeTask(File dir, Op op) {
+            this.dir = dir;
+            this.op = op;
+        }
+
+        @Override protected Long compute() {
+            if (op.isCancelled()) return 0L;
+            if (!dir.isDirectory()) return dir.length();
+            if (isSymlink(dir)) return 0L;
+            long total = 0;
+            List<SizeTask> forks = new ArrayList<>();
+            File[] children = dir.listFiles();
+            if (children != null) {
+                for (File c : children) {
+                    if (c.isDirectory()) {
+                        SizeTask t = new SizeTask(c, op);
+                        t.fork();
+                        forks.add(t);
+                    } else {
+                        long len = c.length();
+                        total += len;
+                        op.advance(len);
+                    }
+                }
+            }
+            for (SizeTask t : forks) total += t.join();
+            return total;
+        }
+    }
+
+    // ===== Helpers =====
+
+    private static boolean exists(File f) {
+        // A dangling symlink reports exists() == false but still has to be deleted
+        return f.exists() || isSymlink(f);
+    }
+
+    /** java.nio.file is API 26+; compare canonical and absolute paths of the parent-resolved file instead. */
+    static boolean isSymlink(File f) {
+        try {
+            File parent = f.getParentFile();
+            File resolved = parent == null ? f : new File(parent.getCanonicalFile(), f.getName());
+            return !resolved.getCanonicalFile().equals(resolved.getAbsoluteFile());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.codex.apk.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A git-style diff covering any number of files, applied all or nothing. Every file is first
+ * patched in memory, in parallel; if any file fails nothing is touched. Otherwise the new
+ * contents are staged next to their targets and swapped in by renames, keeping the originals
+ * aside until every swap succeeded so a failure part way can put them back.
+ *
+ * Handles modifications, new files (--- /dev/null or "new file mode"), deletions
+ * (+++ /dev/null or "deleted file mode") and renames ("rename from" / "rename to", with or
+ * without hunks). Hunks are applied by {@link UnifiedDiffApplier}, fuzz included.
+ */
+public final class PatchSet {
+    private PatchSet() {}
+
+    public enum Kind { MODIFY, CREATE, DELETE, RENAME }
+
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "PatchSet");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** Reads a project file; FileManager's reader, so patches see what the editor would. */
+    public interface ContentReader {
+        String read(File file) throws IOException;
+    }
+
+    /** The part of the diff for one file. Paths are relative to the project, without a/ b/. */
+    public static final class FilePatch {
+        public final Kind kind;
+        public final String oldPath; // null for a new file
+        public final String newPath; // null for a deleted file
+        final String hunks;
+
+        FilePatch(Kind kind, String oldPath, String newPath, String hunks) {
+            this.kind = kind;
+            this.oldPath = oldPath;
+            this.newPath = newPath;
+            this.hunks = hunks;
+        }
+
+        public String getPath() {
+            return newPath != null ? newPath : oldPath;
+        }
+    }
+
+    /** How one file went in the dry run. */
+    public static final class FileResult {
+        public final FilePatch patch;
+        public final boolean ok;
+        /** Why the file could not be patched, or null. */
+        public final String error;
+        /** The text the patch was applied to; null for new and deleted files. */
+        public final String originalContent;
+        /** The patched text; null for deletions. */
+        public final String newContent;
+
+        FileResult(FilePatch patch, boolean ok, String error, String newContent) {
+            this(patch, ok, error, null, newContent);
+        }
+
+        FileResult(FilePatch patch, boolean ok, String error, String originalContent, String newContent) {
+            this.patch = patch;
+            this.ok = ok;
+            this.error = error;
+            this.originalContent = originalContent;
+            this.newContent = newContent;
+        }
+    }
+
+    public static final class Result {
+        private final List<FileResult> files;
+        private final boolean applied;
+        private final String commitError;
+
+        Result(List<FileResult> files, boolean applied, String commitError) {
+            this.files = files;
+            this.applied = applied;
+            this.commitError = commitError;
+        }
+
+        public List<FileResult> getFiles() { return files; }
+
+        /** True if every file was patched and written; otherwise no file was changed. */
+        public boolean isApplied() { return applied; }
+
+        public String describeFailures() {
+            StringBuilder sb = new StringBuilder();
+            if (files.isEmpty()) sb.append("no file diffs found");
+            for (FileResult f : files) {
+                if (f.ok) continue;
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(f.patch.getPath()).append(": ").append(f.error);
+            }
+            if (commitError != null) {
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(commitError);
+            }
+            return sb.toString();
+        }
+    }
+
+    // ===== Parsing =====
+
+    /** Whether {@code patch} needs this class: several files, or a create, delete or rename. */
+    public static boolean isMultiFile(String patch) {
+        if (patch == null) return false;
+        List<FilePatch> files = parse(patch);
+        return files.size() > 1 || (files.size() == 1 && files.get(0).kind != Kind.MODIFY);
+    }
+
+    public static List<FilePatch> parse(String patch) {
+        List<FilePatch> out = new ArrayList<>();
+        String[] lines = patch.split("\n", -1);
+        Builder current = null;
+        int oldLeft = 0, newLeft = 0; // lines still expected by the current hunk
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].endsWith("\r") ? lines[i].substring(0, lines[i].length() - 1) : lines[i];
+            boolean inHunk = oldLeft > 0 || newLeft > 0;
+            if (inHunk && !line.startsWith("@@")) {
+                char c = line.isEmpty() ? ' ' : line.charAt(0);
+                if (c == ' ' || c == '-' || c == '+') {
+                    if (c != '+') oldLeft--;
+                    if (c != '-') newLeft--;
+                    current.hunks.append(line).append('\n');
+                    continue;
+                }
+                if (c == '\\') {
+                    current.hunks.append(line).append('\n');
+                    continue;
+                }
+                oldLeft = newLeft = 0; // a short hunk; treat the line as a header
+            }
+            if (line.startsWith("diff --git ")) {
+                finish(current, out);
+                current = new Builder();
+                current.gitHeader = true;
+                String[] paths = splitGitPaths(line.substring("diff --git ".length()));
+                current.oldPath = paths[0];
+                current.newPath = paths[1];
+            } else if (line.startsWith("--- ") && i + 1 < lines.length && lines[i + 1].startsWith("+++ ")) {
+                if (current == null || current.sawHeaderPair || current.hunks.length() > 0) {
+                    finish(current, out);
+                    current = new Builder();
+                }
+                current.sawHeaderPair = true;
+                String oldPath = headerPath(line.substring(4));
+                String newPath = headerPath(lines[++i].substring(4));
+                if (oldPath == null) current.created = true; else current.oldPath = oldPath;
+                if (newPath == null) current.deleted = true; else current.newPath = newPath;
+            } else if (current == null) {
+                continue; // preamble
+            } else if (line.startsWith("new file mode")) {
+                current.created = true;
+            } else if (line.startsWith("deleted file mode")) {
+                current.deleted = true;
+            } else if (line.startsWith("rename from ")) {
+                current.renameFrom = line.substring("rename from ".length()).trim();
+            } else if (line.startsWith("rename to ")) {
+                current.renameTo = line.substring("rename to ".length()).trim();
+            } else if (line.startsWith("@@")) {
+                int[] counts = hunkCounts(line);
+                oldLeft = counts[0];
+                newLeft = counts[1];
+                current.hunks.append(line).append('\n');
+            }
+        }
+        finish(current, out);
+        return out;
+    }
+
+    private static final class Builder {
+        String oldPath;
+        String newPath;
+        String renameFrom;
+        String renameTo;
+        boolean created;
+        boolean deleted;
+        boolean sawHeaderPair;
+        boolean gitHeader;
+        final StringBuilder hunks = new StringBuilder();
+    }
+
+    private static void finish(Builder b, List<FilePatch> out) {
+        if (b == null) return;
+        if (b.created) {
+            if (b.newPath != null) out.add(new FilePatch(Kind.CREATE, null, b.newPath, b.hunks.toString()));
+        } else if (b.deleted) {
+            if (b.oldPath != null) out.add(new FilePatch(Kind.DELETE, b.oldPath, null, b.hunks.toString()));
+        } else if (b.renameFrom != null && b.renameTo != null && !b.renameFrom.equals(b.renameTo)) {
+            out.add(new FilePatch(Kind.RENAME, b.renameFrom, b.renameTo, b.hunks.toString()));
+        } else if (b.gitHeader && b.oldPath != null && b.newPath != null && !b.oldPath.equals(b.newPath)) {
+            out.add(new FilePatch(Kind.RENAME, b.oldPath, b.newPath, b.hunks.toString()));
+        } else if (b.hunks.length() > 0) {
+            // A bare ---/+++ pair naming two paths (x.orig and x, original/ and modified/) is an
+            // edit of the new one, not a rename
+            String path = b.newPath != null ? b.newPath : b.oldPath;
+            if (path != null) out.add(new FilePatch(Kind.MODIFY, path, path, b.hunks.toString()));
+        }
+    }
+
+    /** "a/x b/y" from a diff --git line; paths with spaces are split at " b/". */
+    private static String[] splitGitPaths(String rest) {
+        int split = rest.lastIndexOf(" b/");
+        if (split < 0) split = rest.indexOf(' ');
+        if (split < 0) return new String[]{stripPrefix(rest), stripPrefix(rest)};
+        return new String[]{stripPrefix(rest.substring(0, split)), stripPrefix(rest.substring(split + 1))};
+    }
+
+    /** The path of a ---/+++ line without timestamp or a/ b/ prefix; null for /dev/null. */
+    private static String headerPath(String value) {
+        int tab = value.indexOf('\t');
+        if (tab >= 0) value = value.substring(0, tab);
+        value = value.trim();
+        if (value.equals("/dev/null")) return null;
+        return stripPrefix(value);
+    }
+
+    private static String stripPrefix(String path) {
+        path = path.trim();
+        if (path.startsWith("a/") || path.startsWith("b/")) return path.substring(2);
+        return path;
+    }
+
+    private static int[] hunkCounts(String header) {
+        try {
+            String core = header.substring(2, header.indexOf("@@", 2)).trim();
+            String[] parts = core.split(" ");
+            String[] oldPart = parts[0].substring(1).split(",");
+            String[] newPart = parts[1].substring(1).split(",");
+            return new int[]{oldPart.length > 1 ? Integer.parseInt(oldPart[1]) : 1,
+                    newPart.length > 1 ? Integer.parseInt(newPart[1]) : 1};
+        } catch (RuntimeException e) {
+            return new int[]{0, 0}; // unknown: body lines are taken until the next header
+        }
+    }
+
+    // ===== Applying =====
+
+    /**
+     * Dry-runs every file of {@code patch} against {@code root} in parallel and, if all of them
+     * apply cleanly, writes them. Changes nothing unless {@link Result#isApplied()}.
+     */
+    public static Result apply(File root, String patch, ContentReader reader) {
+        List<FilePatch> patches = parse(patch == null ? "" : patch);
+        List<FileResult> results = dryRun(root, patches, reader);
+        if (patches.isEmpty()) return new Result(results, false, null);
+        for (FileResult r : results) {
+            if (!r.ok) return new Result(results, false, null);
+        }
+        try {
+            commit(root, results);
+            return new Result(results, true, null);
+        } catch (IOException e) {
+            return new Result(results, false, "Nothing was changed: " + e.getMessage());
+        }
+    }
+
+    private static List<FileResult> dryRun(File root, List<FilePatch> patches, ContentReader reader) {
+        List<FileResult> results = new ArrayList<>(patches.size());
+        // Two patches claiming one path cannot both be applied against the same original
+        Set<String> claimed = new HashSet<>();
+        List<Future<FileResult>> pending = new ArrayList<>(patches.size());
+        for (FilePatch p : patches) {
+            boolean clash = (p.oldPath != null && !claimed.add(p.oldPath))
+                    | (p.newPath != null && !p.newPath.equals(p.oldPath) && !claimed.add(p.newPath));
+            if (clash) {
+                pending.add(null);
+            } else {
+                Callable<FileResult> task = () -> dryRun(root, p, reader);
+                pending.add(pool.submit(task));
+            }
+        }
+        for (int i = 0; i < patches.size(); i++) {
+            Future<FileResult> f = pending.get(i);
+            if (f == null) {
+                results.add(new FileResult(patches.get(i), false, "path is patched more than once", null));
+                continue;
+            }
+            try {
+                results.add(f.get());
+            } catch (ExecutionException e) {
+                results.add(new FileResult(patches.get(i), false, String.valueOf(e.getCause()), null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new FileResult(patches.get(i), false, "interrupted", null));
+            }
+        }
+        return results;
+    }
+
+    private static FileResult dryRun(File root, FilePatch p, ContentReader reader) throws IOException {
+        File oldFile = p.oldPath != null ? resolve(root, p.oldPath) : null;
+        File newFile = p.newPath != null ? resolve(root, p.newPath) : null;
+        if ((p.oldPath != null && oldFile == null) || (p.newPath != null && newFile == null)) {
+            return new FileResult(p, false, "path is outside the project", null);
+        }
+        String original;
+        switch (p.kind) {
+            case CREATE:
+                if (newFile.exists()) return new FileResult(p, false, "file already exists", null);
+                original = "";
+                break;
+            case DELETE:
+                if (!oldFile.isFile()) return new FileResult(p, false, "file not found", null);
+                return new FileResult(p, true, null, null);
+            case RENAME:
+                if (!oldFile.isFile()) return new FileResult(p, false, "file not found", null);
+                if (newFile.exists()) return new FileResult(p, false, "rename target already exists", null);
+                original = reader.read(oldFile);
+                break;
+            default:
+                if (!oldFile.isFile()) return new FileResult(p, false, "file not found", null);
+                original = reader.read(oldFile);
+                break;
+        }
+        if (p.hunks.isEmpty()) {
+            return p.kind == Kind.MODIFY
+                    ? new FileResult(p, false, "no hunks", null)
+                    : new FileResult(p, true, null, p.kind == Kind.CREATE ? null : original, original);
+        }
+        UnifiedDiffApplier.Result patched = UnifiedDiffApplier.applyWithReport(original, p.hunks);
+        if (!patched.isComplete()) {
+            return new FileResult(p, false, patched.describeFailures().replace('\n', ';'), null);
+        }
+        return new FileResult(p, true, null, p.kind == Kind.CREATE ? null : original, patched.getText());
+    }
+
+    /** The file for a project-relative path, or null if it would leave the project. */
+    private static File resolve(File root, String path) throws IOException {
+        File file = new File(root, path);
+        String rootPath = root.getCanonicalPath() + File.separator;
+        return file.getCanonicalPath().startsWith(rootPath) ? file : null;
+    }
+
+    // ===== Commit =====
+
+    /** One target being replaced (content != null) or removed (content == null). */
+    private static final class Swap {
+        final File target;
+        final String content;
+        File staged;
+        File backup;   // the original, set aside until every swap is done
+        boolean swapped;
+
+        Swap(File target, String content) {
+            this.target = target;
+            this.content = content;
+        }
+    }
+
+    private static void commit(File root, List<FileResult> results) throws IOException {
+        List<Swap> swaps = new ArrayList<>();
+        for (FileResult r : results) {
+            FilePatch p = r.patch;
+            switch (p.kind) {
+                case DELETE:
+                    swaps.add(new Swap(new File(root, p.oldPath), null));
+                    break;
+                case RENAME:
+                    swaps.add(new Swap(new File(root, p.newPath), r.newContent));
+                    swaps.add(new Swap(new File(root, p.oldPath), null));
+                    break;
+                default:
+                    swaps.add(new Swap(new File(root, p.newPath), r.newContent));
+                    break;
+            }
+        }
+        try {
+            for (Swap s : swaps) {
+                if (s.content != null) s.staged = stage(s.target, s.content);
+            }
+            for (Swap s : swaps) {
+                if (s.target.exists()) {
+                    File backup = sibling(s.target, ".orig");
+                    if (!s.target.renameTo(backup)) throw new IOException("Could not set aside " + s.target.getName());
+                    s.backup = backup;
+                }
+                if (s.staged != null && !s.staged.renameTo(s.target)) {
+                    throw new IOException("Could not replace " + s.target.getName());
+                }
+                s.swapped = true;
+            }
+        } catch (IOException e) {
+            rollBack(swaps);
+            throw e;
+        }
+        for (Swap s : swaps) {
+            if (s.backup != null) s.backup.delete();
+        }
+    }
+
+    private static File stage(File target, String content) throws IOException {
+        File dir = target.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir.getName());
+        }
+        File staged = sibling(target, ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(staged)) {
+            Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            writer.write(content);
+            writer.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            staged.delete();
+            throw e;
+        }
+        return staged;
+    }
+
+    private static void rollBack(List<Swap> swaps) {
+        for (int i = swaps.size() - 1; i >= 0; i--) {
+            Swap s = swaps.get(i);
+            if (s.staged != null && s.staged.exists()) s.staged.delete();
+            if (s.swapped && s.staged != null) s.target.delete(); // the new content went in
+            if (s.backup != null) s.backup.renameTo(s.target);
+        }
+    }
+
+    private static File sibling(File target, String suffix) {
+        return new File(target.getParentFile(), "." + target.getName() + ".patch" + suffix);
+    }
+}
@@ -0,0 +1,394 @@
+package com.codex.apk.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Editable text stored as a piece table: an immutable original buffer, an append-only add
+ * buffer, and a list of pieces pointing into either. An edit touches a few pieces instead of
+ * copying the text, and because neither buffer is ever overwritten a {@link Snapshot} only has
+ * to copy the piece list, so saves, diffs and prompt building can read a consistent version
+ * (on any thread) while the user keeps typing.
+ *
+ * Every edit also lands in a dirty-range journal: the ranges of the current text that differ
+ * from the last {@link #markClean() clean} state, kept sorted, merged and shifted as text moves.
+ * Each range also remembers how long the clean text it replaced was, so the journal is enough
+ * to turn the clean text into the current one (see {@link #getDirtyRanges()}).
+ *
+ * Not thread-safe for writers; all edits come from the UI thread.
+ */
+public final class PieceTable {
+
+    /** Above this many pieces the next snapshot flattens the table back into one piece. */
+    private static final int COMPACT_PIECES = 4096;
+
+    private static final class Piece {
+        final char[] buffer;
+        final int start;
+        final int length;
+
+        Piece(char[] buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private char[] original;
+    private char[] add = new char[256];
+    private int addLength;
+    private final ArrayList<Piece> pieces = new ArrayList<>();
+    private int length;
+    private long version;
+
+    // Piece lookup cache: consecutive edits are usually next to each other
+    private int cachedPiece;
+    private int cachedPieceStart;
+
+    private Snapshot snapshot;
+    private final ArrayList<int[]> dirty = new ArrayList<>(); // sorted, disjoint [start, end)
+
+    public PieceTable(String text) {
+        reset(text);
+        dirty.clear(); // the initial text is the clean state
+    }
+
+    /**
+     * Replaces the whole text. The journal records it as one range over everything, so it still
+     * leads from the clean state to the new text; callers loading a clean text mark it clean.
+     */
+    public void reset(String text) {
+        int cleanLength = cleanTextLength();
+        original = text != null ? text.toCharArray() : new char[0];
+        add = new char[256];
+        addLength = 0;
+        pieces.clear();
+        if (original.length > 0) pieces.add(new Piece(original, 0, original.length));
+        length = original.length;
+        invalidateCache();
+        dirty.clear();
+        if (cleanLength > 0 || length > 0) dirty.add(new int[]{0, length, cleanLength});
+        version++;
+        snapshot = null;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** Incremented on every change; equal versions mean equal text. */
+    public long getVersion() {
+        return version;
+    }
+
+    // ===== Editing =====
+
+    public void insert(int offset, CharSequence text) {
+        int n = text.length();
+        if (n == 0) return;
+        checkOffset(offset);
+        int addStart = appendToAddBuffer(text);
+        char[] buffer = add;
+
+        int index = findPiece(offset);
+        int pieceStart = cachedPieceStart;
+        if (index < pieces.size()) {
+            Piece p = pieces.get(index);
+            int within = offset - pieceStart;
+            if (within == 0) {
+                // Typing right after the previous insert extends that piece instead of adding one
+                if (index > 0 && extendsPrevious(pieces.get(index - 1), addStart, n)) {
+                    Piece prev = pieces.get(index - 1);
+                    pieces.set(index - 1, new Piece(buffer, prev.start, prev.length + n));
+                    invalidateCache();
+                } else {
+                    pieces.add(index, new Piece(buffer, addStart, n));
+                    cachedPieceStart = pieceStart + n;
+                    cachedPiece = index + 1;
+                }
+            } else {
+                pieces.set(index, new Piece(p.buffer, p.start, within));
+                pieces.add(index + 1, new Piece(buffer, addStart, n));
+                pieces.add(index + 2, new Piece(p.buffer, p.start + within, p.length - within));
+                invalidateCache();
+            }
+        } else if (index > 0 && extendsPrevious(pieces.get(index - 1), addStart, n)) {
+            Piece prev = pieces.get(index - 1);
+            pieces.set(index - 1, new Piece(buffer, prev.start, prev.length + n));
+            invalidateCache();
+        } else {
+            pieces.add(new Piece(buffer, addStart, n));
+            invalidateCache();
+        }
+        length += n;
+        recordDirty(offset, 0, n);
+        changed();
+    }
+
+    /** Deletes {@code [start, end)}. */
+    public void delete(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("delete " + start + ".." + end + " of " + length);
+        }
+        if (start == end) return;
+        int index = findPiece(start);
+        int pieceStart = cachedPieceStart;
+        List<Piece> replacement = new ArrayList<>(2);
+        int removeFrom = index;
+        int removeTo = index;
+        while (removeTo < pieces.size() && pieceStart < end) {
+            Piece p = pieces.get(removeTo);
+            int pieceEnd = pieceStart + p.length;
+            if (pieceStart < start) replacement.add(new Piece(p.buffer, p.start, start - pieceStart));
+            if (pieceEnd > end) replacement.add(new Piece(p.buffer, p.start + (end - pieceStart), pieceEnd - end));
+            pieceStart = pieceEnd;
+            removeTo++;
+        }
+        pieces.subList(removeFrom, removeTo).clear();
+        pieces.addAll(removeFrom, replacement);
+        length -= end - start;
+        invalidateCache();
+        recordDirty(start, end - start, 0);
+        changed();
+    }
+
+    /** Replaces {@code [start, end)} with {@code text}. */
+    public void replace(int start, int end, CharSequence text) {
+        delete(start, end);
+        insert(start, text);
+    }
+
+    private boolean extendsPrevious(Piece prev, int addStart, int n) {
+        return prev.buffer == add && prev.start + prev.length == addStart;
+    }
+
+    private int appendToAddBuffer(CharSequence text) {
+        int n = text.length();
+        if (addLength + n > add.length) {
+            // Grow into a new array; snapshots keep reading the old one, whose used part never changes
+            add = Arrays.copyOf(add, Math.max(add.length * 2, addLength + n));
+        }
+        int start = addLength;
+        for (int i = 0; i < n; i++) add[start + i] = text.charAt(i);
+        addLength += n;
+        return start;
+    }
+
+    /**
+     * Returns the index of the piece containing {@code offset} (the piece starting there when it
+     * falls on a boundary, or pieces.size() at the end) and leaves its start in cachedPieceStart.
+     */
+    private int findPiece(int offset) {
+        int i;
+        int start;
+        if (cachedPiece <= pieces.size() && cachedPieceStart <= offset) {
+            i = cachedPiece;
+            start = cachedPieceStart;
+        } else {
+            i = 0;
+            start = 0;
+        }
+        while (i < pieces.size() && start + pieces.get(i).length <= offset) {
+            start += pieces.get(i).length;
+            i++;
+        }
+        cachedPiece = i;
+        cachedPieceStart = start;
+        return i;
+    }
+
+    private void invalidateCache() {
+        cachedPiece = 0;
+        cachedPieceStart = 0;
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length) throw new IndexOutOfBoundsException("offset " + offset + " of " + length);
+    }
+
+    private void changed() {
+        version++;
+        snapshot = null;
+    }
+
+    // ===== Dirty-range journal =====
+
+    private void recordDirty(int at, int removed, int inserted) {
+        int delta = inserted - removed;
+        // The merged range in pre-edit coordinates, and how much clean text it stands for
+        int oldStart = at;
+        int oldEnd = at + removed;
+        int foldedLength = 0;
+        int foldedClean = 0;
+        ArrayList<int[]> next = new ArrayList<>(dirty.size() + 1);
+        for (int[] r : dirty) {
+            int s = r[0];
+            int e = r[1];
+            if (e < at) {
+                next.add(r); // wholly before the edit
+            } else if (s > at + removed) {
+                next.add(new int[]{s + delta, e + delta, r[2]}); // wholly after: shift
+            } else {
+                // Touches the edited span: fold into it
+                oldStart = Math.min(oldStart, s);
+                oldEnd = Math.max(oldEnd, e);
+                foldedLength += e - s;
+                foldedClean += r[2];
+            }
+        }
+        // Text in the merged span outside folded ranges was still clean, one char for one
+        int cleanLength = (oldEnd - oldStart) - foldedLength + foldedClean;
+        int[] merged = {oldStart, oldEnd + delta, cleanLength};
+        int insertAt = 0;
+        while (insertAt < next.size() && next.get(insertAt)[0] < oldStart) insertAt++;
+        next.add(insertAt, merged);
+        dirty.clear();
+        dirty.addAll(next);
+    }
+
+    /** Length of the clean text the journal leads from. */
+    private int cleanTextLength() {
+        int cleanLength = length;
+        for (int[] r : dirty) cleanLength += r[2] - (r[1] - r[0]);
+        return cleanLength;
+    }
+
+    /**
+     * Ranges of the current text changed since the last clean state, sorted, as
+     * {@code {start, end, cleanLength}}: {@code [start, end)} of the current text replaced
+     * {@code cleanLength} chars of the clean text. Applying them in order to the clean text,
+     * each at {@code start}, yields the current text.
+     */
+    public List<int[]> getDirtyRanges() {
+        List<int[]> copy = new ArrayList<>(dirty.size());
+        for (int[] r : dirty) copy.add(new int[]{r[0], r[1], r[2]});
+        return copy;
+    }
+
+    public boolean hasDirtyRanges() {
+        return !dirty.isEmpty();
+    }
+
+    /** Declares the current text clean (e.g. after it was saved). */
+    public void markClean() {
+        dirty.clear();
+    }
+
+    // ===== Snapshots =====
+
+    /** Immutable view of the current text; repeated calls without edits return the same one. */
+    public Snapshot snapshot() {
+        if (snapshot != null) return snapshot;
+        if (pieces.size() > COMPACT_PIECES) compact();
+        snapshot = new Snapshot(pieces.toArray(new Piece[0]), length, version);
+        return snapshot;
+    }
+
+    private void compact() {
+        char[] flat = new char[length];
+        int pos = 0;
+        for (Piece p : pieces) {
+            System.arraycopy(p.buffer, p.start, flat, pos, p.length);
+            pos += p.length;
+        }
+        original = flat;
+        add = new char[256];
+        addLength = 0;
+        pieces.clear();
+        if (length > 0) pieces.add(new Piece(original, 0, length));
+        invalidateCache();
+    }
+
+    /** A frozen version of the text. Safe to read from any thread. */
+    public static final class Snapshot implements CharSequence {
+        private final Piece[] pieces;
+        private final int length;
+        private final long version;
+        private volatile String text;
+
+        private Snapshot(Piece[] pieces, int length, long version) {
+            this.pieces = pieces;
+            this.length = length;
+            this.version = version;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index + " of " + length);
+            String cached = text;
+            if (cached != null) return cached.charAt(index);
+            int start = 0;
+            for (Piece p : pieces) {
+                if (index < start + p.length) return p.buffer[p.start + index - start];
+                start += p.length;
+            }
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return substring(start, end);
+        }
+
+        /** Copies {@code [start, end)} without materializing the rest of the text. */
+        public String substring(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException(start + ".." + end + " of " + length);
+            }
+            String cached = text;
+            if (cached != null) return cached.substring(start, end);
+            StringBuilder sb = new StringBuilder(end - start);
+            int pos = 0;
+            for (Piece p : pieces) {
+                int pieceEnd = pos + p.length;
+                if (pieceEnd > start && pos < end) {
+                    int from = Math.max(start, pos) - pos;
+                    int to = Math.min(end, pieceEnd) - pos;
+                    sb.append(p.buffer, p.start + from, to - from);
+                }
+                if (pieceEnd >= end) break;
+                pos = pieceEnd;
+            }
+            return sb.toString();
+        }
+
+        /** Streams the text piece by piece, without building it as one String. */
+        public void writeTo(Writer out) throws IOException {
+            String cached = text;
+            if (cached != null) {
+                out.write(cached);
+                return;
+            }
+            for (Piece p : pieces) out.write(p.buffer, p.start, p.length);
+        }
+
+        /** The full text, built once per snapshot and cached. */
+        @Override
+        public String toString() {
+            String cached = text;
+            if (cached == null) {
+                char[] flat = new char[length];
+                int pos = 0;
+                for (Piece p : pieces) {
+                    System.arraycopy(p.buffer, p.start, flat, pos, p.length);
+                    pos += p.length;
+                }
+                cached = new String(flat);
+                text = cached;
+            }
+            return cached;
+        }
+    }
+}
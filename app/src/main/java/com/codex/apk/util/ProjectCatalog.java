@@ -0,0 +1,307 @@
+package com.codex.apk.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Typed, persisted catalog of the projects folder. The list screen renders straight from the
+ * last saved snapshot; {@link #reconcileAsync} then lists the folder (one stat per project),
+ * reports the corrected list, and fills in deep metadata (source size, file count, dominant
+ * language, newest file time) for projects that are new, changed or marked dirty.
+ *
+ * Stored as a small binary file written via temp file + rename.
+ */
+public final class ProjectCatalog {
+
+    private static final int MAGIC = 0x43585031; // "CXP1"
+    private static final int FORMAT_VERSION = 1;
+    private static final long NOTIFY_INTERVAL_MS = 250;
+
+    public enum ThumbnailStatus { NONE, PENDING, READY }
+
+    /** One project row. Immutable; updates replace the entry. */
+    public static final class Entry {
+        public final String name;
+        public final String path;
+        /** Modification time of the project directory itself; the cheap change guard. */
+        public final long dirModified;
+        /** Newest modification time of any source file, or 0 before the first deep scan. */
+        public final long deepModified;
+        public final long sizeBytes;
+        public final int fileCount;
+        public final String dominantLanguage;
+        public final ThumbnailStatus thumbnail;
+        public final boolean deepScanned;
+
+        Entry(String name, String path, long dirModified, long deepModified, long sizeBytes,
+              int fileCount, String dominantLanguage, ThumbnailStatus thumbnail, boolean deepScanned) {
+            this.name = name;
+            this.path = path;
+            this.dirModified = dirModified;
+            this.deepModified = deepModified;
+            this.sizeBytes = sizeBytes;
+            this.fileCount = fileCount;
+            this.dominantLanguage = dominantLanguage;
+            this.thumbnail = thumbnail;
+            this.deepScanned = deepScanned;
+        }
+
+        static Entry shallow(File dir) {
+            return new Entry(dir.getName(), dir.getAbsolutePath(), dir.lastModified(), 0, 0, 0, "", ThumbnailStatus.NONE, false);
+        }
+
+        /** Time shown and sorted on: the deep time when known, the directory time otherwise. */
+        public long lastModified() {
+            return Math.max(dirModified, deepModified);
+        }
+
+        public File getDirectory() {
+            return new File(path);
+        }
+    }
+
+    public interface Listener {
+        /** Called on a background thread with the full, current list. */
+        void onCatalogChanged(List<Entry> entries);
+    }
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ProjectCatalog");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private static final Map<String, ProjectCatalog> INSTANCES = new ConcurrentHashMap<>();
+
+    public static ProjectCatalog open(File storageFile) {
+        return INSTANCES.computeIfAbsent(storageFile.getAbsolutePath(), k -> new ProjectCatalog(storageFile));
+    }
+
+    private final File storageFile;
+    private final File thumbnailDir;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private boolean loaded;
+
+    private ProjectCatalog(File storageFile) {
+        this.storageFile = storageFile;
+        this.thumbnailDir = new File(storageFile.getParentFile(), "project_thumbnails");
+    }
+
+    /** Last known list, read from disk on first use. */
+    public synchronized List<Entry> snapshot() {
+        ensureLoaded();
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+    }
+
+    /** Marks a project for a deep rescan on the next reconcile (e.g. after it was edited). */
+    public void markDirty(File projectDir) {
+        dirty.add(projectDir.getAbsolutePath());
+    }
+
+    /** Where a preview thumbnail for {@code projectDir} is expected to be stored. */
+    public File thumbnailFile(File projectDir) {
+        return new File(thumbnailDir, Long.toHexString(XxHash64.hash(
+                projectDir.getAbsolutePath().getBytes(java.nio.charset.StandardCharsets.UTF_8))) + ".png");
+    }
+
+    public synchronized void put(File projectDir) {
+        ensureLoaded();
+        entries.put(projectDir.getAbsolutePath(), Entry.shallow(projectDir));
+        dirty.add(projectDir.getAbsolutePath());
+        persistAsync();
+    }
+
+    public synchronized void remove(File projectDir) {
+        ensureLoaded();
+        entries.remove(projectDir.getAbsolutePath());
+        persistAsync();
+    }
+
+    /**
+     * Lists {@code projectsDir} and reports the corrected list, then deep-scans new, changed or
+     * dirty projects, reporting progress at most every {@link #NOTIFY_INTERVAL_MS}.
+     */
+    public void reconcileAsync(File projectsDir, Listener listener) {
+        worker.execute(() -> reconcile(projectsDir, listener));
+    }
+
+    private void reconcile(File projectsDir, Listener listener) {
+        File[] dirs = projectsDir.listFiles(File::isDirectory);
+        if (dirs == null) dirs = new File[0];
+        List<Entry> toScan = new ArrayList<>();
+        List<Entry> current;
+        synchronized (this) {
+            ensureLoaded();
+            Map<String, Entry> next = new LinkedHashMap<>();
+            for (File dir : dirs) {
+                String path = dir.getAbsolutePath();
+                Entry old = entries.get(path);
+                long mtime = dir.lastModified();
+                Entry e = old != null && old.dirModified == mtime ? old : (old == null ? Entry.shallow(dir)
+                        : new Entry(old.name, path, mtime, old.deepModified, old.sizeBytes, old.fileCount,
+                                    old.dominantLanguage, old.thumbnail, false));
+                next.put(path, e);
+                if (!e.deepScanned || dirty.contains(path)) toScan.add(e);
+            }
+            entries.clear();
+            entries.putAll(next);
+            current = new ArrayList<>(entries.values());
+        }
+        listener.onCatalogChanged(Collections.unmodifiableList(current));
+
+        long lastNotify = System.currentTimeMillis();
+        boolean pendingNotify = false;
+        for (Entry e : toScan) {
+            dirty.remove(e.path);
+            Entry scanned = deepScan(e);
+            synchronized (this) {
+                // Skip if the project was removed or renamed while we were scanning it
+                if (!entries.containsKey(e.path)) continue;
+                entries.put(e.path, scanned);
+            }
+            pendingNotify = true;
+            if (System.currentTimeMillis() - lastNotify >= NOTIFY_INTERVAL_MS) {
+                listener.onCatalogChanged(snapshot());
+                lastNotify = System.currentTimeMillis();
+                pendingNotify = false;
+            }
+        }
+        if (pendingNotify) listener.onCatalogChanged(snapshot());
+        persist();
+    }
+
+    private Entry deepScan(Entry e) {
+        File root = new File(e.path);
+        long size = 0;
+        int count = 0;
+        long newest = 0;
+        Map<String, Long> bytesByLanguage = new HashMap<>();
+        Deque<File> dq = new ArrayDeque<>();
+        dq.add(root);
+        while (!dq.isEmpty()) {
+            File[] files = dq.pollFirst().listFiles();
+            if (files == null) continue;
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    if (!FileOps.isSkippedDirectory(f.getName())) dq.addLast(f);
+                    continue;
+                }
+                long len = f.length();
+                size += len;
+                count++;
+                newest = Math.max(newest, f.lastModified());
+                String lang = languageOf(f.getName());
+                if (lang != null) bytesByLanguage.merge(lang, Math.max(1, len), Long::sum);
+            }
+        }
+        String dominant = "";
+        long best = 0;
+        for (Map.Entry<String, Long> l : bytesByLanguage.entrySet()) {
+            if (l.getValue() > best) {
+                best = l.getValue();
+                dominant = l.getKey();
+            }
+        }
+        ThumbnailStatus thumb;
+        if (thumbnailFile(root).exists()) thumb = ThumbnailStatus.READY;
+        else if (new File(root, "index.html").exists()) thumb = ThumbnailStatus.PENDING;
+        else thumb = ThumbnailStatus.NONE;
+        return new Entry(e.name, e.path, root.lastModified(), newest, size, count, dominant, thumb, true);
+    }
+
+    static String languageOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) return null;
+        switch (fileName.substring(dot + 1).toLowerCase(Locale.ROOT)) {
+            case "html": case "htm": return "HTML";
+            case "css": case "scss": case "sass": case "less": return "CSS";
+            case "js": case "mjs": case "cjs": case "jsx": return "JavaScript";
+            case "ts": case "tsx": return "TypeScript";
+            case "vue": return "Vue";
+            case "svelte": return "Svelte";
+            case "php": return "PHP";
+            case "py": return "Python";
+            case "md": case "markdown": return "Markdown";
+            default: return null;
+        }
+    }
+
+    // ===== Persistence =====
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!storageFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storageFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String path = in.readUTF();
+                long dirModified = in.readLong();
+                long deepModified = in.readLong();
+                long size = in.readLong();
+                int files = in.readInt();
+                String lang = in.readUTF();
+                int thumb = in.readByte();
+                boolean scanned = in.readBoolean();
+                ThumbnailStatus[] statuses = ThumbnailStatus.values();
+                entries.put(path, new Entry(name, path, dirModified, deepModified, size, files, lang,
+                        statuses[Math.max(0, Math.min(statuses.length - 1, thumb))], scanned));
+            }
+        } catch (IOException e) {
+            entries.clear();
+        }
+    }
+
+    private void persistAsync() {
+        worker.execute(this::persist);
+    }
+
+    private void persist() {
+        List<Entry> snap = snapshot();
+        File dir = storageFile.getParentFile();
+        if (dir != null) dir.mkdirs();
+        File tmp = new File(storageFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snap.size());
+            for (Entry e : snap) {
+                out.writeUTF(e.name);
+                out.writeUTF(e.path);
+                out.writeLong(e.dirModified);
+                out.writeLong(e.deepModified);
+                out.writeLong(e.sizeBytes);
+                out.writeInt(e.fileCount);
+                out.writeUTF(e.dominantLanguage);
+                out.writeByte(e.thumbnail.ordinal());
+                out.writeBoolean(e.deepScanned);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(storageFile)) tmp.delete();
+    }
+}
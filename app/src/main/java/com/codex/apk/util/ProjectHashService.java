@@ -0,0 +1,313 @@
+package com.codex.apk.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps an xxHash64 fingerprint of every project file, guarded by mtime and size so a file is
+ * only re-read when its stat changes. Each content change bumps a per-project version, which
+ * lets callers ask "what changed since version N" without rescanning the project.
+ *
+ * Writers inside the app call {@link #touch(File)}; a stat-only {@link #reconcileAsync()} on
+ * project open picks up edits made while the app was closed. State is persisted to
+ * {@link #setStorageRoot(File) the storage root} so hashes survive restarts.
+ */
+public final class ProjectHashService {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x43584831; // "CXH1"
+    private static final int MAX_TOMBSTONES = 1024;
+    private static final long PERSIST_DELAY_MS = 2000;
+
+    private static final ExecutorService hashPool = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() - 1), daemonFactory("ProjectHash"));
+    // Walks run on their own thread so waiting on hash jobs can never starve the pool.
+    private static final ExecutorService walker = Executors.newSingleThreadExecutor(daemonFactory("ProjectHashWalk"));
+    private static final ScheduledExecutorService persistScheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonFactory("ProjectHashPersist"));
+    private static final Map<String, ProjectHashService> INSTANCES = new ConcurrentHashMap<>();
+    private static volatile File storageRoot;
+
+    /** Directory where per-project hash tables are persisted; without it state is memory-only. */
+    public static void setStorageRoot(File dir) {
+        storageRoot = dir;
+    }
+
+    public static ProjectHashService forProject(File projectDir) {
+        return INSTANCES.computeIfAbsent(projectDir.getAbsolutePath(), k -> new ProjectHashService(projectDir));
+    }
+
+    /** Hash record of one file; a deleted file is kept as a tombstone with size -1. */
+    public static final class Record {
+        public final long lastModified;
+        public final long size;
+        public final long hash;
+        public final long version;
+
+        Record(long lastModified, long size, long hash, long version) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+            this.version = version;
+        }
+
+        public boolean isDeleted() { return size < 0; }
+    }
+
+    private final File projectDir;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean persistPending = new AtomicBoolean();
+    private volatile boolean loaded;
+
+    private ProjectHashService(File projectDir) {
+        this.projectDir = projectDir;
+    }
+
+    public long currentVersion() {
+        ensureLoaded();
+        return version.get();
+    }
+
+    public Record recordOf(String relativePath) {
+        ensureLoaded();
+        return records.get(relativePath);
+    }
+
+    /** Returns relative paths whose content changed (or that were deleted) after {@code sinceVersion}. */
+    public List<String> changedSince(long sinceVersion) {
+        ensureLoaded();
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, Record> e : records.entrySet()) {
+            if (e.getValue().version > sinceVersion) out.add(e.getKey());
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    /** Rehashes a written file, or every file below a written directory, on the worker pool. */
+    public void touch(File file) {
+        if (file == null) return;
+        hashPool.execute(() -> touchNow(file));
+    }
+
+    public void touchAll(Collection<File> files) {
+        if (files == null) return;
+        for (File f : files) touch(f);
+    }
+
+    /**
+     * Stat-only walk of the project: files whose mtime/size match the persisted record are not
+     * read; the rest are hashed in parallel. Records of files that disappeared become tombstones.
+     */
+    public void reconcileAsync() {
+        walker.execute(this::reconcile);
+    }
+
+    void reconcile() {
+        ensureLoaded();
+        // Records written after this point come from touch() and are newer than the walk
+        long walkStart = version.get();
+        Set<String> seen = new HashSet<>();
+        List<Future<?>> pending = new ArrayList<>();
+        Deque<File> dq = new ArrayDeque<>();
+        dq.add(projectDir);
+        while (!dq.isEmpty()) {
+            File[] files = dq.pollFirst().listFiles();
+            if (files == null) continue;
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    if (!FileOps.isSkippedDirectory(f.getName())) dq.addLast(f);
+                    continue;
+                }
+                String rel = relativePath(f);
+                seen.add(rel);
+                Record r = records.get(rel);
+                if (r == null || r.isDeleted() || r.lastModified != f.lastModified() || r.size != f.length()) {
+                    pending.add(hashPool.submit(() -> rehash(f, rel)));
+                }
+            }
+        }
+        for (Future<?> f : pending) {
+            try { f.get(); } catch (Exception ignored) {}
+        }
+        for (Map.Entry<String, Record> e : records.entrySet()) {
+            Record r = e.getValue();
+            // Unseen files created after the walk passed their directory are still there
+            if (seen.contains(e.getKey()) || r.isDeleted() || r.version > walkStart) continue;
+            if (!new File(projectDir, e.getKey()).exists()) markDeleted(e.getKey());
+        }
+        pruneTombstones();
+        schedulePersist();
+    }
+
+    private void touchNow(File file) {
+        ensureLoaded();
+        String rel = relativePath(file);
+        if (!file.exists()) {
+            // Deleted file or directory: tombstone it and everything recorded below it.
+            String prefix = rel + "/";
+            for (String key : new ArrayList<>(records.keySet())) {
+                if (key.equals(rel) || key.startsWith(prefix)) markDeleted(key);
+            }
+            pruneTombstones();
+        } else if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File c : children) {
+                    if (c.isDirectory() && FileOps.isSkippedDirectory(c.getName())) continue;
+                    touchNow(c);
+                }
+            }
+        } else {
+            // Explicit writes always rehash: a same-size rewrite can land within the mtime granularity.
+            rehash(file, rel);
+        }
+        schedulePersist();
+    }
+
+    private void rehash(File file, String rel) {
+        long mtime = file.lastModified();
+        long size = file.length();
+        long hash;
+        try (InputStream in = new FileInputStream(file)) {
+            hash = XxHash64.hash(in);
+        } catch (IOException e) {
+            return;
+        }
+        records.compute(rel, (k, old) -> {
+            if (old != null && !old.isDeleted() && old.hash == hash && old.size == size) {
+                // Same content (e.g. touched or saved unchanged): refresh the guard only.
+                return new Record(mtime, size, hash, old.version);
+            }
+            return new Record(mtime, size, hash, version.incrementAndGet());
+        });
+    }
+
+    private void markDeleted(String rel) {
+        records.computeIfPresent(rel, (k, old) -> old.isDeleted() ? old : new Record(0, -1, 0, version.incrementAndGet()));
+    }
+
+    /** Drops the oldest tombstones beyond {@link #MAX_TOMBSTONES}; once per batch of deletions. */
+    private void pruneTombstones() {
+        List<Map.Entry<String, Record>> tombstones = new ArrayList<>();
+        for (Map.Entry<String, Record> e : records.entrySet()) {
+            if (e.getValue().isDeleted()) tombstones.add(e);
+        }
+        if (tombstones.size() <= MAX_TOMBSTONES) return;
+        tombstones.sort((a, b) -> Long.compare(a.getValue().version, b.getValue().version));
+        for (int i = 0; i < tombstones.size() - MAX_TOMBSTONES; i++) records.remove(tombstones.get(i).getKey());
+    }
+
+    private String relativePath(File f) {
+        return projectDir.toPath().relativize(f.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    // ===== Persistence =====
+
+    private File storageFile() {
+        File root = storageRoot;
+        if (root == null) return null;
+        String name = Long.toHexString(XxHash64.hash(projectDir.getAbsolutePath().getBytes(StandardCharsets.UTF_8)));
+        return new File(root, name + ".bin");
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            File f = storageFile();
+            if (f != null && f.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+                    if (in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION) {
+                        long v = in.readLong();
+                        int count = in.readInt();
+                        for (int i = 0; i < count; i++) {
+                            String rel = in.readUTF();
+                            records.put(rel, new Record(in.readLong(), in.readLong(), in.readLong(), in.readLong()));
+                        }
+                        version.set(v);
+                    }
+                } catch (IOException e) {
+                    records.clear();
+                    version.set(0);
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private void schedulePersist() {
+        if (storageRoot == null || !persistPending.compareAndSet(false, true)) return;
+        persistScheduler.schedule(() -> {
+            persistPending.set(false);
+            persist();
+        }, PERSIST_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Writes the table to a temp file and renames it over the previous one. */
+    public synchronized void persist() {
+        File f = storageFile();
+        if (f == null) return;
+        File dir = f.getParentFile();
+        if (dir != null) dir.mkdirs();
+        File tmp = new File(f.getPath() + ".tmp");
+        Map<String, Record> snapshot = new HashMap<>(records);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(version.get());
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Record> e : snapshot.entrySet()) {
+                Record r = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(r.lastModified);
+                out.writeLong(r.size);
+                out.writeLong(r.hash);
+                out.writeLong(r.version);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(f)) tmp.delete();
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,225 @@
+package com.codex.apk.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Execution layer for user- and model-supplied search regexes.
+ *
+ * Patterns are compiled once and cached. Anything RE2/J accepts runs on its linear-time
+ * automaton, so no input can make it backtrack. Patterns it rejects (backreferences,
+ * lookaround, possessive quantifiers) fall back to java.util.regex with a per-input step
+ * budget. A literal that every match must contain is extracted up front so files that do
+ * not contain it can be skipped without running the regex at all.
+ */
+public final class RegexEngine {
+    private RegexEngine() {}
+
+    /** Upper bound of character reads a backtracking match may perform on one input. */
+    private static final long MATCH_STEP_BUDGET = 10_000_000L;
+    private static final int MAX_CACHED_PATTERNS = 64;
+
+    private static final LinkedHashMap<String, CompiledRegex> cache = new LinkedHashMap<String, CompiledRegex>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, CompiledRegex> eldest) {
+            return size() > MAX_CACHED_PATTERNS;
+        }
+    };
+
+    /** Thrown when a backtracking match exceeds {@link #MATCH_STEP_BUDGET}. */
+    public static class BudgetExceededException extends RuntimeException {
+        public BudgetExceededException() {
+            super("Regex exceeded its match budget");
+        }
+    }
+
+    /** Iterates matches over a single input. */
+    public interface RegexMatcher {
+        boolean find();
+        int start();
+        int end();
+    }
+
+    public static final class CompiledRegex {
+        private final String source;
+        private final boolean caseInsensitive;
+        private final com.google.re2j.Pattern linear;
+        private final java.util.regex.Pattern backtracking;
+        private final String requiredLiteral;
+
+        CompiledRegex(String source, boolean caseInsensitive, com.google.re2j.Pattern linear,
+                      java.util.regex.Pattern backtracking, String requiredLiteral) {
+            this.source = source;
+            this.caseInsensitive = caseInsensitive;
+            this.linear = linear;
+            this.backtracking = backtracking;
+            this.requiredLiteral = requiredLiteral;
+        }
+
+        public String getSource() { return source; }
+        public boolean isLinear() { return linear != null; }
+        public String getRequiredLiteral() { return requiredLiteral; }
+
+        /** Cheap prefilter: false means the input cannot contain a match. */
+        public boolean mayMatch(String input) {
+            if (requiredLiteral == null) return true;
+            return caseInsensitive ? indexOfIgnoreCase(input, requiredLiteral) >= 0 : input.contains(requiredLiteral);
+        }
+
+        public RegexMatcher matcher(CharSequence input) {
+            if (linear != null) {
+                com.google.re2j.Matcher m = linear.matcher(input);
+                return new RegexMatcher() {
+                    @Override public boolean find() { return m.find(); }
+                    @Override public int start() { return m.start(); }
+                    @Override public int end() { return m.end(); }
+                };
+            }
+            java.util.regex.Matcher m = backtracking.matcher(new BudgetedCharSequence(input, MATCH_STEP_BUDGET));
+            return new RegexMatcher() {
+                @Override public boolean find() { return m.find(); }
+                @Override public int start() { return m.start(); }
+                @Override public int end() { return m.end(); }
+            };
+        }
+    }
+
+    /**
+     * Compiles (or returns the cached) regex. Patterns are always MULTILINE so '^' and '$'
+     * match at line boundaries. Throws PatternSyntaxException when neither engine accepts it.
+     */
+    public static CompiledRegex compile(String pattern, boolean caseInsensitive) throws PatternSyntaxException {
+        String key = (caseInsensitive ? "i:" : "s:") + pattern;
+        synchronized (cache) {
+            CompiledRegex hit = cache.get(key);
+            if (hit != null) return hit;
+        }
+        CompiledRegex compiled;
+        String literal = requiredLiteral(pattern);
+        try {
+            int flags = com.google.re2j.Pattern.MULTILINE | (caseInsensitive ? com.google.re2j.Pattern.CASE_INSENSITIVE : 0);
+            compiled = new CompiledRegex(pattern, caseInsensitive, com.google.re2j.Pattern.compile(pattern, flags), null, literal);
+        } catch (com.google.re2j.PatternSyntaxException unsupported) {
+            int flags = java.util.regex.Pattern.MULTILINE | (caseInsensitive ? java.util.regex.Pattern.CASE_INSENSITIVE : 0);
+            compiled = new CompiledRegex(pattern, caseInsensitive, null, java.util.regex.Pattern.compile(pattern, flags), literal);
+        }
+        synchronized (cache) {
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns the longest literal run that every match of {@code regex} must contain, or null
+     * when none can be proven. Conservative: alternation at the top level, inline flags and
+     * anything inside groups or classes end the analysis or break the current run.
+     */
+    static String requiredLiteral(String regex) {
+        if (regex == null || regex.contains("(?")) return null;
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        int n = regex.length();
+        while (i < n) {
+            char c = regex.charAt(i);
+            Character literal = null;
+            int next = i + 1;
+            if (c == '\\') {
+                if (i + 1 >= n) return null;
+                char e = regex.charAt(i + 1);
+                next = i + 2;
+                if (e == 'Q') return null;
+                if (!Character.isLetterOrDigit(e)) literal = e;
+            } else if (c == '[') {
+                next = skipClass(regex, i);
+                if (next < 0) return null;
+            } else if (c == '(') {
+                next = skipGroup(regex, i);
+                if (next < 0) return null;
+            } else if (c == '|') {
+                return null;
+            } else if (c != '.' && c != '^' && c != '$' && c != ')' && c != '*' && c != '+' && c != '?' && c != '{') {
+                literal = c;
+            }
+            // Look at the quantifier (if any) applied to this atom.
+            char q = next < n ? regex.charAt(next) : 0;
+            boolean optional = q == '*' || q == '?' || (q == '{' && next + 1 < n && regex.charAt(next + 1) == '0');
+            boolean repeated = q == '+' || q == '{';
+            if (literal != null && !optional) run.append(literal.charValue());
+            if (literal == null || optional || repeated) {
+                if (run.length() > best.length()) best = run.toString();
+                run.setLength(0);
+            }
+            i = next;
+        }
+        if (run.length() > best.length()) best = run.toString();
+        return best.length() >= 2 ? best : null;
+    }
+
+    private static int skipClass(String regex, int open) {
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') i++;
+        if (i < regex.length() && regex.charAt(i) == ']') i++;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') { i += 2; continue; }
+            if (c == ']') return i + 1;
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipGroup(String regex, int open) {
+        int depth = 0;
+        int i = open;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') { i += 2; continue; }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                if (i < 0) return -1;
+                continue;
+            }
+            if (c == '(') depth++;
+            else if (c == ')' && --depth == 0) return i + 1;
+            i++;
+        }
+        return -1;
+    }
+
+    static int indexOfIgnoreCase(String haystack, String needle) {
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) return i;
+        }
+        return -1;
+    }
+
+    /** CharSequence that aborts the match once too many characters have been read. */
+    private static final class BudgetedCharSequence implements CharSequence {
+        private final CharSequence inner;
+        private final long[] remaining;
+
+        BudgetedCharSequence(CharSequence inner, long budget) {
+            this(inner, new long[]{budget});
+        }
+
+        private BudgetedCharSequence(CharSequence inner, long[] remaining) {
+            this.inner = inner;
+            this.remaining = remaining;
+        }
+
+        @Override public char charAt(int index) {
+            if (--remaining[0] < 0) throw new BudgetExceededException();
+            return inner.charAt(index);
+        }
+
+        @Override public int length() { return inner.length(); }
+
+        @Override public CharSequence subSequence(int start, int end) {
+            return new BudgetedCharSequence(inner.subSequence(start, end), remaining);
+        }
+
+        @Override public String toString() { return inner.toString(); }
+    }
+}
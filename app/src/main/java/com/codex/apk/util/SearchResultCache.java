@@ -0,0 +1,224 @@
+package com.codex.apk.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * LRU cache of project search results, keyed by search root, query, flags and extension
+ * filter, and stamped with the snapshot version they were computed at.
+ *
+ * Writers report changed paths through {@link #notifyChanged(File)}, which bumps the global
+ * snapshot version and records the path in a change log. A cached result that is older than
+ * the current version is patched by rescanning only the files changed since its version,
+ * so a repeated search after a small edit costs time proportional to the edit.
+ */
+public final class SearchResultCache {
+    private SearchResultCache() {}
+
+    /** Rescans a single file and returns its hits (already capped per file). */
+    interface FileScanner {
+        List<JsonObject> scan(File file);
+    }
+
+    private static final int MAX_ENTRIES = 32;
+    private static final int MAX_CHANGE_LOG = 4096;
+
+    static final class Key {
+        final String root;
+        final String query;
+        final boolean caseSensitive;
+        final boolean regex;
+        final List<String> extensions;
+
+        Key(File root, String query, boolean caseSensitive, boolean regex, List<String> extensions) {
+            this.root = root.getAbsolutePath();
+            this.query = query;
+            this.caseSensitive = caseSensitive;
+            this.regex = regex;
+            List<String> exts = new ArrayList<>();
+            if (extensions != null) for (String e : extensions) exts.add(e.toLowerCase(Locale.ROOT));
+            Collections.sort(exts);
+            this.extensions = exts;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return caseSensitive == k.caseSensitive && regex == k.regex && root.equals(k.root)
+                    && query.equals(k.query) && extensions.equals(k.extensions);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(root, query, caseSensitive, regex, extensions);
+        }
+    }
+
+    /**
+     * Hits per file in scan order. A complete entry covers every file under the root;
+     * an incomplete one stopped early at {@code producedLimit} results.
+     */
+    static final class Entry {
+        long version;
+        final LinkedHashMap<String, List<JsonObject>> hitsByFile = new LinkedHashMap<>();
+        boolean complete;
+        int producedLimit;
+    }
+
+    private static long version = 0;
+    private static final Map<String, Long> changeLog = new HashMap<>();
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public static synchronized long snapshotVersion() {
+        return version;
+    }
+
+    /** Records a created, modified, deleted or renamed file or directory. */
+    public static synchronized void notifyChanged(File file) {
+        if (file == null) return;
+        version++;
+        changeLog.put(file.getAbsolutePath(), version);
+        if (changeLog.size() > MAX_CHANGE_LOG) {
+            // Log too large to patch from; fall back to wholesale invalidation.
+            changeLog.clear();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Drops the cached results of searches under {@code projectDir}, for when changes may have
+     * happened that were never reported, e.g. while the project was closed.
+     */
+    public static synchronized void invalidateProject(File projectDir) {
+        String root = projectDir.getAbsolutePath();
+        String prefix = root + File.separator;
+        entries.keySet().removeIf(k -> k.root.equals(root) || k.root.startsWith(prefix));
+    }
+
+    /**
+     * Returns a cached result brought up to the current snapshot, or null when the caller
+     * has to run a full scan.
+     */
+    static JsonArray lookup(Key key, int maxResults, FileScanner scanner) {
+        Entry entry;
+        List<String> changed = new ArrayList<>();
+        long target;
+        synchronized (SearchResultCache.class) {
+            entry = entries.get(key);
+            if (entry == null) return null;
+            if (!entry.complete && maxResults > entry.producedLimit) return null;
+            target = version;
+            if (entry.version < target) {
+                for (Map.Entry<String, Long> c : changeLog.entrySet()) {
+                    if (c.getValue() <= entry.version) continue;
+                    String p = c.getKey();
+                    if (key.root.equals(p) || key.root.startsWith(p + File.separator)) {
+                        // The search root itself was replaced; nothing to patch from.
+                        entries.remove(key);
+                        return null;
+                    }
+                    if (p.startsWith(key.root + File.separator)) changed.add(p);
+                }
+                if (!changed.isEmpty() && !entry.complete) {
+                    entries.remove(key);
+                    return null;
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            synchronized (entry) {
+                for (String path : changed) patch(entry, key, new File(path), scanner);
+            }
+        }
+        synchronized (SearchResultCache.class) {
+            if (entry.version < target) entry.version = target;
+        }
+        return toJson(entry, maxResults);
+    }
+
+    /** Starts a new entry at the current snapshot version; fill it via {@link #record}. */
+    static Entry begin() {
+        Entry e = new Entry();
+        synchronized (SearchResultCache.class) {
+            e.version = version;
+        }
+        return e;
+    }
+
+    static void record(Entry entry, String absolutePath, List<JsonObject> hits) {
+        entry.hitsByFile.put(absolutePath, hits);
+    }
+
+    static synchronized void store(Key key, Entry entry, boolean complete, int maxResults) {
+        entry.complete = complete;
+        entry.producedLimit = maxResults;
+        entries.put(key, entry);
+    }
+
+    private static void patch(Entry entry, Key key, File changed, FileScanner scanner) {
+        String path = changed.getAbsolutePath();
+        boolean visible = changed.exists() && !isInSkippedDirectory(key.root, path);
+        if (visible && changed.isFile()) {
+            // put() keeps the original scan position of files that were already cached
+            if (matchesExtensions(changed, key.extensions)) entry.hitsByFile.put(path, scanner.scan(changed));
+            return;
+        }
+        // Deleted, or a directory: drop the path and everything below it, then rescan what exists now.
+        String prefix = path + File.separator;
+        Iterator<String> it = entry.hitsByFile.keySet().iterator();
+        while (it.hasNext()) {
+            String p = it.next();
+            if (p.equals(path) || p.startsWith(prefix)) it.remove();
+        }
+        if (!visible || !changed.isDirectory() || FileOps.isSkippedDirectory(changed.getName())) return;
+        File[] children = changed.listFiles();
+        if (children == null) return;
+        for (File c : children) patch(entry, key, c, scanner);
+    }
+
+    private static JsonArray toJson(Entry entry, int maxResults) {
+        JsonArray out = new JsonArray();
+        synchronized (entry) {
+            for (List<JsonObject> hits : entry.hitsByFile.values()) {
+                for (JsonObject o : hits) {
+                    if (out.size() >= maxResults) return out;
+                    out.add(o);
+                }
+            }
+        }
+        return out;
+    }
+
+    static boolean matchesExtensions(File f, List<String> extensions) {
+        if (extensions == null || extensions.isEmpty()) return true;
+        String lower = f.getName().toLowerCase(Locale.ROOT);
+        for (String ext : extensions) {
+            if (lower.endsWith("." + ext.toLowerCase(Locale.ROOT))) return true;
+        }
+        return false;
+    }
+
+    /** True when a directory between the root and {@code path} is one full scans skip. */
+    private static boolean isInSkippedDirectory(String root, String path) {
+        String rel = path.substring(Math.min(path.length(), root.length() + 1));
+        String[] parts = rel.split(java.util.regex.Pattern.quote(File.separator));
+        for (int i = 0; i < parts.length - 1; i++) {
+            if (FileOps.isSkippedDirectory(parts[i])) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,192 @@
+package com.codex.apk.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record of a buffer's unsaved text, so edits survive a crash. A journal starts
+ * with a checkpoint holding the whole text; every later record holds only the ranges that
+ * changed since the previous one, as produced by {@link PieceTable#getDirtyRanges()}. Each
+ * record carries a CRC, and {@link #recover(File)} replays records up to the first torn or
+ * corrupt one, so a crash in the middle of an append loses at most that append.
+ *
+ * Not thread-safe; one journal is written from one thread.
+ */
+public final class SwapJournal {
+
+    private static final int MAGIC = 0x43585357; // "CXSW"
+    private static final int FORMAT_VERSION = 1;
+    private static final byte CHECKPOINT = 'C';
+    private static final byte DELTA = 'D';
+
+    private final File swapFile;
+    private long size;
+
+    private SwapJournal(File swapFile, long size) {
+        this.swapFile = swapFile;
+        this.size = size;
+    }
+
+    /**
+     * Starts a journal for the file at {@code path} with {@code text} as its checkpoint,
+     * replacing any journal already at {@code swapFile}. Written to a temp file and renamed,
+     * so the old journal stays intact until the new one is complete.
+     */
+    public static SwapJournal create(File swapFile, String path, CharSequence text) throws IOException {
+        File dir = swapFile.getParentFile();
+        if (dir != null) dir.mkdirs();
+        File tmp = new File(swapFile.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(path);
+            writeRecord(out, CHECKPOINT, encodeText(text));
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(swapFile)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + swapFile);
+        }
+        return new SwapJournal(swapFile, swapFile.length());
+    }
+
+    /**
+     * Appends the ranges of {@code text} changed since the previous record, in the
+     * {@code {start, end, cleanLength}} form of {@link PieceTable#getDirtyRanges()}.
+     */
+    public void append(List<int[]> ranges, CharSequence text) throws IOException {
+        if (ranges.isEmpty()) return;
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeInt(ranges.size());
+        for (int[] r : ranges) {
+            byte[] replacement = encodeText(text.subSequence(r[0], r[1]));
+            out.writeInt(r[0]);
+            out.writeInt(r[2]);
+            out.writeInt(replacement.length);
+            out.write(replacement);
+        }
+        out.flush();
+        try (DataOutputStream file = new DataOutputStream(new FileOutputStream(swapFile, true))) {
+            writeRecord(file, DELTA, payload.toByteArray());
+        }
+        size = swapFile.length();
+    }
+
+    /** Bytes on disk; callers start a fresh journal once the deltas outgrow the text. */
+    public long size() {
+        return size;
+    }
+
+    public File getFile() {
+        return swapFile;
+    }
+
+    private static void writeRecord(DataOutputStream out, byte kind, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(kind);
+        crc.update(payload, 0, payload.length);
+        out.writeByte(kind);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeLong(crc.getValue());
+    }
+
+    private static byte[] encodeText(CharSequence text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() + 16);
+        Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        if (text instanceof PieceTable.Snapshot) {
+            ((PieceTable.Snapshot) text).writeTo(writer);
+        } else {
+            writer.append(text);
+        }
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    // ===== Recovery =====
+
+    /** What a journal leads to: the path it was written for and the last text it recorded. */
+    public static final class Recovered {
+        public final String path;
+        public final String text;
+
+        Recovered(String path, String text) {
+            this.path = path;
+            this.text = text;
+        }
+    }
+
+    /** Replays {@code swapFile}; null if it has no readable checkpoint. */
+    public static Recovered recover(File swapFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(swapFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            String path = in.readUTF();
+            StringBuilder text = null;
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                byte kind = payload[0];
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+                if (kind == CHECKPOINT) {
+                    text = new StringBuilder(new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8));
+                } else if (kind == DELTA && text != null) {
+                    if (!applyDelta(text, record)) break;
+                } else {
+                    break;
+                }
+            }
+            return text != null ? new Recovered(path, text.toString()) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Returns the kind byte followed by the payload, or null at the end or a damaged record. */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            byte kind = in.readByte();
+            int length = in.readInt();
+            if (length < 0 || length > (256 << 20)) return null;
+            byte[] record = new byte[length + 1];
+            record[0] = kind;
+            in.readFully(record, 1, length);
+            long expected = in.readLong();
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            return crc.getValue() == expected ? record : null;
+        } catch (EOFException e) {
+            return null; // clean end, or an append cut short by the crash
+        }
+    }
+
+    private static boolean applyDelta(StringBuilder text, DataInputStream record) throws IOException {
+        int count = record.readInt();
+        for (int i = 0; i < count; i++) {
+            int start = record.readInt();
+            int cleanLength = record.readInt();
+            byte[] replacement = new byte[record.readInt()];
+            record.readFully(replacement);
+            if (start < 0 || cleanLength < 0 || start + cleanLength > text.length()) return false;
+            text.replace(start, start + cleanLength, new String(replacement, StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+}
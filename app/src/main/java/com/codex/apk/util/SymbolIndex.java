@@ -0,0 +1,456 @@
+package com.codex.apk.util;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-project index of HTML ids/classes, CSS selectors/custom properties/keyframes and
+ * JS functions/classes/exports. Files are re-parsed only when their mtime or size changes,
+ * so refreshing after an edit costs time proportional to the edited files.
+ */
+public final class SymbolIndex {
+
+    public enum Kind {
+        HTML_ID("id"),
+        HTML_CLASS("class"),
+        CSS_SELECTOR("selector"),
+        CSS_VARIABLE("cssVariable"),
+        CSS_KEYFRAMES("keyframes"),
+        JS_FUNCTION("function"),
+        JS_CLASS("jsClass"),
+        JS_EXPORT("export");
+
+        public final String label;
+
+        Kind(String label) { this.label = label; }
+
+        public static Kind fromLabel(String label) {
+            if (label == null) return null;
+            for (Kind k : values()) {
+                if (k.label.equalsIgnoreCase(label) || k.name().equalsIgnoreCase(label)) return k;
+            }
+            return null;
+        }
+    }
+
+    public static final class Symbol {
+        public final String name;
+        public final Kind kind;
+        public final String path;
+        public final int offset;
+        public final int line;   // 1-based
+        public final int column; // 0-based
+
+        Symbol(String name, Kind kind, String path, int offset, int line, int column) {
+            this.name = name;
+            this.kind = kind;
+            this.path = path;
+            this.offset = offset;
+            this.line = line;
+            this.column = column;
+        }
+
+        public JsonObject toJson() {
+            JsonObject o = new JsonObject();
+            o.addProperty("name", name);
+            o.addProperty("kind", kind.label);
+            o.addProperty("path", path);
+            o.addProperty("line", line);
+            o.addProperty("column", column);
+            return o;
+        }
+    }
+
+    private static final class FileEntry {
+        final long lastModified;
+        final long length;
+        final List<Symbol> symbols;
+
+        FileEntry(long lastModified, long length, List<Symbol> symbols) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.symbols = symbols;
+        }
+    }
+
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+    private static final Set<String> INDEXED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "html", "htm", "css", "js", "mjs", "cjs", "jsx", "ts", "tsx"));
+
+    private static final Map<String, SymbolIndex> INSTANCES = new ConcurrentHashMap<>();
+
+    public static SymbolIndex forProject(File projectDir) {
+        return INSTANCES.computeIfAbsent(projectDir.getAbsolutePath(), k -> new SymbolIndex(projectDir));
+    }
+
+    private final File projectDir;
+    private final Map<String, FileEntry> entries = new ConcurrentHashMap<>();
+    // Files updated from outside the walk since it started; a walk that listed their directory
+    // before they appeared must not drop them
+    private final Set<String> updatedDuringRefresh = ConcurrentHashMap.newKeySet();
+    private final Object buildLock = new Object();
+    private Future<?> initialBuild; // guarded by buildLock
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SymbolIndex");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private SymbolIndex(File projectDir) {
+        this.projectDir = projectDir;
+    }
+
+    /** Schedules an incremental refresh on the index worker thread. */
+    public void refreshAsync() {
+        Future<?> build = worker.submit(this::refresh);
+        synchronized (buildLock) {
+            if (initialBuild == null) initialBuild = build;
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the first full walk of the project, scheduling it if
+     * nobody has. After that the index is kept current per file through {@link FileChangeBus},
+     * so queries need no walk of their own.
+     */
+    public void awaitInitialBuild(long timeoutMs) {
+        Future<?> build;
+        synchronized (buildLock) {
+            if (initialBuild == null) initialBuild = worker.submit(this::refresh);
+            build = initialBuild;
+        }
+        try {
+            build.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Answer from what is indexed so far
+        }
+    }
+
+    /**
+     * Walks the project and re-parses only files whose mtime/size changed since the last
+     * pass. Entries for files that no longer exist are dropped.
+     */
+    public synchronized void refresh() {
+        updatedDuringRefresh.clear();
+        Set<String> seen = new HashSet<>();
+        Deque<File> dq = new ArrayDeque<>();
+        dq.add(projectDir);
+        while (!dq.isEmpty()) {
+            File[] files = dq.pollFirst().listFiles();
+            if (files == null) continue;
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    if (!FileOps.isSkippedDirectory(f.getName())) dq.addLast(f);
+                    continue;
+                }
+                if (!isIndexable(f)) continue;
+                String rel = relativePath(f);
+                seen.add(rel);
+                FileEntry cur = entries.get(rel);
+                if (cur == null || cur.lastModified != f.lastModified() || cur.length != f.length()) {
+                    indexFile(f, rel);
+                }
+            }
+        }
+        entries.keySet().removeIf(k -> !seen.contains(k) && !updatedDuringRefresh.contains(k));
+    }
+
+    /** Re-parses a single file after it was written from inside the app. */
+    public void updateFile(File file) {
+        if (file == null) return;
+        if (!file.exists()) { removeFile(file); return; }
+        if (file.isDirectory() || !isIndexable(file)) return;
+        String rel = relativePath(file);
+        updatedDuringRefresh.add(rel);
+        indexFile(file, rel);
+    }
+
+    /** Drops a file, or every file below a directory, from the index. */
+    public void removeFile(File file) {
+        if (file == null) return;
+        String rel = relativePath(file);
+        entries.remove(rel);
+        String prefix = rel + "/";
+        entries.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    /**
+     * Looks up symbols by name. Exact matches rank first, then prefix, then substring
+     * matches; a leading '.' or '#' in the query also matches bare class/id names.
+     */
+    public List<Symbol> find(String query, Kind kind, int maxResults) {
+        List<Symbol> out = new ArrayList<>();
+        if (query == null || query.trim().isEmpty()) return out;
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        String bare = stripSigil(q);
+        List<List<Symbol>> buckets = Arrays.asList(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (FileEntry e : entries.values()) {
+            for (Symbol s : e.symbols) {
+                if (kind != null && s.kind != kind) continue;
+                String name = s.name.toLowerCase(Locale.ROOT);
+                int rank = rank(name, q);
+                if (rank < 0 && !bare.equals(q)) rank = rank(stripSigil(name), bare);
+                if (rank >= 0) buckets.get(rank).add(s);
+            }
+        }
+        for (List<Symbol> b : buckets) {
+            Collections.sort(b, (a, c) -> {
+                int byPath = a.path.compareTo(c.path);
+                return byPath != 0 ? byPath : Integer.compare(a.offset, c.offset);
+            });
+            for (Symbol s : b) {
+                if (out.size() >= maxResults) return out;
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    public List<Symbol> symbolsInFile(String relativePath) {
+        FileEntry e = entries.get(relativePath);
+        return e != null ? e.symbols : Collections.emptyList();
+    }
+
+    public int size() {
+        int n = 0;
+        for (FileEntry e : entries.values()) n += e.symbols.size();
+        return n;
+    }
+
+    private static int rank(String name, String q) {
+        if (name.equals(q)) return 0;
+        if (name.startsWith(q)) return 1;
+        if (name.contains(q)) return 2;
+        return -1;
+    }
+
+    private static String stripSigil(String s) {
+        return (s.startsWith(".") || s.startsWith("#")) ? s.substring(1) : s;
+    }
+
+    private void indexFile(File f, String rel) {
+        long mtime = f.lastModified();
+        long len = f.length();
+        if (len > MAX_FILE_BYTES) {
+            entries.put(rel, new FileEntry(mtime, len, Collections.emptyList()));
+            return;
+        }
+        try {
+            String content = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+            entries.put(rel, new FileEntry(mtime, len, extract(rel, content)));
+        } catch (Exception e) {
+            entries.remove(rel);
+        }
+    }
+
+    private boolean isIndexable(File f) {
+        return INDEXED_EXTENSIONS.contains(extensionOf(f.getName()));
+    }
+
+    private String relativePath(File f) {
+        return projectDir.toPath().relativize(f.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    // ===== Extraction =====
+
+    private static final Pattern HTML_ID = Pattern.compile("\\sid\\s*=\\s*([\"'])([^\"']+)\\1", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HTML_CLASS = Pattern.compile("\\sclass\\s*=\\s*([\"'])([^\"']*)\\1", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HTML_STYLE = Pattern.compile("<style[^>]*>(.*?)</style>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern HTML_SCRIPT = Pattern.compile("<script[^>]*>(.*?)</script>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern CSS_VARIABLE = Pattern.compile("(--[A-Za-z0-9_-]+)\\s*:");
+    private static final Pattern CSS_KEYFRAMES = Pattern.compile("@(?:-webkit-|-moz-)?keyframes\\s+([A-Za-z0-9_-]+)");
+    private static final Pattern JS_FUNCTION = Pattern.compile("\\bfunction\\s*\\*?\\s*([A-Za-z_$][\\w$]*)\\s*\\(");
+    private static final Pattern JS_ARROW = Pattern.compile(
+            "\\b(?:const|let|var)\\s+([A-Za-z_$][\\w$]*)\\s*=\\s*(?:async\\s+)?(?:function\\b|\\([^)]*\\)\\s*=>|[A-Za-z_$][\\w$]*\\s*=>)");
+    private static final Pattern JS_CLASS = Pattern.compile("\\bclass\\s+([A-Za-z_$][\\w$]*)");
+    private static final Pattern JS_EXPORT_DECL = Pattern.compile(
+            "\\bexport\\s+(?:default\\s+)?(?:async\\s+)?(?:function\\s*\\*?|class|const|let|var)\\s*([A-Za-z_$][\\w$]*)");
+    private static final Pattern JS_EXPORT_LIST = Pattern.compile("\\bexport\\s*\\{([^}]*)\\}");
+    private static final Pattern JS_COMMONJS_EXPORT = Pattern.compile("\\b(?:module\\.)?exports\\.([A-Za-z_$][\\w$]*)\\s*=");
+
+    /** Extracts symbols from a single file; {@code path} selects the language by extension. */
+    static List<Symbol> extract(String path, String content) {
+        List<Symbol> out = new ArrayList<>();
+        LineMap lines = new LineMap(content);
+        String ext = extensionOf(path);
+        if (ext.equals("html") || ext.equals("htm")) {
+            extractHtml(path, content, lines, out);
+        } else if (ext.equals("css")) {
+            extractCss(path, content, 0, content.length(), lines, out);
+        } else {
+            extractJs(path, content, 0, content.length(), lines, out);
+        }
+        return out;
+    }
+
+    private static void extractHtml(String path, String content, LineMap lines, List<Symbol> out) {
+        Matcher m = HTML_ID.matcher(content);
+        while (m.find()) add(out, m.group(2).trim(), Kind.HTML_ID, path, m.start(2), lines);
+        m = HTML_CLASS.matcher(content);
+        while (m.find()) {
+            String value = m.group(2);
+            int base = m.start(2);
+            int i = 0;
+            while (i < value.length()) {
+                while (i < value.length() && Character.isWhitespace(value.charAt(i))) i++;
+                int start = i;
+                while (i < value.length() && !Character.isWhitespace(value.charAt(i))) i++;
+                if (i > start) add(out, value.substring(start, i), Kind.HTML_CLASS, path, base + start, lines);
+            }
+        }
+        m = HTML_STYLE.matcher(content);
+        while (m.find()) extractCss(path, content, m.start(1), m.end(1), lines, out);
+        m = HTML_SCRIPT.matcher(content);
+        while (m.find()) extractJs(path, content, m.start(1), m.end(1), lines, out);
+    }
+
+    private static void extractCss(String path, String content, int from, int to, LineMap lines, List<Symbol> out) {
+        String css = blankComments(content.substring(from, to), false);
+        Matcher m = CSS_VARIABLE.matcher(css);
+        while (m.find()) add(out, m.group(1), Kind.CSS_VARIABLE, path, from + m.start(1), lines);
+        m = CSS_KEYFRAMES.matcher(css);
+        while (m.find()) add(out, m.group(1), Kind.CSS_KEYFRAMES, path, from + m.start(1), lines);
+
+        // Selectors are the preludes of '{' blocks that are not at-rules and not inside @keyframes.
+        Deque<Boolean> keyframeStack = new ArrayDeque<>();
+        int preludeStart = 0;
+        for (int i = 0; i < css.length(); i++) {
+            char c = css.charAt(i);
+            if (c == '{') {
+                String prelude = css.substring(preludeStart, i);
+                String trimmed = prelude.trim();
+                boolean inKeyframes = !keyframeStack.isEmpty() && keyframeStack.peek();
+                boolean isAtRule = trimmed.startsWith("@");
+                if (!trimmed.isEmpty() && !isAtRule && !inKeyframes) {
+                    int partStart = preludeStart;
+                    for (String part : prelude.split(",", -1)) {
+                        String sel = part.trim();
+                        if (!sel.isEmpty()) {
+                            int lead = part.indexOf(sel);
+                            add(out, sel.replaceAll("\\s+", " "), Kind.CSS_SELECTOR, path, from + partStart + lead, lines);
+                        }
+                        partStart += part.length() + 1;
+                    }
+                }
+                keyframeStack.push(inKeyframes || (isAtRule && trimmed.contains("keyframes")));
+                preludeStart = i + 1;
+            } else if (c == '}') {
+                if (!keyframeStack.isEmpty()) keyframeStack.pop();
+                preludeStart = i + 1;
+            } else if (c == ';') {
+                preludeStart = i + 1;
+            }
+        }
+    }
+
+    private static void extractJs(String path, String content, int from, int to, LineMap lines, List<Symbol> out) {
+        String js = blankComments(content.substring(from, to), true);
+        Matcher m = JS_FUNCTION.matcher(js);
+        while (m.find()) add(out, m.group(1), Kind.JS_FUNCTION, path, from + m.start(1), lines);
+        m = JS_ARROW.matcher(js);
+        while (m.find()) add(out, m.group(1), Kind.JS_FUNCTION, path, from + m.start(1), lines);
+        m = JS_CLASS.matcher(js);
+        while (m.find()) add(out, m.group(1), Kind.JS_CLASS, path, from + m.start(1), lines);
+        m = JS_EXPORT_DECL.matcher(js);
+        while (m.find()) add(out, m.group(1), Kind.JS_EXPORT, path, from + m.start(1), lines);
+        m = JS_COMMONJS_EXPORT.matcher(js);
+        while (m.find()) add(out, m.group(1), Kind.JS_EXPORT, path, from + m.start(1), lines);
+        m = JS_EXPORT_LIST.matcher(js);
+        while (m.find()) {
+            int partStart = m.start(1);
+            for (String part : m.group(1).split(",", -1)) {
+                String spec = part.trim();
+                int as = spec.lastIndexOf(" as ");
+                String name = as >= 0 ? spec.substring(as + 4).trim() : spec;
+                if (!name.isEmpty()) {
+                    add(out, name, Kind.JS_EXPORT, path, from + partStart + Math.max(0, part.indexOf(name)), lines);
+                }
+                partStart += part.length() + 1;
+            }
+        }
+    }
+
+    /** Replaces comments with spaces so that offsets into the original text stay valid. */
+    private static String blankComments(String src, boolean lineComments) {
+        char[] buf = src.toCharArray();
+        int i = 0;
+        while (i < buf.length - 1) {
+            if (buf[i] == '/' && buf[i + 1] == '*') {
+                int end = src.indexOf("*/", i + 2);
+                end = end < 0 ? buf.length : end + 2;
+                for (int k = i; k < end; k++) if (buf[k] != '\n') buf[k] = ' ';
+                i = end;
+            } else if (lineComments && buf[i] == '/' && buf[i + 1] == '/' && (i == 0 || buf[i - 1] != ':')) {
+                while (i < buf.length && buf[i] != '\n') buf[i++] = ' ';
+            } else {
+                i++;
+            }
+        }
+        return new String(buf);
+    }
+
+    private static void add(List<Symbol> out, String name, Kind kind, String path, int offset, LineMap lines) {
+        if (name.isEmpty()) return;
+        int line = lines.lineOf(offset);
+        out.add(new Symbol(name, kind, path, offset, line + 1, offset - lines.startOf(line)));
+    }
+
+    /** Offset to line lookup over precomputed line starts. */
+    private static final class LineMap {
+        private final int[] starts;
+        private final int count;
+
+        LineMap(String text) {
+            int[] s = new int[64];
+            int n = 0;
+            s[n++] = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    if (n == s.length) s = Arrays.copyOf(s, n * 2);
+                    s[n++] = i + 1;
+                }
+            }
+            this.starts = s;
+            this.count = n;
+        }
+
+        int lineOf(int offset) {
+            int idx = Arrays.binarySearch(starts, 0, count, offset);
+            return idx >= 0 ? idx : -idx - 2;
+        }
+
+        int startOf(int line) {
+            return starts[line];
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.codex.apk.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line-based three-way merge, used to bring a file change made on disk (theirs, usually the
+ * AI) into a tab with unsaved edits (ours), given the content both started from (base).
+ *
+ * Base is diffed against each side; edits from the two sides that touch the same base lines
+ * form one chunk. A chunk changed by one side only takes that side's lines, a chunk both
+ * sides changed identically is kept, and anything else is a conflict, written into the result
+ * between git-style markers. The outcome is expressed as char-offset replacements on ours, so
+ * a caller can apply it to a live document without replacing its whole text.
+ */
+public final class ThreeWayMerge {
+    private ThreeWayMerge() {}
+
+    public static final String OURS_MARKER = "<<<<<<< unsaved";
+    public static final String SEPARATOR_MARKER = "=======";
+    public static final String THEIRS_MARKER = ">>>>>>> on disk";
+
+    /** Replaces chars [start, end) of ours with {@code text}. */
+    public static final class Replacement {
+        public final int start;
+        public final int end;
+        public final String text;
+
+        Replacement(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+
+    public static final class Result {
+        /** Ascending and disjoint, in ours' offsets; apply from the last one backwards. */
+        public final List<Replacement> replacements;
+        public final int conflicts;
+        private final boolean matchesTheirs;
+
+        Result(List<Replacement> replacements, int conflicts, String ours, String theirs) {
+            this.replacements = Collections.unmodifiableList(replacements);
+            this.conflicts = conflicts;
+            // Judged on the outcome: edits of ours that theirs made too, or undid, leave no trace
+            this.matchesTheirs = conflicts == 0 && apply(ours).equals(theirs);
+        }
+
+        /** True when the merged text equals theirs, i.e. ours had nothing theirs lacks. */
+        public boolean matchesTheirs() {
+            return matchesTheirs;
+        }
+
+        /** Applies the replacements to {@code ours}, for callers that want the merged text. */
+        public String apply(CharSequence ours) {
+            StringBuilder sb = new StringBuilder(ours.length());
+            int at = 0;
+            for (Replacement r : replacements) {
+                sb.append(ours, at, r.start).append(r.text);
+                at = r.end;
+            }
+            return sb.append(ours, at, ours.length()).toString();
+        }
+    }
+
+    public static Result merge(String base, String ours, String theirs) {
+        String[] b = splitKeepingNewlines(base);
+        String[] o = splitKeepingNewlines(ours);
+        String[] t = splitKeepingNewlines(theirs);
+        List<LineDiff.Edit> eo = LineDiff.diff(b, o);
+        List<LineDiff.Edit> et = LineDiff.diff(b, t);
+        int[] oStarts = offsets(o);
+
+        List<Replacement> replacements = new ArrayList<>();
+        int conflicts = 0;
+        int deltaO = 0, deltaT = 0; // line shift of each side before the current chunk
+        int i = 0, j = 0;
+        while (i < eo.size() || j < et.size()) {
+            boolean fromOurs = j >= et.size() || (i < eo.size() && before(eo.get(i), et.get(j)));
+            LineDiff.Edit first = fromOurs ? eo.get(i++) : et.get(j++);
+            int lo = first.oldStart, hi = first.oldEnd;
+            int chunkO = 0, chunkT = 0;
+            boolean hasO = false, hasT = false;
+            LineDiff.Edit e = first;
+            while (true) {
+                if (fromOurs) {
+                    chunkO += e.added() - e.removed();
+                    hasO = true;
+                } else {
+                    chunkT += e.added() - e.removed();
+                    hasT = true;
+                }
+                hi = Math.max(hi, e.oldEnd);
+                // Take in the next edit of either side while it touches the chunk
+                fromOurs = j >= et.size() || (i < eo.size() && before(eo.get(i), et.get(j)));
+                LineDiff.Edit next = fromOurs ? (i < eo.size() ? eo.get(i) : null) : et.get(j);
+                if (next == null || !overlaps(next, lo, hi)) break;
+                if (fromOurs) i++;
+                else j++;
+                e = next;
+            }
+
+            int oStart = lo + deltaO, oEnd = hi + deltaO + chunkO;
+            int tStart = lo + deltaT, tEnd = hi + deltaT + chunkT;
+            deltaO += chunkO;
+            deltaT += chunkT;
+            if (!hasT) {
+                // Only ours changed these lines; they already are as they should be
+            } else if (!hasO) {
+                replacements.add(new Replacement(oStarts[oStart], oStarts[oEnd], join(t, tStart, tEnd)));
+            } else if (!sameLines(o, oStart, oEnd, t, tStart, tEnd)) {
+                // Narrow the conflict to the lines that actually differ
+                while (oStart < oEnd && tStart < tEnd && o[oStart].equals(t[tStart])) {
+                    oStart++;
+                    tStart++;
+                }
+                while (oStart < oEnd && tStart < tEnd && o[oEnd - 1].equals(t[tEnd - 1])) {
+                    oEnd--;
+                    tEnd--;
+                }
+                replacements.add(new Replacement(oStarts[oStart], oStarts[oEnd], conflict(o, oStart, oEnd, t, tStart, tEnd)));
+                conflicts++;
+            }
+        }
+        return new Result(replacements, conflicts, ours, theirs);
+    }
+
+    /** Insertions sort before edits starting on the same line, so they stay separate chunks. */
+    private static boolean before(LineDiff.Edit a, LineDiff.Edit b) {
+        if (a.oldStart != b.oldStart) return a.oldStart < b.oldStart;
+        return a.removed() == 0 || b.removed() != 0;
+    }
+
+    // Edits meeting end to end are not a conflict, two insertions at one point are
+    private static boolean overlaps(LineDiff.Edit e, int lo, int hi) {
+        return e.oldStart < hi || (lo == hi && e.oldStart == lo && e.removed() == 0);
+    }
+
+    private static String conflict(String[] o, int oStart, int oEnd, String[] t, int tStart, int tEnd) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(OURS_MARKER).append('\n');
+        appendBlock(sb, o, oStart, oEnd);
+        sb.append(SEPARATOR_MARKER).append('\n');
+        appendBlock(sb, t, tStart, tEnd);
+        sb.append(THEIRS_MARKER).append('\n');
+        return sb.toString();
+    }
+
+    private static void appendBlock(StringBuilder sb, String[] lines, int start, int end) {
+        for (int k = start; k < end; k++) sb.append(lines[k]);
+        if (end > start && !lines[end - 1].endsWith("\n")) sb.append('\n');
+    }
+
+    private static boolean sameLines(String[] a, int aStart, int aEnd, String[] b, int bStart, int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) return false;
+        for (int k = 0; k < aEnd - aStart; k++) {
+            if (!a[aStart + k].equals(b[bStart + k])) return false;
+        }
+        return true;
+    }
+
+    private static String join(String[] lines, int start, int end) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = start; k < end; k++) sb.append(lines[k]);
+        return sb.toString();
+    }
+
+    /** Char offset of each line, plus the total length at the end. */
+    private static int[] offsets(String[] lines) {
+        int[] starts = new int[lines.length + 1];
+        for (int k = 0; k < lines.length; k++) starts[k + 1] = starts[k] + lines[k].length();
+        return starts;
+    }
+
+    /**
+     * Lines with their terminating '\n', so joining them gives the text back exactly and a
+     * missing newline at the end is a change like any other; empty text has no lines.
+     */
+    static String[] splitKeepingNewlines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int nl = text.indexOf('\n'); nl >= 0; nl = text.indexOf('\n', start)) {
+            lines.add(text.substring(start, nl + 1));
+            start = nl + 1;
+        }
+        if (start < text.length()) lines.add(text.substring(start));
+        return lines.toArray(new String[0]);
+    }
+}
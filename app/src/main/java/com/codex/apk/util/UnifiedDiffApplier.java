@@ -2,77 +2,358 @@ package com.codex.apk.util;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Applies unified diff hunks to text. Each hunk is located through a hash index of the source
+ * lines: the hunk's rarest old line gives the few places it can start, so a hunk is found
+ * anywhere in the file however stale its line numbers are, and the match closest to where
+ * the header points wins. A hunk that does not match as written is retried with growing fuzz:
+ * whitespace ignored, then up to {@link #MAX_CONTEXT_FUZZ} context lines dropped from either
+ * end. Matched hunks are spliced into the output in one pass, and every hunk's outcome is
+ * reported so callers can tell a partial patch from a complete one.
+ */
 public final class UnifiedDiffApplier {
     private UnifiedDiffApplier() {}
 
+    /** Context lines that may be dropped from each end of a hunk that does not match whole. */
+    public static final int MAX_CONTEXT_FUZZ = 2;
+
+    /** How one hunk went. */
+    public static final class HunkResult {
+        /** Position of the hunk in the patch, from 0. */
+        public final int index;
+        public final boolean applied;
+        /** First source line (1-based) the hunk replaced, or -1 if it was not applied. */
+        public final int line;
+        /** How far the match was from where the hunk header pointed. */
+        public final int offset;
+        public final boolean ignoredWhitespace;
+        /** Context lines dropped from each end to make the hunk match. */
+        public final int contextTrimmed;
+        /** Why the hunk was not applied, or null. */
+        public final String reason;
+
+        HunkResult(int index, boolean applied, int line, int offset, boolean ignoredWhitespace,
+                   int contextTrimmed, String reason) {
+            this.index = index;
+            this.applied = applied;
+            this.line = line;
+            this.offset = offset;
+            this.ignoredWhitespace = ignoredWhitespace;
+            this.contextTrimmed = contextTrimmed;
+            this.reason = reason;
+        }
+
+        static HunkResult failed(int index, String reason) {
+            return new HunkResult(index, false, -1, 0, false, 0, reason);
+        }
+    }
+
+    /** The patched text together with the outcome of every hunk. */
+    public static final class Result {
+        private final String text;
+        private final List<HunkResult> hunks;
+
+        Result(String text, List<HunkResult> hunks) {
+            this.text = text;
+            this.hunks = hunks;
+        }
+
+        /** The source with every applied hunk; failed hunks are left out. */
+        public String getText() { return text; }
+        public List<HunkResult> getHunks() { return hunks; }
+
+        public int getAppliedCount() {
+            int n = 0;
+            for (HunkResult h : hunks) if (h.applied) n++;
+            return n;
+        }
+
+        /** True if the patch had hunks and all of them applied. */
+        public boolean isComplete() {
+            return !hunks.isEmpty() && getAppliedCount() == hunks.size();
+        }
+
+        /** One line per failed hunk, e.g. for an error message; empty if none failed. */
+        public String describeFailures() {
+            StringBuilder sb = new StringBuilder();
+            for (HunkResult h : hunks) {
+                if (h.applied) continue;
+                if (sb.length() > 0) sb.append('\n');
+                sb.append("Hunk ").append(h.index + 1).append(" of ").append(hunks.size())
+                        .append(": ").append(h.reason);
+            }
+            return sb.toString();
+        }
+    }
+
     public static String apply(String original, String patch) {
-        List<String> source = new ArrayList<>(Arrays.asList(original.split("\n", -1)));
-        List<Hunk> hunks = parseHunks(patch);
-        int offset = 0;
-        for (Hunk hunk : hunks) {
-            int expectedIndex = Math.max(0, Math.min(source.size(), hunk.startOld - 1 + offset));
-            int matchedIndex = findBestMatch(source, hunk, expectedIndex);
-            if (matchedIndex < 0) {
+        return applyWithReport(original, patch).getText();
+    }
+
+    public static Result applyWithReport(String original, String patch) {
+        String[] source = (original == null ? "" : original).split("\n", -1);
+        List<Hunk> hunks = parseHunks(patch == null ? "" : patch);
+        LineIndex exact = new LineIndex(source, false);
+        LineIndex loose = null; // built on first use
+
+        List<HunkResult> results = new ArrayList<>(hunks.size());
+        List<Match> matches = new ArrayList<>();
+        int drift = 0; // where the last hunk matched relative to its header
+        for (int h = 0; h < hunks.size(); h++) {
+            Hunk hunk = hunks.get(h);
+            if (hunk.ops.isEmpty()) {
+                results.add(HunkResult.failed(h, "empty hunk"));
                 continue;
             }
-
-            int removeCount = Math.min(hunk.lenOld, Math.max(0, source.size() - matchedIndex));
-            for (int i = 0; i < removeCount; i++) {
-                if (matchedIndex < source.size()) {
-                    source.remove(matchedIndex);
+            int expected = Math.max(0, Math.min(source.length, hunk.expectedIndex() + drift));
+            Match match = null;
+            for (int trim = 0; trim <= MAX_CONTEXT_FUZZ && match == null; trim++) {
+                if (trim > 0 && !hunk.canTrim(trim)) break;
+                match = locate(hunk, trim, exact, source, expected, matches);
+                if (match == null) {
+                    if (loose == null) loose = new LineIndex(source, true);
+                    match = locate(hunk, trim, loose, source, expected, matches);
                 }
             }
+            if (match == null) {
+                results.add(HunkResult.failed(h, "context not found"));
+                continue;
+            }
+            match.hunkIndex = h;
+            matches.add(match);
+            drift = match.start - match.lead - hunk.expectedIndex();
+            results.add(new HunkResult(h, true, match.start + 1, drift, match.ignoredWhitespace, match.trim, null));
+        }
+        return new Result(splice(source, matches), results);
+    }
+
+    // ===== Matching =====
+
+    /** Where a hunk matched: its old lines (after trimming) are source[start, start + length). */
+    private static final class Match {
+        final Hunk hunk;
+        final int start;
+        final int length;
+        final int lead;   // ops dropped from the front
+        final int tail;   // ops dropped from the back
+        final int trim;
+        final boolean ignoredWhitespace;
+        int hunkIndex;
+
+        Match(Hunk hunk, int start, int length, int lead, int tail, int trim, boolean ignoredWhitespace) {
+            this.hunk = hunk;
+            this.start = start;
+            this.length = length;
+            this.lead = lead;
+            this.tail = tail;
+            this.trim = trim;
+            this.ignoredWhitespace = ignoredWhitespace;
+        }
+
+        boolean overlaps(int otherStart, int otherLength) {
+            if (length == 0 || otherLength == 0) {
+                // Insertions only conflict with the inside of a replaced range
+                int point = length == 0 ? start : otherStart;
+                int from = length == 0 ? otherStart : start;
+                int to = length == 0 ? otherStart + otherLength : start + length;
+                return point > from && point < to;
+            }
+            return start < otherStart + otherLength && otherStart < start + length;
+        }
+    }
+
+    private static Match locate(Hunk hunk, int trim, LineIndex index, String[] source, int expected, List<Match> taken) {
+        int lead = Math.min(trim, hunk.leadingContext());
+        int tail = Math.min(trim, hunk.trailingContext());
+        List<String> old = hunk.oldLines(lead, hunk.ops.size() - tail);
+        if (old.isEmpty()) {
+            // Nothing to find: a pure insertion goes where the header says
+            if (trim > 0 || index.loose) return null;
+            Match m = new Match(hunk, expected, 0, 0, 0, 0, false);
+            return free(m, taken) ? m : null;
+        }
 
-            List<String> toInsert = new ArrayList<>();
-            for (String line : hunk.lines) {
-                if (line.startsWith(" ") || line.startsWith("+")) {
-                    toInsert.add(line.length() > 0 ? line.substring(1) : "");
+        // The rarest old line gives the fewest places to verify
+        int probe = -1;
+        int[] probeHits = null;
+        for (int i = 0; i < old.size(); i++) {
+            int[] hits = index.positions(old.get(i));
+            if (hits == null) return null;
+            if (probeHits == null || hits[0] < probeHits[0]) {
+                probe = i;
+                probeHits = hits;
+            }
+        }
+        Match best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        int wanted = expected + lead; // leading ops are context, so old lines too
+        for (int k = 1; k <= probeHits[0]; k++) {
+            int start = probeHits[k] - probe;
+            if (start < 0 || start + old.size() > source.length) continue;
+            int distance = Math.abs(start - wanted);
+            if (distance >= bestDistance) continue;
+            if (!index.matches(source, start, old)) continue;
+            Match m = new Match(hunk, start, old.size(), lead, tail, trim, index.loose);
+            if (!free(m, taken)) continue;
+            best = m;
+            bestDistance = distance;
+        }
+        return best;
+    }
+
+    private static boolean free(Match m, List<Match> taken) {
+        for (Match t : taken) {
+            if (m.overlaps(t.start, t.length)) return false;
+        }
+        return true;
+    }
+
+    /** Builds the output in one pass over the source, replacing each matched range. */
+    private static String splice(String[] source, List<Match> matches) {
+        List<Match> ordered = new ArrayList<>(matches);
+        // By position; an insertion goes before a replacement starting at the same line
+        ordered.sort((x, y) -> x.start != y.start ? Integer.compare(x.start, y.start)
+                : x.length != y.length ? Integer.compare(x.length, y.length)
+                : Integer.compare(x.hunkIndex, y.hunkIndex));
+        List<String> out = new ArrayList<>(source.length + 16);
+        int cursor = 0;
+        for (Match m : ordered) {
+            while (cursor < m.start) out.add(source[cursor++]);
+            int old = m.start;
+            List<Op> ops = m.hunk.ops;
+            for (int i = m.lead; i < ops.size() - m.tail; i++) {
+                Op op = ops.get(i);
+                if (op.kind == ' ') {
+                    out.add(source[old++]); // the source's own text, whatever whitespace the patch had
+                } else if (op.kind == '-') {
+                    old++;
+                } else {
+                    out.add(op.text);
                 }
             }
-            source.addAll(matchedIndex, toInsert);
-            offset += toInsert.size() - removeCount;
+            cursor = old;
         }
-        return String.join("\n", source);
+        while (cursor < source.length) out.add(source[cursor++]);
+        return String.join("\n", out);
     }
 
-    private static int findBestMatch(List<String> source, Hunk hunk, int expectedIndex) {
-        if (contextMatches(source, expectedIndex, hunk)) {
-            return expectedIndex;
+    // ===== Line index =====
+
+    /** Source line positions by line text, or by text with whitespace removed. */
+    private static final class LineIndex {
+        final boolean loose;
+        // Each value is {count, position...}, grown as needed
+        private final Map<String, int[]> positions = new HashMap<>();
+
+        LineIndex(String[] source, boolean loose) {
+            this.loose = loose;
+            for (int i = 0; i < source.length; i++) {
+                String key = key(source[i]);
+                int[] list = positions.get(key);
+                if (list == null) {
+                    list = new int[4];
+                    positions.put(key, list);
+                } else if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    positions.put(key, list);
+                }
+                list[++list[0]] = i;
+            }
         }
-        int window = 50;
-        for (int delta = 1; delta <= window; delta++) {
-            int left = expectedIndex - delta;
-            int right = expectedIndex + delta;
-            if (left >= 0 && contextMatches(source, left, hunk)) {
-                return left;
+
+        int[] positions(String line) {
+            return positions.get(key(line));
+        }
+
+        boolean matches(String[] source, int start, List<String> lines) {
+            for (int i = 0; i < lines.size(); i++) {
+                String a = source[start + i], b = lines.get(i);
+                if (loose ? !key(a).equals(key(b)) : !a.equals(b)) return false;
             }
-            if (right <= source.size() && contextMatches(source, right, hunk)) {
-                return right;
+            return true;
+        }
+
+        String key(String line) {
+            return loose ? stripWhitespace(line) : line;
+        }
+    }
+
+    private static String stripWhitespace(String line) {
+        StringBuilder sb = null;
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isWhitespace(line.charAt(i))) {
+                if (sb == null) sb = new StringBuilder(line.length()).append(line, 0, i);
+            } else if (sb != null) {
+                sb.append(line.charAt(i));
             }
         }
-        return -1;
+        return sb != null ? sb.toString() : line;
     }
 
-    private static boolean contextMatches(List<String> source, int index, Hunk hunk) {
-        int cursor = index;
-        for (String line : hunk.lines) {
-            if (line.startsWith(" ") || line.startsWith("-")) {
-                String expected = line.length() > 0 ? line.substring(1) : "";
-                if (cursor >= source.size()) return false;
-                if (!source.get(cursor).equals(expected)) return false;
-                cursor++;
+    // ===== Parsing =====
+
+    private static final class Op {
+        final char kind; // ' ', '-' or '+'
+        final String text;
+
+        Op(char kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    private static final class Hunk {
+        int startOld;
+        int lenOld;
+        int startNew;
+        int lenNew;
+        final List<Op> ops = new ArrayList<>();
+        int oldSeen;
+
+        /** Index of the first old line; an empty old range is numbered by the line before it. */
+        int expectedIndex() {
+            return lenOld == 0 ? startOld : startOld - 1;
+        }
+
+        int leadingContext() {
+            int n = 0;
+            while (n < ops.size() && ops.get(n).kind == ' ') n++;
+            return n;
+        }
+
+        int trailingContext() {
+            int n = 0;
+            while (n < ops.size() && ops.get(ops.size() - 1 - n).kind == ' ') n++;
+            return n;
+        }
+
+        /** Whether dropping {@code trim} context lines per end still leaves a change to anchor. */
+        boolean canTrim(int trim) {
+            int lead = leadingContext();
+            if (lead == ops.size()) return false; // context only
+            return lead >= trim || trailingContext() >= trim;
+        }
+
+        List<String> oldLines(int from, int to) {
+            List<String> lines = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Op op = ops.get(i);
+                if (op.kind != '+') lines.add(op.text);
             }
+            return lines;
         }
-        return true;
     }
 
     private static List<Hunk> parseHunks(String patch) {
         List<Hunk> hunks = new ArrayList<>();
-        String[] lines = patch.split("\n");
+        String[] lines = patch.split("\n", -1);
         Hunk current = null;
         for (String line : lines) {
+            if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
             if (line.startsWith("@@")) {
                 if (current != null) {
                     hunks.add(current);
@@ -84,7 +365,19 @@ public final class UnifiedDiffApplier {
                 current.startNew = header[2];
                 current.lenNew = header[3];
             } else if (current != null && (line.startsWith(" ") || line.startsWith("+") || line.startsWith("-"))) {
-                current.lines.add(line);
+                if (line.startsWith("--- ") && current.oldSeen >= current.lenOld) {
+                    // Header of the next file in a multi-file patch
+                    hunks.add(current);
+                    current = null;
+                    continue;
+                }
+                char kind = line.charAt(0);
+                current.ops.add(new Op(kind, line.substring(1)));
+                if (kind != '+') current.oldSeen++;
+            } else if (current != null && line.isEmpty() && current.oldSeen < current.lenOld) {
+                // An empty context line whose leading space was lost on the way
+                current.ops.add(new Op(' ', ""));
+                current.oldSeen++;
             }
         }
         if (current != null) {
@@ -100,9 +393,9 @@ public final class UnifiedDiffApplier {
             String[] oldPart = parts[0].substring(1).split(",");
             String[] newPart = parts[1].substring(1).split(",");
             int startOld = parseIntSafe(oldPart[0], 1);
-            int lenOld = oldPart.length > 1 ? parseIntSafe(oldPart[1], 0) : 0;
+            int lenOld = oldPart.length > 1 ? parseIntSafe(oldPart[1], 0) : 1;
             int startNew = parseIntSafe(newPart[0], 1);
-            int lenNew = newPart.length > 1 ? parseIntSafe(newPart[1], 0) : 0;
+            int lenNew = newPart.length > 1 ? parseIntSafe(newPart[1], 0) : 1;
             return new int[]{startOld, lenOld, startNew, lenNew};
         } catch (Exception ex) {
             return new int[]{1, 0, 1, 0};
@@ -116,12 +409,4 @@ public final class UnifiedDiffApplier {
             return fallback;
         }
     }
-
-    private static final class Hunk {
-        int startOld;
-        int lenOld;
-        int startNew;
-        int lenNew;
-        final List<String> lines = new ArrayList<>();
-    }
 }
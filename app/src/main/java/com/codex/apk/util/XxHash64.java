@@ -0,0 +1,158 @@
+package com.codex.apk.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming xxHash64 (seed 0 by default). Used for cheap content fingerprints of project files;
+ * not a cryptographic hash.
+ */
+public final class XxHash64 {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+    private long v1, v2, v3, v4;
+    private final byte[] buffer = new byte[32];
+    private int buffered;
+    private long totalLength;
+
+    public XxHash64() {
+        this(0);
+    }
+
+    public XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    public void reset() {
+        v1 = seed + P1 + P2;
+        v2 = seed + P2;
+        v3 = seed;
+        v4 = seed - P1;
+        buffered = 0;
+        totalLength = 0;
+    }
+
+    public void update(byte[] data, int off, int len) {
+        totalLength += len;
+        if (buffered + len < 32) {
+            System.arraycopy(data, off, buffer, buffered, len);
+            buffered += len;
+            return;
+        }
+        int end = off + len;
+        if (buffered > 0) {
+            int fill = 32 - buffered;
+            System.arraycopy(data, off, buffer, buffered, fill);
+            consumeStripe(buffer, 0);
+            off += fill;
+            buffered = 0;
+        }
+        while (off + 32 <= end) {
+            consumeStripe(data, off);
+            off += 32;
+        }
+        buffered = end - off;
+        System.arraycopy(data, off, buffer, 0, buffered);
+    }
+
+    public long digest() {
+        long h;
+        if (totalLength >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += totalLength;
+        int i = 0;
+        while (i + 8 <= buffered) {
+            h ^= round(0, readLong(buffer, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+            i += 8;
+        }
+        if (i + 4 <= buffered) {
+            h ^= (readInt(buffer, i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        while (i < buffered) {
+            h ^= (buffer[i] & 0xFF) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+            i++;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    public static long hash(byte[] data) {
+        XxHash64 x = new XxHash64();
+        x.update(data, 0, data.length);
+        return x.digest();
+    }
+
+    /** Hash of the UTF-16 code units of {@code text}, without encoding it to a byte array first. */
+    public static long hash(CharSequence text) {
+        XxHash64 x = new XxHash64();
+        byte[] buf = new byte[Math.min(8 * 1024, text.length() * 2 + 2)];
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            buf[n++] = (byte) c;
+            buf[n++] = (byte) (c >>> 8);
+            if (n == buf.length) {
+                x.update(buf, 0, n);
+                n = 0;
+            }
+        }
+        x.update(buf, 0, n);
+        return x.digest();
+    }
+
+    public static long hash(InputStream in) throws IOException {
+        XxHash64 x = new XxHash64();
+        byte[] buf = new byte[64 * 1024];
+        int r;
+        while ((r = in.read(buf)) > 0) x.update(buf, 0, r);
+        return x.digest();
+    }
+
+    private void consumeStripe(byte[] b, int off) {
+        v1 = round(v1, readLong(b, off));
+        v2 = round(v2, readLong(b, off + 8));
+        v3 = round(v3, readLong(b, off + 16));
+        v4 = round(v4, readLong(b, off + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * P1 + P4;
+    }
+
+    private static long readLong(byte[] b, int i) {
+        return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+                | (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48 | (b[i + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,73 @@
+package com.codex.apk.bench;
+
+import com.codex.apk.DiffGenerator;
+import com.codex.apk.DiffUtils;
+import com.codex.apk.util.DiffCache;
+import com.codex.apk.util.UnifiedDiffApplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * The work done for one AI file change, per kind of file and shape of edit: producing the
+ * unified diff, counting its lines, parsing it for the diff views and applying it as a patch.
+ *
+ * Diffs are cached app-wide by {@link DiffCache}; the plain benchmarks clear it first so they
+ * measure the diff itself, the {@code Cached} ones measure a repeat of the same change.
+ */
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+
+    @Param({"HTML", "CSS", "JS", "MINIFIED_JS"})
+    public WebFiles.Kind kind;
+
+    @Param({"TWEAK", "BLOCK_MOVE", "REWRITE"})
+    public WebFiles.Edit pattern;
+
+    @Param({"300", "5000"})
+    public int lines;
+
+    private String oldContent;
+    private String newContent;
+    private String diff;
+
+    @Setup
+    public void setUp() {
+        oldContent = WebFiles.generate(kind, lines, 42);
+        newContent = WebFiles.edit(oldContent, kind, pattern, 7);
+        diff = DiffGenerator.generateUnifiedDiff(oldContent, newContent, "a/file", "b/file");
+        DiffCache.clear();
+    }
+
+    @Benchmark
+    public String generateUnifiedDiff() {
+        DiffCache.clear();
+        return DiffGenerator.generateUnifiedDiff(oldContent, newContent, "a/file", "b/file");
+    }
+
+    @Benchmark
+    public String generateUnifiedDiffCached() {
+        return DiffGenerator.generateUnifiedDiff(oldContent, newContent, "a/file", "b/file");
+    }
+
+    @Benchmark
+    public int[] countAddRemoveFromContents() {
+        DiffCache.clear();
+        return DiffUtils.countAddRemoveFromContents(oldContent, newContent);
+    }
+
+    @Benchmark
+    public List<DiffUtils.DiffLine> parseUnifiedDiff() {
+        return DiffUtils.parseUnifiedDiff(diff);
+    }
+
+    @Benchmark
+    public String applyPatch() {
+        return UnifiedDiffApplier.apply(oldContent, diff);
+    }
+}
@@ -0,0 +1,70 @@
+package com.codex.apk.bench;
+
+import com.codex.apk.DiffUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Word-level highlights for one changed line pair, as the diff views request them per row.
+ * CODE pairs are ordinary HTML, CSS and JS lines with one value changed; MINIFIED pairs are
+ * a bundle's single line before and after a small change.
+ */
+@State(Scope.Benchmark)
+public class IntralineBenchmark {
+    private static final int PAIRS = 256;
+
+    public enum Lines { CODE, MINIFIED }
+
+    @Param({"CODE", "MINIFIED"})
+    public Lines lines;
+
+    private String[] oldLines;
+    private String[] newLines;
+
+    @Setup
+    public void setUp() {
+        oldLines = new String[PAIRS];
+        newLines = new String[PAIRS];
+        if (lines == Lines.MINIFIED) {
+            String bundle = WebFiles.generate(WebFiles.Kind.MINIFIED_JS, 300, 1);
+            for (int i = 0; i < PAIRS; i++) {
+                oldLines[i] = codeLine(bundle);
+                newLines[i] = codeLine(WebFiles.edit(bundle, WebFiles.Kind.MINIFIED_JS, WebFiles.Edit.TWEAK, i));
+            }
+            return;
+        }
+        List<String> source = new ArrayList<>();
+        for (WebFiles.Kind kind : new WebFiles.Kind[]{WebFiles.Kind.HTML, WebFiles.Kind.CSS, WebFiles.Kind.JS}) {
+            for (String line : WebFiles.generate(kind, 400, kind.ordinal()).split("\n")) {
+                if (line.trim().length() > 8) source.add(line);
+            }
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < PAIRS; i++) {
+            String line = source.get(random.nextInt(source.size()));
+            oldLines[i] = line;
+            newLines[i] = WebFiles.tweakLine(line, random);
+        }
+    }
+
+    // The bundle's code, without its license line and final newline
+    private static String codeLine(String bundle) {
+        return bundle.substring(bundle.indexOf('\n') + 1, bundle.length() - 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void computeIntraline(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) blackhole.consume(DiffUtils.computeIntraline(oldLines[i], newLines[i]));
+    }
+}
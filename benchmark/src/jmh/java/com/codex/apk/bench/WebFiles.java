@@ -0,0 +1,251 @@
+package com.codex.apk.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generators for the files an AI edits in a web project and for the shapes its
+ * edits take. Same arguments, same text, so runs and the baseline measure the same inputs.
+ */
+final class WebFiles {
+    private WebFiles() {}
+
+    enum Kind { HTML, CSS, JS, MINIFIED_JS }
+
+    enum Edit {
+        /** A few values changed on a few lines. */
+        TWEAK,
+        /** A block of about a tenth of the file cut and pasted elsewhere. */
+        BLOCK_MOVE,
+        /** The file written again from scratch; only boilerplate lines survive. */
+        REWRITE
+    }
+
+    private static final String[] WORDS = {
+            "project", "layout", "button", "header", "content", "section", "preview", "editor",
+            "primary", "secondary", "active", "hidden", "toggle", "submit", "search", "result",
+            "user", "profile", "settings", "theme", "dark", "light", "card", "list", "item"
+    };
+
+    /** About {@code lines} lines of {@code kind}; a minified file is that much JS on one line. */
+    static String generate(Kind kind, int lines, long seed) {
+        Random random = new Random(seed);
+        switch (kind) {
+            case HTML: return html(lines, random);
+            case CSS: return css(lines, random);
+            case JS: return js(lines, random);
+            default: return minify(js(lines, random));
+        }
+    }
+
+    /** {@code text} of {@code kind} after an edit of the given shape. */
+    static String edit(String text, Kind kind, Edit edit, long seed) {
+        Random random = new Random(seed);
+        if (edit == Edit.REWRITE) {
+            return generate(kind, Math.max(1, countLines(text)), seed ^ 0x5DEECE66DL);
+        }
+        if (kind == Kind.MINIFIED_JS) {
+            // Everything is on one line; edit the characters instead
+            int newline = text.indexOf('\n') + 1;
+            int end = text.endsWith("\n") ? text.length() - 1 : text.length();
+            String code = text.substring(newline, end);
+            return text.substring(0, newline) + (edit == Edit.TWEAK ? tweakChars(code, random, 3) : moveChars(code, random))
+                    + text.substring(end);
+        }
+        List<String> list = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        if (edit == Edit.TWEAK) {
+            for (int i = 0; i < 3; i++) {
+                int at = random.nextInt(list.size());
+                list.set(at, tweakLine(list.get(at), random));
+            }
+        } else {
+            int size = Math.max(5, list.size() / 10);
+            int from = random.nextInt(Math.max(1, list.size() - size));
+            List<String> block = new ArrayList<>(list.subList(from, Math.min(list.size(), from + size)));
+            list.subList(from, from + block.size()).clear();
+            list.addAll(random.nextInt(list.size() + 1), block);
+        }
+        return String.join("\n", list);
+    }
+
+    /** {@code line} with one value changed, the way a small AI fix changes it. */
+    static String tweakLine(String line, Random random) {
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isDigit(line.charAt(i))) {
+                int end = i;
+                while (end < line.length() && Character.isDigit(line.charAt(end))) end++;
+                return line.substring(0, i) + (random.nextInt(900) + 100) + line.substring(end);
+            }
+        }
+        int space = line.lastIndexOf(' ');
+        if (space < 0) return line + " " + word(random);
+        return line.substring(0, space + 1) + word(random) + " " + line.substring(space + 1);
+    }
+
+    private static String tweakChars(String code, Random random, int count) {
+        StringBuilder sb = new StringBuilder(code);
+        for (int i = 0; i < count; i++) {
+            int at = random.nextInt(sb.length());
+            sb.insert(at, word(random));
+        }
+        return sb.toString();
+    }
+
+    private static String moveChars(String code, Random random) {
+        int size = Math.max(1, code.length() / 10);
+        int from = random.nextInt(Math.max(1, code.length() - size));
+        String block = code.substring(from, from + size);
+        String rest = code.substring(0, from) + code.substring(from + size);
+        int to = random.nextInt(rest.length() + 1);
+        return rest.substring(0, to) + block + rest.substring(to);
+    }
+
+    private static String html(int lines, Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n")
+                .append("  <meta charset=\"UTF-8\">\n")
+                .append("  <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n")
+                .append("  <title>").append(word(random)).append(" ").append(word(random)).append("</title>\n")
+                .append("  <link rel=\"stylesheet\" href=\"css/style.css\">\n")
+                .append("</head>\n<body>\n");
+        int n = 0;
+        LineCounter counter = new LineCounter();
+        while (counter.count(sb) < lines - 4) {
+            String name = word(random);
+            sb.append("  <section class=\"").append(name).append(" ").append(name).append("-").append(n).append("\">\n");
+            sb.append("    <h2>").append(capitalized(random)).append(" ").append(word(random)).append("</h2>\n");
+            sb.append("    <p>").append(sentence(random, 8 + random.nextInt(10))).append("</p>\n");
+            int items = 1 + random.nextInt(5);
+            sb.append("    <ul class=\"").append(word(random)).append("-list\">\n");
+            for (int i = 0; i < items; i++) {
+                sb.append("      <li><a href=\"/").append(word(random)).append("-").append(random.nextInt(100))
+                        .append(".html\">").append(capitalized(random)).append("</a></li>\n");
+            }
+            sb.append("    </ul>\n");
+            if (random.nextBoolean()) {
+                sb.append("    <button type=\"button\" class=\"btn btn-").append(word(random)).append("\" data-id=\"")
+                        .append(random.nextInt(1000)).append("\">").append(capitalized(random)).append("</button>\n");
+            }
+            sb.append("  </section>\n");
+            n++;
+        }
+        sb.append("  <script src=\"js/main.js\"></script>\n</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    private static String css(int lines, Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(":root {\n  --primary: #").append(hex(random)).append(";\n  --spacing: ")
+                .append(4 + random.nextInt(12)).append("px;\n}\n\n");
+        LineCounter counter = new LineCounter();
+        while (counter.count(sb) < lines) {
+            boolean media = random.nextInt(8) == 0;
+            String indent = media ? "  " : "";
+            if (media) sb.append("@media (max-width: ").append(320 + random.nextInt(900)).append("px) {\n");
+            sb.append(indent).append('.').append(word(random)).append('-').append(word(random));
+            if (random.nextBoolean()) sb.append(':').append(random.nextBoolean() ? "hover" : "focus");
+            sb.append(" {\n");
+            int props = 2 + random.nextInt(6);
+            for (int i = 0; i < props; i++) sb.append(indent).append("  ").append(property(random)).append('\n');
+            sb.append(indent).append("}\n");
+            if (media) sb.append("}\n");
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String property(Random random) {
+        switch (random.nextInt(7)) {
+            case 0: return "margin: " + random.nextInt(32) + "px " + random.nextInt(32) + "px;";
+            case 1: return "padding: " + random.nextInt(24) + "px;";
+            case 2: return "color: #" + hex(random) + ";";
+            case 3: return "background-color: var(--primary);";
+            case 4: return "display: " + (random.nextBoolean() ? "flex" : "grid") + ";";
+            case 5: return "font-size: " + (10 + random.nextInt(20)) + "px;";
+            default: return "border-radius: " + random.nextInt(16) + "px;";
+        }
+    }
+
+    private static String js(int lines, Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("import { ").append(word(random)).append(", ").append(word(random))
+                .append(" } from './").append(word(random)).append(".js';\n\n");
+        sb.append("const API_URL = '/api/").append(word(random)).append("';\n\n");
+        LineCounter counter = new LineCounter();
+        while (counter.count(sb) < lines) {
+            String name = word(random) + capitalized(random);
+            sb.append("export function ").append(name).append("(").append(word(random)).append(", options = {}) {\n");
+            int statements = 2 + random.nextInt(6);
+            for (int i = 0; i < statements; i++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        sb.append("  const ").append(word(random)).append(i).append(" = document.querySelector('.")
+                                .append(word(random)).append("');\n");
+                        break;
+                    case 1:
+                        sb.append("  if (options.").append(word(random)).append(" > ").append(random.nextInt(100)).append(") {\n")
+                                .append("    return ").append(word(random)).append(";\n  }\n");
+                        break;
+                    case 2:
+                        sb.append("  element.addEventListener('click', () => ").append(word(random))
+                                .append("(").append(random.nextInt(10)).append("));\n");
+                        break;
+                    default:
+                        sb.append("  const response = await fetch(`${API_URL}/").append(word(random)).append("`);\n");
+                        break;
+                }
+            }
+            sb.append("  return ").append(word(random)).append(";\n}\n\n");
+        }
+        return sb.toString();
+    }
+
+    // What a bundler leaves: a license comment, then the code on one line
+    private static String minify(String js) {
+        StringBuilder sb = new StringBuilder("/*! bundle v1.0.0 | MIT */\n");
+        for (String line : js.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) continue;
+            sb.append(trimmed.replace(" = ", "=").replace(", ", ",").replace(" {", "{"));
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder(capitalized(random));
+        for (int i = 1; i < words; i++) sb.append(' ').append(word(random));
+        return sb.append('.').toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalized(Random random) {
+        String w = word(random);
+        return Character.toUpperCase(w.charAt(0)) + w.substring(1);
+    }
+
+    private static String hex(Random random) {
+        return String.format("%06x", random.nextInt(0x1000000));
+    }
+
+    // Counts newlines of a growing builder, looking at each char once
+    private static final class LineCounter {
+        private int scanned;
+        private int lines;
+
+        int count(CharSequence text) {
+            for (; scanned < text.length(); scanned++) if (text.charAt(scanned) == '\n') lines++;
+            return lines;
+        }
+    }
+
+    static int countLines(CharSequence text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) if (text.charAt(i) == '\n') lines++;
+        return lines;
+    }
+}